@@ -0,0 +1,453 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.compiler;
+
+import fnplot.semantics.Environment;
+import fnplot.semantics.SymbolTable;
+import fnplot.semantics.Visitor;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpClear;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.CompileFnPlotException;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotType;
+import fnplot.values.FnPlotValue;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A compiler that translates numeric FnPlot expressions into JVM bytecode.
+ * The code for each expression is emitted into a hidden class, so that once
+ * the JIT has warmed up, evaluating a plot costs about as much as evaluating
+ * the equivalent Java expression.
+ * <p>
+ * The visit methods emit code that leaves the value of the visited expression
+ * on the operand stack, and return its static type.  The compiler follows the
+ * semantics of {@link fnplot.values.FnPlotInt} and
+ * {@link fnplot.values.FnPlotReal} exactly: the type of the left operand
+ * determines the type of an arithmetic result, and the right operand is
+ * converted to that type first.  Free variables are bound to their current
+ * values in the environment at the time of compilation, and calls to user
+ * defined functions are inlined.  Anything else (plots, definitions, function
+ * values, and comparisons and conditionals, which would need branches) causes
+ * a {@link CompileFnPlotException}, in which case the caller should fall back
+ * to the {@link fnplot.semantics.Evaluator}.
+ *
+ * @author newts
+ */
+public class BytecodeCompiler implements Visitor<BytecodeCompiler.Scope, FnPlotType> {
+
+    private static final String CLASS_NAME = "fnplot/compiler/CompiledCode";
+
+    /** The maximum depth to which function calls will be inlined. */
+    public static final int MAX_INLINE_DEPTH = 8;
+
+    private static final int MAX_LOCALS = 255;
+
+    private ClassFile.Code code;
+    private int nextLocal;
+    private int inlineDepth;
+
+    private BytecodeCompiler() {
+    }
+
+    /**
+     * Compile the mapping expression of a plot into a unary function of the
+     * plot variable.
+     * @param plot The plot expression whose map is to be compiled
+     * @param env The environment in which the plot is being evaluated
+     * @return The compiled map
+     * @throws FnPlotException if the map cannot be compiled.
+     */
+    public static DoubleUnaryOperator compilePlot(ExpPlot plot, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        ClassFile cf = new ClassFile(CLASS_NAME);
+        cf.addInterface("java/util/function/DoubleUnaryOperator");
+        BytecodeCompiler compiler = new BytecodeCompiler();
+        compiler.code = cf.newMethod("applyAsDouble", "(D)D", 3);
+        compiler.nextLocal = 3;
+        Scope scope = new Scope(new Scope(env, new Dependencies()));
+        scope.bind(plot.getItem(), new Local(1, FnPlotType.REAL));
+        FnPlotType t = plot.getMap().visit(compiler, scope);
+        compiler.toDouble(t);
+        compiler.code.op(ClassFile.DRETURN);
+        compiler.code.finish();
+        return (DoubleUnaryOperator) instantiate(cf);
+    }
+
+    /**
+     * Compile the body of a user defined function, specialised for the given
+     * parameter types.
+     * @param fun The function to be compiled
+     * @param paramTypes The types of the arguments that the compiled code
+     * will be called with.  Each must be either INTEGER or REAL.
+     * @return The compiled function, which remains valid only while the
+     * environments in which its free variables were looked up are unchanged
+     * (see {@link CompiledFunction#isCurrent()})
+     * @throws FnPlotException if the body cannot be compiled.
+     */
+    public static CompiledFunction compileFunction(FnPlotFunction fun, FnPlotType[] paramTypes)
+            throws FnPlotException {
+        ArrayList<String> params = fun.getFunExp().getParameters();
+        if (params.size() != paramTypes.length) {
+            throw new CompileFnPlotException("Arity mismatch for " + fun);
+        }
+        ClassFile cf = new ClassFile(CLASS_NAME);
+        cf.addInterface("fnplot/compiler/DoubleNaryOperator");
+        BytecodeCompiler compiler = new BytecodeCompiler();
+        compiler.code = cf.newMethod("applyAsDouble", "([D)D", 2);
+        compiler.nextLocal = 2;
+        Dependencies consulted = new Dependencies();
+        Scope scope = new Scope(new Scope(fun.getClosingEnv(), consulted));
+        for (int i = 0; i < paramTypes.length; i++) {
+            compiler.code.op(ClassFile.ALOAD, 1);
+            compiler.code.pushInt(i);
+            compiler.code.op(ClassFile.DALOAD);
+            if (paramTypes[i] == FnPlotType.INTEGER) {
+                compiler.code.op(ClassFile.D2I);
+            } else if (paramTypes[i] != FnPlotType.REAL) {
+                throw new CompileFnPlotException("Non-numeric parameter type " + paramTypes[i]);
+            }
+            scope.bind(params.get(i), compiler.store(paramTypes[i]));
+        }
+        FnPlotType t = fun.getFunExp().getBody().visit(compiler, scope);
+        compiler.toDouble(t);
+        compiler.code.op(ClassFile.DRETURN);
+        compiler.code.finish();
+        return new CompiledFunction((DoubleNaryOperator) instantiate(cf), paramTypes.clone(), t,
+                consulted.seal());
+    }
+
+    private static Object instantiate(ClassFile cf) throws CompileFnPlotException {
+        try {
+            MethodHandles.Lookup lookup =
+                    MethodHandles.lookup().defineHiddenClass(cf.toByteArray(), true);
+            return lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+        } catch (Throwable t) {
+            throw new CompileFnPlotException("Failed to load compiled code", t);
+        }
+    }
+
+    // helpers
+
+    private Local store(FnPlotType type) throws CompileFnPlotException {
+        int width = type == FnPlotType.REAL ? 2 : 1;
+        if (nextLocal + width > MAX_LOCALS) {
+            throw new CompileFnPlotException("Too many local variables");
+        }
+        Local l = new Local(nextLocal, type);
+        nextLocal += width;
+        code.op(type == FnPlotType.REAL ? ClassFile.DSTORE : ClassFile.ISTORE, l.slot);
+        return l;
+    }
+
+    private void toDouble(FnPlotType t) {
+        if (t == FnPlotType.INTEGER) {
+            code.op(ClassFile.I2D);
+        }
+    }
+
+    /**
+     * Convert the value on top of the stack (of type <code>from</code>) to the
+     * type of the left operand, in the way that FnPlotInt and FnPlotReal
+     * coerce their arguments.
+     */
+    private void coerce(FnPlotType from, FnPlotType to) {
+        if (from == FnPlotType.INTEGER && to == FnPlotType.REAL) {
+            code.op(ClassFile.I2D);
+        } else if (from == FnPlotType.REAL && to == FnPlotType.INTEGER) {
+            code.op(ClassFile.D2I);
+        }
+    }
+
+    private FnPlotType numeric(FnPlotType t) throws CompileFnPlotException {
+        if (t != FnPlotType.INTEGER && t != FnPlotType.REAL) {
+            throw new CompileFnPlotException("Non-numeric operand of type " + t);
+        }
+        return t;
+    }
+
+    private FnPlotType binary(Exp left, Exp right, Scope scope, int intOp, int realOp)
+            throws FnPlotException {
+        FnPlotType lt = numeric(left.visit(this, scope));
+        FnPlotType rt = numeric(right.visit(this, scope));
+        coerce(rt, lt);
+        code.op(lt == FnPlotType.INTEGER ? intOp : realOp);
+        return lt;
+    }
+
+    // unsupported constructs
+
+    /**
+     * @return The exception reporting that a construct cannot be compiled,
+     * which is permanent if the construct is in the code being compiled
+     * rather than in the body of a function inlined into it, which a later
+     * definition might replace
+     */
+    private CompileFnPlotException unsupported(String what) {
+        return new CompileFnPlotException("Cannot compile " + what, inlineDepth == 0);
+    }
+
+    @Override
+    public FnPlotType visitArithProgram(ArithProgram p, Scope arg) throws FnPlotException {
+        throw unsupported("a program");
+    }
+
+    @Override
+    public FnPlotType visitStmtSequence(StmtSequence exp, Scope arg) throws FnPlotException {
+        throw unsupported("a statement sequence");
+    }
+
+    @Override
+    public FnPlotType visitStmtDefinition(StmtDefinition sd, Scope arg) throws FnPlotException {
+        throw unsupported("a definition");
+    }
+
+    @Override
+    public FnPlotType visitFunDefn(ExpFunction fd, Scope arg) throws FnPlotException {
+        throw unsupported("a function value");
+    }
+
+    @Override
+    public FnPlotType visitFunPlot(ExpPlot exp, Scope arg) throws FnPlotException {
+        throw unsupported("a nested plot");
+    }
+
+    @Override
+    public FnPlotType visitClear(ExpClear exp, Scope arg) throws FnPlotException {
+        throw unsupported("clear");
+    }
+
+    @Override
+    public FnPlotType visitExpCompare(ExpCompare exp, Scope arg) throws FnPlotException {
+        // the code generated is straight-line, and a comparison needs a branch
+        throw unsupported("a comparison");
+    }
+
+    @Override
+    public FnPlotType visitExpIf(ExpIf exp, Scope arg) throws FnPlotException {
+        throw unsupported("a conditional");
+    }
+
+    // supported constructs
+
+    @Override
+    public FnPlotType visitStmtLet(StmtLet letExp, Scope scope) throws FnPlotException {
+        Scope inner = new Scope(scope);
+        for (Binding b : letExp.getBindings()) {
+            Exp valExp = b.getValExp();
+            if (valExp instanceof ExpFunction) {
+                inner.bind(b.getVar(), new FunRef((ExpFunction) valExp, scope));
+            } else if (valExp instanceof ExpVar
+                    && scope.lookup(((ExpVar) valExp).getVar()) instanceof FunRef) {
+                inner.bind(b.getVar(), scope.lookup(((ExpVar) valExp).getVar()));
+            } else {
+                FnPlotType t = numeric(valExp.visit(this, scope));
+                inner.bind(b.getVar(), store(t));
+            }
+        }
+        return letExp.getBody().visit(this, inner);
+    }
+
+    @Override
+    public FnPlotType visitFunCall(ExpFunCall exp, Scope scope) throws FnPlotException {
+        Object callee = scope.lookup(exp.getName());
+        if (!(callee instanceof FunRef)) {
+            throw new CompileFnPlotException(exp.getName() + " is not a known function");
+        }
+        FunRef fun = (FunRef) callee;
+        ArrayList<String> params = fun.fun.getParameters();
+        ArrayList<Exp> args = exp.getArguments();
+        if (params.size() != args.size()) {
+            throw new CompileFnPlotException("Arity mismatch in call to " + exp.getName());
+        }
+        if (inlineDepth >= MAX_INLINE_DEPTH) {
+            throw new CompileFnPlotException("Calls nested too deeply to inline");
+        }
+        Scope body = new Scope(fun.scope);
+        for (int i = 0; i < args.size(); i++) {
+            FnPlotType t = numeric(args.get(i).visit(this, scope));
+            body.bind(params.get(i), store(t));
+        }
+        inlineDepth++;
+        FnPlotType result = fun.fun.getBody().visit(this, body);
+        inlineDepth--;
+        return result;
+    }
+
+    @Override
+    public FnPlotType visitExpAdd(ExpAdd exp, Scope arg) throws FnPlotException {
+        return binary(exp.getExpL(), exp.getExpR(), arg, ClassFile.IADD, ClassFile.DADD);
+    }
+
+    @Override
+    public FnPlotType visitExpSub(ExpSub exp, Scope arg) throws FnPlotException {
+        return binary(exp.getExpL(), exp.getExpR(), arg, ClassFile.ISUB, ClassFile.DSUB);
+    }
+
+    @Override
+    public FnPlotType visitExpMul(ExpMul exp, Scope arg) throws FnPlotException {
+        return binary(exp.getExpL(), exp.getExpR(), arg, ClassFile.IMUL, ClassFile.DMUL);
+    }
+
+    @Override
+    public FnPlotType visitExpDiv(ExpDiv exp, Scope arg) throws FnPlotException {
+        return binary(exp.getExpL(), exp.getExpR(), arg, ClassFile.IDIV, ClassFile.DDIV);
+    }
+
+    @Override
+    public FnPlotType visitExpMod(ExpMod exp, Scope arg) throws FnPlotException {
+        return binary(exp.getExpL(), exp.getExpR(), arg, ClassFile.IREM, ClassFile.DREM);
+    }
+
+    @Override
+    public FnPlotType visitExpPow(ExpPow exp, Scope arg) throws FnPlotException {
+        // int ^ x is computed as FnPlotInt.power(int, x.intValue())
+        FnPlotType lt = numeric(exp.getExpL().visit(this, arg));
+        FnPlotType rt = numeric(exp.getExpR().visit(this, arg));
+        coerce(rt, lt);
+        if (lt == FnPlotType.INTEGER) {
+            code.invoke(ClassFile.INVOKESTATIC, "fnplot/values/FnPlotInt", "power", "(II)I", 2, 1);
+        } else {
+            code.invoke(ClassFile.INVOKESTATIC, "java/lang/Math", "pow", "(DD)D", 4, 2);
+        }
+        return lt;
+    }
+
+    @Override
+    public FnPlotType visitExpLit(ExpLit exp, Scope arg) throws FnPlotException {
+        return constant(exp.getVal());
+    }
+
+    private FnPlotType constant(FnPlotValue<?> val) throws FnPlotException {
+        FnPlotType t = numeric(val.getType());
+        if (t == FnPlotType.INTEGER) {
+            code.pushInt(val.intValue());
+        } else {
+            code.pushDouble(val.doubleValue());
+        }
+        return t;
+    }
+
+    @Override
+    public FnPlotType visitExpVar(ExpVar exp, Scope scope) throws FnPlotException {
+        Object entry = scope.lookup(exp.getVar());
+        if (entry instanceof Local) {
+            Local l = (Local) entry;
+            code.op(l.type == FnPlotType.REAL ? ClassFile.DLOAD : ClassFile.ILOAD, l.slot);
+            return l.type;
+        } else if (entry instanceof FnPlotValue) {
+            return constant((FnPlotValue<?>) entry);
+        } else {
+            throw new CompileFnPlotException("Cannot compile function reference " + exp.getVar());
+        }
+    }
+
+    /**
+     * A compile time environment.  Each name is bound to either a local
+     * variable of the generated method, a function known at compile time, or
+     * (at the root) a value looked up in the run time environment.  The
+     * names looked up at the roots are recorded with the values found, since
+     * the generated code depends on them.
+     */
+    static class Scope {
+        private final HashMap<String, Object> entries = new HashMap<>();
+        private final Scope parent;
+        private final Environment<FnPlotValue<?>> env;
+        private final Dependencies consulted;
+
+        Scope(Environment<FnPlotValue<?>> env, Dependencies consulted) {
+            this.parent = null;
+            this.env = env;
+            this.consulted = consulted;
+        }
+
+        Scope(Scope parent) {
+            this.parent = parent;
+            this.env = null;
+            this.consulted = null;
+        }
+
+        void bind(String id, Object entry) {
+            entries.put(id, entry);
+        }
+
+        Object lookup(String id) throws FnPlotException {
+            Object result = entries.get(id);
+            if (result != null) {
+                return result;
+            } else if (parent != null) {
+                return parent.lookup(id);
+            } else {
+                FnPlotValue<?> val = consulted.lookup(env, SymbolTable.intern(id));
+                if (val instanceof FnPlotFunction) {
+                    FnPlotFunction f = (FnPlotFunction) val;
+                    result = new FunRef(f.getFunExp(), new Scope(f.getClosingEnv(), consulted));
+                    entries.put(id, result);
+                    return result;
+                }
+                return val;
+            }
+        }
+    }
+
+    private static class Local {
+        final int slot;
+        final FnPlotType type;
+
+        Local(int slot, FnPlotType type) {
+            this.slot = slot;
+            this.type = type;
+        }
+    }
+
+    private static class FunRef {
+        final ExpFunction fun;
+        final Scope scope;
+
+        FunRef(ExpFunction fun, Scope scope) {
+            this.fun = fun;
+            this.scope = scope;
+        }
+    }
+}
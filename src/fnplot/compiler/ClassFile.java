@@ -0,0 +1,393 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A minimal writer for JVM class files.  It knows just enough of the class
+ * file format to produce a public final class with a default constructor and
+ * a handful of straight-line methods, which is all that the FnPlot compiler
+ * needs.  Since the generated code never branches, no StackMapTable attributes
+ * are required.
+ *
+ * @author newts
+ */
+public class ClassFile {
+
+    // opcodes used by the compiler
+    public static final int ICONST_0 = 0x03;
+    public static final int DCONST_0 = 0x0e;
+    public static final int DCONST_1 = 0x0f;
+    public static final int BIPUSH = 0x10;
+    public static final int SIPUSH = 0x11;
+    public static final int LDC_W = 0x13;
+    public static final int LDC2_W = 0x14;
+    public static final int ILOAD = 0x15;
+    public static final int DLOAD = 0x18;
+    public static final int ALOAD = 0x19;
+    public static final int DALOAD = 0x31;
+    public static final int ISTORE = 0x36;
+    public static final int DSTORE = 0x39;
+    public static final int POP = 0x57;
+    public static final int POP2 = 0x58;
+    public static final int IADD = 0x60;
+    public static final int DADD = 0x63;
+    public static final int ISUB = 0x64;
+    public static final int DSUB = 0x67;
+    public static final int IMUL = 0x68;
+    public static final int DMUL = 0x6b;
+    public static final int IDIV = 0x6c;
+    public static final int DDIV = 0x6f;
+    public static final int IREM = 0x70;
+    public static final int DREM = 0x73;
+    public static final int INEG = 0x74;
+    public static final int DNEG = 0x77;
+    public static final int I2D = 0x87;
+    public static final int D2I = 0x8e;
+    public static final int IRETURN = 0xac;
+    public static final int DRETURN = 0xaf;
+    public static final int RETURN = 0xb1;
+    public static final int INVOKESPECIAL = 0xb7;
+    public static final int INVOKESTATIC = 0xb8;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int CLASS_VERSION = 52;   // Java 8, no stack maps needed
+
+    private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+    private final DataOutputStream pool = new DataOutputStream(poolBytes);
+    private final HashMap<String, Integer> poolIndex = new HashMap<>();
+    private int poolCount = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final ArrayList<Integer> interfaces = new ArrayList<>();
+    private final ArrayList<byte[]> methods = new ArrayList<>();
+
+    /**
+     * Create a new class file for a class with the given internal name
+     * (e.g. <code>fnplot/compiler/Compiled</code>) that extends Object.
+     * @param name The internal name of the class
+     */
+    public ClassFile(String name) {
+        thisClass = classRef(name);
+        superClass = classRef("java/lang/Object");
+        Code init = newMethod("<init>", "()V", 1);
+        init.op(ALOAD, 0);
+        init.invoke(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", 1, 0);
+        init.op(RETURN);
+        init.finish();
+    }
+
+    /**
+     * Declare that this class implements the given interface.
+     * @param name The internal name of the interface
+     */
+    public void addInterface(String name) {
+        interfaces.add(classRef(name));
+    }
+
+    /**
+     * Start a new public method on this class.
+     * @param name The name of the method
+     * @param descriptor The JVM method descriptor
+     * @param argSlots The number of local variable slots used by the receiver
+     * and the arguments of the method.
+     * @return The code builder for the body of the method.  The method is
+     * added to the class when {@link Code#finish()} is called.
+     */
+    public Code newMethod(String name, String descriptor, int argSlots) {
+        return new Code(utf8(name), utf8(descriptor), argSlots);
+    }
+
+    /**
+     * @return The bytes of the complete class file
+     */
+    public byte[] toByteArray() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_VERSION);
+            out.writeShort(poolCount);
+            pool.flush();
+            poolBytes.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(interfaces.size());
+            for (int i : interfaces) {
+                out.writeShort(i);
+            }
+            out.writeShort(0);              // no fields
+            out.writeShort(methods.size());
+            for (byte[] m : methods) {
+                out.write(m);
+            }
+            out.writeShort(0);              // no class attributes
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // cannot happen when writing to memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // constant pool management
+
+    private int entry(String key, int slots, PoolWriter writer) {
+        Integer index = poolIndex.get(key);
+        if (index == null) {
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            index = poolCount;
+            poolCount += slots;
+            poolIndex.put(key, index);
+        }
+        return index;
+    }
+
+    private interface PoolWriter {
+        void write() throws IOException;
+    }
+
+    int utf8(String s) {
+        return entry("U" + s, 1, () -> {
+            pool.writeByte(1);
+            pool.writeUTF(s);
+        });
+    }
+
+    int classRef(String name) {
+        int n = utf8(name);
+        return entry("C" + name, 1, () -> {
+            pool.writeByte(7);
+            pool.writeShort(n);
+        });
+    }
+
+    int intConst(int v) {
+        return entry("I" + v, 1, () -> {
+            pool.writeByte(3);
+            pool.writeInt(v);
+        });
+    }
+
+    int doubleConst(double v) {
+        return entry("D" + Double.doubleToRawLongBits(v), 2, () -> {
+            pool.writeByte(6);
+            pool.writeDouble(v);
+        });
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+        int c = classRef(owner);
+        int n = utf8(name);
+        int d = utf8(descriptor);
+        int nt = entry("N" + name + descriptor, 1, () -> {
+            pool.writeByte(12);
+            pool.writeShort(n);
+            pool.writeShort(d);
+        });
+        return entry("M" + owner + "." + name + descriptor, 1, () -> {
+            pool.writeByte(10);
+            pool.writeShort(c);
+            pool.writeShort(nt);
+        });
+    }
+
+    /**
+     * A builder for the bytecode of a single method.  It keeps track of the
+     * operand stack depth and the number of local variable slots in use so
+     * that the Code attribute can be completed automatically.
+     */
+    public class Code {
+        private final int nameIndex;
+        private final int descIndex;
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private int stack = 0;
+        private int maxStack = 0;
+        private int maxLocals;
+
+        Code(int nameIndex, int descIndex, int argSlots) {
+            this.nameIndex = nameIndex;
+            this.descIndex = descIndex;
+            this.maxLocals = argSlots;
+        }
+
+        private void adjust(int delta) {
+            stack += delta;
+            if (stack > maxStack) {
+                maxStack = stack;
+            }
+        }
+
+        private void u2(int v) {
+            code.write(v >> 8);
+            code.write(v);
+        }
+
+        /**
+         * Emit an instruction that takes no operands.
+         * @param opcode The instruction to be emitted
+         */
+        public void op(int opcode) {
+            code.write(opcode);
+            adjust(stackEffect(opcode));
+        }
+
+        /**
+         * Emit a local variable instruction.
+         * @param opcode One of the load or store instructions
+         * @param slot The local variable slot
+         */
+        public void op(int opcode, int slot) {
+            code.write(opcode);
+            code.write(slot);
+            int width = (opcode == DLOAD || opcode == DSTORE) ? 2 : 1;
+            if (slot + width > maxLocals) {
+                maxLocals = slot + width;
+            }
+            adjust(opcode < ISTORE ? width : -width);
+        }
+
+        /**
+         * Emit code to push an int constant.
+         * @param v The value to be pushed
+         */
+        public void pushInt(int v) {
+            if (v >= -1 && v <= 5) {
+                code.write(ICONST_0 + v);
+            } else if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) {
+                code.write(BIPUSH);
+                code.write(v);
+            } else if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) {
+                code.write(SIPUSH);
+                u2(v);
+            } else {
+                code.write(LDC_W);
+                u2(intConst(v));
+            }
+            adjust(1);
+        }
+
+        /**
+         * Emit code to push a double constant.
+         * @param v The value to be pushed
+         */
+        public void pushDouble(double v) {
+            if (Double.doubleToRawLongBits(v) == 0L) {
+                code.write(DCONST_0);
+            } else if (v == 1.0) {
+                code.write(DCONST_1);
+            } else {
+                code.write(LDC2_W);
+                u2(doubleConst(v));
+            }
+            adjust(2);
+        }
+
+        /**
+         * Emit a method invocation.
+         * @param opcode INVOKESTATIC or INVOKESPECIAL
+         * @param owner The internal name of the class declaring the method
+         * @param name The name of the method
+         * @param descriptor The method descriptor
+         * @param argSlots The number of stack slots consumed (including the
+         * receiver, if any)
+         * @param resultSlots The number of stack slots produced
+         */
+        public void invoke(int opcode, String owner, String name, String descriptor,
+                           int argSlots, int resultSlots) {
+            code.write(opcode);
+            u2(methodRef(owner, name, descriptor));
+            adjust(resultSlots - argSlots);
+        }
+
+        /**
+         * @return The number of local variable slots currently reserved.
+         */
+        public int getMaxLocals() {
+            return maxLocals;
+        }
+
+        /**
+         * Complete this method and add it to the enclosing class.
+         */
+        public void finish() {
+            try {
+                byte[] body = code.toByteArray();
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeShort(ACC_PUBLIC);
+                out.writeShort(nameIndex);
+                out.writeShort(descIndex);
+                out.writeShort(1);
+                out.writeShort(utf8("Code"));
+                out.writeInt(12 + body.length);
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(body.length);
+                out.write(body);
+                out.writeShort(0);          // no exception handlers
+                out.writeShort(0);          // no code attributes
+                out.flush();
+                methods.add(bytes.toByteArray());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static int stackEffect(int opcode) {
+        switch (opcode) {
+            case DCONST_0: case DCONST_1: return 2;
+            case ALOAD: return 1;
+            case POP: return -1;
+            case POP2: return -2;
+            case DALOAD: return 0;
+            case IADD: case ISUB: case IMUL: case IDIV: case IREM: return -1;
+            case DADD: case DSUB: case DMUL: case DDIV: case DREM: return -2;
+            case INEG: case DNEG: return 0;
+            case I2D: return 1;
+            case D2I: return -1;
+            case IRETURN: return -1;
+            case DRETURN: return -2;
+            case RETURN: return 0;
+            default:
+                if (opcode >= 0x2a && opcode <= 0x2d) {
+                    return 1;       // aload_n
+                }
+                throw new IllegalArgumentException("Unsupported opcode " + opcode);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.compiler;
+
+import fnplot.semantics.Environment;
+import fnplot.semantics.FreeNames;
+import fnplot.semantics.SymbolTable;
+import fnplot.syntax.ExpPlot;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotType;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A cache of the code generated by the {@link BytecodeCompiler}, shared by
+ * every interpreter in the process, so that compiling a function or plot map
+ * that is identical to one compiled before costs only a lookup.
+ * <p>
+ * Since the compiler captures the values of free variables, and inlines the
+ * functions that are called, the code is keyed by the structure of the AST
+ * compiled, the names and types of its parameters, and the values of its
+ * free variables: numbers by type and value, and functions by their own
+ * structure and the values of their free variables, in turn.  Code whose
+ * free variables have any other values (or are unbound, or are nested too
+ * deeply) is compiled afresh each time, and not cached.  When the cache is
+ * full, the least recently used code is evicted.  The numbers of hits,
+ * misses and evictions are counted.
+ *
+ * @author newts
+ */
+public final class CodeCache {
+
+    /**
+     * The name of the system property that sets the capacity of the shared
+     * cache.
+     */
+    public static final String CAPACITY_PROPERTY = "fnplot.codecache.size";
+
+    /** The default number of pieces of code kept by the shared cache. */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static final CodeCache SHARED =
+            new CodeCache(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+
+    /**
+     * The key of a piece of code.  The shape is the function compiled, or the
+     * map and the variable of the plot compiled.  The bindings alternate
+     * between the free names (in alphabetical order) and their values, or the
+     * keys of the functions that are their values.
+     */
+    private static final class Key {
+
+        private final Object shape;
+        private final FnPlotType[] types;
+        private final Object[] bindings;
+        private final int hash;
+
+        Key(Object shape, FnPlotType[] types, Object[] bindings) {
+            this.shape = shape;
+            this.types = types;
+            this.bindings = bindings;
+            this.hash = Objects.hash(shape, Arrays.hashCode(types), Arrays.hashCode(bindings));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) obj;
+            return hash == k.hash && shape.equals(k.shape) && Arrays.equals(types, k.types) &&
+                    Arrays.equals(bindings, k.bindings);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Compiled code, with the type of its result.
+     */
+    private static final class Entry {
+
+        private final Object code;
+        private final FnPlotType resultType;
+
+        Entry(Object code, FnPlotType resultType) {
+            this.code = code;
+            this.resultType = resultType;
+        }
+    }
+
+    private final LinkedHashMap<Key, Entry> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a cache.
+     * @param capacity The greatest number of pieces of code to keep
+     */
+    public CodeCache(final int capacity) {
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return The cache shared by every interpreter in the process
+     */
+    public static CodeCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Compile the body of a user defined function, specialised for the given
+     * parameter types, or find the code compiled for an identical function.
+     * @param fun The function to be compiled
+     * @param paramTypes The types of the arguments that the compiled code
+     * will be called with
+     * @return The compiled function
+     * @throws FnPlotException if the body cannot be compiled
+     * @see BytecodeCompiler#compileFunction(FnPlotFunction, FnPlotType[])
+     */
+    public CompiledFunction compileFunction(FnPlotFunction fun, FnPlotType[] paramTypes)
+            throws FnPlotException {
+        Dependencies consulted = new Dependencies();
+        Key key = key(fun, paramTypes, consulted, 0);
+        Entry entry = key == null ? null : lookup(key);
+        if (entry != null) {
+            return new CompiledFunction((DoubleNaryOperator) entry.code, paramTypes.clone(),
+                    entry.resultType, consulted.seal());
+        }
+        CompiledFunction compiled = BytecodeCompiler.compileFunction(fun, paramTypes);
+        if (key != null) {
+            store(key, new Entry(compiled.getCode(), compiled.getResultType()));
+        }
+        return compiled;
+    }
+
+    /**
+     * Compile the map of a plot, or find the code compiled for an identical
+     * map.
+     * @param plot The plot expression whose map is to be compiled
+     * @param env The environment in which the plot is being evaluated
+     * @return The compiled map
+     * @throws FnPlotException if the map cannot be compiled
+     * @see BytecodeCompiler#compilePlot(ExpPlot, Environment)
+     */
+    public DoubleUnaryOperator compilePlot(ExpPlot plot, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        Object[] bindings = bindings(FreeNames.of(plot), env, new Dependencies(), 0);
+        Key key = bindings == null ? null :
+                new Key(Arrays.asList(plot.getMap(), plot.getItem()), null, bindings);
+        Entry entry = key == null ? null : lookup(key);
+        if (entry != null) {
+            return (DoubleUnaryOperator) entry.code;
+        }
+        DoubleUnaryOperator compiled = BytecodeCompiler.compilePlot(plot, env);
+        if (key != null) {
+            store(key, new Entry(compiled, FnPlotType.REAL));
+        }
+        return compiled;
+    }
+
+    /**
+     * @return The key of a function, or <code>null</code> if it cannot be
+     * cached
+     */
+    private static Key key(FnPlotFunction fun, FnPlotType[] types,
+            Dependencies consulted, int depth) throws FnPlotException {
+        Object[] bindings = bindings(FreeNames.of(fun.getFunExp()), fun.getClosingEnv(),
+                consulted, depth);
+        return bindings == null ? null :
+                new Key(fun.getFunExp(), types == null ? null : types.clone(), bindings);
+    }
+
+    /**
+     * @return The bindings of the free names of some code, or
+     * <code>null</code> if it cannot be cached
+     */
+    private static Object[] bindings(Iterable<String> free, Environment<FnPlotValue<?>> env,
+            Dependencies consulted, int depth) throws FnPlotException {
+        if (depth > BytecodeCompiler.MAX_INLINE_DEPTH) {
+            return null;
+        }
+        ArrayList<Object> result = new ArrayList<>();
+        for (String id : free) {
+            int symbol = SymbolTable.lookup(id);
+            if (symbol < 0 || !env.isBound(symbol)) {
+                return null;
+            }
+            FnPlotValue<?> val = consulted.lookup(env, symbol);
+            Object binding;
+            if (val.isNumber()) {
+                binding = val;
+            } else if (val instanceof FnPlotFunction) {
+                binding = key((FnPlotFunction) val, null, consulted, depth + 1);
+                if (binding == null) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+            result.add(id);
+            result.add(binding);
+        }
+        return result.toArray();
+    }
+
+    private synchronized Entry lookup(Key key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    private synchronized void store(Key key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    /**
+     * @return The number of pieces of code in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The number of requests for code that was found in the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of requests for cacheable code that was not found
+     * in the cache, and was compiled
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The number of pieces of code evicted to make room for others
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Empty the cache, and reset its counters.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("CodeCache[%d entries, %d hits, %d misses, %d evictions]",
+                entries.size(), hits, misses, evictions);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.compiler;
+
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotType;
+import fnplot.values.FnPlotValue;
+import java.util.List;
+
+/**
+ * The compiled form of a user defined function body, specialised for a
+ * particular combination of parameter types.  Since the values of the free
+ * variables of the body (and of the functions inlined into it) are captured
+ * when it is compiled, the compiled form also records the values that it
+ * captured (see {@link Dependencies}), so that it can tell when it has
+ * become out of date.
+ *
+ * @author newts
+ */
+public final class CompiledFunction {
+
+    private final DoubleNaryOperator code;
+    private final FnPlotType[] paramTypes;
+    private final FnPlotType resultType;
+    private final Dependencies consulted;
+
+    CompiledFunction(DoubleNaryOperator code, FnPlotType[] paramTypes, FnPlotType resultType,
+            Dependencies consulted) {
+        this.code = code;
+        this.paramTypes = paramTypes;
+        this.resultType = resultType;
+        this.consulted = consulted;
+    }
+
+    /**
+     * Determine whether this compilation still computes what the body of the
+     * function would.
+     * @return <code>false</code> if one of the free variables that the
+     * compiler looked up has been rebound since the function was compiled
+     */
+    public boolean isCurrent() {
+        return consulted.isCurrent();
+    }
+
+    /**
+     * @return The generated code for the function body
+     */
+    public DoubleNaryOperator getCode() {
+        return code;
+    }
+
+    /**
+     * @return The parameter types that this compilation was specialised for
+     */
+    public FnPlotType[] getParamTypes() {
+        return paramTypes.clone();
+    }
+
+    /**
+     * @return The static type of the result of the function body
+     */
+    public FnPlotType getResultType() {
+        return resultType;
+    }
+
+    /**
+     * Determine whether this compilation may be used for the given arguments.
+     * @param args The actual arguments of a call
+     * @return <code>true</code> if and only if the arguments have exactly the
+     * types that this compilation was specialised for.
+     */
+    public boolean accepts(List<? extends FnPlotValue<?>> args) {
+        if (args.size() != paramTypes.length) {
+            return false;
+        }
+        for (int i = 0; i < paramTypes.length; i++) {
+            if (args.get(i).getType() != paramTypes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Apply the compiled function to the given arguments.
+     * @param args The arguments, which must be accepted by this compilation
+     * @return The result of the call, as an FnPlot value of the result type
+     * @throws FnPlotException if an argument is not numeric
+     */
+    public FnPlotValue<?> apply(List<? extends FnPlotValue<?>> args) throws FnPlotException {
+        double[] vals = new double[args.size()];
+        for (int i = 0; i < vals.length; i++) {
+            vals[i] = args.get(i).doubleValue();
+        }
+        double r = code.applyAsDouble(vals);
+        if (resultType == FnPlotType.INTEGER) {
+            return FnPlotValue.make((int) r);
+        } else {
+            return FnPlotValue.make(r);
+        }
+    }
+
+    /**
+     * Apply the compiled function to unboxed arguments.
+     * @param args The arguments
+     * @return The result of the call
+     */
+    public double applyAsDouble(double[] args) {
+        return code.applyAsDouble(args);
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.compiler;
+
+import fnplot.semantics.Environment;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * The names that some compiled code looked up in the run time environment
+ * when it was compiled, with the values that it found and captured.  The
+ * code is still valid while each name still has the value that was found.
+ * <p>
+ * Checking every name is relatively expensive, so the version of each
+ * environment that a lookup searched is also recorded.  While none of those
+ * versions has changed, nothing that the code captured can have changed
+ * either.  When one has, the names are looked up again, since the binding
+ * made may have been of some name that the code does not use, and if they
+ * all still have the values that were captured, the versions are brought
+ * up to date.
+ *
+ * @author newts
+ */
+final class Dependencies {
+
+    private final ArrayList<Environment<FnPlotValue<?>>> envs = new ArrayList<>();
+    private final ArrayList<Environment<FnPlotValue<?>>> lookupEnvs = new ArrayList<>();
+    private final ArrayList<FnPlotValue<?>> values = new ArrayList<>();
+    private int[] symbols = new int[4];
+    private int[] versions;
+
+    /**
+     * Look up a name, and record the dependence of the code being compiled on
+     * the value found.
+     * @param env The environment in which the name is looked up
+     * @param symbol The symbol of the name
+     * @return The value of the name in <code>env</code>
+     * @throws FnPlotException if the name is unbound
+     */
+    FnPlotValue<?> lookup(Environment<FnPlotValue<?>> env, int symbol) throws FnPlotException {
+        FnPlotValue<?> val = env.get(symbol);
+        // a binding of the name in any environment searched before the one
+        // that binds it would change the value found
+        for (Environment<FnPlotValue<?>> e = env; e != null; e = e.getParent()) {
+            envs.add(e);
+            if (e.isBoundHere(symbol)) {
+                break;
+            }
+        }
+        int n = values.size();
+        if (n == symbols.length) {
+            symbols = Arrays.copyOf(symbols, n * 2);
+        }
+        symbols[n] = symbol;
+        lookupEnvs.add(env);
+        values.add(val);
+        return val;
+    }
+
+    /**
+     * Record the versions of the environments searched by the lookups made
+     * so far, which are the versions against which {@link #isCurrent()}
+     * checks.
+     * @return This object
+     */
+    Dependencies seal() {
+        Set<Environment<?>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayList<Environment<FnPlotValue<?>>> distinct = new ArrayList<>();
+        for (Environment<FnPlotValue<?>> env : envs) {
+            if (seen.add(env)) {
+                distinct.add(env);
+            }
+        }
+        envs.clear();
+        envs.addAll(distinct);
+        versions = new int[envs.size()];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = envs.get(i).getVersion();
+        }
+        return this;
+    }
+
+    /**
+     * Determine whether every name looked up still has the value found.
+     * @return <code>false</code> if one of the names has been rebound since
+     * the lookups were made
+     */
+    boolean isCurrent() {
+        int i = 0;
+        while (i < versions.length && envs.get(i).getVersion() == versions[i]) {
+            i++;
+        }
+        if (i == versions.length) {
+            return true;
+        }
+        for (int j = 0; j < values.size(); j++) {
+            Environment<FnPlotValue<?>> env = lookupEnvs.get(j);
+            try {
+                if (!env.isBound(symbols[j]) || env.get(symbols[j]) != values.get(j)) {
+                    return false;
+                }
+            } catch (FnPlotException e) {
+                return false;
+            }
+        }
+        seal();
+        return true;
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.compiler;
+
+/**
+ * The n-ary counterpart of {@link java.util.function.DoubleUnaryOperator}.
+ * Classes generated for compiled function bodies implement this interface.
+ *
+ * @author newts
+ */
+public interface DoubleNaryOperator {
+
+    /**
+     * Apply this operator to the given arguments.
+     * @param args The arguments, one per parameter of the compiled function.
+     * Integer parameters are passed as doubles and truncated on entry.
+     * @return The result of the function, as a double
+     */
+    public double applyAsDouble(double[] args);
+
+}
@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.compiler;
+
+import fnplot.semantics.Visitor;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpClear;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.CompileFnPlotException;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Translates a whole program into the Java source of a subclass of
+ * {@link fnplot.runtime.Program}, for compilation ahead of time.  Each
+ * statement at the top level of the program becomes a method, and every
+ * other statement or expression a Java expression built from the operations
+ * of {@link FnPlotValue} and the helper methods of <code>Program</code>, so
+ * that the compiled program computes the same values, and reports the same
+ * errors, as the interpreters do.  The bodies of functions, lets and plot
+ * maps become lambdas over the environment that they are evaluated in;
+ * literals, and the symbols of the names used, become constants of the
+ * generated class.  A call in tail position of the body of a function is
+ * returned as a pending call, which the caller makes in a loop (see
+ * {@link fnplot.runtime.Closure}), so that recursive loops do not overflow
+ * the Java stack.
+ * <p>
+ * The visit methods return the source of the visited expression.  Their
+ * argument is the nesting depth of the lambda that the expression is in,
+ * which determines the name of the variable that holds its environment.
+ *
+ * @author newts
+ */
+public class JavaGenerator implements Visitor<Integer, String> {
+
+    private final ArrayList<String> constants = new ArrayList<>();
+    /** The identifiers named by the program, each interned by one field. */
+    private final LinkedHashMap<String, String> symbols = new LinkedHashMap<>();
+    /** The initialisers of the constant arrays of symbols. */
+    private final ArrayList<String> symbolArrays = new ArrayList<>();
+
+    /** Whether the expression being visited is in tail position of a body. */
+    private boolean tail;
+
+    private JavaGenerator() {
+    }
+
+    /**
+     * Generate the Java source of a compiled program.
+     * @param p The program
+     * @param className The (unqualified) name of the class to generate, which
+     * is put in the unnamed package
+     * @return The source of the class
+     * @throws FnPlotException if the program cannot be translated
+     */
+    public static String generate(ArithProgram p, String className) throws FnPlotException {
+        JavaGenerator gen = new JavaGenerator();
+        StringBuilder methods = new StringBuilder();
+        StringBuilder run = new StringBuilder();
+        ArrayList<Statement> seq = p.getSeq().getSeq();
+        for (int i = 0; i < seq.size(); i++) {
+            methods.append(String.format("%n    private FnPlotValue<?> s%d(Environment<FnPlotValue<?>> "
+                    + "env0) throws FnPlotException {%n        return %s;%n    }%n",
+                    i, seq.get(i).visit(gen, 0)));
+            run.append(String.format("        result = s%d(env0);%n", i));
+        }
+        StringBuilder src = new StringBuilder();
+        src.append(String.format("import fnplot.runtime.Closure;%n"
+                + "import fnplot.runtime.Program;%n"
+                + "import fnplot.semantics.Environment;%n"
+                + "import fnplot.semantics.SymbolTable;%n"
+                + "import fnplot.sys.FnPlotException;%n"
+                + "import fnplot.values.Comparison;%n"
+                + "import fnplot.values.FnPlotValue;%n%n"
+                + "public final class %s extends Program {%n%n", className));
+        for (Map.Entry<String, String> s : gen.symbols.entrySet()) {
+            src.append(String.format("    private static final int %s = SymbolTable.intern(%s);%n",
+                    s.getValue(), quote(s.getKey())));
+        }
+        for (int i = 0; i < gen.symbolArrays.size(); i++) {
+            src.append(String.format("    private static final int[] N%d = {%s};%n",
+                    i, gen.symbolArrays.get(i)));
+        }
+        for (int i = 0; i < gen.constants.size(); i++) {
+            src.append(String.format("    private static final FnPlotValue<?> L%d = %s;%n",
+                    i, gen.constants.get(i)));
+        }
+        src.append(String.format("%n    public static void main(String[] args) {%n"
+                + "        new %s().execute();%n    }%n%n"
+                + "    @Override%n"
+                + "    public FnPlotValue<?> run(Environment<FnPlotValue<?>> env0) "
+                + "throws FnPlotException {%n"
+                + "        FnPlotValue<?> result = FnPlotValue.make(0);%n"
+                + "%s"
+                + "        return result;%n    }%n", className, run));
+        src.append(methods);
+        src.append(String.format("}%n"));
+        return src.toString();
+    }
+
+    private static String env(int depth) {
+        return "env" + depth;
+    }
+
+    /**
+     * @return A Java string literal with the given contents
+     */
+    private static String quote(String s) {
+        StringBuilder result = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < ' ') {
+                // a unicode escape of a line break would end the literal
+                result.append(String.format("\\%03o", (int) c));
+            } else if (c > '~') {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    /**
+     * @return A Java double literal with the given value
+     */
+    private static String real(double d) {
+        if (Double.isNaN(d)) {
+            return "Double.NaN";
+        } else if (Double.isInfinite(d)) {
+            return d > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY";
+        }
+        return Double.toString(d);
+    }
+
+    /**
+     * @return The name of the field that holds the symbol of an identifier
+     */
+    private String symbol(String id) {
+        return symbols.computeIfAbsent(id, k -> "S" + symbols.size());
+    }
+
+    /**
+     * @return The name of a constant array of the symbols of some identifiers
+     */
+    private String names(ArrayList<String> ids) {
+        ArrayList<String> fields = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            fields.add(symbol(id));
+        }
+        symbolArrays.add(String.join(", ", fields));
+        return "N" + (symbolArrays.size() - 1);
+    }
+
+    /**
+     * @return The source of a statement whose value is not the value of the
+     * function body that it is in
+     */
+    private String operand(Statement s, Integer depth) throws FnPlotException {
+        boolean wasTail = tail;
+        tail = false;
+        try {
+            return s.visit(this, depth);
+        } finally {
+            tail = wasTail;
+        }
+    }
+
+    private String arith(String op, Exp left, Exp right, Integer depth)
+            throws FnPlotException {
+        return operand(left, depth) + "." + op + "(" + operand(right, depth) + ")";
+    }
+
+    @Override
+    public String visitArithProgram(ArithProgram p, Integer depth) throws FnPlotException {
+        return p.getSeq().visit(this, depth);
+    }
+
+    @Override
+    public String visitStmtSequence(StmtSequence sseq, Integer depth) throws FnPlotException {
+        ArrayList<String> stmts = new ArrayList<>();
+        ArrayList<Statement> seq = sseq.getSeq();
+        for (int i = 0; i < seq.size(); i++) {
+            // only the last statement gives the value of the sequence
+            stmts.add(i == seq.size() - 1 ? seq.get(i).visit(this, depth) :
+                    operand(seq.get(i), depth));
+        }
+        return "sequence(" + String.join(", ", stmts) + ")";
+    }
+
+    @Override
+    public String visitStmtDefinition(StmtDefinition sd, Integer depth) throws FnPlotException {
+        return String.format("define(%s, %s, %s)", env(depth), symbol(sd.getVar()),
+                operand(sd.getExp(), depth));
+    }
+
+    @Override
+    public String visitStmtLet(StmtLet let, Integer depth) throws FnPlotException {
+        ArrayList<String> vars = new ArrayList<>();
+        ArrayList<String> vals = new ArrayList<>();
+        for (Binding b : let.getBindings()) {
+            vars.add(b.getVar());
+            vals.add(operand(b.getValExp(), depth));
+        }
+        return String.format("let(%s, %s, new FnPlotValue<?>[] {%s}, %s -> %s)", env(depth),
+                names(vars), String.join(", ", vals), env(depth + 1),
+                let.getBody().visit(this, depth + 1));
+    }
+
+    @Override
+    public String visitFunDefn(ExpFunction defn, Integer depth) throws FnPlotException {
+        // printed just as the interpreters print the function
+        String text = new FnPlotFunction(defn, null).toString();
+        boolean wasTail = tail;
+        tail = true;
+        String body;
+        try {
+            body = defn.getBody().visit(this, depth + 1);
+        } finally {
+            tail = wasTail;
+        }
+        return String.format("new Closure(%s, %s, %s, %s -> %s)", names(defn.getParameters()),
+                quote(text), env(depth), env(depth + 1), body);
+    }
+
+    @Override
+    public String visitFunCall(ExpFunCall callExp, Integer depth) throws FnPlotException {
+        StringBuilder result = new StringBuilder(tail ? "tailCall(" : "call(");
+        result.append(env(depth)).append(", ").append(symbol(callExp.getName()));
+        for (Exp arg : callExp.getArguments()) {
+            result.append(", ").append(operand(arg, depth));
+        }
+        return result.append(")").toString();
+    }
+
+    @Override
+    public String visitFunPlot(ExpPlot exp, Integer depth) throws FnPlotException {
+        return String.format("plot(%s, %s, %s, %s, %s -> %s)", env(depth), symbol(exp.getItem()),
+                real(exp.getStart()), real(exp.getEnd()), env(depth + 1),
+                operand(exp.getMap(), depth + 1));
+    }
+
+    @Override
+    public String visitClear(ExpClear exp, Integer depth) throws FnPlotException {
+        return "clear()";
+    }
+
+    @Override
+    public String visitExpAdd(ExpAdd exp, Integer depth) throws FnPlotException {
+        return arith("add", exp.getExpL(), exp.getExpR(), depth);
+    }
+
+    @Override
+    public String visitExpSub(ExpSub exp, Integer depth) throws FnPlotException {
+        return arith("sub", exp.getExpL(), exp.getExpR(), depth);
+    }
+
+    @Override
+    public String visitExpMul(ExpMul exp, Integer depth) throws FnPlotException {
+        return arith("mul", exp.getExpL(), exp.getExpR(), depth);
+    }
+
+    @Override
+    public String visitExpPow(ExpPow exp, Integer depth) throws FnPlotException {
+        return arith("pow", exp.getExpL(), exp.getExpR(), depth);
+    }
+
+    @Override
+    public String visitExpDiv(ExpDiv exp, Integer depth) throws FnPlotException {
+        return arith("div", exp.getExpL(), exp.getExpR(), depth);
+    }
+
+    @Override
+    public String visitExpMod(ExpMod exp, Integer depth) throws FnPlotException {
+        return arith("mod", exp.getExpL(), exp.getExpR(), depth);
+    }
+
+    @Override
+    public String visitExpLit(ExpLit exp, Integer depth) throws FnPlotException {
+        FnPlotValue<?> val = exp.getVal();
+        String init;
+        if (val.isInteger()) {
+            init = "FnPlotValue.make(" + val.intValue() + ")";
+        } else if (val.isNumber()) {
+            init = "FnPlotValue.make(" + real(val.doubleValue()) + ")";
+        } else {
+            throw new CompileFnPlotException("Cannot compile a literal " + val);
+        }
+        String name = "L" + constants.size();
+        constants.add(init);
+        return name;
+    }
+
+    @Override
+    public String visitExpVar(ExpVar exp, Integer depth) throws FnPlotException {
+        return env(depth) + ".get(" + symbol(exp.getVar()) + ")";
+    }
+
+    @Override
+    public String visitExpCompare(ExpCompare exp, Integer depth) throws FnPlotException {
+        return "Comparison." + exp.getOp().name() + ".apply(" + operand(exp.getExpL(), depth) +
+                ", " + operand(exp.getExpR(), depth) + ")";
+    }
+
+    @Override
+    public String visitExpIf(ExpIf exp, Integer depth) throws FnPlotException {
+        return "(" + operand(exp.getCondition(), depth) + ".isTrue() ? " +
+                exp.getThen().visit(this, depth) + " : " + exp.getElse().visit(this, depth) + ")";
+    }
+}
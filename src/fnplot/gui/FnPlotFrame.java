@@ -20,8 +20,11 @@
 package fnplot.gui;
 
 import cs34q.gfx.GraphingPanel;
+import fnplot.optimizer.Optimizer;
+import fnplot.semantics.Engine;
 import fnplot.semantics.Environment;
-import fnplot.semantics.Evaluator;
+import fnplot.semantics.Interpreter;
+import fnplot.semantics.TypeChecker;
 import fnplot.syntax.ArithProgram;
 import fnplot.syntax.FnPlotLexer;
 import fnplot.syntax.FnPlotParser;
@@ -68,7 +71,7 @@ public class FnPlotFrame extends javax.swing.JFrame {
     public static final int NO_ERROR = 0;
     
     Action sendAction;
-    Evaluator interp;
+    Interpreter interp;
     Keymap inKeyMap;
     ArrayList<String> history;
 
@@ -78,7 +81,7 @@ public class FnPlotFrame extends javax.swing.JFrame {
     public FnPlotFrame() {
         initComponents();
         history = new ArrayList<>();
-        interp = new Evaluator();
+        interp = Engine.getDefault().create();
         interp.setPlotter(new GraphPlotter(gPanel));
         sendAction = new AbstractAction("SEND") {
             private static final long serialVersionUID = 1L;
@@ -125,7 +128,11 @@ public class FnPlotFrame extends javax.swing.JFrame {
 	if (program != null)
 	    try {
 		FnPlotValue<?> result;
-		result = program.visit(interp, env);
+		if (Optimizer.isEnabled()) {
+		    program = Optimizer.optimize(program);
+		}
+		TypeChecker.check(program, env);
+		result = interp.run(program, env);
 		display ("Result: " + result + "\n");
                 return NO_ERROR;
 	    } catch (FnPlotException e) {
@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.optimizer;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.StmtLet;
+import fnplot.sys.FnPlotException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Eliminates common subexpressions.  The pass looks for maximal regions of a
+ * program that are built only of arithmetic, literals, variables and lets, so
+ * that evaluating them has no side effects and every part of them is
+ * evaluated whenever the region is.  Within each region, an arithmetic
+ * subexpression that occurs more than once is bound to a fresh variable by a
+ * let around the region, and each of its occurrences is replaced by that
+ * variable, so that it is evaluated only once per evaluation of the region
+ * (for example, once per point of a plot).
+ * <p>
+ * The body of a let inside a region is treated as a region of its own, since
+ * the let may bind variables that occur in it.  A subexpression is only
+ * shared if the evaluation saved is worth the cost of the binding.  The
+ * fresh variables have names (such as <code>cse$1</code>) that the lexer
+ * does not accept as identifiers, so they cannot clash with the variables
+ * of the program.
+ *
+ * @author newts
+ */
+public class CommonSubexpressions extends Rewriter<Void> {
+
+    /** The prefix of the names of the variables introduced by this pass. */
+    public static final String PREFIX = "cse$";
+
+    /**
+     * The least (weighted) number of operations that sharing a subexpression
+     * must save for it to be worth binding.
+     */
+    private static final int MIN_SAVING = 3;
+
+    private int counter = 0;
+
+    private CommonSubexpressions() {
+    }
+
+    /**
+     * Eliminate the common subexpressions of a program.
+     * @param p The program
+     * @return An equivalent program
+     * @throws FnPlotException if the program cannot be traversed
+     */
+    public static ArithProgram eliminate(ArithProgram p) throws FnPlotException {
+        return (ArithProgram) p.visit(new CommonSubexpressions(), null);
+    }
+
+    /**
+     * Eliminate the common subexpressions of an expression.
+     * @param exp The expression
+     * @return An equivalent expression
+     * @throws FnPlotException if the expression cannot be traversed
+     */
+    public static Exp eliminate(Exp exp) throws FnPlotException {
+        return new CommonSubexpressions().rewrite(exp, null);
+    }
+
+    @Override
+    protected Exp rewrite(Exp exp, Void state) throws FnPlotException {
+        return Trees.isPure(exp) ? region(exp) : super.rewrite(exp, state);
+    }
+
+    /**
+     * @return A measure of the work needed to evaluate an expression.
+     */
+    private static int cost(Exp exp) {
+        if (!Trees.isArith(exp)) {
+            return 0;
+        }
+        Exp[] ops = Trees.operands(exp);
+        int own = exp instanceof ExpPow ? 4 :
+                exp instanceof ExpDiv || exp instanceof ExpMod ? 2 : 1;
+        return own + cost(ops[0]) + cost(ops[1]);
+    }
+
+    private static boolean mentionsTemporary(Exp exp) {
+        if (exp instanceof ExpVar) {
+            return ((ExpVar) exp).getVar().startsWith(PREFIX);
+        } else if (Trees.isArith(exp)) {
+            Exp[] ops = Trees.operands(exp);
+            return mentionsTemporary(ops[0]) || mentionsTemporary(ops[1]);
+        }
+        return false;
+    }
+
+    /**
+     * Eliminate the common subexpressions of a pure region.
+     */
+    private Exp region(Exp exp) {
+        Exp result = nested(exp);
+        ArrayList<Binding> chosen = new ArrayList<>();
+        while (true) {
+            HashMap<Exp, Integer> counts = new HashMap<>();
+            count(result, counts);
+            for (Binding b : chosen) {
+                count(b.getValExp(), counts);
+            }
+            Exp best = null;
+            int bestSaving = MIN_SAVING - 1;
+            for (Map.Entry<Exp, Integer> e : counts.entrySet()) {
+                int saving = cost(e.getKey()) * (e.getValue() - 1);
+                if (saving > bestSaving && !mentionsTemporary(e.getKey())) {
+                    best = e.getKey();
+                    bestSaving = saving;
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            ExpVar temp = new ExpVar(PREFIX + ++counter);
+            result = replace(result, best, temp);
+            for (int i = 0; i < chosen.size(); i++) {
+                Binding b = chosen.get(i);
+                chosen.set(i, new Binding(b.getVar(), replace(b.getValExp(), best, temp)));
+            }
+            chosen.add(new Binding(temp.getVar(), best));
+        }
+        // each binding may refer to those chosen after it, so those go outside
+        for (Binding b : chosen) {
+            ArrayList<Binding> bindings = new ArrayList<>(1);
+            bindings.add(b);
+            result = new StmtLet(bindings, result);
+        }
+        return result;
+    }
+
+    /**
+     * Treat the bodies of the lets within a region as regions of their own.
+     */
+    private Exp nested(Exp exp) {
+        if (Trees.isArith(exp)) {
+            Exp[] ops = Trees.operands(exp);
+            return Trees.rebuild(exp, nested(ops[0]), nested(ops[1]));
+        } else if (exp instanceof StmtLet) {
+            StmtLet let = (StmtLet) exp;
+            ArrayList<Binding> bindings = new ArrayList<>(let.getBindings().size());
+            boolean changed = false;
+            for (Binding b : let.getBindings()) {
+                Exp v = nested(b.getValExp());
+                changed |= v != b.getValExp();
+                bindings.add(v == b.getValExp() ? b : new Binding(b.getVar(), v));
+            }
+            Exp body = region(let.getBody());
+            return changed || body != let.getBody() ? new StmtLet(bindings, body) : let;
+        }
+        return exp;
+    }
+
+    /**
+     * Count the occurrences of the arithmetic subexpressions of a region,
+     * outside the bodies of its lets.
+     */
+    private static void count(Exp exp, HashMap<Exp, Integer> counts) {
+        if (Trees.isArith(exp)) {
+            counts.merge(exp, 1, Integer::sum);
+            Exp[] ops = Trees.operands(exp);
+            count(ops[0], counts);
+            count(ops[1], counts);
+        } else if (exp instanceof StmtLet) {
+            for (Binding b : ((StmtLet) exp).getBindings()) {
+                count(b.getValExp(), counts);
+            }
+        }
+    }
+
+    /**
+     * Replace the occurrences of a subexpression of a region, outside the
+     * bodies of its lets, with a variable.
+     */
+    private static Exp replace(Exp exp, Exp target, ExpVar temp) {
+        if (exp.equals(target)) {
+            return temp;
+        } else if (Trees.isArith(exp)) {
+            Exp[] ops = Trees.operands(exp);
+            return Trees.rebuild(exp, replace(ops[0], target, temp),
+                    replace(ops[1], target, temp));
+        } else if (exp instanceof StmtLet) {
+            StmtLet let = (StmtLet) exp;
+            ArrayList<Binding> bindings = new ArrayList<>(let.getBindings().size());
+            for (Binding b : let.getBindings()) {
+                bindings.add(new Binding(b.getVar(), replace(b.getValExp(), target, temp)));
+            }
+            return new StmtLet(bindings, let.getBody());
+        }
+        return exp;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.optimizer;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.sys.FnPlotException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Inlines calls of small functions.  A function is inlined if it is defined
+ * by a definition at the top level of the program, its name is defined
+ * nowhere else in the program, and its body consists only of arithmetic,
+ * literals, variables and lets, with at most {@link #MAX_SIZE} nodes.  Since
+ * such a body makes no calls, the function cannot be recursive.
+ * <p>
+ * A call of the function after its definition, with as many arguments as it
+ * has parameters, is replaced by a let that binds the parameters to the
+ * arguments around the body.  Calls within the bodies of functions are left
+ * alone, since a later program may call the function after redefining the
+ * one that it calls.  The parameters are renamed to fresh names
+ * (such as <code>x$1</code>), which the lexer does not accept as
+ * identifiers, so that they cannot capture variables of the arguments.  A
+ * call is left alone if the name of the function, or any free variable of
+ * its body, is bound locally where the call is made, since the call would
+ * then refer to different variables to the inlined body.
+ *
+ * @author newts
+ */
+public class Inliner extends ScopedRewriter {
+
+    /** The largest number of nodes in the body of an inlined function. */
+    public static final int MAX_SIZE = 32;
+
+    /**
+     * A function that can be inlined.
+     */
+    private static final class Candidate {
+
+        private final ExpFunction fun;
+        private final Set<String> free;
+
+        Candidate(ExpFunction fun) {
+            this.fun = fun;
+            this.free = Trees.freeVars(fun.getBody());
+            this.free.removeAll(fun.getParameters());
+        }
+    }
+
+    private final HashMap<String, Candidate> candidates = new HashMap<>();
+    private int counter = 0;
+
+    private Inliner() {
+    }
+
+    /**
+     * Inline the calls of small functions in a program.
+     * @param p The program
+     * @return An equivalent program
+     * @throws FnPlotException if the program cannot be traversed
+     */
+    public static ArithProgram inline(ArithProgram p) throws FnPlotException {
+        return (ArithProgram) p.visit(new Inliner(), null);
+    }
+
+    @Override
+    protected void topLevelDefinition(StmtDefinition sd) {
+        if (isDefinedOnce(sd.getVar()) && sd.getExp() instanceof ExpFunction) {
+            ExpFunction fun = (ExpFunction) sd.getExp();
+            if (Trees.isPure(fun.getBody()) && Trees.size(fun.getBody()) <= MAX_SIZE) {
+                candidates.put(sd.getVar(), new Candidate(fun));
+            }
+        }
+    }
+
+    @Override
+    public Statement visitFunCall(ExpFunCall fc, Scope scope) throws FnPlotException {
+        Statement call = super.visitFunCall(fc, scope);
+        Candidate c = candidates.get(fc.getName());
+        if (c == null || isBound(scope, fc.getName()) || isInFunction(scope)) {
+            return call;
+        }
+        ArrayList<String> params = c.fun.getParameters();
+        ArrayList<Exp> args = ((ExpFunCall) call).getArguments();
+        if (args.size() != params.size()) {
+            return call;
+        }
+        for (String id : c.free) {
+            if (isBound(scope, id)) {
+                return call;
+            }
+        }
+        HashMap<String, String> renaming = new HashMap<>();
+        ArrayList<Binding> bindings = new ArrayList<>(params.size());
+        counter++;
+        for (int i = 0; i < params.size(); i++) {
+            String fresh = params.get(i) + "$" + counter;
+            renaming.put(params.get(i), fresh);
+            bindings.add(new Binding(fresh, args.get(i)));
+        }
+        return new StmtLet(bindings, rename(c.fun.getBody(), renaming));
+    }
+
+    /**
+     * Rename the free variables of a pure expression.
+     */
+    private static Exp rename(Exp exp, Map<String, String> renaming) {
+        if (exp instanceof ExpVar) {
+            String id = renaming.get(((ExpVar) exp).getVar());
+            return id == null ? exp : new ExpVar(id);
+        } else if (Trees.isArith(exp)) {
+            Exp[] ops = Trees.operands(exp);
+            return Trees.rebuild(exp, rename(ops[0], renaming), rename(ops[1], renaming));
+        } else if (exp instanceof StmtLet) {
+            StmtLet let = (StmtLet) exp;
+            HashMap<String, String> inner = new HashMap<>(renaming);
+            ArrayList<Binding> bindings = new ArrayList<>(let.getBindings().size());
+            for (Binding b : let.getBindings()) {
+                bindings.add(new Binding(b.getVar(), rename(b.getValExp(), renaming)));
+                inner.remove(b.getVar());
+            }
+            return new StmtLet(bindings, rename(let.getBody(), inner));
+        }
+        return exp;
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.optimizer;
+
+import fnplot.semantics.DefinedNames;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Hoists the loop invariant parts of plot maps out of their plots.  A
+ * subexpression of a map is invariant if it does not depend on the plot
+ * variable, or on any other variable bound within the map, so that it has
+ * the same value at every sample.  Each maximal invariant subexpression that
+ * does some work is bound to a fresh variable (such as <code>inv$1</code>)
+ * by a let around the plot, and is therefore evaluated once per plot
+ * instead of once per sample.
+ * <p>
+ * An invariant subexpression may contain arithmetic, literals, variables,
+ * lets and calls of functions that are known to have no side effects.  A
+ * function is known to have none if it is defined once, at the top level of
+ * the program, and its body neither plots nor clears the plot, and calls
+ * only functions that are themselves known to have no side effects.  Such a
+ * function cannot be recursive, so its calls always terminate.  Calls are
+ * not hoisted out of plots within the bodies of functions, since a later
+ * program may run the plot after redefining the function called.  Since a
+ * plot always takes at least one sample, hoisting never evaluates anything
+ * that the plot would not have evaluated, although an error in a hoisted
+ * subexpression is reported before errors in the rest of the map.
+ * <p>
+ * Subexpressions within the functions and plots of a map, and within the
+ * branches of its conditionals, are not hoisted out of the map, since they
+ * need not be evaluated at each sample (a nested plot hoists its own
+ * invariants, which may then be hoisted further).  A conditional that is
+ * invariant as a whole is hoisted, since only the branch that it would
+ * have taken at every sample is evaluated.
+ *
+ * @author newts
+ */
+public class InvariantHoister extends ScopedRewriter {
+
+    /** The prefix of the names of the variables introduced by this pass. */
+    public static final String PREFIX = "inv$";
+
+    private final Set<String> effectFree = new HashSet<>();
+    private int counter = 0;
+
+    private InvariantHoister() {
+    }
+
+    /**
+     * Hoist the invariant parts of the plot maps of a program.
+     * @param p The program
+     * @return An equivalent program
+     * @throws FnPlotException if the program cannot be traversed
+     */
+    public static ArithProgram hoist(ArithProgram p) throws FnPlotException {
+        return (ArithProgram) p.visit(new InvariantHoister(), null);
+    }
+
+    /**
+     * Hoist the invariant parts of the plot maps of an expression.  Since an
+     * expression contains no top level definitions, no calls are hoisted.
+     * @param exp The expression
+     * @return An equivalent expression
+     * @throws FnPlotException if the expression cannot be traversed
+     */
+    public static Exp hoist(Exp exp) throws FnPlotException {
+        return new InvariantHoister().rewrite(exp, null);
+    }
+
+    @Override
+    protected void topLevelDefinition(StmtDefinition sd) {
+        if (isDefinedOnce(sd.getVar()) && sd.getExp() instanceof ExpFunction) {
+            ExpFunction fun = (ExpFunction) sd.getExp();
+            try {
+                Set<String> bound = new HashSet<>(fun.getParameters());
+                bound.addAll(DefinedNames.local(fun.getBody()));
+                if (isEffectFree(fun.getBody(), bound)) {
+                    effectFree.add(sd.getVar());
+                }
+            } catch (FnPlotException e) {
+                // the body cannot be traversed, so make no assumptions
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the call refers to a function known to
+     * have no side effects, given the names bound locally where it is made
+     */
+    private boolean isKnownCall(ExpFunCall fc, Set<String> bound, Scope scope) {
+        return effectFree.contains(fc.getName()) && !bound.contains(fc.getName()) &&
+                !isBound(scope, fc.getName()) && !isInFunction(scope);
+    }
+
+    /**
+     * @return <code>true</code> if evaluating the statement cannot plot or
+     * clear the plot, or call a function that is not known to have no side
+     * effects
+     */
+    private boolean isEffectFree(Statement s, Set<String> bound) throws FnPlotException {
+        if (s instanceof ExpLit || s instanceof ExpVar || s instanceof ExpFunction) {
+            return true;
+        } else if (s instanceof Exp && Trees.isArith((Exp) s)) {
+            Exp[] ops = Trees.operands((Exp) s);
+            return isEffectFree(ops[0], bound) && isEffectFree(ops[1], bound);
+        } else if (s instanceof ExpCompare) {
+            ExpCompare c = (ExpCompare) s;
+            return isEffectFree(c.getExpL(), bound) && isEffectFree(c.getExpR(), bound);
+        } else if (s instanceof ExpIf) {
+            ExpIf e = (ExpIf) s;
+            return isEffectFree(e.getCondition(), bound) && isEffectFree(e.getThen(), bound) &&
+                    isEffectFree(e.getElse(), bound);
+        } else if (s instanceof StmtLet) {
+            StmtLet let = (StmtLet) s;
+            Set<String> inner = new HashSet<>(bound);
+            for (Binding b : let.getBindings()) {
+                if (!isEffectFree(b.getValExp(), bound)) {
+                    return false;
+                }
+                inner.add(b.getVar());
+            }
+            inner.addAll(DefinedNames.local(let.getBody()));
+            return isEffectFree(let.getBody(), inner);
+        } else if (s instanceof ExpFunCall) {
+            ExpFunCall fc = (ExpFunCall) s;
+            if (!isKnownCall(fc, bound, null)) {
+                return false;
+            }
+            for (Exp arg : fc.getArguments()) {
+                if (!isEffectFree(arg, bound)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (s instanceof StmtSequence) {
+            for (Statement t : ((StmtSequence) s).getSeq()) {
+                if (!isEffectFree(t, bound)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (s instanceof StmtDefinition) {
+            return isEffectFree(((StmtDefinition) s).getExp(), bound);
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if the expression has the same value, and no
+     * side effects, wherever the names in bound are bound.
+     */
+    private boolean isInvariant(Exp exp, Set<String> bound, Scope scope)
+            throws FnPlotException {
+        if (exp instanceof ExpLit) {
+            return true;
+        } else if (exp instanceof ExpVar) {
+            return !bound.contains(((ExpVar) exp).getVar());
+        } else if (Trees.isArith(exp)) {
+            Exp[] ops = Trees.operands(exp);
+            return isInvariant(ops[0], bound, scope) && isInvariant(ops[1], bound, scope);
+        } else if (exp instanceof ExpCompare) {
+            ExpCompare c = (ExpCompare) exp;
+            return isInvariant(c.getExpL(), bound, scope) && isInvariant(c.getExpR(), bound, scope);
+        } else if (exp instanceof ExpIf) {
+            ExpIf e = (ExpIf) exp;
+            return isInvariant(e.getCondition(), bound, scope) &&
+                    isInvariant(e.getThen(), bound, scope) &&
+                    isInvariant(e.getElse(), bound, scope);
+        } else if (exp instanceof ExpFunCall) {
+            ExpFunCall fc = (ExpFunCall) exp;
+            if (!isKnownCall(fc, bound, scope)) {
+                return false;
+            }
+            for (Exp arg : fc.getArguments()) {
+                if (!isInvariant(arg, bound, scope)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (exp instanceof StmtLet) {
+            // the body may refer to the let's own variables, but to no others
+            // bound within the map
+            StmtLet let = (StmtLet) exp;
+            Set<String> inner = new HashSet<>(bound);
+            for (Binding b : let.getBindings()) {
+                if (!isInvariant(b.getValExp(), bound, scope)) {
+                    return false;
+                }
+                inner.remove(b.getVar());
+            }
+            return DefinedNames.all(let.getBody()).isEmpty() &&
+                    isInvariant(let.getBody(), inner, scope);
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if evaluating the expression involves an
+     * operation or call, so that it is worth hoisting
+     */
+    private static boolean doesWork(Exp exp) {
+        if (exp instanceof ExpFunCall || exp instanceof ExpCompare || Trees.isArith(exp)) {
+            return true;
+        } else if (exp instanceof ExpIf) {
+            ExpIf e = (ExpIf) exp;
+            return doesWork(e.getCondition()) || doesWork(e.getThen()) || doesWork(e.getElse());
+        } else if (exp instanceof StmtLet) {
+            StmtLet let = (StmtLet) exp;
+            for (Binding b : let.getBindings()) {
+                if (doesWork(b.getValExp())) {
+                    return true;
+                }
+            }
+            return doesWork(let.getBody());
+        }
+        return false;
+    }
+
+    /**
+     * Replace the maximal invariant subexpressions of part of a map with
+     * fresh variables.
+     * @param exp The part of the map
+     * @param bound The names bound within the map around exp
+     * @param scope The names bound locally around the plot
+     * @param hoisted The bindings of the fresh variables
+     * @return The rewritten part of the map
+     */
+    private Exp hoist(Exp exp, Set<String> bound, Scope scope, ArrayList<Binding> hoisted)
+            throws FnPlotException {
+        if (doesWork(exp) && isInvariant(exp, bound, scope)) {
+            String id = PREFIX + ++counter;
+            hoisted.add(new Binding(id, exp));
+            return new ExpVar(id);
+        } else if (Trees.isArith(exp)) {
+            Exp[] ops = Trees.operands(exp);
+            return Trees.rebuild(exp, hoist(ops[0], bound, scope, hoisted),
+                    hoist(ops[1], bound, scope, hoisted));
+        } else if (exp instanceof ExpCompare) {
+            ExpCompare c = (ExpCompare) exp;
+            Exp l = hoist(c.getExpL(), bound, scope, hoisted);
+            Exp r = hoist(c.getExpR(), bound, scope, hoisted);
+            return l == c.getExpL() && r == c.getExpR() ? c : new ExpCompare(c.getOp(), l, r);
+        } else if (exp instanceof ExpIf) {
+            // only the condition is evaluated at every sample
+            ExpIf e = (ExpIf) exp;
+            Exp cond = hoist(e.getCondition(), bound, scope, hoisted);
+            return cond == e.getCondition() ? e : new ExpIf(cond, e.getThen(), e.getElse());
+        } else if (exp instanceof ExpFunCall) {
+            ExpFunCall fc = (ExpFunCall) exp;
+            ArrayList<Exp> args = new ArrayList<>(fc.getArguments().size());
+            boolean changed = false;
+            for (Exp arg : fc.getArguments()) {
+                Exp r = hoist(arg, bound, scope, hoisted);
+                changed |= r != arg;
+                args.add(r);
+            }
+            return changed ? new ExpFunCall(fc.getName(), args, null) : fc;
+        } else if (exp instanceof StmtLet) {
+            StmtLet let = (StmtLet) exp;
+            ArrayList<Binding> bindings = new ArrayList<>(let.getBindings().size());
+            Set<String> inner = new HashSet<>(bound);
+            boolean changed = false;
+            for (Binding b : let.getBindings()) {
+                Exp v = hoist(b.getValExp(), bound, scope, hoisted);
+                changed |= v != b.getValExp();
+                bindings.add(v == b.getValExp() ? b : new Binding(b.getVar(), v));
+                inner.add(b.getVar());
+            }
+            inner.addAll(DefinedNames.local(let.getBody()));
+            Exp body = hoist(let.getBody(), inner, scope, hoisted);
+            return changed || body != let.getBody() ? new StmtLet(bindings, body) : let;
+        } else if (exp instanceof StmtSequence) {
+            StmtSequence seq = (StmtSequence) exp;
+            StmtSequence result = new StmtSequence();
+            boolean changed = false;
+            for (Statement s : seq.getSeq()) {
+                Statement r = s;
+                if (s instanceof Exp) {
+                    r = hoist((Exp) s, bound, scope, hoisted);
+                } else if (s instanceof StmtDefinition) {
+                    StmtDefinition sd = (StmtDefinition) s;
+                    Exp e = hoist(sd.getExp(), bound, scope, hoisted);
+                    r = e == sd.getExp() ? sd : new StmtDefinition(sd.getVar(), e);
+                }
+                changed |= r != s;
+                result.add(r);
+            }
+            return changed ? result : seq;
+        }
+        return exp;
+    }
+
+    @Override
+    public Statement visitFunPlot(ExpPlot fp, Scope scope) throws FnPlotException {
+        // hoist out of any nested plots first
+        ExpPlot plot = (ExpPlot) super.visitFunPlot(fp, scope);
+        Set<String> bound = new HashSet<>(DefinedNames.local(plot.getMap()));
+        bound.add(plot.getItem());
+        ArrayList<Binding> hoisted = new ArrayList<>();
+        Exp map = hoist(plot.getMap(), bound, scope, hoisted);
+        if (hoisted.isEmpty()) {
+            return plot;
+        }
+        return new StmtLet(hoisted,
+                new ExpPlot(map, plot.getItem(), plot.getStart(), plot.getEnd()));
+    }
+}
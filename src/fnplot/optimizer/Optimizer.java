@@ -0,0 +1,640 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.optimizer;
+
+import fnplot.semantics.DefinedNames;
+import fnplot.semantics.FreeNames;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtLet;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * Folds constants and simplifies arithmetic.  The optimiser
+ * <ul>
+ * <li>computes arithmetic on literals (except int division or remainder by
+ * zero, which is left to fail at run time);</li>
+ * <li>computes comparisons of literals, and replaces a conditional whose
+ * condition is a literal with the branch that it selects;</li>
+ * <li>removes additions and subtractions of 0, and multiplications,
+ * divisions and powers by 1;</li>
+ * <li>replaces multiplication by 0 and raising to the power 0 with a
+ * literal, when the other operand is an int (or the power a real) whose
+ * evaluation cannot fail;</li>
+ * <li>combines chains of int additions and subtractions of constants, and
+ * of int multiplications by constants, into a single operation;</li>
+ * <li>removes the bindings of a let that its body never uses, when their
+ * evaluation cannot fail (and the let itself, if none is left and its body
+ * defines nothing in its frame); and</li>
+ * <li>reduces the strength of real operations, by rewriting the square of a
+ * real variable as a multiplication, and a real divided by a constant power
+ * of two as a product with its (exact) reciprocal.</li>
+ * </ul>
+ * <p>
+ * FnPlot arithmetic takes its type from its left operand, and converts the
+ * right operand to match (truncating a real used as an int), so each rewrite
+ * is applied only when the types of the operands are known to make it exact.
+ * The types are known for literals, plot variables and let bound variables;
+ * variables that are assigned to by a definition anywhere in the program
+ * are never assumed to have a type.  Real chains are not reassociated,
+ * since real arithmetic is not associative.  The only liberty taken is that
+ * adding a zero to a real may change a result of -0.0 into 0.0.  Int powers
+ * are not rewritten, since their results saturate rather than overflow;
+ * they are computed by repeated squaring at run time instead.
+ * <p>
+ * Setting the system property <code>fnplot.optimize.fastpow=true</code> also
+ * rewrites the cube and fourth power of a real variable as chains of
+ * multiplications.  These are faster, but may differ from
+ * <code>Math.pow</code> in the last place, so they are not made by default.
+ *
+ * @author newts
+ */
+public class Optimizer extends Rewriter<Optimizer.Scope> {
+
+    /** The name of the system property that can disable the optimiser. */
+    public static final String PROPERTY = "fnplot.optimize";
+
+    /**
+     * The name of the system property that enables the inexact rewriting of
+     * real cubes and fourth powers as multiplications.
+     */
+    public static final String FAST_POW_PROPERTY = "fnplot.optimize.fastpow";
+
+    private static final int ADD = 0;
+    private static final int SUB = 1;
+    private static final int MUL = 2;
+    private static final int DIV = 3;
+    private static final int MOD = 4;
+    private static final int POW = 5;
+
+    /**
+     * What is known about the type of an expression.
+     */
+    enum Kind {
+        /** Certainly an int */
+        INT,
+        /** Certainly a real */
+        REAL,
+        /** Either an int or a real (if it has a value at all) */
+        NUMBER,
+        /** Anything */
+        ANY
+    }
+
+    /**
+     * The kinds of the variables bound by a let, function or plot.
+     */
+    static final class Scope {
+
+        private final Scope parent;
+        private final HashMap<String, Kind> kinds = new HashMap<>();
+
+        Scope(Scope parent) {
+            this.parent = parent;
+        }
+    }
+
+    private final Set<String> assigned;
+    private final boolean reduceStrength;
+    private final boolean fastPowers = Boolean.getBoolean(FAST_POW_PROPERTY);
+
+    private Optimizer(Set<String> assigned, boolean reduceStrength) {
+        this.assigned = assigned;
+        this.reduceStrength = reduceStrength;
+    }
+
+    /**
+     * @return <code>false</code> if the optimiser has been disabled with the
+     * system property <code>fnplot.optimize=false</code>.
+     */
+    public static boolean isEnabled() {
+        return !"false".equalsIgnoreCase(System.getProperty(PROPERTY));
+    }
+
+    /**
+     * Optimise a program, by running each of the optimisation passes over it
+     * in turn: inlining of small functions, constant folding and
+     * simplification, hoisting of loop invariants out of plots, and common
+     * subexpression elimination.
+     * @param p The program
+     * @return An equivalent program
+     * @throws FnPlotException if the program cannot be traversed
+     */
+    public static ArithProgram optimize(ArithProgram p) throws FnPlotException {
+        return CommonSubexpressions.eliminate(
+                InvariantHoister.hoist(fold(Inliner.inline(p))));
+    }
+
+    /**
+     * Optimise an expression, by running each of the optimisation passes
+     * over it in turn.  Since an expression has no top level definitions,
+     * no functions are inlined.
+     * @param exp The expression
+     * @return An equivalent expression
+     * @throws FnPlotException if the expression cannot be traversed
+     */
+    public static Exp optimize(Exp exp) throws FnPlotException {
+        return CommonSubexpressions.eliminate(InvariantHoister.hoist(fold(exp)));
+    }
+
+    /**
+     * Fold the constants of a program, and simplify its arithmetic.
+     * @param p The program
+     * @return An equivalent program
+     * @throws FnPlotException if the program cannot be traversed
+     */
+    public static ArithProgram fold(ArithProgram p) throws FnPlotException {
+        return (ArithProgram) p.visit(new Optimizer(DefinedNames.all(p), true), null);
+    }
+
+    /**
+     * Fold the constants of an expression, and simplify its arithmetic.
+     * @param exp The expression
+     * @return An equivalent expression
+     * @throws FnPlotException if the expression cannot be traversed
+     */
+    public static Exp fold(Exp exp) throws FnPlotException {
+        return fold(exp, true);
+    }
+
+    /**
+     * Fold the constants of an expression, and simplify its arithmetic, with
+     * or without reducing the strength of its operations.
+     * @param exp The expression
+     * @param reduceStrength Whether to replace powers and divisions with
+     * cheaper multiplications
+     * @return An equivalent expression
+     * @throws FnPlotException if the expression cannot be traversed
+     */
+    static Exp fold(Exp exp, boolean reduceStrength) throws FnPlotException {
+        return (Exp) exp.visit(new Optimizer(DefinedNames.all(exp), reduceStrength), null);
+    }
+
+    private Kind lookup(String id, Scope scope) {
+        if (assigned.contains(id)) {
+            return null;
+        }
+        for (Scope s = scope; s != null; s = s.parent) {
+            Kind k = s.kinds.get(id);
+            if (k != null) {
+                return k;
+            }
+        }
+        return null;
+    }
+
+    private Kind kind(Exp exp, Scope scope) {
+        if (exp instanceof ExpLit) {
+            FnPlotValue<?> v = ((ExpLit) exp).getVal();
+            return v.isInteger() ? Kind.INT : v.isNumber() ? Kind.REAL : Kind.ANY;
+        } else if (exp instanceof ExpVar) {
+            Kind k = lookup(((ExpVar) exp).getVar(), scope);
+            return k == null ? Kind.ANY : k;
+        } else if (exp instanceof ExpAdd || exp instanceof ExpSub || exp instanceof ExpMul
+                || exp instanceof ExpDiv || exp instanceof ExpMod || exp instanceof ExpPow) {
+            Kind k = kind(left(exp), scope);
+            // if the operation succeeds at all, its result is a number
+            return k == Kind.INT || k == Kind.REAL ? k : Kind.NUMBER;
+        } else if (exp instanceof ExpCompare) {
+            return Kind.INT;
+        } else if (exp instanceof ExpIf) {
+            Kind k = kind(((ExpIf) exp).getThen(), scope);
+            return k == kind(((ExpIf) exp).getElse(), scope) ? k : Kind.ANY;
+        }
+        return Kind.ANY;
+    }
+
+    /**
+     * @return <code>true</code> if evaluating the expression cannot fail or
+     * have side effects, so that it may be dropped.
+     */
+    private boolean pure(Exp exp, Scope scope) throws FnPlotException {
+        if (exp instanceof ExpLit || exp instanceof ExpFunction) {
+            return true;
+        } else if (exp instanceof ExpVar) {
+            return lookup(((ExpVar) exp).getVar(), scope) != null;
+        } else if (exp instanceof ExpCompare) {
+            ExpCompare cmp = (ExpCompare) exp;
+            return numeric(cmp.getExpL(), scope) && numeric(cmp.getExpR(), scope);
+        } else if (opOf(exp) >= 0) {
+            Exp l = left(exp);
+            Exp r = right(exp);
+            if (!numeric(l, scope) || !numeric(r, scope)) {
+                return false;
+            }
+            int op = opOf(exp);
+            // only an int quotient or remainder can fail, when the divisor is 0
+            return (op != DIV && op != MOD) || kind(l, scope) == Kind.REAL ||
+                    (r instanceof ExpLit && ((ExpLit) r).getVal().isInteger() &&
+                    ((ExpLit) r).getVal().doubleValue() != 0);
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if the expression is pure, and its value (if
+     * it has one) is certainly a number.
+     */
+    private boolean numeric(Exp exp, Scope scope) throws FnPlotException {
+        return kind(exp, scope) != Kind.ANY && pure(exp, scope);
+    }
+
+    private static int opOf(Exp exp) {
+        if (exp instanceof ExpAdd) return ADD;
+        if (exp instanceof ExpSub) return SUB;
+        if (exp instanceof ExpMul) return MUL;
+        if (exp instanceof ExpDiv) return DIV;
+        if (exp instanceof ExpMod) return MOD;
+        if (exp instanceof ExpPow) return POW;
+        return -1;
+    }
+
+    private static Exp left(Exp exp) {
+        switch (opOf(exp)) {
+            case ADD: return ((ExpAdd) exp).getExpL();
+            case SUB: return ((ExpSub) exp).getExpL();
+            case MUL: return ((ExpMul) exp).getExpL();
+            case DIV: return ((ExpDiv) exp).getExpL();
+            case MOD: return ((ExpMod) exp).getExpL();
+            default: return ((ExpPow) exp).getExpL();
+        }
+    }
+
+    private static Exp right(Exp exp) {
+        switch (opOf(exp)) {
+            case ADD: return ((ExpAdd) exp).getExpR();
+            case SUB: return ((ExpSub) exp).getExpR();
+            case MUL: return ((ExpMul) exp).getExpR();
+            case DIV: return ((ExpDiv) exp).getExpR();
+            case MOD: return ((ExpMod) exp).getExpR();
+            default: return ((ExpPow) exp).getExpR();
+        }
+    }
+
+    private static Exp make(int op, Exp l, Exp r) {
+        switch (op) {
+            case ADD: return new ExpAdd(l, r);
+            case SUB: return new ExpSub(l, r);
+            case MUL: return new ExpMul(l, r);
+            case DIV: return new ExpDiv(l, r);
+            case MOD: return new ExpMod(l, r);
+            default: return new ExpPow(l, r);
+        }
+    }
+
+    private static FnPlotValue<?> constant(Exp exp) {
+        if (exp instanceof ExpLit && ((ExpLit) exp).getVal().isNumber()) {
+            return ((ExpLit) exp).getVal();
+        }
+        return null;
+    }
+
+    private static FnPlotValue<?> fold(int op, FnPlotValue<?> l, FnPlotValue<?> r)
+            throws FnPlotException {
+        if (l.isInteger() && (op == DIV || op == MOD) && r.intValue() == 0) {
+            return null;
+        }
+        switch (op) {
+            case ADD: return l.add(r);
+            case SUB: return l.sub(r);
+            case MUL: return l.mul(r);
+            case DIV: return l.div(r);
+            case MOD: return l.mod(r);
+            default: return l.pow(r);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the constant c has the value n when used
+     * as the right operand of an operation whose left operand is of kind k.
+     */
+    private static boolean is(FnPlotValue<?> c, Kind k, int n) throws FnPlotException {
+        switch (k) {
+            case INT: return c.intValue() == n;
+            case REAL: return c.doubleValue() == n;
+            case NUMBER: return c.intValue() == n && c.doubleValue() == n;
+            default: return false;
+        }
+    }
+
+    /**
+     * Simplify an operation whose right operand is the constant c.
+     */
+    private Exp rightConstant(int op, Exp l, FnPlotValue<?> c, Scope scope)
+            throws FnPlotException {
+        Kind k = kind(l, scope);
+        switch (op) {
+            case ADD:
+            case SUB:
+                if (is(c, k, 0)) {
+                    return l;
+                }
+                if (k == Kind.INT) {
+                    return combineSums(op, l, c.intValue(), scope);
+                }
+                break;
+            case MUL:
+                if (is(c, k, 1)) {
+                    return l;
+                }
+                if (k == Kind.INT && c.intValue() == 0 && pure(l, scope)) {
+                    return new ExpLit(0);
+                }
+                if (k == Kind.INT) {
+                    return combineProducts(l, c.intValue(), scope);
+                }
+                break;
+            case DIV:
+                if (is(c, k, 1)) {
+                    return l;
+                }
+                if (reduceStrength && k == Kind.REAL && isPowerOfTwo(c.doubleValue())) {
+                    // the reciprocal is exact, so the product is the quotient
+                    return new ExpMul(l, new ExpLit(1 / c.doubleValue()));
+                }
+                break;
+            case MOD:
+                if (k == Kind.INT && c.intValue() == 1 && pure(l, scope)) {
+                    return new ExpLit(0);
+                }
+                break;
+            default:
+                if (is(c, k, 1)) {
+                    return l;
+                }
+                if (is(c, k, 0) && pure(l, scope)) {
+                    if (k == Kind.INT) {
+                        return new ExpLit(1);
+                    } else if (k == Kind.REAL) {
+                        return new ExpLit(1.0);
+                    }
+                }
+                if (reduceStrength && k == Kind.REAL && l instanceof ExpVar) {
+                    return powerChain(l, c.doubleValue(), fastPowers);
+                }
+                break;
+        }
+        return null;
+    }
+
+    /**
+     * @return <code>true</code> if d is a power of two (positive or
+     * negative) whose reciprocal can be represented exactly
+     */
+    private static boolean isPowerOfTwo(double d) {
+        return d != 0 && Math.getExponent(d) >= Double.MIN_EXPONENT &&
+                Math.getExponent(d) <= Double.MAX_EXPONENT &&
+                (Double.doubleToRawLongBits(d) & 0x000fffffffffffffL) == 0;
+    }
+
+    /**
+     * Rewrite v ^ n, for a real variable v and a small integer n, as a chain
+     * of multiplications.  Only the square is exact.
+     * @param inexact Whether to rewrite the cube and fourth power, which may
+     * differ from <code>Math.pow</code> in the last place
+     * @return The chain, or <code>null</code> if n is not 2 (or 3 or 4, if
+     * inexact chains are allowed)
+     */
+    private static Exp powerChain(Exp v, double n, boolean inexact) {
+        if (n == 2) {
+            return new ExpMul(v, v);
+        } else if (!inexact) {
+            return null;
+        } else if (n == 3) {
+            return new ExpMul(new ExpMul(v, v), v);
+        } else if (n == 4) {
+            return new ExpMul(new ExpMul(v, v), new ExpMul(v, v));
+        }
+        return null;
+    }
+
+    /**
+     * Simplify an operation whose left operand is the constant c.
+     */
+    private Exp leftConstant(int op, FnPlotValue<?> c, Exp r, Scope scope)
+            throws FnPlotException {
+        Kind k = kind(r, scope);
+        boolean sameType = (c.isInteger() && k == Kind.INT) || (!c.isInteger() && k == Kind.REAL);
+        if (op == ADD && sameType && c.doubleValue() == 0) {
+            return r;
+        }
+        if (op == MUL && sameType && c.doubleValue() == 1) {
+            return r;
+        }
+        if (op == MUL && c.isInteger() && c.intValue() == 0 && k != Kind.ANY && pure(r, scope)) {
+            // the other operand is truncated to an int, so the product is 0
+            return new ExpLit(0);
+        }
+        return null;
+    }
+
+    /**
+     * Combine l + n or l - n (for an int l) with any constant added to or
+     * subtracted from l itself.
+     */
+    private Exp combineSums(int op, Exp l, int n, Scope scope) throws FnPlotException {
+        int inner = opOf(l);
+        if (inner != ADD && inner != SUB) {
+            return null;
+        }
+        int total = op == ADD ? n : -n;
+        Exp e;
+        FnPlotValue<?> c = constant(right(l));
+        if (c != null) {
+            // (e +/- c) +/- n
+            e = left(l);
+            total += inner == ADD ? c.intValue() : -c.intValue();
+        } else if (inner == ADD && (c = constant(left(l))) != null && c.isInteger()) {
+            // (c + e) +/- n
+            e = right(l);
+            total += c.intValue();
+        } else {
+            return null;
+        }
+        if (kind(e, scope) != Kind.INT) {
+            return null;
+        }
+        return total == 0 ? e : new ExpAdd(e, new ExpLit(total));
+    }
+
+    /**
+     * Combine l * n (for an int l) with any constant factor of l itself.
+     */
+    private Exp combineProducts(Exp l, int n, Scope scope) throws FnPlotException {
+        if (opOf(l) != MUL) {
+            return null;
+        }
+        Exp e;
+        FnPlotValue<?> c = constant(right(l));
+        if (c != null) {
+            e = left(l);
+        } else if ((c = constant(left(l))) != null && c.isInteger()) {
+            e = right(l);
+        } else {
+            return null;
+        }
+        if (kind(e, scope) != Kind.INT) {
+            return null;
+        }
+        int product = c.intValue() * n;
+        return product == 1 ? e : new ExpMul(e, new ExpLit(product));
+    }
+
+    private Exp arith(int op, Exp exp, Scope scope) throws FnPlotException {
+        Exp l = rewrite(left(exp), scope);
+        Exp r = rewrite(right(exp), scope);
+        FnPlotValue<?> lc = constant(l);
+        FnPlotValue<?> rc = constant(r);
+        Exp result = null;
+        if (lc != null && rc != null) {
+            FnPlotValue<?> v = fold(op, lc, rc);
+            result = v == null ? null : new ExpLit(v);
+        } else if (rc != null) {
+            result = rightConstant(op, l, rc, scope);
+        } else if (lc != null) {
+            result = leftConstant(op, lc, r, scope);
+        }
+        if (result != null) {
+            return result;
+        }
+        return l == left(exp) && r == right(exp) ? exp : make(op, l, r);
+    }
+
+    @Override
+    public Statement visitStmtLet(StmtLet let, Scope scope) throws FnPlotException {
+        Scope inner = new Scope(scope);
+        ArrayList<Binding> bindings = new ArrayList<>(let.getBindings().size());
+        for (Binding b : let.getBindings()) {
+            Exp v = rewrite(b.getValExp(), scope);
+            inner.kinds.put(b.getVar(), kind(v, scope));
+            bindings.add(new Binding(b.getVar(), v));
+        }
+        Exp body = rewrite(let.getBody(), inner);
+        // drop the bindings that are never used, if evaluating them cannot fail
+        Set<String> used = FreeNames.of(body);
+        ArrayList<Binding> live = new ArrayList<>(bindings.size());
+        for (Binding b : bindings) {
+            if (used.contains(b.getVar()) || !pure(b.getValExp(), scope)) {
+                live.add(b);
+            }
+        }
+        if (live.isEmpty() && DefinedNames.local(body).isEmpty()) {
+            return body;
+        } else if (live.isEmpty()) {
+            // the body still needs a frame of its own for its definitions
+            live.add(bindings.get(0));
+        }
+        return new StmtLet(live, body);
+    }
+
+    @Override
+    public Statement visitFunDefn(ExpFunction fd, Scope scope) throws FnPlotException {
+        Scope inner = new Scope(scope);
+        for (String p : fd.getParameters()) {
+            inner.kinds.put(p, Kind.ANY);
+        }
+        Exp body = rewrite(fd.getBody(), inner);
+        return body == fd.getBody() ? fd :
+                new ExpFunction(fd.getParameters(), body).derivedFrom(fd);
+    }
+
+    @Override
+    public Statement visitFunPlot(ExpPlot fp, Scope scope) throws FnPlotException {
+        Scope inner = new Scope(scope);
+        inner.kinds.put(fp.getItem(), Kind.REAL);
+        Exp map = rewrite(fp.getMap(), inner);
+        return map == fp.getMap() ? fp :
+                new ExpPlot(map, fp.getItem(), fp.getStart(), fp.getEnd());
+    }
+
+    @Override
+    public Statement visitExpAdd(ExpAdd exp, Scope scope) throws FnPlotException {
+        return arith(ADD, exp, scope);
+    }
+
+    @Override
+    public Statement visitExpSub(ExpSub exp, Scope scope) throws FnPlotException {
+        return arith(SUB, exp, scope);
+    }
+
+    @Override
+    public Statement visitExpMul(ExpMul exp, Scope scope) throws FnPlotException {
+        return arith(MUL, exp, scope);
+    }
+
+    @Override
+    public Statement visitExpPow(ExpPow exp, Scope scope) throws FnPlotException {
+        return arith(POW, exp, scope);
+    }
+
+    @Override
+    public Statement visitExpDiv(ExpDiv exp, Scope scope) throws FnPlotException {
+        return arith(DIV, exp, scope);
+    }
+
+    @Override
+    public Statement visitExpMod(ExpMod exp, Scope scope) throws FnPlotException {
+        return arith(MOD, exp, scope);
+    }
+
+    @Override
+    public Statement visitExpCompare(ExpCompare exp, Scope scope) throws FnPlotException {
+        Exp l = rewrite(exp.getExpL(), scope);
+        Exp r = rewrite(exp.getExpR(), scope);
+        FnPlotValue<?> lc = constant(l);
+        FnPlotValue<?> rc = constant(r);
+        if (lc != null && rc != null) {
+            return new ExpLit(exp.getOp().apply(lc, rc));
+        }
+        return l == exp.getExpL() && r == exp.getExpR() ? exp : new ExpCompare(exp.getOp(), l, r);
+    }
+
+    @Override
+    public Statement visitExpIf(ExpIf exp, Scope scope) throws FnPlotException {
+        Exp c = rewrite(exp.getCondition(), scope);
+        FnPlotValue<?> cc = constant(c);
+        if (cc != null) {
+            return rewrite(cc.isTrue() ? exp.getThen() : exp.getElse(), scope);
+        }
+        Exp t = rewrite(exp.getThen(), scope);
+        Exp e = rewrite(exp.getElse(), scope);
+        return c == exp.getCondition() && t == exp.getThen() && e == exp.getElse() ? exp :
+                new ExpIf(c, t, e);
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.optimizer;
+
+import fnplot.semantics.Visitor;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpClear;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import java.util.ArrayList;
+
+/**
+ * The base class of the passes that transform an AST into an equivalent one.
+ * Each visit method returns the rewritten form of the visited node.  By
+ * default, a node is rewritten by rewriting its children, and is returned
+ * unchanged (the same object) if none of them changed, so passes need only
+ * override the methods for the nodes that they transform.  The state passed
+ * to the visit methods is passed unchanged to the children.
+ *
+ * @param <S> The type of the state passed down the tree
+ * @author newts
+ */
+public abstract class Rewriter<S> implements Visitor<S, Statement> {
+
+    /**
+     * Rewrite an expression.
+     * @param exp The expression
+     * @param state The state for the expression
+     * @return The rewritten expression
+     * @throws FnPlotException if the expression cannot be rewritten
+     */
+    protected Exp rewrite(Exp exp, S state) throws FnPlotException {
+        return (Exp) exp.visit(this, state);
+    }
+
+    @Override
+    public Statement visitArithProgram(ArithProgram p, S state) throws FnPlotException {
+        StmtSequence seq = (StmtSequence) p.getSeq().visit(this, state);
+        return seq == p.getSeq() ? p : new ArithProgram(seq);
+    }
+
+    @Override
+    public Statement visitStmtSequence(StmtSequence sseq, S state) throws FnPlotException {
+        ArrayList<Statement> seq = sseq.getSeq();
+        StmtSequence result = new StmtSequence();
+        boolean changed = false;
+        for (Statement s : seq) {
+            Statement r = s instanceof Exp ? rewrite((Exp) s, state) : s.visit(this, state);
+            changed |= r != s;
+            result.add(r);
+        }
+        return changed ? result : sseq;
+    }
+
+    @Override
+    public Statement visitStmtDefinition(StmtDefinition sd, S state) throws FnPlotException {
+        Exp exp = rewrite(sd.getExp(), state);
+        return exp == sd.getExp() ? sd : new StmtDefinition(sd.getVar(), exp);
+    }
+
+    @Override
+    public Statement visitStmtLet(StmtLet let, S state) throws FnPlotException {
+        ArrayList<Binding> bindings = new ArrayList<>(let.getBindings().size());
+        boolean changed = false;
+        for (Binding b : let.getBindings()) {
+            Exp v = rewrite(b.getValExp(), state);
+            changed |= v != b.getValExp();
+            bindings.add(v == b.getValExp() ? b : new Binding(b.getVar(), v));
+        }
+        Exp body = rewrite(let.getBody(), state);
+        return changed || body != let.getBody() ? new StmtLet(bindings, body) : let;
+    }
+
+    @Override
+    public Statement visitFunDefn(ExpFunction fd, S state) throws FnPlotException {
+        Exp body = rewrite(fd.getBody(), state);
+        return body == fd.getBody() ? fd :
+                new ExpFunction(fd.getParameters(), body).derivedFrom(fd);
+    }
+
+    @Override
+    public Statement visitFunCall(ExpFunCall fc, S state) throws FnPlotException {
+        ArrayList<Exp> args = new ArrayList<>(fc.getArguments().size());
+        boolean changed = false;
+        for (Exp e : fc.getArguments()) {
+            Exp r = rewrite(e, state);
+            changed |= r != e;
+            args.add(r);
+        }
+        return changed ? new ExpFunCall(fc.getName(), args, null) : fc;
+    }
+
+    @Override
+    public Statement visitFunPlot(ExpPlot fp, S state) throws FnPlotException {
+        Exp map = rewrite(fp.getMap(), state);
+        return map == fp.getMap() ? fp :
+                new ExpPlot(map, fp.getItem(), fp.getStart(), fp.getEnd());
+    }
+
+    @Override
+    public Statement visitClear(ExpClear clear, S state) throws FnPlotException {
+        return clear;
+    }
+
+    @Override
+    public Statement visitExpAdd(ExpAdd exp, S state) throws FnPlotException {
+        Exp l = rewrite(exp.getExpL(), state);
+        Exp r = rewrite(exp.getExpR(), state);
+        return l == exp.getExpL() && r == exp.getExpR() ? exp : new ExpAdd(l, r);
+    }
+
+    @Override
+    public Statement visitExpSub(ExpSub exp, S state) throws FnPlotException {
+        Exp l = rewrite(exp.getExpL(), state);
+        Exp r = rewrite(exp.getExpR(), state);
+        return l == exp.getExpL() && r == exp.getExpR() ? exp : new ExpSub(l, r);
+    }
+
+    @Override
+    public Statement visitExpMul(ExpMul exp, S state) throws FnPlotException {
+        Exp l = rewrite(exp.getExpL(), state);
+        Exp r = rewrite(exp.getExpR(), state);
+        return l == exp.getExpL() && r == exp.getExpR() ? exp : new ExpMul(l, r);
+    }
+
+    @Override
+    public Statement visitExpPow(ExpPow exp, S state) throws FnPlotException {
+        Exp l = rewrite(exp.getExpL(), state);
+        Exp r = rewrite(exp.getExpR(), state);
+        return l == exp.getExpL() && r == exp.getExpR() ? exp : new ExpPow(l, r);
+    }
+
+    @Override
+    public Statement visitExpDiv(ExpDiv exp, S state) throws FnPlotException {
+        Exp l = rewrite(exp.getExpL(), state);
+        Exp r = rewrite(exp.getExpR(), state);
+        return l == exp.getExpL() && r == exp.getExpR() ? exp : new ExpDiv(l, r);
+    }
+
+    @Override
+    public Statement visitExpMod(ExpMod exp, S state) throws FnPlotException {
+        Exp l = rewrite(exp.getExpL(), state);
+        Exp r = rewrite(exp.getExpR(), state);
+        return l == exp.getExpL() && r == exp.getExpR() ? exp : new ExpMod(l, r);
+    }
+
+    @Override
+    public Statement visitExpLit(ExpLit exp, S state) throws FnPlotException {
+        return exp;
+    }
+
+    @Override
+    public Statement visitExpVar(ExpVar exp, S state) throws FnPlotException {
+        return exp;
+    }
+
+    @Override
+    public Statement visitExpCompare(ExpCompare exp, S state) throws FnPlotException {
+        Exp l = rewrite(exp.getExpL(), state);
+        Exp r = rewrite(exp.getExpR(), state);
+        return l == exp.getExpL() && r == exp.getExpR() ? exp : new ExpCompare(exp.getOp(), l, r);
+    }
+
+    @Override
+    public Statement visitExpIf(ExpIf exp, S state) throws FnPlotException {
+        Exp c = rewrite(exp.getCondition(), state);
+        Exp t = rewrite(exp.getThen(), state);
+        Exp e = rewrite(exp.getElse(), state);
+        return c == exp.getCondition() && t == exp.getThen() && e == exp.getElse() ? exp :
+                new ExpIf(c, t, e);
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.optimizer;
+
+import fnplot.semantics.DefinedNames;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The base class of the passes that need to know which functions a call
+ * may refer to.  The state passed down the tree is the chain of names that
+ * are bound locally (by lets, functions and plots, and by definitions
+ * within their bodies), which is <code>null</code> at the top level of the
+ * program.
+ * <p>
+ * The pass is told of each definition at the top level of the program as
+ * it is passed, by {@link #topLevelDefinition(StmtDefinition)}.  A name that
+ * is {@link #isDefinedOnce(String) defined only once} in the program, by
+ * such a definition, has the defined value wherever it is not bound
+ * locally, from that point of the program onwards, while the program runs.
+ * The body of a function may also be run by a later program, after the name
+ * has been redefined, so nothing is known about the name within the body of
+ * a function ({@link #isInFunction(Scope)}).
+ *
+ * @author newts
+ */
+abstract class ScopedRewriter extends Rewriter<ScopedRewriter.Scope> {
+
+    /**
+     * The names bound locally around a point of the program.
+     */
+    static final class Scope {
+
+        private final Scope parent;
+        private final Set<String> names;
+        private final boolean function;
+
+        Scope(Scope parent, Set<String> names, boolean function) {
+            this.parent = parent;
+            this.names = names;
+            this.function = function;
+        }
+    }
+
+    private final HashMap<String, Integer> definitions = new HashMap<>();
+
+    /**
+     * Called after each definition at the top level of the program has been
+     * rewritten.
+     * @param sd The rewritten definition
+     */
+    protected abstract void topLevelDefinition(StmtDefinition sd);
+
+    /**
+     * @return <code>true</code> if the name is defined by exactly one
+     * definition in the program (which is at its top level)
+     */
+    protected boolean isDefinedOnce(String id) {
+        Integer n = definitions.get(id);
+        return n != null && n == 1;
+    }
+
+    /**
+     * @return <code>true</code> if the name is bound locally in the scope
+     */
+    protected static boolean isBound(Scope scope, String id) {
+        for (Scope s = scope; s != null; s = s.parent) {
+            if (s.names.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if the scope is within the body of a
+     * function, which may outlive the program
+     */
+    protected static boolean isInFunction(Scope scope) {
+        for (Scope s = scope; s != null; s = s.parent) {
+            if (s.function) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Make the scope of the body of a let or plot.
+     * @param scope The enclosing scope
+     * @param names The names bound by the let or plot
+     * @param body The body, whose own definitions are also local to it
+     * @return The scope of the body
+     * @throws FnPlotException if the body cannot be traversed
+     */
+    protected static Scope extend(Scope scope, Iterable<String> names, Statement body)
+            throws FnPlotException {
+        return extend(scope, names, body, false);
+    }
+
+    private static Scope extend(Scope scope, Iterable<String> names, Statement body,
+            boolean function) throws FnPlotException {
+        Set<String> ids = new HashSet<>(DefinedNames.local(body));
+        for (String id : names) {
+            ids.add(id);
+        }
+        return new Scope(scope, ids, function);
+    }
+
+    private void countDefinitions(Statement s) throws FnPlotException {
+        for (String id : DefinedNames.all(s)) {
+            definitions.merge(id, 1, Integer::sum);
+        }
+    }
+
+    @Override
+    public Statement visitArithProgram(ArithProgram p, Scope scope) throws FnPlotException {
+        ArrayList<Statement> seq = p.getSeq().getSeq();
+        // count the definitions of each name, noting that a single top level
+        // definition of a name may also define it elsewhere
+        for (Statement s : seq) {
+            if (s instanceof StmtDefinition) {
+                definitions.merge(((StmtDefinition) s).getVar(), 1, Integer::sum);
+                countDefinitions(((StmtDefinition) s).getExp());
+            } else {
+                countDefinitions(s);
+            }
+        }
+        StmtSequence result = new StmtSequence();
+        boolean changed = false;
+        for (Statement s : seq) {
+            Statement r = s instanceof Exp ? rewrite((Exp) s, scope) : s.visit(this, scope);
+            changed |= r != s;
+            result.add(r);
+            if (r instanceof StmtDefinition) {
+                topLevelDefinition((StmtDefinition) r);
+            }
+        }
+        return changed ? new ArithProgram(result) : p;
+    }
+
+    @Override
+    public Statement visitStmtLet(StmtLet let, Scope scope) throws FnPlotException {
+        ArrayList<String> vars = new ArrayList<>();
+        ArrayList<Binding> bindings = new ArrayList<>(let.getBindings().size());
+        boolean changed = false;
+        for (Binding b : let.getBindings()) {
+            Exp v = rewrite(b.getValExp(), scope);
+            changed |= v != b.getValExp();
+            bindings.add(v == b.getValExp() ? b : new Binding(b.getVar(), v));
+            vars.add(b.getVar());
+        }
+        Exp body = rewrite(let.getBody(), extend(scope, vars, let.getBody()));
+        return changed || body != let.getBody() ? new StmtLet(bindings, body) : let;
+    }
+
+    @Override
+    public Statement visitFunDefn(ExpFunction fd, Scope scope) throws FnPlotException {
+        Exp body = rewrite(fd.getBody(),
+                extend(scope, fd.getParameters(), fd.getBody(), true));
+        return body == fd.getBody() ? fd :
+                new ExpFunction(fd.getParameters(), body).derivedFrom(fd);
+    }
+
+    @Override
+    public Statement visitFunPlot(ExpPlot fp, Scope scope) throws FnPlotException {
+        Exp map = rewrite(fp.getMap(),
+                extend(scope, Collections.singleton(fp.getItem()), fp.getMap()));
+        return map == fp.getMap() ? fp :
+                new ExpPlot(map, fp.getItem(), fp.getStart(), fp.getEnd());
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.optimizer;
+
+import fnplot.semantics.DefinedNames;
+import fnplot.semantics.Environment;
+import fnplot.semantics.Evaluator;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtLet;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Specialises the functions called by plot maps for the arguments that are
+ * the same at every sample.  When the map of a plot is a call, such as
+ * <code>plot g(x, 3, 0.5) for x in [...]</code>, the arguments that do not
+ * depend on the plot variable are evaluated once, and the parameters that
+ * they are passed for are replaced by their values throughout the body of
+ * the function, which is then folded by the {@link Optimizer}.  The result
+ * is a residual function of the remaining parameters, which the plot calls
+ * at each sample instead.
+ * <p>
+ * An argument is only evaluated once if it consists of arithmetic, literals
+ * and variables other than the plot variable, so that evaluating it has no
+ * side effects and gives the same number at every sample.  A parameter that
+ * is assigned to by a definition anywhere in the body is never replaced.
+ * The residual functions are cached, keyed by the function called and the
+ * values of its constant arguments, in a cache that discards the least
+ * recently used entries when it is full.
+ *
+ * @author newts
+ */
+public class Specializer extends Rewriter<Map<String, ExpLit>> {
+
+    /**
+     * The name to which a residual function is bound when it is called.  The
+     * lexer does not accept it as an identifier, so it cannot clash with the
+     * variables of the program.
+     */
+    public static final String NAME = "spec$";
+
+    /** The default number of residual functions kept in the cache. */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * The residual of a call, to be made instead of the original call.
+     */
+    public static final class Call {
+
+        private final FnPlotFunction function;
+        private final ArrayList<Exp> arguments;
+
+        Call(FnPlotFunction function, ArrayList<Exp> arguments) {
+            this.function = function;
+            this.arguments = arguments;
+        }
+
+        /**
+         * @return The residual function, which should be bound to
+         * {@link Specializer#NAME}
+         */
+        public FnPlotFunction getFunction() {
+            return function;
+        }
+
+        /**
+         * @return The arguments to be passed to the residual function
+         */
+        public ArrayList<Exp> getArguments() {
+            return arguments;
+        }
+
+        /**
+         * @return The call of the residual function
+         */
+        public ExpFunCall getCall() {
+            return new ExpFunCall(NAME, arguments, null);
+        }
+    }
+
+    /**
+     * The key of a residual function in the cache: the function that was
+     * specialised, and the values of its constant arguments (with
+     * <code>null</code> for the others).
+     */
+    private static final class Key {
+
+        private final FnPlotFunction function;
+        private final FnPlotValue<?>[] constants;
+
+        Key(FnPlotFunction function, FnPlotValue<?>[] constants) {
+            this.function = function;
+            this.constants = constants;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) obj;
+            return k.function == function && Arrays.equals(k.constants, constants);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(function) + Arrays.hashCode(constants);
+        }
+    }
+
+    private final LinkedHashMap<Key, FnPlotFunction> cache;
+
+    /**
+     * Create a specialiser with a cache of the default capacity.
+     */
+    public Specializer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a specialiser.
+     * @param capacity The greatest number of residual functions to cache
+     */
+    public Specializer(final int capacity) {
+        this.cache = new LinkedHashMap<Key, FnPlotFunction>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, FnPlotFunction> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return The number of residual functions currently cached
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * Specialise the call made by the map of a plot.
+     * @param plot The plot expression
+     * @param env The environment in which the plot is evaluated
+     * @param evaluator The evaluator with which to evaluate the constant
+     * arguments
+     * @return The residual call, or <code>null</code> if the map is not a
+     * call of a function (with distinct parameters), or none of its
+     * arguments can be evaluated once
+     */
+    public Call specialize(ExpPlot plot, Environment<FnPlotValue<?>> env,
+            Evaluator evaluator) {
+        if (!(plot.getMap() instanceof ExpFunCall)) {
+            return null;
+        }
+        ExpFunCall fc = (ExpFunCall) plot.getMap();
+        try {
+            if (fc.getName().equals(plot.getItem()) || !env.isBound(fc.getSymbol())) {
+                return null;
+            }
+            FnPlotValue<?> callee = env.get(fc.getSymbol());
+            if (!(callee instanceof FnPlotFunction)) {
+                return null;
+            }
+            FnPlotFunction fun = (FnPlotFunction) callee;
+            ArrayList<String> params = fun.getFunExp().getParameters();
+            ArrayList<Exp> args = fc.getArguments();
+            if (params.size() != args.size() || new HashSet<>(params).size() != params.size()) {
+                return null;
+            }
+            Set<String> assigned = DefinedNames.all(fun.getFunExp().getBody());
+            FnPlotValue<?>[] constants = new FnPlotValue<?>[args.size()];
+            ArrayList<Exp> residualArgs = new ArrayList<>();
+            for (int i = 0; i < args.size(); i++) {
+                Exp arg = args.get(i);
+                if (!assigned.contains(params.get(i)) && isInvariant(arg, plot.getItem())) {
+                    FnPlotValue<?> v = arg.visit(evaluator, env);
+                    if (v.isNumber()) {
+                        constants[i] = v;
+                        continue;
+                    }
+                }
+                residualArgs.add(arg);
+            }
+            if (residualArgs.size() == args.size()) {
+                return null;
+            }
+            Key key = new Key(fun, constants);
+            FnPlotFunction residual = cache.get(key);
+            if (residual == null) {
+                residual = residual(fun, constants);
+                cache.put(key, residual);
+            }
+            return new Call(residual, residualArgs);
+        } catch (FnPlotException | RuntimeException e) {
+            // leave the call to be made, and report any error, as usual
+            return null;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the expression consists only of
+     * arithmetic, literals and variables other than the plot variable
+     */
+    private static boolean isInvariant(Exp exp, String item) {
+        if (exp instanceof ExpLit) {
+            return true;
+        } else if (exp instanceof ExpVar) {
+            return !((ExpVar) exp).getVar().equals(item);
+        } else if (Trees.isArith(exp)) {
+            Exp[] ops = Trees.operands(exp);
+            return isInvariant(ops[0], item) && isInvariant(ops[1], item);
+        }
+        return false;
+    }
+
+    /**
+     * Make the residual of a function for the given constant arguments.
+     */
+    private FnPlotFunction residual(FnPlotFunction fun, FnPlotValue<?>[] constants)
+            throws FnPlotException {
+        ExpFunction fe = fun.getFunExp();
+        ArrayList<String> params = new ArrayList<>();
+        HashMap<String, ExpLit> substitution = new HashMap<>();
+        for (int i = 0; i < constants.length; i++) {
+            String id = fe.getParameters().get(i);
+            if (constants[i] == null) {
+                params.add(id);
+            } else {
+                substitution.put(id, new ExpLit(constants[i]));
+            }
+        }
+        Exp body = Optimizer.fold(rewrite(fe.getBody(), substitution));
+        return new FnPlotFunction(new ExpFunction(params, body), fun.getClosingEnv());
+    }
+
+    private static Map<String, ExpLit> without(Map<String, ExpLit> substitution,
+            Iterable<String> ids) {
+        HashMap<String, ExpLit> result = new HashMap<>(substitution);
+        for (String id : ids) {
+            result.remove(id);
+        }
+        return result;
+    }
+
+    @Override
+    public Statement visitStmtLet(StmtLet let, Map<String, ExpLit> substitution)
+            throws FnPlotException {
+        ArrayList<String> vars = new ArrayList<>();
+        ArrayList<Binding> bindings = new ArrayList<>(let.getBindings().size());
+        for (Binding b : let.getBindings()) {
+            bindings.add(new Binding(b.getVar(), rewrite(b.getValExp(), substitution)));
+            vars.add(b.getVar());
+        }
+        return new StmtLet(bindings, rewrite(let.getBody(), without(substitution, vars)));
+    }
+
+    @Override
+    public Statement visitFunDefn(ExpFunction fd, Map<String, ExpLit> substitution)
+            throws FnPlotException {
+        Exp body = rewrite(fd.getBody(), without(substitution, fd.getParameters()));
+        return body == fd.getBody() ? fd :
+                new ExpFunction(fd.getParameters(), body).derivedFrom(fd);
+    }
+
+    @Override
+    public Statement visitFunPlot(ExpPlot fp, Map<String, ExpLit> substitution)
+            throws FnPlotException {
+        Exp map = rewrite(fp.getMap(), without(substitution, Arrays.asList(fp.getItem())));
+        return map == fp.getMap() ? fp :
+                new ExpPlot(map, fp.getItem(), fp.getStart(), fp.getEnd());
+    }
+
+    @Override
+    public Statement visitFunCall(ExpFunCall fc, Map<String, ExpLit> substitution)
+            throws FnPlotException {
+        if (substitution.containsKey(fc.getName())) {
+            // a number is being called, so leave the call to fail as usual
+            throw new FnPlotException(fc.getName() + " is not a function");
+        }
+        return super.visitFunCall(fc, substitution);
+    }
+
+    @Override
+    public Statement visitExpVar(ExpVar exp, Map<String, ExpLit> substitution)
+            throws FnPlotException {
+        ExpLit lit = substitution.get(exp.getVar());
+        return lit == null ? exp : lit;
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.optimizer;
+
+import fnplot.compiler.BytecodeCompiler;
+import fnplot.semantics.DoubleEvaluator;
+import fnplot.semantics.Environment;
+import fnplot.semantics.Evaluator;
+import fnplot.semantics.Plotter;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.values.FnPlotInt;
+import fnplot.values.FnPlotValue;
+import java.awt.geom.Point2D;
+import java.io.StringReader;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A micro-benchmark of the strength reductions made by the {@link Optimizer}.
+ * Each of a set of typical plot maps is folded with and without strength
+ * reduction, and both versions are timed on the tree walking
+ * {@link Evaluator} (with boxed values), on primitive values with the
+ * {@link DoubleEvaluator}, and as bytecode compiled by the
+ * {@link BytecodeCompiler}.  The run time int power and remainder operations
+ * are timed against the operations that they replace.
+ * <p>
+ * Usage: <code>java fnplot.optimizer.StrengthBenchmark [samples [rounds]]</code>
+ * (with <code>-Dfnplot.optimize.fastpow=true</code> to include the inexact
+ * rewriting of cubes and fourth powers).
+ *
+ * @author newts
+ */
+public class StrengthBenchmark {
+
+    private static final String[] MAPS = {
+        "x^2 + 3 * x + 1",
+        "x^3 - 2 * x^2 + x",
+        "(x^4 + 1) / 8",
+        "x / 2 + x / 4 - x / 16",
+        "let y = x * 0.5 in y^2 * (y^3 - 1)",
+    };
+
+    /**
+     * A plotter that samples a range evenly and discards what it is given
+     * to plot.
+     */
+    private static final class NullPlotter implements Plotter {
+
+        private final int samples;
+
+        NullPlotter(int samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        public double[] sample(double low, double hi) {
+            double[] result = new double[samples];
+            for (int i = 0; i < samples; i++) {
+                result[i] = low + (hi - low) * i / (samples - 1);
+            }
+            return result;
+        }
+
+        @Override
+        public void plot(Point2D[] points) {
+        }
+
+        @Override
+        public void clear() {
+        }
+    }
+
+    /**
+     * Something to be timed.
+     */
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    private static volatile double sink;
+
+    /**
+     * Time two tasks, alternating between them so that neither benefits
+     * from the order in which they are run, and report the least time that
+     * each took in any round.
+     */
+    private static void compare(String what, Task before, Task after, int rounds, int n)
+            throws Exception {
+        long bestBefore = Long.MAX_VALUE;
+        long bestAfter = Long.MAX_VALUE;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            before.run();
+            long middle = System.nanoTime();
+            after.run();
+            long end = System.nanoTime();
+            bestBefore = Math.min(bestBefore, middle - start);
+            bestAfter = Math.min(bestAfter, end - middle);
+        }
+        System.out.printf("  %-10s %9.1f ns %9.1f ns %7.2fx%n", what,
+                (double) bestBefore / n, (double) bestAfter / n,
+                (double) bestBefore / bestAfter);
+    }
+
+    /**
+     * @return A task that sums the values of a map over the given samples
+     */
+    private static Task sum(DoubleUnaryOperator map, double[] xs) {
+        return () -> {
+            double s = 0;
+            for (double x : xs) {
+                s += map.applyAsDouble(x);
+            }
+            sink = s;
+        };
+    }
+
+    private static ExpPlot parsePlot(String map) throws Exception {
+        String source = "plot " + map + " for x in [-5 : 5];";
+        FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+        ArithProgram p = (ArithProgram) parser.parse().value;
+        return (ExpPlot) p.getSeq().getSeq().get(0);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        Evaluator evaluator = new Evaluator();
+        evaluator.setCompilingPlots(false);
+        evaluator.setUnboxedPlots(false);
+        evaluator.setPlotter(new NullPlotter(samples));
+        Environment<FnPlotValue<?>> env = evaluator.getGlobalEnv();
+
+        System.out.printf("Per sample, over %d samples (best of %d rounds)%n", samples, rounds);
+        System.out.printf("  %-10s %12s %12s %8s%n", "", "folded", "reduced", "speedup");
+        for (String map : MAPS) {
+            ExpPlot plot = parsePlot(map);
+            ExpPlot folded = (ExpPlot) Optimizer.fold(plot, false);
+            ExpPlot reduced = (ExpPlot) Optimizer.fold(plot, true);
+            System.out.println(map + "  =>  " + reduced.getMap());
+
+            compare("boxed", () -> folded.visit(evaluator, env),
+                    () -> reduced.visit(evaluator, env), rounds, samples);
+
+            double[] xs = evaluator.getPlotter().sample(plot.getStart(), plot.getEnd());
+            compare("unboxed", sum(DoubleEvaluator.numericMap(folded, env), xs),
+                    sum(DoubleEvaluator.numericMap(reduced, env), xs), rounds, samples);
+            compare("compiled", sum(BytecodeCompiler.compilePlot(folded, env), xs),
+                    sum(BytecodeCompiler.compilePlot(reduced, env), xs), rounds, samples);
+        }
+
+        // the operands are read from arrays so that they are not constants
+        int n = samples * 10;
+        int[] bases = new int[n];
+        int[] exponents = new int[n];
+        int[] divisors = new int[n];
+        for (int i = 0; i < n; i++) {
+            bases[i] = i % 200 - 100;
+            exponents[i] = i % 7;
+            divisors[i] = 64;
+        }
+        System.out.printf("Per operation, over %d operations%n", n);
+        System.out.printf("  %-10s %12s %12s %8s%n", "", "before", "after", "speedup");
+        compare("int ^ int", () -> {
+            int s = 0;
+            for (int i = 0; i < n; i++) {
+                s += (int) Math.pow(bases[i], exponents[i]);
+            }
+            sink = s;
+        }, () -> {
+            int s = 0;
+            for (int i = 0; i < n; i++) {
+                s += FnPlotInt.power(bases[i], exponents[i]);
+            }
+            sink = s;
+        }, rounds, n);
+        compare("int % 2^k", () -> {
+            int s = 0;
+            for (int i = 0; i < n; i++) {
+                s += bases[i] % divisors[i];
+            }
+            sink = s;
+        }, () -> {
+            int s = 0;
+            for (int i = 0; i < n; i++) {
+                int a = bases[i];
+                int d = divisors[i];
+                int m = a & (d - 1);
+                s += a < 0 && m != 0 ? m - d : m;
+            }
+            sink = s;
+        }, rounds, n);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.optimizer;
+
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.StmtLet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Utility methods for examining and rebuilding the arithmetic parts of an
+ * AST, shared by the optimisation passes.
+ *
+ * @author newts
+ */
+final class Trees {
+
+    private Trees() {
+    }
+
+    /**
+     * @return <code>true</code> if the expression is an arithmetic operation
+     */
+    static boolean isArith(Exp exp) {
+        return exp instanceof ExpAdd || exp instanceof ExpSub || exp instanceof ExpMul
+                || exp instanceof ExpDiv || exp instanceof ExpMod || exp instanceof ExpPow;
+    }
+
+    /**
+     * @return The operands of an arithmetic operation
+     */
+    static Exp[] operands(Exp exp) {
+        if (exp instanceof ExpAdd) {
+            return new Exp[]{((ExpAdd) exp).getExpL(), ((ExpAdd) exp).getExpR()};
+        } else if (exp instanceof ExpSub) {
+            return new Exp[]{((ExpSub) exp).getExpL(), ((ExpSub) exp).getExpR()};
+        } else if (exp instanceof ExpMul) {
+            return new Exp[]{((ExpMul) exp).getExpL(), ((ExpMul) exp).getExpR()};
+        } else if (exp instanceof ExpDiv) {
+            return new Exp[]{((ExpDiv) exp).getExpL(), ((ExpDiv) exp).getExpR()};
+        } else if (exp instanceof ExpMod) {
+            return new Exp[]{((ExpMod) exp).getExpL(), ((ExpMod) exp).getExpR()};
+        } else {
+            return new Exp[]{((ExpPow) exp).getExpL(), ((ExpPow) exp).getExpR()};
+        }
+    }
+
+    /**
+     * Make an operation of the same kind as an existing one.
+     * @return exp itself if l and r are its operands, otherwise a new node
+     */
+    static Exp rebuild(Exp exp, Exp l, Exp r) {
+        Exp[] old = operands(exp);
+        if (l == old[0] && r == old[1]) {
+            return exp;
+        } else if (exp instanceof ExpAdd) {
+            return new ExpAdd(l, r);
+        } else if (exp instanceof ExpSub) {
+            return new ExpSub(l, r);
+        } else if (exp instanceof ExpMul) {
+            return new ExpMul(l, r);
+        } else if (exp instanceof ExpDiv) {
+            return new ExpDiv(l, r);
+        } else if (exp instanceof ExpMod) {
+            return new ExpMod(l, r);
+        } else {
+            return new ExpPow(l, r);
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the expression is made only of arithmetic,
+     * literals, variables and lets, so that evaluating it has no side effects.
+     */
+    static boolean isPure(Exp exp) {
+        if (exp instanceof ExpLit || exp instanceof ExpVar) {
+            return true;
+        } else if (isArith(exp)) {
+            Exp[] ops = operands(exp);
+            return isPure(ops[0]) && isPure(ops[1]);
+        } else if (exp instanceof StmtLet) {
+            StmtLet let = (StmtLet) exp;
+            for (Binding b : let.getBindings()) {
+                if (!isPure(b.getValExp())) {
+                    return false;
+                }
+            }
+            return isPure(let.getBody());
+        }
+        return false;
+    }
+
+    /**
+     * @return The number of nodes in a pure expression
+     */
+    static int size(Exp exp) {
+        if (isArith(exp)) {
+            Exp[] ops = operands(exp);
+            return 1 + size(ops[0]) + size(ops[1]);
+        } else if (exp instanceof StmtLet) {
+            StmtLet let = (StmtLet) exp;
+            int n = 1 + size(let.getBody());
+            for (Binding b : let.getBindings()) {
+                n += size(b.getValExp());
+            }
+            return n;
+        }
+        return 1;
+    }
+
+    /**
+     * Find the free variables of a pure expression.
+     * @param exp The expression
+     * @return The names of the variables that occur in exp outside the scope
+     * of any let that binds them
+     */
+    static Set<String> freeVars(Exp exp) {
+        Set<String> free = new HashSet<>();
+        freeVars(exp, new HashSet<>(), free);
+        return free;
+    }
+
+    private static void freeVars(Exp exp, Set<String> bound, Set<String> free) {
+        if (exp instanceof ExpVar) {
+            if (!bound.contains(((ExpVar) exp).getVar())) {
+                free.add(((ExpVar) exp).getVar());
+            }
+        } else if (isArith(exp)) {
+            Exp[] ops = operands(exp);
+            freeVars(ops[0], bound, free);
+            freeVars(ops[1], bound, free);
+        } else if (exp instanceof StmtLet) {
+            StmtLet let = (StmtLet) exp;
+            Set<String> inner = new HashSet<>(bound);
+            for (Binding b : let.getBindings()) {
+                freeVars(b.getValExp(), bound, free);
+                inner.add(b.getVar());
+            }
+            freeVars(let.getBody(), inner, free);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.runtime;
+
+import fnplot.semantics.Environment;
+import fnplot.semantics.SymbolTable;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotType;
+import fnplot.values.FnPlotValue;
+
+/**
+ * A user defined function of a program compiled ahead of time.  It plays the
+ * part of an {@link fnplot.values.FnPlotFunction}, but carries the compiled
+ * code of its body in place of its AST, so that running it needs neither the
+ * syntax classes nor an interpreter.
+ *
+ * @author newts
+ */
+public class Closure extends FnPlotValue<Closure> {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The compiled body of a function.
+     */
+    @FunctionalInterface
+    public interface Body {
+
+        /**
+         * Run the body of a function.
+         * @param env The environment binding the parameters of the function,
+         * whose parent is the closing environment of the function
+         * @return The value of the body
+         * @throws FnPlotException if a runtime error occurs
+         */
+        public FnPlotValue<?> eval(Environment<FnPlotValue<?>> env) throws FnPlotException;
+    }
+
+    /**
+     * A call in tail position of the body of a function, which has not been
+     * made yet.  The body returns it in place of the value of the call, and
+     * {@link Closure#apply(FnPlotValue[])} then makes the call in a loop, so
+     * that a chain of tail calls (such as a recursive loop) runs in constant
+     * Java stack space, as it does in the interpreters.  A tail call never
+     * escapes from <code>apply</code>.
+     */
+    static final class TailCall extends FnPlotValue<TailCall> {
+
+        private static final long serialVersionUID = 1L;
+
+        final Closure closure;
+        final FnPlotValue<?>[] args;
+
+        TailCall(Closure closure, FnPlotValue<?>[] args) {
+            this.closure = closure;
+            this.args = args;
+        }
+
+        @Override
+        public FnPlotType getType() {
+            return FnPlotType.FUNCTION;
+        }
+    }
+
+    private final int[] parameters;
+    private final String text;
+    private final transient Body body;
+    private final transient Environment<FnPlotValue<?>> closingEnv;
+
+    /**
+     * Create a new instance of a compiled function.
+     * @param parameters The symbols of the parameters of the function
+     * @param text The source of the function, as shown when it is printed
+     * @param closingEnv The environment over which this function is closed
+     * @param body The compiled body of the function
+     */
+    public Closure(int[] parameters, String text, Environment<FnPlotValue<?>> closingEnv,
+            Body body) {
+        this.parameters = parameters;
+        this.text = text;
+        this.closingEnv = closingEnv;
+        this.body = body;
+    }
+
+    @Override
+    public FnPlotType getType() {
+        return FnPlotType.FUNCTION;
+    }
+
+    /**
+     * @return The names of the parameters of this function
+     */
+    public String[] getParameters() {
+        String[] result = new String[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            result[i] = SymbolTable.name(parameters[i]);
+        }
+        return result;
+    }
+
+    public Environment<FnPlotValue<?>> getClosingEnv() {
+        return closingEnv;
+    }
+
+    /**
+     * Call this function.
+     * @param args The values of the arguments
+     * @return The value of the body of the function, with its parameters
+     * bound to the arguments
+     * @throws FnPlotException if a runtime error occurs in the body
+     */
+    public FnPlotValue<?> apply(FnPlotValue<?>[] args) throws FnPlotException {
+        FnPlotValue<?> result = body.eval(new Environment<>(parameters, args, closingEnv));
+        while (result instanceof TailCall) {
+            TailCall call = (TailCall) result;
+            Closure callee = call.closure;
+            result = callee.body.eval(new Environment<>(callee.parameters, call.args,
+                    callee.closingEnv));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.runtime;
+
+import fnplot.semantics.Environment;
+import fnplot.semantics.Plotter;
+import fnplot.semantics.SymbolTable;
+import fnplot.semantics.TextPlotter;
+import fnplot.sys.FnPlotException;
+import fnplot.sys.RuntimeFnPlotException;
+import fnplot.values.FnPlotValue;
+import java.awt.geom.Point2D;
+
+/**
+ * The superclass of the classes generated by {@link fnplot.sys.FnPlotc} for
+ * programs compiled ahead of time.  The generated code is made of calls of
+ * the methods of this class, which perform the operations that the
+ * interpreters perform for the corresponding nodes of the AST, with the same
+ * results.  Names are passed as their symbols in the {@link SymbolTable},
+ * which the generated class interns once, when it is initialised.  Only the classes of the values, the environments, the plotters
+ * and this package are needed to run a compiled program.
+ *
+ * @author newts
+ */
+public abstract class Program {
+
+    private Plotter plotter;
+
+    /**
+     * Run the program.
+     * @param env The environment in which to run it
+     * @return The value of the last statement of the program
+     * @throws FnPlotException if a runtime error occurs
+     */
+    public abstract FnPlotValue<?> run(Environment<FnPlotValue<?>> env) throws FnPlotException;
+
+    public Plotter getPlotter() {
+        return plotter;
+    }
+
+    public void setPlotter(Plotter plotter) {
+        this.plotter = plotter;
+    }
+
+    /**
+     * Run the program in a new global environment, plotting as text on the
+     * standard output, and show its result as the command line interpreter
+     * does.
+     */
+    public void execute() {
+        setPlotter(new TextPlotter(System.out));
+        try {
+            FnPlotValue<?> result = run(new Environment<>());
+            System.out.println("\nResult: " + result);
+        } catch (FnPlotException e) {
+            System.out.println(e.getMessage());
+        } catch (StackOverflowError e) {
+            // calls other than tail calls recurse on the Java stack
+            System.out.println("Stack overflow: the program is nested too deeply");
+        }
+    }
+
+    /**
+     * Bind a name to a value in an environment.
+     * @param env The environment
+     * @param id The symbol of the name
+     * @param value The value
+     * @return The value
+     */
+    protected static FnPlotValue<?> define(Environment<FnPlotValue<?>> env, int id,
+            FnPlotValue<?> value) {
+        env.put(id, value);
+        return value;
+    }
+
+    /**
+     * Give the value of a sequence of statements.  The statements are
+     * evaluated, in order, as the arguments of the call.
+     * @param values The values of the statements
+     * @return The value of the last statement, or 0 if there are none
+     */
+    protected static FnPlotValue<?> sequence(FnPlotValue<?>... values) {
+        return values.length == 0 ? FnPlotValue.make(0) : values[values.length - 1];
+    }
+
+    /**
+     * Evaluate the body of a let expression.
+     * @param env The environment in which the let expression is evaluated
+     * @param ids The symbols of the names bound by the let
+     * @param values The values of the bindings, in the same order
+     * @param body The compiled body
+     * @return The value of the body, with the names bound to the values
+     * @throws FnPlotException if a runtime error occurs in the body
+     */
+    protected static FnPlotValue<?> let(Environment<FnPlotValue<?>> env, int[] ids,
+            FnPlotValue<?>[] values, Closure.Body body) throws FnPlotException {
+        return body.eval(new Environment<>(ids, values, env));
+    }
+
+    /**
+     * Call the function bound to a name.
+     * @param env The environment in which the call is made
+     * @param name The symbol of the name of the function
+     * @param args The values of the arguments
+     * @return The value returned by the function
+     * @throws FnPlotException if the name is not bound to a function, or a
+     * runtime error occurs in the function
+     */
+    protected static FnPlotValue<?> call(Environment<FnPlotValue<?>> env, int name,
+            FnPlotValue<?>... args) throws FnPlotException {
+        FnPlotValue<?> fun = env.get(name);
+        if (!(fun instanceof Closure)) {
+            throw new RuntimeFnPlotException(SymbolTable.name(name) + " is not a function");
+        }
+        return ((Closure) fun).apply(args);
+    }
+
+    /**
+     * Prepare a call, in tail position of the body of a function, of the
+     * function bound to a name.  The call is made by
+     * {@link Closure#apply(FnPlotValue[])} once the body has returned, so
+     * that it does not use any more of the Java stack.
+     * @param env The environment in which the call is made
+     * @param name The symbol of the name of the function
+     * @param args The values of the arguments
+     * @return The call, to be returned as the value of the body
+     * @throws FnPlotException if the name is not bound to a function
+     */
+    protected static FnPlotValue<?> tailCall(Environment<FnPlotValue<?>> env, int name,
+            FnPlotValue<?>... args) throws FnPlotException {
+        FnPlotValue<?> fun = env.get(name);
+        if (!(fun instanceof Closure)) {
+            throw new RuntimeFnPlotException(SymbolTable.name(name) + " is not a function");
+        }
+        return new Closure.TailCall((Closure) fun, args);
+    }
+
+    /**
+     * Sample a map, and plot the resulting points.
+     * @param env The environment in which the plot is evaluated
+     * @param item The symbol of the plot variable
+     * @param start The lower bound of the plot variable
+     * @param end The upper bound of the plot variable
+     * @param map The compiled map
+     * @return <code>null</code>, since a plot has no value
+     * @throws FnPlotException if the map cannot be evaluated at some sample
+     */
+    protected FnPlotValue<?> plot(Environment<FnPlotValue<?>> env, int item, double start,
+            double end, Closure.Body map) throws FnPlotException {
+        double[] xpoints = plotter.sample(start, end);
+        Point2D[] ypoints = new Point2D[xpoints.length];
+        Environment<FnPlotValue<?>> newEnv = new Environment<>(new int[0],
+                new FnPlotValue<?>[0], env);
+        for (int x = 0; x < xpoints.length; x++) {
+            newEnv.put(item, FnPlotValue.make(xpoints[x]));
+            ypoints[x] = new Point2D.Double(xpoints[x], map.eval(newEnv).doubleValue());
+        }
+        plotter.plot(ypoints);
+        return null;
+    }
+
+    /**
+     * Clear the plotter.
+     * @return <code>null</code>, since clearing has no value
+     */
+    protected FnPlotValue<?> clear() {
+        plotter.clear();
+        return null;
+    }
+}
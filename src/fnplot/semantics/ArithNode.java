@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotInt;
+import fnplot.values.FnPlotReal;
+import fnplot.values.FnPlotValue;
+
+/**
+ * A self-specialising arithmetic node for the {@link ClosureEvaluator}.
+ * <p>
+ * A node starts out uninitialised.  The first time it runs, it records the
+ * types of its operands and specialises itself for that combination (int-int,
+ * int-real, real-int or real-real), after which it computes its result
+ * directly from the primitive values, without going through the generic
+ * {@link FnPlotValue} arithmetic.  If it later sees operands of other types,
+ * it deoptimises permanently to the generic path, which handles every case
+ * (including the type errors raised by non-numeric operands).
+ *
+ * @author newts
+ */
+public final class ArithNode implements ClosureEvaluator.Code {
+
+    public static final int ADD = 0;
+    public static final int SUB = 1;
+    public static final int MUL = 2;
+    public static final int DIV = 3;
+    public static final int MOD = 4;
+    public static final int POW = 5;
+
+    /**
+     * The specialisations that a node may be in.
+     */
+    public enum State {
+        UNINITIALIZED, INT_INT, INT_REAL, REAL_INT, REAL_REAL, GENERIC
+    }
+
+    private final int op;
+    private final ClosureEvaluator.Code left;
+    private final ClosureEvaluator.Code right;
+    private State state = State.UNINITIALIZED;
+
+    /**
+     * Create a new arithmetic node.
+     * @param op The operation (one of ADD, SUB, MUL, DIV, MOD or POW)
+     * @param left The code for the left operand
+     * @param right The code for the right operand
+     */
+    public ArithNode(int op, ClosureEvaluator.Code left, ClosureEvaluator.Code right) {
+        this.op = op;
+        this.left = left;
+        this.right = right;
+    }
+
+    /**
+     * @return The specialisation that this node is currently in
+     */
+    public State getState() {
+        return state;
+    }
+
+    @Override
+    public FnPlotValue<?> eval(Environment<FnPlotValue<?>> env) throws FnPlotException {
+        final FnPlotValue<?> l = left.eval(env);
+        final FnPlotValue<?> r = right.eval(env);
+        switch (state) {
+            case REAL_REAL:
+                if (l instanceof FnPlotReal && r instanceof FnPlotReal) {
+                    return FnPlotValue.make(real(((FnPlotReal) l).doubleValue(),
+                            ((FnPlotReal) r).doubleValue()));
+                }
+                break;
+            case INT_INT:
+                if (l instanceof FnPlotInt && r instanceof FnPlotInt) {
+                    return FnPlotValue.make(integer(((FnPlotInt) l).intValue(),
+                            ((FnPlotInt) r).intValue()));
+                }
+                break;
+            case REAL_INT:
+                if (l instanceof FnPlotReal && r instanceof FnPlotInt) {
+                    return FnPlotValue.make(real(((FnPlotReal) l).doubleValue(),
+                            ((FnPlotInt) r).intValue()));
+                }
+                break;
+            case INT_REAL:
+                if (l instanceof FnPlotInt && r instanceof FnPlotReal) {
+                    return FnPlotValue.make(integer(((FnPlotInt) l).intValue(),
+                            ((FnPlotReal) r).intValue()));
+                }
+                break;
+            case GENERIC:
+                return generic(l, r);
+            default:
+                break;
+        }
+        return specialize(l, r);
+    }
+
+    /**
+     * Handle operands that the current specialisation does not cover.
+     */
+    private FnPlotValue<?> specialize(FnPlotValue<?> l, FnPlotValue<?> r) throws FnPlotException {
+        if (state == State.UNINITIALIZED) {
+            if (l instanceof FnPlotReal && r instanceof FnPlotReal) {
+                state = State.REAL_REAL;
+            } else if (l instanceof FnPlotInt && r instanceof FnPlotInt) {
+                state = State.INT_INT;
+            } else if (l instanceof FnPlotReal && r instanceof FnPlotInt) {
+                state = State.REAL_INT;
+            } else if (l instanceof FnPlotInt && r instanceof FnPlotReal) {
+                state = State.INT_REAL;
+            } else {
+                state = State.GENERIC;
+            }
+        } else {
+            // a new combination of types has turned up: deoptimise for good
+            state = State.GENERIC;
+        }
+        return generic(l, r);
+    }
+
+    private FnPlotValue<?> generic(FnPlotValue<?> l, FnPlotValue<?> r) throws FnPlotException {
+        switch (op) {
+            case ADD: return l.add(r);
+            case SUB: return l.sub(r);
+            case MUL: return l.mul(r);
+            case DIV: return l.div(r);
+            case MOD: return l.mod(r);
+            default: return l.pow(r);
+        }
+    }
+
+    private int integer(int a, int b) {
+        switch (op) {
+            case ADD: return a + b;
+            case SUB: return a - b;
+            case MUL: return a * b;
+            case DIV: return a / b;
+            case MOD: return a % b;
+            default: return FnPlotInt.power(a, b);
+        }
+    }
+
+    private double real(double a, double b) {
+        switch (op) {
+            case ADD: return a + b;
+            case SUB: return a - b;
+            case MUL: return a * b;
+            case DIV: return a / b;
+            case MOD: return a % b;
+            default: return Math.pow(a, b);
+        }
+    }
+}
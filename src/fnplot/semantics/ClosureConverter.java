@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.semantics;
+
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.Statement;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Converts closures so that they copy the values of the local variables
+ * that they refer to, instead of keeping the whole chain of environments in
+ * which they were created.  A function created inside a let, a plot or
+ * another function then keeps alive only the values that it uses, and the
+ * global environment, and finds each of them with a single lookup.
+ * <p>
+ * The conversion is done in two steps.  {@link #convert(Statement)} works
+ * out, for each function expression in a program, which of its free
+ * variables are bound locally where it is created, by an enclosing let,
+ * function or plot, and records them in the expression.  Then
+ * {@link #close(ExpFunction, Environment)} creates each closure, with a
+ * small environment holding those variables, whose parent is the global
+ * environment.  The other free variables are global, and are still looked
+ * up by name when they are used, so a closure sees later definitions of
+ * them, as before.
+ * <p>
+ * Copying a local variable is correct only if it cannot be bound again
+ * after the closure is created, which could happen only by a definition
+ * that runs in the frame that binds it, or in a frame between that one and
+ * the closure.  So a function that refers to a name defined by a statement
+ * in any of those frames (such as a local function that calls itself) is
+ * not converted, and keeps its whole environment.
+ *
+ * @author newts
+ */
+public class ClosureConverter extends ScopeWalker<ScopeWalker.Scope> {
+
+    /** Marks a function whose closures must keep their whole environment. */
+    private static final String[] CONFLICT = new String[0];
+
+    private final Map<ExpFunction, String[]> seen = new IdentityHashMap<>();
+
+    private ClosureConverter() {
+    }
+
+    /**
+     * Work out which free variables each closure created by a program
+     * should copy, and record them in its function expressions.
+     * @param program The program, which is run in the global environment
+     * @throws FnPlotException if the program cannot be traversed
+     */
+    public static void convert(Statement program) throws FnPlotException {
+        ClosureConverter converter = new ClosureConverter();
+        program.visit(converter, null);
+        for (Map.Entry<ExpFunction, String[]> e : converter.seen.entrySet()) {
+            e.getKey().setCaptures(e.getValue() == CONFLICT ? null : e.getValue());
+        }
+    }
+
+    /**
+     * Create a closure of a function.
+     * @param defn The function expression
+     * @param env The environment in which it is evaluated
+     * @return The closure, which copies the local variables recorded by
+     * {@link #convert(Statement)}, or keeps the whole environment if none
+     * were recorded
+     * @throws FnPlotException if a local variable has no value
+     */
+    public static FnPlotFunction close(ExpFunction defn, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        int[] captures = defn.getCaptureSymbols();
+        if (captures == null) {
+            return new FnPlotFunction(defn, env);
+        }
+        Environment<FnPlotValue<?>> globals = env;
+        while (globals.getParent() != null) {
+            globals = globals.getParent();
+        }
+        if (captures.length == 0) {
+            return new FnPlotFunction(defn, globals);
+        }
+        FnPlotValue<?>[] values = new FnPlotValue<?>[captures.length];
+        for (int i = 0; i < captures.length; i++) {
+            values[i] = env.get(captures[i]);
+        }
+        return new FnPlotFunction(defn, new Environment<>(captures, values, globals));
+    }
+
+    /**
+     * @return The free variables of a function that are bound locally, or
+     * <code>null</code> if one of them may be bound again after the function
+     * is created
+     */
+    private static String[] capturesOf(ExpFunction fd, Scope scope) throws FnPlotException {
+        ArrayList<String> result = new ArrayList<>();
+        for (String id : FreeNames.of(fd)) {
+            for (Scope s = scope; s != null; s = s.parent) {
+                if (s.defined.contains(id)) {
+                    return null;
+                }
+                if (s.bound.contains(id)) {
+                    result.add(id);
+                    break;
+                }
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    @Override
+    protected Void within(Scope scope, Collection<String> bound, Statement body)
+            throws FnPlotException {
+        return body.visit(this, new Scope(scope, bound, body));
+    }
+
+    @Override
+    public Void visitFunDefn(ExpFunction fd, Scope scope) throws FnPlotException {
+        String[] captures = capturesOf(fd, scope);
+        String[] previous = seen.get(fd);
+        if (captures == null || previous == CONFLICT ||
+                (previous != null && !Arrays.equals(previous, captures))) {
+            // a node in two places keeps the whole environment in both
+            captures = CONFLICT;
+        }
+        seen.put(fd, captures);
+        return super.visitFunDefn(fd, scope);
+    }
+}
@@ -0,0 +1,443 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpClear;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.Comparison;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotType;
+import fnplot.values.FnPlotValue;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+
+/**
+ * An interpreter that first converts each AST into a tree of closures, and
+ * then runs the closures.  Each closure is bound to the closures of its
+ * subexpressions when it is created, so running it involves no visitor
+ * dispatch at all.  Function bodies are converted once, when the enclosing
+ * function expression is converted, rather than every time they are called.
+ * <p>
+ * The visit methods of this class perform the conversion: each returns the
+ * closure for the visited node.  The results of running the closures are the
+ * same as those of the {@link Evaluator}.  Unless disabled, arithmetic is
+ * performed by self-specialising {@link ArithNode}s.
+ * <p>
+ * A call in tail position of the body of a function returns a pending call
+ * in place of its value, and the call that ran the body then makes it in a
+ * loop, so that a chain of tail calls (such as a recursive loop) runs in
+ * constant Java stack space, as it does in the {@link Evaluator}.
+ *
+ * @author newts
+ */
+public class ClosureEvaluator implements Interpreter, Visitor<Void, ClosureEvaluator.Code> {
+
+    /**
+     * The compiled form of an AST node.
+     */
+    @FunctionalInterface
+    public interface Code {
+
+        /**
+         * Run this code.
+         * @param env The environment in which to run it
+         * @return The value computed
+         * @throws FnPlotException if a runtime error occurs
+         */
+        public FnPlotValue<?> eval(Environment<FnPlotValue<?>> env) throws FnPlotException;
+    }
+
+    /**
+     * A user defined function created by this engine, which carries the
+     * compiled code of its body along with it.
+     */
+    public static class ClosureFunction extends FnPlotFunction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Code body;
+
+        public ClosureFunction(ExpFunction funExp, Environment<FnPlotValue<?>> closingEnv,
+                               Code body) {
+            super(funExp, closingEnv);
+            this.body = body;
+        }
+
+        /**
+         * @return The compiled code of the body of this function
+         */
+        public Code getBody() {
+            return body;
+        }
+    }
+
+    /**
+     * A call in tail position of the body of a function, which has not been
+     * made yet.  It never escapes from {@link #call(Code, Environment)}.
+     */
+    private static final class TailCall extends FnPlotValue<TailCall> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient Code body;
+        private final transient Environment<FnPlotValue<?>> env;
+
+        TailCall(Code body, Environment<FnPlotValue<?>> env) {
+            this.body = body;
+            this.env = env;
+        }
+
+        @Override
+        public FnPlotType getType() {
+            return FnPlotType.FUNCTION;
+        }
+    }
+
+    private final Environment<FnPlotValue<?>> globalEnv;
+    private Plotter plotter;
+    private boolean specializing = true;
+    /** Whether the node being converted is in tail position of a body. */
+    private boolean tail;
+
+    public ClosureEvaluator() {
+        globalEnv = new Environment<>();
+    }
+
+    /**
+     * @return <code>true</code> if arithmetic nodes specialise themselves
+     * on the types of their operands.
+     */
+    public boolean isSpecializing() {
+        return specializing;
+    }
+
+    /**
+     * Choose between self-specialising arithmetic nodes and plain closures
+     * that always use the generic arithmetic of FnPlotValue.  This affects
+     * only code converted after the call.
+     * @param specializing <code>true</code> to use specialising nodes
+     */
+    public void setSpecializing(final boolean specializing) {
+        this.specializing = specializing;
+    }
+
+    @Override
+    public Environment<FnPlotValue<?>> getGlobalEnv() {
+        return globalEnv;
+    }
+
+    @Override
+    public Plotter getPlotter() {
+        return plotter;
+    }
+
+    @Override
+    public void setPlotter(final Plotter plotter) {
+        this.plotter = plotter;
+    }
+
+    @Override
+    public FnPlotValue<?> run(final ArithProgram p, final Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return compile(p).eval(env);
+    }
+
+    /**
+     * Convert the given AST into closures.
+     * @param node The root of the AST (program, statement or expression)
+     * @return The closure that computes the value of the AST
+     * @throws FnPlotException if the AST cannot be converted
+     */
+    public Code compile(final Statement node) throws FnPlotException {
+        return node.visit(this, null);
+    }
+
+    private Code bodyOf(final FnPlotFunction fun) throws FnPlotException {
+        if (fun instanceof ClosureFunction) {
+            return ((ClosureFunction) fun).getBody();
+        } else {
+            // a function created by some other engine
+            return body(fun.getFunExp());
+        }
+    }
+
+    /**
+     * Convert the body of a function, in which the calls in tail position
+     * are left pending.
+     */
+    private Code body(final ExpFunction defn) throws FnPlotException {
+        final boolean wasTail = tail;
+        tail = true;
+        try {
+            return defn.getBody().visit(this, null);
+        } finally {
+            tail = wasTail;
+        }
+    }
+
+    /**
+     * Convert a node whose value is used by its parent, so that it is not in
+     * tail position.
+     */
+    private Code operand(final Statement node) throws FnPlotException {
+        final boolean wasTail = tail;
+        tail = false;
+        try {
+            return node.visit(this, null);
+        } finally {
+            tail = wasTail;
+        }
+    }
+
+    /**
+     * Run the body of a function, and then the calls that it leaves pending,
+     * in turn.
+     * @param body The compiled body of the function called
+     * @param env The environment binding the parameters of the function
+     * @return The value of the call
+     * @throws FnPlotException if a runtime error occurs in the call
+     */
+    private static FnPlotValue<?> call(Code body, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        FnPlotValue<?> result = body.eval(env);
+        while (result instanceof TailCall) {
+            final TailCall pending = (TailCall) result;
+            result = pending.body.eval(pending.env);
+        }
+        return result;
+    }
+
+    @Override
+    public Code visitArithProgram(final ArithProgram p, final Void arg) throws FnPlotException {
+        return p.getSeq().visit(this, arg);
+    }
+
+    @Override
+    public Code visitStmtSequence(final StmtSequence sseq, final Void arg) throws FnPlotException {
+        final ArrayList<Statement> seq = sseq.getSeq();
+        final Code[] stmts = new Code[seq.size()];
+        for (int i = 0; i < stmts.length; i++) {
+            stmts[i] = i == stmts.length - 1 ? seq.get(i).visit(this, arg) : operand(seq.get(i));
+        }
+        return env -> {
+            FnPlotValue<?> result = FnPlotValue.make(0);
+            for (final Code s : stmts) {
+                result = s.eval(env);
+            }
+            return result;
+        };
+    }
+
+    @Override
+    public Code visitStmtDefinition(final StmtDefinition sd, final Void arg) throws FnPlotException {
+        final int var = sd.getSymbol();
+        final Code exp = operand(sd.getExp());
+        return env -> {
+            final FnPlotValue<?> result = exp.eval(env);
+            env.put(var, result);
+            return result;
+        };
+    }
+
+    @Override
+    public Code visitStmtLet(final StmtLet let, final Void arg) throws FnPlotException {
+        final ArrayList<Binding> bindings = let.getBindings();
+        final int size = bindings.size();
+        final int[] vars = new int[size];
+        final Code[] valExps = new Code[size];
+        for (int i = 0; i < size; i++) {
+            vars[i] = bindings.get(i).getSymbol();
+            valExps[i] = operand(bindings.get(i).getValExp());
+        }
+        final Code body = let.getBody().visit(this, arg);
+        return env -> {
+            final FnPlotValue<?>[] vals = new FnPlotValue<?>[size];
+            for (int i = 0; i < size; i++) {
+                vals[i] = valExps[i].eval(env);
+            }
+            return body.eval(new Environment<>(vars, vals, env));
+        };
+    }
+
+    @Override
+    public Code visitFunDefn(final ExpFunction defn, final Void arg) throws FnPlotException {
+        final Code body = body(defn);
+        return env -> new ClosureFunction(defn, env, body);
+    }
+
+    @Override
+    public Code visitFunCall(final ExpFunCall callExp, final Void arg) throws FnPlotException {
+        final int name = callExp.getSymbol();
+        final ArrayList<Exp> argExps = callExp.getArguments();
+        final Code[] args = new Code[argExps.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = operand(argExps.get(i));
+        }
+        final boolean inTail = tail;
+        return env -> {
+            final FnPlotFunction fun = (FnPlotFunction) env.get(name);
+            final ArrayList<FnPlotValue<?>> values = new ArrayList<>(args.length);
+            for (final Code a : args) {
+                values.add(a.eval(env));
+            }
+            final Environment<FnPlotValue<?>> newEnv =
+                    new Environment<>(fun.getFunExp().getParameterSymbols(), values,
+                            fun.getClosingEnv());
+            return inTail ? new TailCall(bodyOf(fun), newEnv) : call(bodyOf(fun), newEnv);
+        };
+    }
+
+    @Override
+    public Code visitFunPlot(final ExpPlot exp, final Void arg) throws FnPlotException {
+        final int id = SymbolTable.intern(exp.getItem());
+        final double start = exp.getStart();
+        final double end = exp.getEnd();
+        final Code fun = operand(exp.getMap());
+        return env -> {
+            final double[] xpoints = plotter.sample(start, end);
+            final Point2D[] ypoints = new Point2D[xpoints.length];
+            final Environment<FnPlotValue<?>> newEnv = new Environment<>(new int[0],
+                    new FnPlotValue<?>[0], env);
+            for (int x = 0; x < xpoints.length; x++) {
+                newEnv.put(id, FnPlotValue.make(xpoints[x]));
+                ypoints[x] = new Point2D.Double(xpoints[x], fun.eval(newEnv).doubleValue());
+            }
+            plotter.plot(ypoints);
+            return null;
+        };
+    }
+
+    @Override
+    public Code visitClear(final ExpClear exp, final Void arg) throws FnPlotException {
+        return env -> {
+            plotter.clear();
+            return null;
+        };
+    }
+
+    @Override
+    public Code visitExpAdd(final ExpAdd exp, final Void arg) throws FnPlotException {
+        final Code left = operand(exp.getExpL());
+        final Code right = operand(exp.getExpR());
+        if (specializing) {
+            return new ArithNode(ArithNode.ADD, left, right);
+        }
+        return env -> left.eval(env).add(right.eval(env));
+    }
+
+    @Override
+    public Code visitExpSub(final ExpSub exp, final Void arg) throws FnPlotException {
+        final Code left = operand(exp.getExpL());
+        final Code right = operand(exp.getExpR());
+        if (specializing) {
+            return new ArithNode(ArithNode.SUB, left, right);
+        }
+        return env -> left.eval(env).sub(right.eval(env));
+    }
+
+    @Override
+    public Code visitExpMul(final ExpMul exp, final Void arg) throws FnPlotException {
+        final Code left = operand(exp.getExpL());
+        final Code right = operand(exp.getExpR());
+        if (specializing) {
+            return new ArithNode(ArithNode.MUL, left, right);
+        }
+        return env -> left.eval(env).mul(right.eval(env));
+    }
+
+    @Override
+    public Code visitExpPow(final ExpPow exp, final Void arg) throws FnPlotException {
+        final Code left = operand(exp.getExpL());
+        final Code right = operand(exp.getExpR());
+        if (specializing) {
+            return new ArithNode(ArithNode.POW, left, right);
+        }
+        return env -> left.eval(env).pow(right.eval(env));
+    }
+
+    @Override
+    public Code visitExpDiv(final ExpDiv exp, final Void arg) throws FnPlotException {
+        final Code left = operand(exp.getExpL());
+        final Code right = operand(exp.getExpR());
+        if (specializing) {
+            return new ArithNode(ArithNode.DIV, left, right);
+        }
+        return env -> left.eval(env).div(right.eval(env));
+    }
+
+    @Override
+    public Code visitExpMod(final ExpMod exp, final Void arg) throws FnPlotException {
+        final Code left = operand(exp.getExpL());
+        final Code right = operand(exp.getExpR());
+        if (specializing) {
+            return new ArithNode(ArithNode.MOD, left, right);
+        }
+        return env -> left.eval(env).mod(right.eval(env));
+    }
+
+    @Override
+    public Code visitExpLit(final ExpLit exp, final Void arg) throws FnPlotException {
+        final FnPlotValue<?> val = exp.getVal();
+        return env -> val;
+    }
+
+    @Override
+    public Code visitExpVar(final ExpVar exp, final Void arg) throws FnPlotException {
+        final int var = exp.getSymbol();
+        return env -> env.get(var);
+    }
+
+    @Override
+    public Code visitExpCompare(final ExpCompare exp, final Void arg) throws FnPlotException {
+        final Comparison op = exp.getOp();
+        final Code left = operand(exp.getExpL());
+        final Code right = operand(exp.getExpR());
+        return env -> op.apply(left.eval(env), right.eval(env));
+    }
+
+    @Override
+    public Code visitExpIf(final ExpIf exp, final Void arg) throws FnPlotException {
+        final Code cond = operand(exp.getCondition());
+        final Code thenCode = exp.getThen().visit(this, arg);
+        final Code elseCode = exp.getElse().visit(this, arg);
+        return env -> cond.eval(env).isTrue() ? thenCode.eval(env) : elseCode.eval(env);
+    }
+}
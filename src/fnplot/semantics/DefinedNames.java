@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.semantics;
+
+import fnplot.syntax.Statement;
+import fnplot.sys.FnPlotException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Collects the names defined by the definition statements in an AST.  A
+ * shallow collection stops at lets, functions and plots, since their
+ * bodies are run in frames of their own, and so finds the names defined
+ * in the current frame.
+ *
+ * @author newts
+ */
+public class DefinedNames extends ScopeWalker<Collection<String>> {
+
+    private final boolean deep;
+
+    private DefinedNames(boolean deep) {
+        this.deep = deep;
+    }
+
+    /**
+     * Find every name defined anywhere in an AST, including within the
+     * bodies of lets, functions and plots.
+     * @param node The AST
+     * @return The names defined, in order of appearance, without duplicates
+     * @throws FnPlotException if the AST cannot be traversed
+     */
+    public static Set<String> all(Statement node) throws FnPlotException {
+        Set<String> ids = new LinkedHashSet<>();
+        node.visit(new DefinedNames(true), ids);
+        return ids;
+    }
+
+    /**
+     * Find the names defined in the current frame by an AST, that is, those
+     * defined outside the bodies of any lets, functions or plots within it.
+     * @param node The AST
+     * @return The names defined, in order of appearance, without duplicates
+     * @throws FnPlotException if the AST cannot be traversed
+     */
+    public static Set<String> local(Statement node) throws FnPlotException {
+        Set<String> ids = new LinkedHashSet<>();
+        node.visit(new DefinedNames(false), ids);
+        return ids;
+    }
+
+    @Override
+    protected void define(String id, Collection<String> ids) {
+        ids.add(id);
+    }
+
+    @Override
+    protected Void within(Collection<String> ids, Collection<String> bound, Statement body)
+            throws FnPlotException {
+        return deep ? body.visit(this, ids) : null;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import java.awt.geom.Point2D;
+import java.io.StringReader;
+
+/**
+ * A benchmark of the {@link SwitchEvaluator} against the {@link Evaluator},
+ * which dispatches through the {@link Visitor}.  Each of a set of typical
+ * scripts is run by both, with the plot accelerations of the Evaluator
+ * turned off so that both walk the tree at every sample, and by the
+ * Evaluator with its default settings, for comparison.  The speedup is
+ * the time of the Evaluator over that of the SwitchEvaluator, so that a
+ * figure below 1 means that the switch is the slower.
+ * <p>
+ * Usage: <code>java fnplot.semantics.DispatchBenchmark [samples [rounds]]</code>
+ *
+ * @author newts
+ */
+public class DispatchBenchmark {
+
+    private static final String[] SCRIPTS = {
+        // a polynomial, with every arithmetic operation
+        "plot x^3 - 2 * x^2 + x / 4 + x % 3 for x in [-5 : 5];",
+        // calls of user defined functions
+        "f = fun(t) -> t * t + 1;"
+            + "g = fun(t, a) -> let u = f(t) in u / a + t % 3;"
+            + "plot g(x, 2.5) for x in [-5 : 5];",
+        // nested lets
+        "plot let y = x * 0.5 in let z = y * y in z * (z - y) + 1 for x in [0 : 10];",
+        // a mixture of int and real globals
+        "a = 3; b = 2.5; plot a * x^2 + b * x - a % 2 for x in [-3 : 3];",
+        // functions made by other functions
+        "k = fun(c) -> fun(t) -> c * t + c;"
+            + "plot let h = k(3) in let v = h(x) in v * v for x in [-2 : 2];",
+    };
+
+    /**
+     * A plotter that samples a range evenly and discards what it is given
+     * to plot.
+     */
+    private static final class NullPlotter implements Plotter {
+
+        private final int samples;
+
+        NullPlotter(int samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        public double[] sample(double low, double hi) {
+            double[] result = new double[samples];
+            for (int i = 0; i < samples; i++) {
+                result[i] = low + (hi - low) * i / (samples - 1);
+            }
+            return result;
+        }
+
+        @Override
+        public void plot(Point2D[] points) {
+        }
+
+        @Override
+        public void clear() {
+        }
+    }
+
+    /**
+     * @return The time, in nanoseconds, taken to run the program once
+     */
+    private static long time(Interpreter interp, ArithProgram p) throws Exception {
+        long start = System.nanoTime();
+        interp.run(p, interp.getGlobalEnv());
+        return System.nanoTime() - start;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int samples = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        Evaluator visitor = new Evaluator();
+        visitor.setCompilingPlots(false);
+        visitor.setUnboxedPlots(false);
+        visitor.setPolynomialPlots(false);
+        visitor.setSpecializingPlots(false);
+        visitor.setTieredExecution(false);
+        visitor.setMemoizing(false);
+        visitor.setLazyLets(false);
+        visitor.setInlineCaching(false);
+        visitor.setConvertingClosures(false);
+        Evaluator accelerated = new Evaluator();
+        SwitchEvaluator switching = new SwitchEvaluator();
+        Interpreter[] interps = {visitor, switching, accelerated};
+        for (Interpreter interp : interps) {
+            interp.setPlotter(new NullPlotter(samples));
+        }
+
+        System.out.printf("Per sample, over %d samples (best of %d rounds)%n", samples, rounds);
+        System.out.printf("  %-8s %12s %12s %8s %12s%n", "script", "visitor", "switch",
+                "speedup", "default");
+        for (int i = 0; i < SCRIPTS.length; i++) {
+            FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(SCRIPTS[i])));
+            ArithProgram p = (ArithProgram) parser.parse().value;
+            // alternate between the interpreters, so that none of them
+            // benefits from the order in which they are run
+            long[] best = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+            for (int r = 0; r < rounds; r++) {
+                for (int j = 0; j < interps.length; j++) {
+                    best[j] = Math.min(best[j], time(interps[j], p));
+                }
+            }
+            System.out.printf("  %-8d %9.1f ns %9.1f ns %7.2fx %9.1f ns%n", i + 1,
+                    (double) best[0] / samples, (double) best[1] / samples,
+                    (double) best[0] / best[1], (double) best[2] / samples);
+        }
+    }
+}
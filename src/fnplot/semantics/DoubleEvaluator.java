@@ -0,0 +1,511 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpClear;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.Comparison;
+import fnplot.values.FnPlotInt;
+import fnplot.values.FnPlotValue;
+import java.util.HashMap;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Evaluates purely numeric plot maps on primitive values.  A map that
+ * consists only of arithmetic, comparisons, conditionals, literals,
+ * variables and lets is converted into a tree of {@link Node}s, which compute
+ * their results as <code>double</code>s and <code>int</code>s, so that
+ * sampling the map does not create a {@link FnPlotValue} for every
+ * intermediate result.
+ * <p>
+ * Whether each node computes an int or a real is decided when the map is
+ * converted, from the types of the literals and of the values of its free
+ * variables (the plot variable is always real), so the results are exactly
+ * those of the boxed arithmetic: the left operand decides the type of the
+ * result, and a real used where an int is needed is truncated.  An int
+ * remainder by a constant power of two is computed with a mask.
+ *
+ * @author newts
+ */
+public class DoubleEvaluator implements Visitor<HashMap<String, DoubleEvaluator.Local>, DoubleEvaluator.Node> {
+
+    /**
+     * A numeric expression, as a function of the plot variable.
+     */
+    abstract static class Node implements DoubleUnaryOperator {
+
+        private final boolean integer;
+
+        Node(boolean integer) {
+            this.integer = integer;
+        }
+
+        /**
+         * @return <code>true</code> if this node computes an int
+         */
+        boolean isInteger() {
+            return integer;
+        }
+
+        /**
+         * Compute the value of this node as a real.
+         * @param x The value of the plot variable
+         * @return The value of this node
+         */
+        abstract double eval(double x);
+
+        /**
+         * Compute the value of this node as an int.
+         * @param x The value of the plot variable
+         * @return The value of this node, truncated if it is a real
+         */
+        int evalInt(double x) {
+            return (int) eval(x);
+        }
+
+        @Override
+        public double applyAsDouble(double x) {
+            return eval(x);
+        }
+    }
+
+    private static final class Const extends Node {
+
+        private final double val;
+        private final int intVal;
+
+        Const(FnPlotValue<?> v) throws FnPlotException {
+            super(v.isInteger());
+            val = v.doubleValue();
+            intVal = v.intValue();
+        }
+
+        @Override
+        double eval(double x) {
+            return val;
+        }
+
+        @Override
+        int evalInt(double x) {
+            return intVal;
+        }
+    }
+
+    private static final class Item extends Node {
+
+        Item() {
+            super(false);
+        }
+
+        @Override
+        double eval(double x) {
+            return x;
+        }
+    }
+
+    /**
+     * A variable bound by a let within the map.  Its value is stored by the
+     * {@link Let} that binds it, each time the let is evaluated.
+     */
+    static final class Local extends Node {
+
+        private double val;
+        private int intVal;
+
+        Local(boolean integer) {
+            super(integer);
+        }
+
+        void store(Node value, double x) {
+            if (isInteger()) {
+                intVal = value.evalInt(x);
+                val = intVal;
+            } else {
+                val = value.eval(x);
+                intVal = (int) val;
+            }
+        }
+
+        @Override
+        double eval(double x) {
+            return val;
+        }
+
+        @Override
+        int evalInt(double x) {
+            return intVal;
+        }
+    }
+
+    private static final class Let extends Node {
+
+        private final Local[] locals;
+        private final Node[] values;
+        private final Node body;
+
+        Let(Local[] locals, Node[] values, Node body) {
+            super(body.isInteger());
+            this.locals = locals;
+            this.values = values;
+            this.body = body;
+        }
+
+        private void bind(double x) {
+            for (int i = 0; i < locals.length; i++) {
+                locals[i].store(values[i], x);
+            }
+        }
+
+        @Override
+        double eval(double x) {
+            bind(x);
+            return body.eval(x);
+        }
+
+        @Override
+        int evalInt(double x) {
+            bind(x);
+            return body.evalInt(x);
+        }
+    }
+
+    private static final class Arith extends Node {
+
+        private final int op;
+        private final Node left;
+        private final Node right;
+
+        Arith(int op, Node left, Node right) {
+            super(left.isInteger());
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double eval(double x) {
+            if (isInteger()) {
+                return evalInt(x);
+            }
+            double a = left.eval(x);
+            double b = right.eval(x);
+            switch (op) {
+                case ArithNode.ADD: return a + b;
+                case ArithNode.SUB: return a - b;
+                case ArithNode.MUL: return a * b;
+                case ArithNode.DIV: return a / b;
+                case ArithNode.MOD: return a % b;
+                default: return Math.pow(a, b);
+            }
+        }
+
+        @Override
+        int evalInt(double x) {
+            if (!isInteger()) {
+                return (int) eval(x);
+            }
+            int a = left.evalInt(x);
+            int b = right.evalInt(x);
+            switch (op) {
+                case ArithNode.ADD: return a + b;
+                case ArithNode.SUB: return a - b;
+                case ArithNode.MUL: return a * b;
+                case ArithNode.DIV: return a / b;
+                case ArithNode.MOD: return a % b;
+                default: return FnPlotInt.power(a, b);
+            }
+        }
+    }
+
+    /**
+     * An int remainder by a constant power of two, which is computed with a
+     * mask instead of a division.
+     */
+    private static final class Remainder extends Node {
+
+        private final Node left;
+        private final int divisor;
+
+        Remainder(Node left, int divisor) {
+            super(true);
+            this.left = left;
+            this.divisor = divisor;
+        }
+
+        @Override
+        double eval(double x) {
+            return evalInt(x);
+        }
+
+        @Override
+        int evalInt(double x) {
+            int a = left.evalInt(x);
+            int r = a & (divisor - 1);
+            // the remainder takes the sign of the dividend
+            return a < 0 && r != 0 ? r - divisor : r;
+        }
+    }
+
+    /**
+     * A comparison, which computes the int 1 if it holds and 0 if it does not.
+     * The operands are compared as ints if both are ints, and otherwise as
+     * reals.
+     */
+    private static final class Compare extends Node {
+
+        private final Comparison op;
+        private final Node left;
+        private final Node right;
+
+        Compare(Comparison op, Node left, Node right) {
+            super(true);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        double eval(double x) {
+            return evalInt(x);
+        }
+
+        @Override
+        int evalInt(double x) {
+            boolean holds = left.isInteger() && right.isInteger() ?
+                    op.test(left.evalInt(x), right.evalInt(x)) :
+                    op.test(left.eval(x), right.eval(x));
+            return holds ? 1 : 0;
+        }
+    }
+
+    /**
+     * A conditional, whose branches both compute ints or both compute reals.
+     */
+    private static final class If extends Node {
+
+        private final Node cond;
+        private final Node thenNode;
+        private final Node elseNode;
+
+        If(Node cond, Node thenNode, Node elseNode) {
+            super(thenNode.isInteger());
+            this.cond = cond;
+            this.thenNode = thenNode;
+            this.elseNode = elseNode;
+        }
+
+        private boolean holds(double x) {
+            return cond.isInteger() ? cond.evalInt(x) != 0 : cond.eval(x) != 0.0;
+        }
+
+        @Override
+        double eval(double x) {
+            return holds(x) ? thenNode.eval(x) : elseNode.eval(x);
+        }
+
+        @Override
+        int evalInt(double x) {
+            return holds(x) ? thenNode.evalInt(x) : elseNode.evalInt(x);
+        }
+    }
+
+    private final String item;
+    private final Environment<FnPlotValue<?>> env;
+
+    private DoubleEvaluator(String item, Environment<FnPlotValue<?>> env) {
+        this.item = item;
+        this.env = env;
+    }
+
+    /**
+     * Convert the map of a plot into a function on primitive values.
+     * @param plot The plot expression
+     * @param env The environment in which the plot is evaluated
+     * @return The map as a function of the plot variable, or
+     * <code>null</code> if the map is not purely numeric (or refers to an
+     * unbound or non-numeric variable), in which case it must be evaluated by
+     * walking its AST.
+     */
+    public static DoubleUnaryOperator numericMap(ExpPlot plot, Environment<FnPlotValue<?>> env) {
+        try {
+            return plot.getMap().visit(new DoubleEvaluator(plot.getItem(), env),
+                    new HashMap<>());
+        } catch (FnPlotException e) {
+            return null;
+        }
+    }
+
+    private static FnPlotException notNumeric() {
+        return new FnPlotException("Not a numeric expression");
+    }
+
+    @Override
+    public Node visitArithProgram(ArithProgram p, HashMap<String, Local> arg) throws FnPlotException {
+        throw notNumeric();
+    }
+
+    @Override
+    public Node visitStmtSequence(StmtSequence sseq, HashMap<String, Local> arg) throws FnPlotException {
+        throw notNumeric();
+    }
+
+    @Override
+    public Node visitStmtDefinition(StmtDefinition sd, HashMap<String, Local> arg) throws FnPlotException {
+        throw notNumeric();
+    }
+
+    @Override
+    public Node visitStmtLet(StmtLet let, HashMap<String, Local> arg) throws FnPlotException {
+        int n = let.getBindings().size();
+        Local[] locals = new Local[n];
+        Node[] values = new Node[n];
+        HashMap<String, Local> inner = new HashMap<>(arg);
+        for (int i = 0; i < n; i++) {
+            Binding b = let.getBindings().get(i);
+            values[i] = b.getValExp().visit(this, arg);
+            locals[i] = new Local(values[i].isInteger());
+            inner.put(b.getVar(), locals[i]);
+        }
+        return new Let(locals, values, let.getBody().visit(this, inner));
+    }
+
+    @Override
+    public Node visitFunDefn(ExpFunction fd, HashMap<String, Local> arg) throws FnPlotException {
+        throw notNumeric();
+    }
+
+    @Override
+    public Node visitFunCall(ExpFunCall fc, HashMap<String, Local> arg) throws FnPlotException {
+        throw notNumeric();
+    }
+
+    @Override
+    public Node visitFunPlot(ExpPlot fp, HashMap<String, Local> arg) throws FnPlotException {
+        throw notNumeric();
+    }
+
+    @Override
+    public Node visitClear(ExpClear clear, HashMap<String, Local> arg) throws FnPlotException {
+        throw notNumeric();
+    }
+
+    @Override
+    public Node visitExpAdd(ExpAdd exp, HashMap<String, Local> arg) throws FnPlotException {
+        return new Arith(ArithNode.ADD, exp.getExpL().visit(this, arg),
+                exp.getExpR().visit(this, arg));
+    }
+
+    @Override
+    public Node visitExpSub(ExpSub exp, HashMap<String, Local> arg) throws FnPlotException {
+        return new Arith(ArithNode.SUB, exp.getExpL().visit(this, arg),
+                exp.getExpR().visit(this, arg));
+    }
+
+    @Override
+    public Node visitExpMul(ExpMul exp, HashMap<String, Local> arg) throws FnPlotException {
+        return new Arith(ArithNode.MUL, exp.getExpL().visit(this, arg),
+                exp.getExpR().visit(this, arg));
+    }
+
+    @Override
+    public Node visitExpPow(ExpPow exp, HashMap<String, Local> arg) throws FnPlotException {
+        return new Arith(ArithNode.POW, exp.getExpL().visit(this, arg),
+                exp.getExpR().visit(this, arg));
+    }
+
+    @Override
+    public Node visitExpDiv(ExpDiv exp, HashMap<String, Local> arg) throws FnPlotException {
+        return new Arith(ArithNode.DIV, exp.getExpL().visit(this, arg),
+                exp.getExpR().visit(this, arg));
+    }
+
+    @Override
+    public Node visitExpMod(ExpMod exp, HashMap<String, Local> arg) throws FnPlotException {
+        Node left = exp.getExpL().visit(this, arg);
+        Node right = exp.getExpR().visit(this, arg);
+        if (left.isInteger() && right instanceof Const) {
+            int divisor = right.evalInt(0);
+            if (divisor > 0 && (divisor & (divisor - 1)) == 0) {
+                return new Remainder(left, divisor);
+            }
+        }
+        return new Arith(ArithNode.MOD, left, right);
+    }
+
+    @Override
+    public Node visitExpLit(ExpLit exp, HashMap<String, Local> arg) throws FnPlotException {
+        if (!exp.getVal().isNumber()) {
+            throw notNumeric();
+        }
+        return new Const(exp.getVal());
+    }
+
+    @Override
+    public Node visitExpVar(ExpVar exp, HashMap<String, Local> arg) throws FnPlotException {
+        Local local = arg.get(exp.getVar());
+        if (local != null) {
+            return local;
+        }
+        if (exp.getVar().equals(item)) {
+            return new Item();
+        }
+        FnPlotValue<?> val = env.get(exp.getSymbol());
+        if (!val.isNumber()) {
+            throw notNumeric();
+        }
+        return new Const(val);
+    }
+
+    @Override
+    public Node visitExpCompare(ExpCompare exp, HashMap<String, Local> arg) throws FnPlotException {
+        return new Compare(exp.getOp(), exp.getExpL().visit(this, arg),
+                exp.getExpR().visit(this, arg));
+    }
+
+    @Override
+    public Node visitExpIf(ExpIf exp, HashMap<String, Local> arg) throws FnPlotException {
+        Node thenNode = exp.getThen().visit(this, arg);
+        Node elseNode = exp.getElse().visit(this, arg);
+        if (thenNode.isInteger() != elseNode.isInteger()) {
+            // the type of the result would only be known when it is sampled
+            throw notNumeric();
+        }
+        return new If(exp.getCondition().visit(this, arg), thenNode, elseNode);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.semantics;
+
+import fnplot.vm.VirtualMachine;
+
+/**
+ * The available execution engines.  The engine used by the front ends is
+ * chosen by the system property <code>fnplot.engine</code> (e.g.
+ * <code>-Dfnplot.engine=closure</code>), and defaults to the tree walking
+ * {@link Evaluator}.
+ *
+ * @author newts
+ */
+public enum Engine {
+    /** The reference tree walking interpreter. */
+    TREE("tree") {
+        @Override
+        public Interpreter create() {
+            return new Evaluator();
+        }
+    },
+
+    /** Walks the tree, dispatching on the kind of each node with a switch. */
+    SWITCH("switch") {
+        @Override
+        public Interpreter create() {
+            return new SwitchEvaluator();
+        }
+    },
+
+    /** Walks the tree with explicit stacks in the heap, not the Java stack. */
+    STACK("stack") {
+        @Override
+        public Interpreter create() {
+            return new StackEvaluator();
+        }
+
+        @Override
+        public boolean isStackless() {
+            return true;
+        }
+    },
+
+    /** Compiles each expression into a tree of closures before running it. */
+    CLOSURE("closure") {
+        @Override
+        public Interpreter create() {
+            return new ClosureEvaluator();
+        }
+    },
+
+    /** Resolves variables to lexical addresses and keeps them in array frames. */
+    FRAME("frame") {
+        @Override
+        public Interpreter create() {
+            return new FrameEvaluator();
+        }
+    },
+
+    /** Compiles programs to instructions for a stack based virtual machine. */
+    VM("vm") {
+        @Override
+        public Interpreter create() {
+            return new VirtualMachine();
+        }
+    };
+
+    /** The name of the system property used to select the engine. */
+    public static final String PROPERTY = "fnplot.engine";
+
+    private final String name;
+
+    Engine(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return The name by which this engine is selected
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return A new interpreter that uses this engine
+     */
+    public abstract Interpreter create();
+
+    /**
+     * @return <code>true</code> if this engine runs a program without
+     * recursing on the Java stack, however deeply the program is nested
+     */
+    public boolean isStackless() {
+        return false;
+    }
+
+    /**
+     * Find the engine with the given name.
+     * @param name The name of the engine (case insensitive)
+     * @return The engine with that name
+     * @throws IllegalArgumentException if there is no such engine
+     */
+    public static Engine forName(String name) {
+        for (Engine e : values()) {
+            if (e.name.equalsIgnoreCase(name)) {
+                return e;
+            }
+        }
+        throw new IllegalArgumentException("Unknown engine: " + name);
+    }
+
+    /**
+     * @return The engine selected by the <code>fnplot.engine</code> system
+     * property, or the tree walker if it is not set.
+     */
+    public static Engine getDefault() {
+        return forName(System.getProperty(PROPERTY, TREE.name));
+    }
+}
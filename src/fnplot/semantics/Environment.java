@@ -8,7 +8,9 @@ import java.util.*;
  * An instance of class <code>Environment</code> maintains a
  * collection of bindings from valid identifiers to integers.
  * It supports storing and retrieving bindings, just as would
- * be expected in any dictionary.
+ * be expected in any dictionary.  Identifiers are keyed by their
+ * symbols in the {@link SymbolTable}, so a binding may be looked up
+ * either by name or, more cheaply, by symbol.
  *
  * @author <a href="mailto:dcoore@uwimona.edu.jm">Daniel Coore</a>
  * @version 1.0
@@ -16,15 +18,135 @@ import java.util.*;
  */
 public class Environment<T extends FnPlotValue<?>> {
 
-    HashMap<String, T> dictionary;
+    /**
+     * A map from symbols to values, kept in an open addressed table whose
+     * size is a power of two.  Since symbols are dense, a symbol is usually
+     * found in the slot that it indexes, with no probing.
+     */
+    static final class SymbolMap<T> {
+
+	private static final int EMPTY = -1;
+
+	private int[] keys;
+	private Object[] values;
+	private int size;
+
+	SymbolMap(int expected) {
+	    int capacity = 2;
+	    while (capacity < expected * 2) {
+		capacity <<= 1;
+	    }
+	    keys = new int[capacity];
+	    Arrays.fill(keys, EMPTY);
+	    values = new Object[capacity];
+	}
+
+	@SuppressWarnings("unchecked")
+	T get(int symbol) {
+	    int mask = keys.length - 1;
+	    for (int i = symbol & mask; ; i = (i + 1) & mask) {
+		int k = keys[i];
+		if (k == symbol) {
+		    return (T) values[i];
+		} else if (k == EMPTY) {
+		    return null;
+		}
+	    }
+	}
+
+	boolean containsKey(int symbol) {
+	    int mask = keys.length - 1;
+	    for (int i = symbol & mask; ; i = (i + 1) & mask) {
+		int k = keys[i];
+		if (k == symbol) {
+		    return true;
+		} else if (k == EMPTY) {
+		    return false;
+		}
+	    }
+	}
+
+	void put(int symbol, T value) {
+	    if ((size + 1) * 2 > keys.length) {
+		resize(keys.length * 2);
+	    }
+	    int mask = keys.length - 1;
+	    int i = symbol & mask;
+	    while (keys[i] != symbol && keys[i] != EMPTY) {
+		i = (i + 1) & mask;
+	    }
+	    if (keys[i] == EMPTY) {
+		keys[i] = symbol;
+		size++;
+	    }
+	    values[i] = value;
+	}
+
+	void remove(int symbol) {
+	    int mask = keys.length - 1;
+	    int i = symbol & mask;
+	    while (keys[i] != symbol) {
+		if (keys[i] == EMPTY) {
+		    return;
+		}
+		i = (i + 1) & mask;
+	    }
+	    // shift back the entries after the gap that probed past it
+	    for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+		int home = keys[j] & mask;
+		if (((j - home) & mask) >= ((j - i) & mask)) {
+		    keys[i] = keys[j];
+		    values[i] = values[j];
+		    i = j;
+		}
+	    }
+	    keys[i] = EMPTY;
+	    values[i] = null;
+	    size--;
+	}
+
+	private void resize(int capacity) {
+	    int[] oldKeys = keys;
+	    Object[] oldValues = values;
+	    keys = new int[capacity];
+	    Arrays.fill(keys, EMPTY);
+	    values = new Object[capacity];
+	    size = 0;
+	    for (int i = 0; i < oldKeys.length; i++) {
+		if (oldKeys[i] != EMPTY) {
+		    @SuppressWarnings("unchecked")
+		    T value = (T) oldValues[i];
+		    put(oldKeys[i], value);
+		}
+	    }
+	}
+
+	/**
+	 * @return the symbols bound in this map, in no particular order.
+	 */
+	int[] symbols() {
+	    int[] result = new int[size];
+	    int n = 0;
+	    for (int k : keys) {
+		if (k != EMPTY) {
+		    result[n++] = k;
+		}
+	    }
+	    return result;
+	}
+    }
+
+    SymbolMap<T> dictionary;
     Environment<T> parent = null;
+    Environment<T> root = this;
+    int version = 0;
 
     /**
      * Create a new (empty) top level Environment.
      *
      */
     public Environment() {
-	dictionary = new HashMap<>();
+	dictionary = new SymbolMap<>(8);
     }
 
     /**
@@ -38,7 +160,7 @@ public class Environment<T extends FnPlotValue<?>> {
      * have the same length.
      */
     public Environment(String[] ids, T[] values) {
-	dictionary = new HashMap<>();
+	dictionary = new SymbolMap<>(ids.length);
 	for (int i = 0; i < ids.length; i++) {
 	    put(ids[i], values[i]);
 	}
@@ -54,7 +176,26 @@ public class Environment<T extends FnPlotValue<?>> {
     public Environment(String[] ids, T[] values,
 		       Environment<T> p) {
 	parent = p;
-	dictionary = new HashMap<>();
+	root = p == null ? this : p.root;
+	dictionary = new SymbolMap<>(ids.length);
+	for (int i = 0; i < ids.length; i++) {
+	    put(ids[i], values[i]);
+	}
+    }
+
+    /**
+     * Create a new environment that extends a given one with some new
+     * bindings, whose identifiers are given by their symbols.
+     * @param ids The symbols of the identifiers of the new bindings
+     * @param values The values of the new bindings
+     * @param p The environment being extended, which will be the parent of the 
+     * new environment that is created.
+     * @see SymbolTable
+     */
+    public Environment(int[] ids, T[] values, Environment<T> p) {
+	parent = p;
+	root = p == null ? this : p.root;
+	dictionary = new SymbolMap<>(ids.length);
 	for (int i = 0; i < ids.length; i++) {
 	    put(ids[i], values[i]);
 	}
@@ -69,12 +210,31 @@ public class Environment<T extends FnPlotValue<?>> {
      */
     public Environment(ArrayList<String> ids, ArrayList<T> values, Environment<T> env) {
         parent = env;
-        dictionary = new HashMap<>();
+        root = env == null ? this : env.root;
+        dictionary = new SymbolMap<>(ids.size());
         for (int i = 0; i < ids.size(); i++) {
             put(ids.get(i), values.get(i));
         }
     }
 
+    /**
+     * Create a new environment that extends a given one with some new
+     * bindings, whose identifiers are given by their symbols.
+     * @param ids The symbols of the identifiers of the new bindings
+     * @param values The values of the new bindings
+     * @param env The environment being extended, which will be the parent of the 
+     * new environment that is created.
+     * @see SymbolTable
+     */
+    public Environment(int[] ids, ArrayList<T> values, Environment<T> env) {
+        parent = env;
+        root = env == null ? this : env.root;
+        dictionary = new SymbolMap<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            put(ids[i], values.get(i));
+        }
+    }
+
     /**
      * Create an instance of a global environment suitable for
      * evaluating an program.
@@ -97,7 +257,47 @@ public class Environment<T extends FnPlotValue<?>> {
      * @param value the value to which the name is bound.
      */
     public void put(String id, T value) {
+	put(SymbolTable.intern(id), value);
+    }
+
+    /**
+     * Store a binding for the identifier with the given symbol.
+     *
+     * @param id the symbol of the name to be bound
+     * @param value the value to which the name is bound.
+     */
+    public void put(int id, T value) {
 	dictionary.put(id, value);
+	version++;
+    }
+
+    /**
+     * Return the number of bindings that have been made in this environment
+     * (not counting those of its ancestors).  Code that has captured the
+     * values of some bindings is still valid while the version of every
+     * environment in which it looked them up is unchanged.
+     *
+     * @return the version of this environment.
+     */
+    public int getVersion() {
+	return version;
+    }
+
+    /**
+     * @return the environment that this one extends, or <code>null</code> if
+     * it is a top level environment.
+     */
+    public Environment<T> getParent() {
+	return parent;
+    }
+
+    /**
+     * @return the top level environment at the root of the chain of
+     * environments that this one extends (which is this environment, if it
+     * is a top level one).
+     */
+    public Environment<T> getRoot() {
+	return root;
     }
 
     /**
@@ -109,14 +309,80 @@ public class Environment<T extends FnPlotValue<?>> {
      * @exception FnPlotException if <code>id</code> is unbound
      */
     public T get(String id) throws FnPlotException {
-	T result = dictionary.get(id);
-	if (result == null)
-            if (parent == null) 
-                throw new FnPlotException("Unbound variable " + id);
-            else
-                return parent.get(id);
-	else
-	    return result;
+	int symbol = SymbolTable.lookup(id);
+	if (symbol < 0)
+	    throw new FnPlotException("Unbound variable " + id);
+	return get(symbol);
+    }
+
+    /**
+     * Return the value bound to the identifier with the given symbol.
+     *
+     * @param id the symbol of the identifier.
+     * @return the value associated with the identifier in
+     * this environment.
+     * @exception FnPlotException if the identifier is unbound
+     */
+    public T get(int id) throws FnPlotException {
+	// a loop rather than a recursion, since the chain may be very long
+	for (Environment<T> e = this; e != null; e = e.parent) {
+	    T result = e.getHere(id);
+	    if (result != null)
+		return result;
+	}
+	throw new FnPlotException("Unbound variable " + SymbolTable.name(id));
+    }
+
+    /**
+     * Return the value bound to the identifier with the given symbol in
+     * this environment itself, rather than in one of its ancestors.
+     *
+     * @param id the symbol of the identifier.
+     * @return the value, or <code>null</code> if this environment does not
+     * bind the identifier.
+     * @exception FnPlotException if the value cannot be computed
+     */
+    T getHere(int id) throws FnPlotException {
+	return dictionary.get(id);
+    }
+
+    /**
+     * Determine whether the given identifier is bound in this environment
+     * (or any of its ancestors).
+     *
+     * @param id the identifier.
+     * @return <code>true</code> if looking up <code>id</code> would succeed.
+     */
+    public boolean isBound(String id) {
+	int symbol = SymbolTable.lookup(id);
+	return symbol >= 0 && isBound(symbol);
+    }
+
+    /**
+     * Determine whether the identifier with the given symbol is bound in
+     * this environment (or any of its ancestors).
+     *
+     * @param id the symbol of the identifier.
+     * @return <code>true</code> if looking up <code>id</code> would succeed.
+     */
+    public boolean isBound(int id) {
+	for (Environment<T> e = this; e != null; e = e.parent) {
+	    if (e.isBoundHere(id))
+		return true;
+	}
+	return false;
+    }
+
+    /**
+     * Determine whether the identifier with the given symbol is bound in
+     * this environment itself, rather than in one of its ancestors.
+     *
+     * @param id the symbol of the identifier.
+     * @return <code>true</code> if looking up <code>id</code> would stop at
+     * this environment.
+     */
+    public boolean isBoundHere(int id) {
+	return dictionary.containsKey(id);
     }
 
     /**
@@ -129,9 +395,8 @@ public class Environment<T extends FnPlotValue<?>> {
     public String toString() {
 	StringBuffer result = new StringBuffer();
 
-	Iterator<String> iter = dictionary.keySet().iterator();
-	while (iter.hasNext()) {
-	    result = result.append(iter.next());
+	for (int symbol : dictionary.symbols()) {
+	    result = result.append(SymbolTable.name(symbol));
 	}
 	return result.toString();
     }
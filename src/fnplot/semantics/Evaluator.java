@@ -19,15 +19,22 @@ import fnplot.syntax.Exp;
 import fnplot.syntax.ExpFunction;
 import fnplot.syntax.ExpFunCall;
 import fnplot.syntax.ExpClear;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.NodeKind;
+import fnplot.compiler.CodeCache;
+import fnplot.compiler.CompiledFunction;
+import fnplot.optimizer.Specializer;
 import fnplot.sys.FnPlotException;
 import fnplot.values.FnPlotFunction;
 import fnplot.values.FnPlotReal;
 import fnplot.values.FnPlotValue;
 import java.awt.geom.Point2D;
 import java.util.*;
+import java.util.function.DoubleUnaryOperator;
 
 public class Evaluator 
-    implements Visitor<Environment<FnPlotValue<?>>, FnPlotValue<?>> {
+    implements Visitor<Environment<FnPlotValue<?>>, FnPlotValue<?>>, Interpreter {
     /* For this visitor, the argument passed to all visit
        methods will be the environment object that used to
        be passed to the eval method in the first style of
@@ -46,6 +53,72 @@ public class Evaluator
      */
     private Plotter plotter;
 
+    /**
+     * Whether plot maps should be compiled to bytecode before sampling.
+     */
+    private boolean compilingPlots = true;
+
+    /**
+     * Whether numeric plot maps that are not compiled should be evaluated on
+     * primitive values.
+     */
+    private boolean unboxedPlots = true;
+
+    /**
+     * Whether plot maps that are polynomials in the plot variable should be
+     * evaluated in Horner form.
+     */
+    private boolean polynomialPlots = true;
+
+    /**
+     * Whether the calls made by plot maps should be specialised for their
+     * arguments that are the same at every sample.
+     */
+    private boolean specializingPlots = true;
+
+    /**
+     * Whether hot functions and plot maps should be promoted from tree
+     * walking to compiled code as they run.
+     */
+    private boolean tieredExecution = true;
+
+    /**
+     * Whether the results of calls of pure functions should be remembered.
+     */
+    private boolean memoizing = true;
+
+    /**
+     * Whether let bindings without effects should be evaluated only when
+     * they are used.
+     */
+    private boolean lazyLets = true;
+
+    /**
+     * Whether closures should copy the local variables that they use,
+     * instead of keeping the environment in which they were created.
+     */
+    private boolean convertingClosures = true;
+
+    /**
+     * Whether references to global names should remember what they found.
+     */
+    private boolean inlineCaching = true;
+
+    /**
+     * The policy that decides when to promote code to a faster tier.
+     */
+    private final TierPolicy tiers = new TierPolicy();
+
+    /**
+     * The policy that decides which functions to memoise.
+     */
+    private final Memoizer memos = new Memoizer();
+
+    /**
+     * The cache of the functions specialised for plots.
+     */
+    private final Specializer specializer = new Specializer();
+
     public Evaluator() {
 	// perform initialisations here
 	result = FnPlotValue.make(0);
@@ -57,6 +130,7 @@ public class Evaluator
      * parent environemnt of all environments that might arise during the 
      * tree walk of an AST that this Evaluator instance may perform.
      */
+    @Override
     public Environment<FnPlotValue<?>> getGlobalEnv() {
         return globalEnv;
     }
@@ -64,6 +138,7 @@ public class Evaluator
     /**
      * @return The plotting device currently being used by this interpreter
      */
+    @Override
     public Plotter getPlotter() {
         return plotter;
     }
@@ -72,10 +147,205 @@ public class Evaluator
      * Set the plotting device.
      * @param plotter The plotting device to be used by this interpreter.
      */
+    @Override
     public void setPlotter(final Plotter plotter) {
         this.plotter = plotter;
     }
 
+    /**
+     * @return <code>true</code> if this interpreter compiles plot maps to
+     * bytecode whenever it can.
+     */
+    public boolean isCompilingPlots() {
+        return compilingPlots;
+    }
+
+    /**
+     * Enable or disable the compilation of plot maps.  When disabled, or when
+     * a map uses a construct that the compiler does not support, the map is
+     * evaluated by walking its AST for every sample.
+     * @param compilingPlots <code>true</code> to enable compilation
+     */
+    public void setCompilingPlots(final boolean compilingPlots) {
+        this.compilingPlots = compilingPlots;
+    }
+
+    /**
+     * @return <code>true</code> if this interpreter evaluates numeric plot
+     * maps on primitive values when they are not compiled.
+     */
+    public boolean isUnboxedPlots() {
+        return unboxedPlots;
+    }
+
+    /**
+     * Enable or disable the evaluation of plot maps on primitive values (by
+     * a {@link DoubleEvaluator}).  This applies only to maps that are not
+     * compiled to bytecode, and that consist solely of arithmetic, literals
+     * and numeric variables.
+     * @param unboxedPlots <code>true</code> to enable unboxed evaluation
+     */
+    public void setUnboxedPlots(final boolean unboxedPlots) {
+        this.unboxedPlots = unboxedPlots;
+    }
+
+    /**
+     * @return <code>true</code> if this interpreter evaluates plot maps that
+     * are polynomials in the plot variable in Horner form.
+     */
+    public boolean isPolynomialPlots() {
+        return polynomialPlots;
+    }
+
+    /**
+     * Enable or disable the evaluation of polynomial plot maps in Horner form
+     * (see {@link Polynomial}).  This takes precedence over compilation, but
+     * its results may differ from those of the other strategies in their
+     * last few bits.
+     * @param polynomialPlots <code>true</code> to enable Horner evaluation
+     */
+    public void setPolynomialPlots(final boolean polynomialPlots) {
+        this.polynomialPlots = polynomialPlots;
+    }
+
+    /**
+     * @return <code>true</code> if this interpreter specialises the functions
+     * called by plot maps for their constant arguments.
+     */
+    public boolean isSpecializingPlots() {
+        return specializingPlots;
+    }
+
+    /**
+     * Enable or disable the specialisation of the functions called by plot
+     * maps (see {@link Specializer}).  A specialised call is then evaluated
+     * by whichever of the other strategies applies to it.
+     * @param specializingPlots <code>true</code> to enable specialisation
+     */
+    public void setSpecializingPlots(final boolean specializingPlots) {
+        this.specializingPlots = specializingPlots;
+    }
+
+    /**
+     * @return <code>true</code> if this interpreter promotes hot functions and
+     * plot maps to compiled code as it runs.
+     */
+    public boolean isTieredExecution() {
+        return tieredExecution;
+    }
+
+    /**
+     * Enable or disable tiered execution.  When enabled, functions and plot
+     * maps are interpreted until they have run often enough (as decided by
+     * the {@link #getTierPolicy() tier policy}) to be worth compiling.  When
+     * disabled, functions are always interpreted, and plot maps are compiled
+     * before they are first sampled (if compiling plots is enabled).
+     * @param tieredExecution <code>true</code> to enable tiered execution
+     */
+    public void setTieredExecution(final boolean tieredExecution) {
+        this.tieredExecution = tieredExecution;
+    }
+
+    /**
+     * @return The policy that decides when code is promoted to a faster tier,
+     * which may be adjusted, or asked to trace changes of tier
+     */
+    public TierPolicy getTierPolicy() {
+        return tiers;
+    }
+
+    /**
+     * @return <code>true</code> if this interpreter remembers the results of
+     * calls of pure functions.
+     */
+    public boolean isMemoizing() {
+        return memoizing;
+    }
+
+    /**
+     * Enable or disable memoisation.  When enabled, the results of calls of
+     * the functions chosen by the {@link #getMemoizer() memoizer} are kept,
+     * keyed by their arguments, and a later call with the same arguments
+     * returns the kept result without evaluating the body again.
+     * @param memoizing <code>true</code> to enable memoisation
+     */
+    public void setMemoizing(final boolean memoizing) {
+        this.memoizing = memoizing;
+    }
+
+    /**
+     * @return <code>true</code> if this interpreter evaluates the bindings of
+     * lets on demand, where it can.
+     */
+    public boolean isLazyLets() {
+        return lazyLets;
+    }
+
+    /**
+     * Enable or disable lazy let bindings.  When enabled, a binding whose
+     * evaluation has no effect (as decided by {@link LazyBindings}) is
+     * evaluated when its name is first looked up, if it ever is, instead of
+     * before the body of the let is entered.  An error in a binding is then
+     * reported only if, and where, the binding is used.
+     * @param lazyLets <code>true</code> to enable lazy bindings
+     */
+    public void setLazyLets(final boolean lazyLets) {
+        this.lazyLets = lazyLets;
+    }
+
+    /**
+     * @return <code>true</code> if the closures created by this interpreter
+     * copy the local variables that they use.
+     */
+    public boolean isConvertingClosures() {
+        return convertingClosures;
+    }
+
+    /**
+     * Enable or disable closure conversion (see {@link ClosureConverter}).
+     * When enabled, a function created inside a let, plot or function keeps
+     * only the local variables that it refers to, rather than every frame
+     * that encloses it.  This takes effect for programs run from then on.
+     * @param convertingClosures <code>true</code> to convert closures
+     */
+    public void setConvertingClosures(final boolean convertingClosures) {
+        this.convertingClosures = convertingClosures;
+    }
+
+    /**
+     * @return <code>true</code> if references to global names in the programs
+     * run by this interpreter cache the values that they find.
+     */
+    public boolean isInlineCaching() {
+        return inlineCaching;
+    }
+
+    /**
+     * Enable or disable inline caching (see {@link InlineCache}).  When
+     * enabled, each reference to a global variable or function in a program
+     * run in a top level environment remembers the value that it found,
+     * until a definition is made in the global environment.  This takes
+     * effect for programs run from then on.
+     * @param inlineCaching <code>true</code> to cache global lookups
+     */
+    public void setInlineCaching(final boolean inlineCaching) {
+        this.inlineCaching = inlineCaching;
+    }
+
+    /**
+     * @return The policy that decides which functions are memoised, which may
+     * be adjusted, or asked to trace them
+     */
+    public Memoizer getMemoizer() {
+        return memos;
+    }
+
+    @Override
+    public FnPlotValue<?> run(final ArithProgram p, final Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return p.visit(this, env);
+    }
+
     /**
      * Visit a node representing the overall program. This will be similar to
      * visiting the sequence of statements that make up the program, but is provided
@@ -92,6 +362,12 @@ public class Evaluator
     @Override
     public FnPlotValue<?> visitArithProgram(final ArithProgram p, final Environment<FnPlotValue<?>> arg)
             throws FnPlotException {
+        if (convertingClosures) {
+            ClosureConverter.convert(p);
+        }
+        if (inlineCaching && arg.getParent() == null) {
+            InlineCaches.install(p);
+        }
         result = p.getSeq().visit(this, arg);
         return result;
     }
@@ -113,75 +389,261 @@ public class Evaluator
     public FnPlotValue<?> visitStmtDefinition(final StmtDefinition sd, final Environment<FnPlotValue<?>> env)
             throws FnPlotException {
         result = sd.getExp().visit(this, env);
-        env.put(sd.getVar(), result);
+        env.put(sd.getSymbol(), result);
         return result;
     }
 
     @Override
     public FnPlotValue<?> visitStmtLet(final StmtLet let, final Environment<FnPlotValue<?>> env)
             throws FnPlotException {
-        final ArrayList<Binding> bindings = let.getBindings();
-        final Exp body = let.getBody();
-
-        final int size = bindings.size();
-        final String[] vars = new String[size];
-        final FnPlotValue<?>[] vals = new FnPlotValue<?>[size];
-        Binding b;
-        for (int i = 0; i < size; i++) {
-            b = bindings.get(i);
-            vars[i] = b.getVar();
-            // evaluate each expression in bindings
-            result = b.getValExp().visit(this, env);
-            vals[i] = result;
-        }
-        // create new env as child of current
-        final Environment<FnPlotValue<?>> newEnv = new Environment<>(vars, vals, env);
-        return body.visit(this, newEnv);
+        return evalTail(let, env);
     }
 
     @Override
     public FnPlotValue<?> visitFunDefn(final ExpFunction defn, final Environment<FnPlotValue<?>> env)
             throws FnPlotException {
-        final FnPlotFunction c = new FnPlotFunction(defn, env);
-        return c;
+        return convertingClosures ? ClosureConverter.close(defn, env) :
+                new FnPlotFunction(defn, env);
     }
 
     @Override
     public FnPlotValue<?> visitFunCall(final ExpFunCall callExp, final Environment<FnPlotValue<?>> env)
             throws FnPlotException {
-        final String name = callExp.getName();
-        final ArrayList<Exp> args = callExp.getArguments();
-        final FnPlotFunction fun = (FnPlotFunction) env.get(name);
-        final ArrayList<FnPlotValue> values = new ArrayList<>();
-        for (final Exp funarg : args) {
-            values.add(funarg.visit(this, env));
+        return evalTail(callExp, env);
+    }
+
+    /**
+     * Evaluate an expression whose value is the value of the call, let,
+     * conditional or sequence that it is in tail position of.  A call in tail
+     * position is made by continuing with the body of the callee in this
+     * loop, instead of by visiting it, so that a chain of tail calls (such as
+     * a recursive loop) runs in constant Java stack space, however long it
+     * is.
+     * @param exp The expression in tail position
+     * @param env The environment in which to evaluate it
+     * @return The value of the expression
+     * @throws FnPlotException if the expression cannot be evaluated
+     */
+    private FnPlotValue<?> evalTail(Exp exp, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        while (true) {
+            switch (exp.getKind()) {
+                case NodeKind.CALL: {
+                    final ExpFunCall callExp = (ExpFunCall) exp;
+                    final String name = callExp.getName();
+                    final InlineCache cache = inlineCaching ? callExp.getCache() : null;
+                    final FnPlotFunction fun = (FnPlotFunction)
+                            (cache == null ? env.get(callExp.getSymbol()) :
+                                    cache.lookup(callExp.getSymbol(), env));
+                    final ArrayList<FnPlotValue<?>> values = new ArrayList<>();
+                    for (final Exp funarg : callExp.getArguments()) {
+                        values.add(funarg.visit(this, env));
+                    }
+                    final MemoTable memo = memoizing ? memos.tableFor(name, fun) : null;
+                    if (memo != null) {
+                        FnPlotValue<?> value = memo.get(values);
+                        if (value == null) {
+                            // not a tail call, since the result must be kept
+                            value = tieredExecution ? compiled(name, fun, values) : null;
+                            if (value == null) {
+                                value = evalTail(fun.getFunExp().getBody(),
+                                        new Environment<>(fun.getFunExp().getParameterSymbols(),
+                                                values, fun.getClosingEnv()));
+                            }
+                            memo.put(values, value);
+                        }
+                        return value;
+                    }
+                    if (tieredExecution) {
+                        final FnPlotValue<?> value = compiled(name, fun, values);
+                        if (value != null) {
+                            return value;
+                        }
+                    }
+                    env = new Environment<>(fun.getFunExp().getParameterSymbols(), values,
+                            fun.getClosingEnv());
+                    exp = fun.getFunExp().getBody();
+                    break;
+                }
+                case NodeKind.LET: {
+                    final StmtLet let = (StmtLet) exp;
+                    final ArrayList<Binding> bindings = let.getBindings();
+                    final boolean[] deferred = lazyLets ? LazyBindings.of(let) : null;
+                    if (deferred != null && contains(deferred, true)) {
+                        final LazyEnvironment frame = new LazyEnvironment(this, env);
+                        for (int i = 0; i < deferred.length; i++) {
+                            final Binding b = bindings.get(i);
+                            if (deferred[i]) {
+                                frame.defer(b.getSymbol(), b.getValExp());
+                            } else {
+                                result = b.getValExp().visit(this, env);
+                                frame.put(b.getSymbol(), result);
+                            }
+                        }
+                        env = frame;
+                        exp = let.getBody();
+                        break;
+                    }
+                    final int size = bindings.size();
+                    final int[] vars = new int[size];
+                    final FnPlotValue<?>[] vals = new FnPlotValue<?>[size];
+                    for (int i = 0; i < size; i++) {
+                        vars[i] = bindings.get(i).getSymbol();
+                        // evaluate each expression in bindings
+                        result = bindings.get(i).getValExp().visit(this, env);
+                        vals[i] = result;
+                    }
+                    // create new env as child of current
+                    env = new Environment<>(vars, vals, env);
+                    exp = let.getBody();
+                    break;
+                }
+                case NodeKind.IF: {
+                    final ExpIf ifExp = (ExpIf) exp;
+                    exp = ifExp.getCondition().visit(this, env).isTrue() ?
+                            ifExp.getThen() : ifExp.getElse();
+                    break;
+                }
+                case NodeKind.SEQUENCE: {
+                    final ArrayList<Statement> seq = ((StmtSequence) exp).getSeq();
+                    final int last = seq.size() - 1;
+                    if (last < 0 || !(seq.get(last) instanceof Exp)) {
+                        return exp.visit(this, env);
+                    }
+                    for (int i = 0; i < last; i++) {
+                        result = seq.get(i).visit(this, env);
+                    }
+                    exp = (Exp) seq.get(last);
+                    break;
+                }
+                default:
+                    return exp.visit(this, env);
+            }
+        }
+    }
+
+    private static boolean contains(boolean[] flags, boolean flag) {
+        for (boolean f : flags) {
+            if (f == flag) {
+                return true;
+            }
         }
-        final Environment newEnv = new Environment(fun.getFunExp().getParameters(), values, fun.getClosingEnv());
-        return fun.getFunExp().getBody().visit(this, newEnv);
+        return false;
+    }
+
+    /**
+     * Make a call with the compiled code of the function, if it has been
+     * promoted to bytecode.
+     * @return The result of the call, or <code>null</code> if it should be
+     * interpreted
+     */
+    private FnPlotValue<?> compiled(String name, FnPlotFunction fun,
+            ArrayList<FnPlotValue<?>> values) throws FnPlotException {
+        final CompiledFunction code = tiers.call(name, fun, values);
+        return code == null ? null : code.apply(values);
     }
 
     @Override
     public FnPlotValue<?> visitFunPlot(final ExpPlot exp, final Environment<FnPlotValue<?>> env)
             throws FnPlotException {
-        final String id = exp.getItem();
+        final Specializer.Call call = specializingPlots ? specializer.specialize(exp, env, this) : null;
+        if (call != null) {
+            final Environment<FnPlotValue<?>> callEnv = new Environment(new ArrayList<>(), new ArrayList<>(), env);
+            callEnv.put(Specializer.NAME, call.getFunction());
+            return plot(new ExpPlot(call.getCall(), exp.getItem(), exp.getStart(), exp.getEnd()), callEnv);
+        }
+        return plot(exp, env);
+    }
+
+    /**
+     * Sample the map of a plot, and plot the resulting points.
+     * @param exp The plot expression
+     * @param env The environment in which the plot is evaluated
+     * @return <code>null</code>, since a plot has no value
+     * @throws FnPlotException if the map cannot be evaluated at some sample
+     */
+    private FnPlotValue<?> plot(final ExpPlot exp, final Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        final int id = SymbolTable.intern(exp.getItem());
         final Double start = exp.getStart();
         final Double end = exp.getEnd();
         final Exp fun = exp.getMap();
         final double[] xpoints = plotter.sample(start, end);
         final Point2D[] ypoints = new Point2D[xpoints.length];
 
-        final Environment<FnPlotValue<?>> newEnv = new Environment(new ArrayList<>(), new ArrayList<>(), env);
+        final Polynomial poly = polynomialPlots ? Polynomial.of(exp, env) : null;
+        if (poly != null) {
+            final double[] yvalues = poly.evaluate(xpoints);
+            for (int x = 0; x < xpoints.length; x++) {
+                ypoints[x] = new Point2D.Double(xpoints[x], yvalues[x]);
+            }
+            this.plotter.plot(ypoints);
+            return null;
+        }
+
+        // with tiered execution, the map is only compiled once it is hot
+        DoubleUnaryOperator compiled = null;
+        long interpreted = xpoints.length;
+        if (compilingPlots) {
+            interpreted = tieredExecution ? tiers.samplesBeforeCompiling(exp) : 0;
+            if (interpreted == 0) {
+                compiled = compilePlot(exp, env);
+                if (tieredExecution) {
+                    tiers.plotCompiled(exp, 0, compiled != null);
+                }
+                interpreted = xpoints.length;
+            }
+        }
+        DoubleUnaryOperator map = compiled;
+        if (map == null && unboxedPlots) {
+            map = DoubleEvaluator.numericMap(exp, env);
+        }
+
+        Environment<FnPlotValue<?>> newEnv = null;
         FnPlotValue y;
         for (int x = 0; x < xpoints.length; x++) {
-            newEnv.put(id, FnPlotValue.make(xpoints[x]));
-            y = fun.visit(this, newEnv);
-            ypoints[x] = new Point2D.Double(xpoints[x], y.doubleValue());
+            if (x == interpreted) {
+                // the map has become hot part way through the plot
+                compiled = compilePlot(exp, env);
+                tiers.plotCompiled(exp, x, compiled != null);
+                if (compiled != null) {
+                    map = compiled;
+                }
+            }
+            if (map != null) {
+                ypoints[x] = new Point2D.Double(xpoints[x], map.applyAsDouble(xpoints[x]));
+            } else {
+                if (newEnv == null) {
+                    newEnv = new Environment(new ArrayList<>(), new ArrayList<>(), env);
+                }
+                newEnv.put(id, FnPlotValue.make(xpoints[x]));
+                y = fun.visit(this, newEnv);
+                ypoints[x] = new Point2D.Double(xpoints[x], y.doubleValue());
+            }
         }
+        exp.countSamples(xpoints.length);
 
         this.plotter.plot(ypoints);
         return null;
     }
 
+    /**
+     * Attempt to compile the map of the given plot.
+     * @param exp The plot expression
+     * @param env The environment in which the plot is evaluated
+     * @return The compiled map, or <code>null</code> if the map could not be
+     * compiled, in which case it should be interpreted instead.  The code of
+     * a map identical to one compiled before is taken from the shared
+     * {@link CodeCache}.
+     */
+    protected DoubleUnaryOperator compilePlot(final ExpPlot exp, final Environment<FnPlotValue<?>> env) {
+        try {
+            return CodeCache.getShared().compilePlot(exp, env);
+        } catch (FnPlotException e) {
+            return null;
+        }
+    }
+
     @Override
     public FnPlotValue<?> visitClear(final ExpClear exp, final Environment<FnPlotValue<?>> env) throws FnPlotException {
         this.plotter.clear();
@@ -244,6 +706,21 @@ public class Evaluator
     @Override
     public FnPlotValue<?> visitExpVar(final ExpVar exp, final Environment<FnPlotValue<?>> env)
 	throws FnPlotException {
-	return env.get(exp.getVar());
+        final InlineCache cache = inlineCaching ? exp.getCache() : null;
+        return cache == null ? env.get(exp.getSymbol()) : cache.lookup(exp.getSymbol(), env);
+    }
+
+    @Override
+    public FnPlotValue<?> visitExpCompare(final ExpCompare exp, final Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        final FnPlotValue<?> val1 = exp.getExpL().visit(this, env);
+        final FnPlotValue<?> val2 = exp.getExpR().visit(this, env);
+        return exp.getOp().apply(val1, val2);
+    }
+
+    @Override
+    public FnPlotValue<?> visitExpIf(final ExpIf exp, final Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return evalTail(exp, env);
     }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+
+/**
+ * An array backed environment frame, used to run ASTs that have been
+ * annotated with lexical addresses by the {@link Resolver}.  Local variables
+ * are found by going up a known number of frames and indexing the slots of
+ * the frame reached.  Global variables are still looked up by name, in the
+ * environment at the root of the chain of frames.
+ *
+ * @author newts
+ */
+public final class Frame {
+
+    private final FnPlotValue<?>[] slots;
+    private final Frame parent;
+    private final Environment<FnPlotValue<?>> globals;
+
+    /**
+     * Create a root frame, which has no slots of its own.
+     * @param globals The environment in which global variables are found
+     */
+    public Frame(Environment<FnPlotValue<?>> globals) {
+        this.slots = new FnPlotValue<?>[0];
+        this.parent = null;
+        this.globals = globals;
+    }
+
+    /**
+     * Create a frame that extends another one.
+     * @param size The number of slots in the new frame
+     * @param parent The frame being extended
+     */
+    public Frame(int size, Frame parent) {
+        this.slots = new FnPlotValue<?>[size];
+        this.parent = parent;
+        this.globals = parent.globals;
+    }
+
+    /**
+     * @return The environment in which global variables are found
+     */
+    public Environment<FnPlotValue<?>> getGlobals() {
+        return globals;
+    }
+
+    /**
+     * Look up a variable by its lexical address.
+     * @param depth The number of frames to go up, or -1 for a global
+     * @param slot The index of the variable in the frame reached
+     * @param id The symbol of the variable (used for globals and for errors)
+     * @return The value of the variable
+     * @throws FnPlotException if the variable has not been given a value
+     */
+    public FnPlotValue<?> get(int depth, int slot, int id) throws FnPlotException {
+        return get(depth, slot, null, id);
+    }
+
+    /**
+     * Look up a variable by its lexical address, falling back on the
+     * bindings that it shadows while its own slot is empty (which happens
+     * when a name defined within a block is used before its definition has
+     * run), just as an {@link Environment} falls back on its parent.
+     * @param depth The number of frames to go up, or -1 for a global
+     * @param slot The index of the variable in the frame reached
+     * @param outer The addresses of the shadowed bindings, innermost first,
+     * as pairs of depth and slot, or <code>null</code> if there are none
+     * @param id The symbol of the variable (used for globals and for errors)
+     * @return The value of the variable
+     * @throws FnPlotException if the variable has not been given a value
+     */
+    public FnPlotValue<?> get(int depth, int slot, int[] outer, int id)
+            throws FnPlotException {
+        if (depth < 0) {
+            return globals.get(id);
+        }
+        FnPlotValue<?> result = slot(depth, slot);
+        if (result == null && outer != null) {
+            for (int i = 0; result == null && i < outer.length; i += 2) {
+                if (outer[i] < 0) {
+                    return globals.get(id);
+                }
+                result = slot(outer[i], outer[i + 1]);
+            }
+        }
+        if (result == null) {
+            throw new FnPlotException("Unbound variable " + SymbolTable.name(id));
+        }
+        return result;
+    }
+
+    private FnPlotValue<?> slot(int depth, int slot) {
+        Frame f = this;
+        for (int i = 0; i < depth; i++) {
+            f = f.parent;
+        }
+        return f.slots[slot];
+    }
+
+    /**
+     * Set the value of a slot of this frame.
+     * @param slot The index of the slot
+     * @param value The new value
+     */
+    public void set(int slot, FnPlotValue<?> value) {
+        slots[slot] = value;
+    }
+}
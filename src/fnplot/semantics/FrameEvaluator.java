@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpClear;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.NodeKind;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotValue;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * A tree walking interpreter for programs that have been annotated with
+ * lexical addresses by the {@link Resolver}.  Local variables live in array
+ * backed {@link Frame}s, so looking one up is an indexed load rather than a
+ * series of hash table lookups, and creating a frame for a let, a function
+ * call or a plot does not create a hash table.  Unbound variables are
+ * reported when a program is resolved, before any of it is run.
+ *
+ * @author newts
+ */
+public class FrameEvaluator implements Interpreter, Visitor<Frame, FnPlotValue<?>> {
+
+    /**
+     * A user defined function created by this interpreter, which closes over
+     * the frame in which it was created.
+     */
+    public static class FrameFunction extends FnPlotFunction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Frame closingFrame;
+
+        public FrameFunction(ExpFunction funExp, Frame closingFrame) {
+            super(funExp, closingFrame.getGlobals());
+            this.closingFrame = closingFrame;
+        }
+
+        /**
+         * @return The frame in which this function was created
+         */
+        public Frame getClosingFrame() {
+            return closingFrame;
+        }
+    }
+
+    private final Environment<FnPlotValue<?>> globalEnv;
+    private final Map<FnPlotFunction, FrameFunction> foreign = new WeakHashMap<>();
+    private Plotter plotter;
+
+    public FrameEvaluator() {
+        globalEnv = new Environment<>();
+    }
+
+    @Override
+    public Environment<FnPlotValue<?>> getGlobalEnv() {
+        return globalEnv;
+    }
+
+    @Override
+    public Plotter getPlotter() {
+        return plotter;
+    }
+
+    @Override
+    public void setPlotter(final Plotter plotter) {
+        this.plotter = plotter;
+    }
+
+    @Override
+    public FnPlotValue<?> run(final ArithProgram p, final Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return Resolver.resolve(p, env).visit(this, new Frame(env));
+    }
+
+    /**
+     * Convert a function created by another interpreter into one that this
+     * interpreter can call, by resolving its body against its closing
+     * environment.
+     */
+    private FrameFunction adopt(final FnPlotFunction fun) throws FnPlotException {
+        FrameFunction result = foreign.get(fun);
+        if (result == null) {
+            final Environment<FnPlotValue<?>> closingEnv = fun.getClosingEnv();
+            final ExpFunction funExp = Resolver.resolveFunction(fun.getFunExp(), closingEnv);
+            result = new FrameFunction(funExp, new Frame(closingEnv));
+            foreign.put(fun, result);
+        }
+        return result;
+    }
+
+    @Override
+    public FnPlotValue<?> visitArithProgram(final ArithProgram p, final Frame frame)
+            throws FnPlotException {
+        return p.getSeq().visit(this, frame);
+    }
+
+    @Override
+    public FnPlotValue<?> visitStmtSequence(final StmtSequence sseq, final Frame frame)
+            throws FnPlotException {
+        FnPlotValue<?> result = FnPlotValue.make(0);
+        for (final Statement s : sseq.getSeq()) {
+            result = s.visit(this, frame);
+        }
+        return result;
+    }
+
+    @Override
+    public FnPlotValue<?> visitStmtDefinition(final StmtDefinition sd, final Frame frame)
+            throws FnPlotException {
+        final FnPlotValue<?> result = sd.getExp().visit(this, frame);
+        if (sd.getDepth() < 0) {
+            frame.getGlobals().put(sd.getSymbol(), result);
+        } else {
+            frame.set(sd.getSlot(), result);
+        }
+        return result;
+    }
+
+    @Override
+    public FnPlotValue<?> visitStmtLet(final StmtLet let, final Frame frame)
+            throws FnPlotException {
+        return evalTail(let, frame);
+    }
+
+    @Override
+    public FnPlotValue<?> visitFunDefn(final ExpFunction defn, final Frame frame)
+            throws FnPlotException {
+        return new FrameFunction(defn, frame);
+    }
+
+    @Override
+    public FnPlotValue<?> visitFunCall(final ExpFunCall callExp, final Frame frame)
+            throws FnPlotException {
+        return evalTail(callExp, frame);
+    }
+
+    /**
+     * Evaluate an expression in tail position of a call, let, conditional or
+     * sequence.
+     * A call in tail position continues with the body of the callee in this
+     * loop, instead of visiting it, so that a chain of tail calls runs in
+     * constant Java stack space, as it does in the {@link Evaluator}.
+     * @param exp The expression in tail position
+     * @param frame The frame in which to evaluate it
+     * @return The value of the expression
+     * @throws FnPlotException if the expression cannot be evaluated
+     */
+    private FnPlotValue<?> evalTail(Exp exp, Frame frame) throws FnPlotException {
+        while (true) {
+            switch (exp.getKind()) {
+                case NodeKind.CALL: {
+                    final ExpFunCall callExp = (ExpFunCall) exp;
+                    final FnPlotFunction f = (FnPlotFunction) frame.get(callExp.getDepth(),
+                            callExp.getSlot(), callExp.getOuter(), callExp.getSymbol());
+                    final FrameFunction fun = f instanceof FrameFunction ?
+                            (FrameFunction) f : adopt(f);
+                    final ExpFunction defn = fun.getFunExp();
+                    final ArrayList<Exp> args = callExp.getArguments();
+                    final Frame newFrame = new Frame(defn.getFrameSize(), fun.getClosingFrame());
+                    final int n = defn.getParameters().size();
+                    for (int i = 0; i < n; i++) {
+                        newFrame.set(i, args.get(i).visit(this, frame));
+                    }
+                    frame = newFrame;
+                    exp = defn.getBody();
+                    break;
+                }
+                case NodeKind.LET: {
+                    final StmtLet let = (StmtLet) exp;
+                    final Frame newFrame = new Frame(let.getFrameSize(), frame);
+                    for (final Binding b : let.getBindings()) {
+                        newFrame.set(b.getSlot(), b.getValExp().visit(this, frame));
+                    }
+                    frame = newFrame;
+                    exp = let.getBody();
+                    break;
+                }
+                case NodeKind.IF: {
+                    final ExpIf ifExp = (ExpIf) exp;
+                    exp = ifExp.getCondition().visit(this, frame).isTrue() ?
+                            ifExp.getThen() : ifExp.getElse();
+                    break;
+                }
+                case NodeKind.SEQUENCE: {
+                    final ArrayList<Statement> seq = ((StmtSequence) exp).getSeq();
+                    final int last = seq.size() - 1;
+                    if (last < 0 || !(seq.get(last) instanceof Exp)) {
+                        return exp.visit(this, frame);
+                    }
+                    for (int i = 0; i < last; i++) {
+                        seq.get(i).visit(this, frame);
+                    }
+                    exp = (Exp) seq.get(last);
+                    break;
+                }
+                default:
+                    return exp.visit(this, frame);
+            }
+        }
+    }
+
+    @Override
+    public FnPlotValue<?> visitFunPlot(final ExpPlot exp, final Frame frame)
+            throws FnPlotException {
+        final Exp fun = exp.getMap();
+        final double[] xpoints = plotter.sample(exp.getStart(), exp.getEnd());
+        final Point2D[] ypoints = new Point2D[xpoints.length];
+        final Frame newFrame = new Frame(exp.getFrameSize(), frame);
+        for (int x = 0; x < xpoints.length; x++) {
+            newFrame.set(0, FnPlotValue.make(xpoints[x]));
+            ypoints[x] = new Point2D.Double(xpoints[x], fun.visit(this, newFrame).doubleValue());
+        }
+        plotter.plot(ypoints);
+        return null;
+    }
+
+    @Override
+    public FnPlotValue<?> visitClear(final ExpClear exp, final Frame frame)
+            throws FnPlotException {
+        plotter.clear();
+        return null;
+    }
+
+    @Override
+    public FnPlotValue<?> visitExpAdd(final ExpAdd exp, final Frame frame)
+            throws FnPlotException {
+        return exp.getExpL().visit(this, frame).add(exp.getExpR().visit(this, frame));
+    }
+
+    @Override
+    public FnPlotValue<?> visitExpSub(final ExpSub exp, final Frame frame)
+            throws FnPlotException {
+        return exp.getExpL().visit(this, frame).sub(exp.getExpR().visit(this, frame));
+    }
+
+    @Override
+    public FnPlotValue<?> visitExpMul(final ExpMul exp, final Frame frame)
+            throws FnPlotException {
+        return exp.getExpL().visit(this, frame).mul(exp.getExpR().visit(this, frame));
+    }
+
+    @Override
+    public FnPlotValue<?> visitExpPow(final ExpPow exp, final Frame frame)
+            throws FnPlotException {
+        return exp.getExpL().visit(this, frame).pow(exp.getExpR().visit(this, frame));
+    }
+
+    @Override
+    public FnPlotValue<?> visitExpDiv(final ExpDiv exp, final Frame frame)
+            throws FnPlotException {
+        return exp.getExpL().visit(this, frame).div(exp.getExpR().visit(this, frame));
+    }
+
+    @Override
+    public FnPlotValue<?> visitExpMod(final ExpMod exp, final Frame frame)
+            throws FnPlotException {
+        return exp.getExpL().visit(this, frame).mod(exp.getExpR().visit(this, frame));
+    }
+
+    @Override
+    public FnPlotValue<?> visitExpLit(final ExpLit exp, final Frame frame)
+            throws FnPlotException {
+        return exp.getVal();
+    }
+
+    @Override
+    public FnPlotValue<?> visitExpVar(final ExpVar exp, final Frame frame)
+            throws FnPlotException {
+        return frame.get(exp.getDepth(), exp.getSlot(), exp.getOuter(), exp.getSymbol());
+    }
+
+    @Override
+    public FnPlotValue<?> visitExpCompare(final ExpCompare exp, final Frame frame)
+            throws FnPlotException {
+        final FnPlotValue<?> left = exp.getExpL().visit(this, frame);
+        return exp.getOp().apply(left, exp.getExpR().visit(this, frame));
+    }
+
+    @Override
+    public FnPlotValue<?> visitExpIf(final ExpIf exp, final Frame frame)
+            throws FnPlotException {
+        return evalTail(exp, frame);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.semantics;
+
+import fnplot.syntax.Exp;
+import fnplot.syntax.Statement;
+import fnplot.sys.FnPlotException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Collects the free names of an AST: the variables and functions that it
+ * refers to without binding them by a let, function parameter or plot
+ * variable.  A name defined by a definition statement is still counted as
+ * free where it is referred to, since the reference may be evaluated before
+ * the definition is.
+ *
+ * @author newts
+ */
+public class FreeNames extends ScopeWalker<Collection<String>> {
+
+    private final Set<String> free = new TreeSet<>();
+
+    private FreeNames() {
+    }
+
+    /**
+     * Find the free names of an AST.
+     * @param node The AST
+     * @return The free names, in alphabetical order
+     * @throws FnPlotException if the AST cannot be traversed
+     */
+    public static Set<String> of(Statement node) throws FnPlotException {
+        FreeNames names = new FreeNames();
+        node.visit(names, new HashSet<>());
+        return names.free;
+    }
+
+    @Override
+    protected void refer(Exp node, String id, Collection<String> bound) {
+        if (!bound.contains(id)) {
+            free.add(id);
+        }
+    }
+
+    @Override
+    protected Void within(Collection<String> bound, Collection<String> ids, Statement body)
+            throws FnPlotException {
+        Set<String> inner = new HashSet<>(bound);
+        inner.addAll(ids);
+        return body.visit(this, inner);
+    }
+}
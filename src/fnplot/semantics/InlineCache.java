@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+
+/**
+ * A monomorphic inline cache for a reference to a global variable or
+ * function, attached to the {@link fnplot.syntax.ExpVar} or
+ * {@link fnplot.syntax.ExpFunCall} that makes it.  It remembers the global
+ * environment in which the name was last looked up, that environment's
+ * version at the time, and the value found.  Since a definition in the
+ * global environment changes its version, a reference whose global
+ * environment and version are unchanged finds the value it found before,
+ * with no search of the environments between the reference and the global
+ * one, or of the global one itself.
+ * <p>
+ * A cache is attached only to a reference that no enclosing let, function
+ * or plot binds (see {@link InlineCaches}), which must be looked up in the
+ * global environment at the root of whichever environment it is evaluated
+ * in.
+ *
+ * @author newts
+ */
+public final class InlineCache {
+
+    private Environment<FnPlotValue<?>> globals;
+    private int version;
+    private FnPlotValue<?> value;
+
+    /**
+     * Look up a global name.
+     * @param id The symbol of the name
+     * @param env The environment in which the reference is evaluated
+     * @return The value of the name in the global environment at the root of
+     * <code>env</code>
+     * @throws FnPlotException if the name is unbound
+     */
+    public FnPlotValue<?> lookup(int id, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        Environment<FnPlotValue<?>> root = env.getRoot();
+        if (root == globals && root.getVersion() == version) {
+            return value;
+        }
+        FnPlotValue<?> result = root.get(id);
+        globals = root;
+        version = root.getVersion();
+        value = result;
+        return result;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.semantics;
+
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.sys.FnPlotException;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Attaches an {@link InlineCache} to every variable reference and function
+ * call in a program that refers to a global name.  A name is global at a
+ * reference if no enclosing let, function or plot binds it, and no
+ * statement run in the frame of one of them defines it, since otherwise it
+ * might be found in a frame nearer to the reference than the global
+ * environment.  A node that appears in more than one place (as the
+ * optimiser may arrange) is given a cache only if its name is global in
+ * all of them.
+ *
+ * @author newts
+ */
+public class InlineCaches extends ScopeWalker<ScopeWalker.Scope> {
+
+    /** For each reference seen, whether it is global wherever it appears. */
+    private final Map<Exp, Boolean> global = new IdentityHashMap<>();
+
+    private InlineCaches() {
+    }
+
+    /**
+     * Attach inline caches to the references to global names in a program,
+     * and remove any from its other references.
+     * @param program The program, which must be run in a top level
+     * environment
+     * @throws FnPlotException if the program cannot be traversed
+     */
+    public static void install(Statement program) throws FnPlotException {
+        InlineCaches caches = new InlineCaches();
+        program.visit(caches, null);
+        for (Map.Entry<Exp, Boolean> e : caches.global.entrySet()) {
+            InlineCache cache = e.getValue() ? new InlineCache() : null;
+            if (e.getKey() instanceof ExpVar) {
+                ((ExpVar) e.getKey()).setCache(cache);
+            } else {
+                ((ExpFunCall) e.getKey()).setCache(cache);
+            }
+        }
+    }
+
+    @Override
+    protected void refer(Exp node, String id, Scope scope) {
+        boolean isGlobal = scope == null || !scope.binds(id);
+        global.merge(node, isGlobal, Boolean::logicalAnd);
+    }
+
+    @Override
+    protected Void within(Scope scope, Collection<String> bound, Statement body)
+            throws FnPlotException {
+        return body.visit(this, new Scope(scope, bound, body));
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+
+/**
+ * The common interface of the execution engines that can run an FnPlot
+ * program.  The front ends (command line, REPL and GUI) talk to an engine only
+ * through this interface, so that engines can be swapped with
+ * {@link Engine}.
+ *
+ * @author newts
+ */
+public interface Interpreter {
+
+    /**
+     * @return The global environment used by this interpreter.
+     */
+    public Environment<FnPlotValue<?>> getGlobalEnv();
+
+    /**
+     * @return The plotting device currently being used by this interpreter
+     */
+    public Plotter getPlotter();
+
+    /**
+     * Set the plotting device.
+     * @param plotter The plotting device to be used by this interpreter.
+     */
+    public void setPlotter(Plotter plotter);
+
+    /**
+     * Execute a program.
+     * @param p The program to be executed
+     * @param env The environment in which to execute it (normally the global
+     * environment of this interpreter)
+     * @return The value of the last statement of the program
+     * @throws FnPlotException if an error occurs during execution.
+     */
+    public FnPlotValue<?> run(ArithProgram p, Environment<FnPlotValue<?>> env)
+            throws FnPlotException;
+}
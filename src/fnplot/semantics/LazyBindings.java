@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.ExpClear;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.sys.FnPlotException;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Decides which bindings of a let may be evaluated lazily, in a
+ * {@link LazyEnvironment}, instead of before the body is entered.  A binding
+ * may be deferred if evaluating its expression has no effect: it makes no
+ * calls (which might plot), and no plots, clears or definitions (which
+ * would bind a name in the enclosing frame).  Its value is then the same
+ * whenever it is computed, provided that the enclosing environment has not
+ * changed, which it cannot while the body of the let is running.  So no
+ * binding is deferred if another binding of the let defines a name in the
+ * enclosing frame, or if the body creates a function, which could keep the
+ * frame of the let alive after the body has finished.
+ * <p>
+ * Deferring a binding does change when it fails: an error in a binding that
+ * the body never uses is not reported, and one in a binding that is used is
+ * reported where it is first used.
+ *
+ * @author newts
+ */
+public class LazyBindings extends ScopeWalker<Void> {
+
+    private boolean createsFunctions;
+    private boolean effects;
+
+    private LazyBindings() {
+    }
+
+    /**
+     * Decide which bindings of a let may be deferred.  The decision is
+     * recorded in the let, so that it is made only once.
+     * @param let The let
+     * @return For each binding, <code>true</code> if it may be deferred
+     * @throws FnPlotException if the let cannot be traversed
+     */
+    public static boolean[] of(StmtLet let) throws FnPlotException {
+        boolean[] deferred = let.getDeferred();
+        if (deferred != null) {
+            return deferred;
+        }
+        ArrayList<Binding> bindings = let.getBindings();
+        deferred = new boolean[bindings.size()];
+        LazyBindings body = new LazyBindings();
+        let.getBody().visit(body, null);
+        boolean defines = false;
+        for (Binding b : bindings) {
+            defines |= !DefinedNames.local(b.getValExp()).isEmpty();
+        }
+        if (!body.createsFunctions && !defines) {
+            for (int i = 0; i < deferred.length; i++) {
+                LazyBindings binding = new LazyBindings();
+                bindings.get(i).getValExp().visit(binding, null);
+                deferred[i] = !binding.effects;
+            }
+        }
+        let.setDeferred(deferred);
+        return deferred;
+    }
+
+    @Override
+    protected Void within(Void scope, Collection<String> bound, Statement body)
+            throws FnPlotException {
+        // every part is visited, to find any function within it
+        return body.visit(this, scope);
+    }
+
+    @Override
+    public Void visitArithProgram(ArithProgram p, Void arg) throws FnPlotException {
+        effects = true;
+        return super.visitArithProgram(p, arg);
+    }
+
+    @Override
+    public Void visitStmtDefinition(StmtDefinition sd, Void arg) throws FnPlotException {
+        effects = true;
+        return super.visitStmtDefinition(sd, arg);
+    }
+
+    @Override
+    public Void visitFunDefn(ExpFunction fd, Void arg) throws FnPlotException {
+        // creating a closure has no effect, but it captures the environment
+        createsFunctions = true;
+        return null;
+    }
+
+    @Override
+    public Void visitFunCall(ExpFunCall fc, Void arg) throws FnPlotException {
+        effects = true;
+        return super.visitFunCall(fc, arg);
+    }
+
+    @Override
+    public Void visitFunPlot(ExpPlot plot, Void arg) throws FnPlotException {
+        effects = true;
+        return super.visitFunPlot(plot, arg);
+    }
+
+    @Override
+    public Void visitClear(ExpClear clear, Void arg) throws FnPlotException {
+        effects = true;
+        return null;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.semantics;
+
+import fnplot.syntax.Exp;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+
+/**
+ * The frame of a let whose bindings are evaluated on demand.  A deferred
+ * binding is held as a thunk, the expression that computes its value, which
+ * is evaluated in the enclosing environment the first time that the name is
+ * looked up, and then replaced by its value, so that it is evaluated at
+ * most once.  Bindings that are not deferred are made as usual.  (See
+ * {@link LazyBindings} for which bindings may be deferred.)
+ *
+ * @author newts
+ */
+public class LazyEnvironment extends Environment<FnPlotValue<?>> {
+
+    private static final FnPlotValue<?>[] NONE = new FnPlotValue<?>[0];
+
+    /** The symbols of the bindings not yet evaluated, with their thunks. */
+    private final SymbolMap<Exp> thunks = new SymbolMap<>(4);
+    private final Visitor<Environment<FnPlotValue<?>>, FnPlotValue<?>> evaluator;
+
+    /**
+     * Create the frame of a let, as an extension of the environment in which
+     * the let is evaluated.
+     * @param evaluator The evaluator with which to evaluate the thunks
+     * @param parent The environment in which the let is evaluated
+     */
+    public LazyEnvironment(Visitor<Environment<FnPlotValue<?>>, FnPlotValue<?>> evaluator,
+            Environment<FnPlotValue<?>> parent) {
+        super(new int[0], NONE, parent);
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Bind a name to the value of an expression, which is not evaluated
+     * until the name is looked up.
+     * @param id The symbol of the name to be bound
+     * @param thunk The expression that computes the value
+     */
+    public void defer(int id, Exp thunk) {
+        dictionary.remove(id);
+        thunks.put(id, thunk);
+        version++;
+    }
+
+    @Override
+    public void put(int id, FnPlotValue<?> value) {
+        thunks.remove(id);
+        super.put(id, value);
+    }
+
+    @Override
+    FnPlotValue<?> getHere(int id) throws FnPlotException {
+        Exp thunk = thunks.get(id);
+        if (thunk == null) {
+            return super.getHere(id);
+        }
+        FnPlotValue<?> value = thunk.visit(evaluator, parent);
+        // the value replaces the thunk, but does not count as a new binding
+        thunks.remove(id);
+        dictionary.put(id, value);
+        return value;
+    }
+
+    @Override
+    public boolean isBoundHere(int id) {
+        return thunks.containsKey(id) || super.isBoundHere(id);
+    }
+
+}
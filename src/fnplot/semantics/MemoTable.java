@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.semantics;
+
+import fnplot.values.FnPlotType;
+import fnplot.values.FnPlotValue;
+import fnplot.values.TypeFnPlotException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The results of the calls of a pure user defined function, kept by the
+ * {@link Memoizer} so that a call with the same arguments as an earlier one
+ * need not be evaluated again.  Only calls whose arguments are all numbers
+ * are remembered, keyed by the types and values of the arguments.  When the
+ * table is full, the least recently used result is evicted.
+ * <p>
+ * The table is a fixed set of parallel arrays, chained into hash buckets
+ * and into a list in order of use, so that neither looking up a call nor
+ * remembering its result allocates anything.  Since the result of a call
+ * depends on the values of the free variables of the function (and of the
+ * functions that it calls), the table also records the version of each
+ * environment in which they were found, so that it can tell when its
+ * results have become out of date.  The numbers of hits, misses and
+ * evictions are counted.
+ *
+ * @author newts
+ */
+public final class MemoTable {
+
+    private static final int NONE = -1;
+
+    private final int capacity;
+    private final int arity;
+
+    /** The values of the arguments of each entry, as int or double bits. */
+    private final long[] keys;
+    /** For each entry, the set of its arguments that are real. */
+    private final long[] reals;
+    private final int[] hashes;
+    private final FnPlotValue<?>[] values;
+
+    /** The first entry of each hash bucket, and the next entry of each. */
+    private final int[] buckets;
+    private final int[] chain;
+
+    /** The neighbours of each entry in order of use. */
+    private final int[] newer;
+    private final int[] older;
+    private int newest = NONE;
+    private int oldest = NONE;
+    private int size;
+
+    private final Environment<?>[] environments;
+    private final int[] versions;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a table.
+     * @param capacity The greatest number of results to keep, which is 0 if
+     * the function should not be memoised
+     * @param arity The number of parameters of the function, at most 64
+     * @param consulted The environments in which the free variables of the
+     * function, and of the functions that it calls, are looked up
+     */
+    MemoTable(int capacity, int arity, List<? extends Environment<?>> consulted) {
+        this.capacity = capacity;
+        this.arity = arity;
+        this.keys = new long[capacity * arity];
+        this.reals = new long[capacity];
+        this.hashes = new int[capacity];
+        this.values = new FnPlotValue<?>[capacity];
+        int n = 1;
+        while (n < capacity * 2) {
+            n <<= 1;
+        }
+        this.buckets = new int[capacity == 0 ? 0 : n];
+        Arrays.fill(buckets, NONE);
+        this.chain = new int[capacity];
+        this.newer = new int[capacity];
+        this.older = new int[capacity];
+        // a lookup may have searched every ancestor of the environment
+        Set<Environment<?>> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayList<Environment<?>> envs = new ArrayList<>();
+        for (Environment<?> env : consulted) {
+            for (Environment<?> e = env; e != null && seen.add(e); e = e.getParent()) {
+                envs.add(e);
+            }
+        }
+        this.environments = envs.toArray(new Environment<?>[0]);
+        this.versions = new int[environments.length];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = environments[i].getVersion();
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the function that this table belongs to is
+     * memoised, <code>false</code> if the table only records that it should
+     * not be
+     */
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /**
+     * Determine whether the results in this table are still those that the
+     * function would compute.
+     * @return <code>false</code> if a binding has been made in one of the
+     * environments consulted by the function since the table was made
+     */
+    public boolean isCurrent() {
+        for (int i = 0; i < versions.length; i++) {
+            if (environments[i].getVersion() != versions[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return <code>true</code> if the given arguments may be used as the key
+     * of a result in this table
+     */
+    private boolean accepts(List<? extends FnPlotValue<?>> args) {
+        if (capacity == 0 || args.size() != arity) {
+            return false;
+        }
+        for (int i = 0; i < arity; i++) {
+            FnPlotType type = args.get(i).getType();
+            if (type != FnPlotType.INTEGER && type != FnPlotType.REAL) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long bits(FnPlotValue<?> arg) throws TypeFnPlotException {
+        if (arg.getType() == FnPlotType.INTEGER) {
+            return arg.intValue();
+        }
+        // distinguishes 0.0 from -0.0, whose quotients differ
+        return Double.doubleToLongBits(arg.doubleValue());
+    }
+
+    private static long realMask(List<? extends FnPlotValue<?>> args) {
+        long mask = 0;
+        for (int i = 0; i < args.size(); i++) {
+            if (args.get(i).getType() == FnPlotType.REAL) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    private static int hash(List<? extends FnPlotValue<?>> args, long mask)
+            throws TypeFnPlotException {
+        long h = mask;
+        for (int i = 0; i < args.size(); i++) {
+            h = h * 31 + bits(args.get(i));
+        }
+        int x = (int) (h ^ (h >>> 32));
+        return x ^ (x >>> 16);
+    }
+
+    /**
+     * @return The entry whose key is the given arguments, or NONE
+     */
+    private int find(List<? extends FnPlotValue<?>> args, long mask, int hash)
+            throws TypeFnPlotException {
+        search:
+        for (int e = buckets[hash & (buckets.length - 1)]; e != NONE; e = chain[e]) {
+            if (hashes[e] != hash || reals[e] != mask) {
+                continue;
+            }
+            for (int i = 0; i < arity; i++) {
+                if (keys[e * arity + i] != bits(args.get(i))) {
+                    continue search;
+                }
+            }
+            return e;
+        }
+        return NONE;
+    }
+
+    /**
+     * Find the result of an earlier call with the given arguments.
+     * @param args The arguments of the call
+     * @return The result of the call, or <code>null</code> if it is not in
+     * the table, or cannot be
+     * @throws TypeFnPlotException if an argument cannot be read
+     */
+    public FnPlotValue<?> get(List<? extends FnPlotValue<?>> args) throws TypeFnPlotException {
+        if (!accepts(args)) {
+            return null;
+        }
+        long mask = realMask(args);
+        int e = find(args, mask, hash(args, mask));
+        if (e == NONE) {
+            misses++;
+            return null;
+        }
+        hits++;
+        unlink(e);
+        pushNewest(e);
+        return values[e];
+    }
+
+    /**
+     * Remember the result of a call, evicting the least recently used result
+     * if the table is full.  Nothing is remembered if the arguments cannot be
+     * a key of this table.
+     * @param args The arguments of the call
+     * @param value The result of the call
+     * @throws TypeFnPlotException if an argument cannot be read
+     */
+    public void put(List<? extends FnPlotValue<?>> args, FnPlotValue<?> value)
+            throws TypeFnPlotException {
+        if (!accepts(args)) {
+            return;
+        }
+        long mask = realMask(args);
+        int hash = hash(args, mask);
+        int e = find(args, mask, hash);
+        if (e != NONE) {
+            values[e] = value;
+            unlink(e);
+            pushNewest(e);
+            return;
+        }
+        if (size < capacity) {
+            e = size++;
+        } else {
+            e = oldest;
+            unlink(e);
+            removeFromBucket(e);
+            evictions++;
+        }
+        for (int i = 0; i < arity; i++) {
+            keys[e * arity + i] = bits(args.get(i));
+        }
+        reals[e] = mask;
+        hashes[e] = hash;
+        values[e] = value;
+        int b = hash & (buckets.length - 1);
+        chain[e] = buckets[b];
+        buckets[b] = e;
+        pushNewest(e);
+    }
+
+    private void removeFromBucket(int e) {
+        int b = hashes[e] & (buckets.length - 1);
+        if (buckets[b] == e) {
+            buckets[b] = chain[e];
+            return;
+        }
+        int p = buckets[b];
+        while (chain[p] != e) {
+            p = chain[p];
+        }
+        chain[p] = chain[e];
+    }
+
+    private void unlink(int e) {
+        if (newer[e] == NONE) {
+            newest = older[e];
+        } else {
+            older[newer[e]] = older[e];
+        }
+        if (older[e] == NONE) {
+            oldest = newer[e];
+        } else {
+            newer[older[e]] = newer[e];
+        }
+    }
+
+    private void pushNewest(int e) {
+        newer[e] = NONE;
+        older[e] = newest;
+        if (newest == NONE) {
+            oldest = e;
+        } else {
+            newer[newest] = e;
+        }
+        newest = e;
+    }
+
+    /**
+     * @return The number of results in the table
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The greatest number of results that the table keeps
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The number of calls whose results were found in the table
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return The number of calls that could have been, but were not, found
+     * in the table
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return The number of results evicted to make room for others
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return The fraction of lookups that were hits, or 0 if there have been
+     * none
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MemoTable[%d entries, %d hits, %d misses, %d evictions, %.1f%% hits]",
+                size, hits, misses, evictions, 100 * getHitRate());
+    }
+}
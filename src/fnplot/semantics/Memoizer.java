@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.semantics;
+
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import java.io.PrintStream;
+
+/**
+ * Decides which user defined functions the {@link Evaluator} should
+ * memoise, and gives each of them a {@link MemoTable} in which to keep the
+ * results of its calls.  A function is memoised if it is pure (see
+ * {@link Purity}), and its body calls some function other than in tail
+ * position, but none in tail position.  A function whose body makes no
+ * calls is usually cheaper to evaluate than to look up.  A call in tail
+ * position would no longer be made in constant stack space if its caller
+ * were memoised, since the caller's result must be kept when the call
+ * returns; so a loop written as a tail recursive function is not memoised,
+ * and neither (since each of its calls has different arguments) would it
+ * gain by being memoised.
+ * <p>
+ * The decision, and the table, last until a binding is made in any of the
+ * environments in which the function (or a function that it calls) finds
+ * its free variables, when the function is analysed afresh, with an empty
+ * table.
+ * <p>
+ * Setting the system property <code>fnplot.memo.trace=true</code> (or
+ * calling {@link #setTracing(boolean)}) reports each function memoised, and
+ * the statistics of each table when it is discarded.
+ *
+ * @author newts
+ */
+public class Memoizer {
+
+    /** The name of the system property that enables tracing. */
+    public static final String TRACE_PROPERTY = "fnplot.memo.trace";
+
+    /**
+     * The name of the system property that sets the number of results kept
+     * for each function.
+     */
+    public static final String CAPACITY_PROPERTY = "fnplot.memo.size";
+
+    /** The default number of results kept for each function. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /** The greatest number of parameters of a memoised function. */
+    public static final int MAX_ARITY = 64;
+
+    private int capacity = Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY);
+    private boolean tracing = Boolean.getBoolean(TRACE_PROPERTY);
+    private PrintStream log = System.err;
+
+    /**
+     * @return The number of results kept for each function
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @param capacity The number of results to keep for each function
+     * memoised from now on
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return <code>true</code> if memoised functions are reported
+     */
+    public boolean isTracing() {
+        return tracing;
+    }
+
+    /**
+     * Enable or disable the reporting of memoised functions.
+     * @param tracing <code>true</code> to report memoised functions
+     */
+    public void setTracing(boolean tracing) {
+        this.tracing = tracing;
+    }
+
+    /**
+     * Set the stream to which memoised functions are reported.
+     * @param log The stream
+     */
+    public void setLog(PrintStream log) {
+        this.log = log;
+    }
+
+    private void trace(String format, Object... args) {
+        if (tracing) {
+            log.printf("[memo] " + format + "%n", args);
+        }
+    }
+
+    /**
+     * Find the table in which to look up a call of a function.
+     * @param name The name by which the function is called
+     * @param fun The function
+     * @return The table of the function, or <code>null</code> if it is not
+     * memoised
+     * @throws FnPlotException if the function cannot be analysed
+     */
+    public MemoTable tableFor(String name, FnPlotFunction fun) throws FnPlotException {
+        MemoTable table = fun.getMemo();
+        if (table != null) {
+            if (table.isCurrent()) {
+                return table.isEnabled() ? table : null;
+            }
+            if (table.isEnabled()) {
+                trace("%s forgets its results: its free variables have been rebound (%s)",
+                        name, table);
+            }
+        }
+        int arity = fun.getFunExp().getParameters().size();
+        Purity purity = Purity.of(fun);
+        boolean memoised = purity.isPure() && purity.callsOutsideTail() &&
+                !purity.callsInTail() && arity <= MAX_ARITY && capacity > 0;
+        table = new MemoTable(memoised ? capacity : 0, arity, purity.getConsulted());
+        fun.setMemo(table);
+        if (memoised) {
+            trace("%s memoised, keeping up to %d results", name, capacity);
+        }
+        return memoised ? table : null;
+    }
+}
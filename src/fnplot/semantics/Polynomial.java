@@ -0,0 +1,477 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpClear;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A polynomial in one real variable, evaluated in Horner form.  The
+ * {@link #of(ExpPlot, Environment)} analysis recognises plot maps (and
+ * function bodies) that compute a polynomial in the plot variable, built of
+ * additions, subtractions, multiplications, divisions by constants and
+ * powers with constant exponents, and extracts its coefficients, so that
+ * each sample costs one multiplication and one addition per degree instead
+ * of a walk of the map's AST.
+ * <p>
+ * A map may also contain lets, variables bound to numbers in the
+ * environment, conditionals whose conditions do not depend on the plot
+ * variable, and calls of functions whose bodies are themselves
+ * polynomials in their parameters (to a depth of {@link #MAX_CALL_DEPTH}).
+ * The parts of the map that do not depend on the plot variable are
+ * evaluated once, with the usual arithmetic, so the types of constants are
+ * respected.  Since the plot variable is real, any part of the map that
+ * depends on it is real, unless an int on the left of an operator would
+ * force it to be truncated, in which case the map is not a polynomial.  A
+ * map that is not recognised, or whose constant parts cannot be evaluated
+ * (for example an int division by zero), must be evaluated some other way,
+ * which will report any error.
+ * <p>
+ * The coefficients are rounded as they are computed, and Horner's rule
+ * rounds differently from the original expression, so results may differ
+ * from the tree walk in their last few bits.  They may also differ where the
+ * original expression would overflow or produce NaN at some sample (for
+ * example <code>x - x</code> is always 0 here).
+ *
+ * @author newts
+ */
+public class Polynomial implements DoubleUnaryOperator {
+
+    /** The greatest degree of polynomial that is recognised. */
+    public static final int MAX_DEGREE = 32;
+
+    /** The greatest depth of nested calls followed within a map. */
+    public static final int MAX_CALL_DEPTH = 8;
+
+    /** The coefficients, from the constant term upwards. */
+    private final double[] coeffs;
+
+    /**
+     * Create a polynomial with the given coefficients.
+     * @param coeffs The coefficients, from the constant term upwards
+     */
+    public Polynomial(double[] coeffs) {
+        int n = coeffs.length;
+        // trailing zeros contribute nothing, so drop them
+        while (n > 1 && coeffs[n - 1] == 0) {
+            n--;
+        }
+        this.coeffs = Arrays.copyOf(coeffs, Math.max(n, 1));
+    }
+
+    /**
+     * @return The degree of this polynomial (0 for a constant)
+     */
+    public int getDegree() {
+        return coeffs.length - 1;
+    }
+
+    /**
+     * @param i The power of the variable
+     * @return The coefficient of the variable to the given power
+     */
+    public double getCoefficient(int i) {
+        return i < coeffs.length ? coeffs[i] : 0;
+    }
+
+    @Override
+    public double applyAsDouble(double x) {
+        double y = coeffs[coeffs.length - 1];
+        for (int i = coeffs.length - 2; i >= 0; i--) {
+            y = y * x + coeffs[i];
+        }
+        return y;
+    }
+
+    /**
+     * Evaluate this polynomial at each of an array of points.
+     * @param xs The points
+     * @return The values of the polynomial, in the same order as the points
+     */
+    public double[] evaluate(double[] xs) {
+        double[] ys = new double[xs.length];
+        int top = coeffs.length - 1;
+        for (int j = 0; j < xs.length; j++) {
+            double x = xs[j];
+            double y = coeffs[top];
+            for (int i = top - 1; i >= 0; i--) {
+                y = y * x + coeffs[i];
+            }
+            ys[j] = y;
+        }
+        return ys;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (int i = coeffs.length - 1; i >= 0; i--) {
+            if (coeffs[i] == 0 && i < coeffs.length - 1) {
+                continue;
+            }
+            if (result.length() > 0) {
+                result.append(" + ");
+            }
+            result.append(coeffs[i]);
+            if (i > 0) {
+                result.append(i == 1 ? " * x" : " * x^" + i);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Recognise the map of a plot as a polynomial in the plot variable.
+     * @param plot The plot expression
+     * @param env The environment in which the plot is evaluated
+     * @return The map as a polynomial, or <code>null</code> if it is not one
+     */
+    public static Polynomial of(ExpPlot plot, Environment<FnPlotValue<?>> env) {
+        return of(plot.getMap(), plot.getItem(), env);
+    }
+
+    /**
+     * Recognise the body of a function of one parameter as a polynomial in
+     * that parameter.
+     * @param fun The function expression
+     * @param env The environment over which the function is closed
+     * @return The body as a polynomial, or <code>null</code> if it is not one
+     * (or the function does not have exactly one parameter)
+     */
+    public static Polynomial of(ExpFunction fun, Environment<FnPlotValue<?>> env) {
+        if (fun.getParameters().size() != 1) {
+            return null;
+        }
+        return of(fun.getBody(), fun.getParameters().get(0), env);
+    }
+
+    private static Polynomial of(Exp exp, String var, Environment<FnPlotValue<?>> env) {
+        HashMap<String, Term> locals = new HashMap<>();
+        locals.put(var, Term.variable());
+        try {
+            Term t = exp.visit(new Analysis(env, 0), locals);
+            return t.isConstant() ? new Polynomial(new double[] {t.value.doubleValue()}) :
+                    new Polynomial(t.coeffs);
+        } catch (FnPlotException | ArithmeticException e) {
+            return null;
+        }
+    }
+
+    private static FnPlotException notPolynomial() {
+        return new FnPlotException("Not a polynomial");
+    }
+
+    /**
+     * The value of part of a map: either a constant (of either numeric type)
+     * or a real polynomial in the variable.
+     */
+    private static final class Term {
+
+        private final FnPlotValue<?> value;
+        private final double[] coeffs;
+
+        private Term(FnPlotValue<?> value, double[] coeffs) {
+            this.value = value;
+            this.coeffs = coeffs;
+        }
+
+        static Term constant(FnPlotValue<?> value) {
+            return new Term(value, null);
+        }
+
+        static Term variable() {
+            return new Term(null, new double[] {0, 1});
+        }
+
+        boolean isConstant() {
+            return value != null;
+        }
+
+        /**
+         * @return The coefficients of this term as a real polynomial
+         */
+        double[] real() throws FnPlotException {
+            return isConstant() ? new double[] {value.doubleValue()} : coeffs;
+        }
+    }
+
+    /**
+     * Converts parts of a map into {@link Term}s.  The argument passed to
+     * each visit method binds the local variables (including the variable
+     * of the polynomial) to their terms.
+     */
+    private static final class Analysis implements Visitor<HashMap<String, Term>, Term> {
+
+        private final Environment<FnPlotValue<?>> env;
+        private final int depth;
+
+        Analysis(Environment<FnPlotValue<?>> env, int depth) {
+            this.env = env;
+            this.depth = depth;
+        }
+
+        /**
+         * Combine the terms of the operands of an addition, subtraction or
+         * multiplication that is not constant.
+         */
+        private static double[] combine(Term left, Term right, char op) throws FnPlotException {
+            // an int on the left would truncate the polynomial on the right
+            if (left.isConstant() && left.value.isInteger()) {
+                throw notPolynomial();
+            }
+            double[] a = left.real();
+            double[] b = right.real();
+            if (op == '*') {
+                if (a.length + b.length - 2 > MAX_DEGREE) {
+                    throw notPolynomial();
+                }
+                double[] c = new double[a.length + b.length - 1];
+                for (int i = 0; i < a.length; i++) {
+                    for (int j = 0; j < b.length; j++) {
+                        c[i + j] += a[i] * b[j];
+                    }
+                }
+                return c;
+            }
+            double[] c = new double[Math.max(a.length, b.length)];
+            for (int i = 0; i < c.length; i++) {
+                double x = i < a.length ? a[i] : 0;
+                double y = i < b.length ? b[i] : 0;
+                c[i] = op == '+' ? x + y : x - y;
+            }
+            return c;
+        }
+
+        @Override
+        public Term visitArithProgram(ArithProgram p, HashMap<String, Term> arg)
+                throws FnPlotException {
+            throw notPolynomial();
+        }
+
+        @Override
+        public Term visitStmtSequence(StmtSequence sseq, HashMap<String, Term> arg)
+                throws FnPlotException {
+            throw notPolynomial();
+        }
+
+        @Override
+        public Term visitStmtDefinition(StmtDefinition sd, HashMap<String, Term> arg)
+                throws FnPlotException {
+            throw notPolynomial();
+        }
+
+        @Override
+        public Term visitStmtLet(StmtLet let, HashMap<String, Term> arg) throws FnPlotException {
+            HashMap<String, Term> inner = new HashMap<>(arg);
+            for (Binding b : let.getBindings()) {
+                inner.put(b.getVar(), b.getValExp().visit(this, arg));
+            }
+            return let.getBody().visit(this, inner);
+        }
+
+        @Override
+        public Term visitFunDefn(ExpFunction fd, HashMap<String, Term> arg) throws FnPlotException {
+            throw notPolynomial();
+        }
+
+        @Override
+        public Term visitFunCall(ExpFunCall fc, HashMap<String, Term> arg) throws FnPlotException {
+            if (depth >= MAX_CALL_DEPTH || arg.containsKey(fc.getName())) {
+                throw notPolynomial();
+            }
+            FnPlotValue<?> val = env.get(fc.getSymbol());
+            if (!(val instanceof FnPlotFunction)) {
+                throw notPolynomial();
+            }
+            FnPlotFunction fun = (FnPlotFunction) val;
+            ArrayList<String> params = fun.getFunExp().getParameters();
+            ArrayList<Exp> args = fc.getArguments();
+            if (params.size() != args.size()) {
+                throw notPolynomial();
+            }
+            HashMap<String, Term> locals = new HashMap<>();
+            for (int i = 0; i < params.size(); i++) {
+                locals.put(params.get(i), args.get(i).visit(this, arg));
+            }
+            Analysis inner = new Analysis(fun.getClosingEnv(), depth + 1);
+            return fun.getFunExp().getBody().visit(inner, locals);
+        }
+
+        @Override
+        public Term visitFunPlot(ExpPlot fp, HashMap<String, Term> arg) throws FnPlotException {
+            throw notPolynomial();
+        }
+
+        @Override
+        public Term visitClear(ExpClear clear, HashMap<String, Term> arg) throws FnPlotException {
+            throw notPolynomial();
+        }
+
+        @Override
+        public Term visitExpAdd(ExpAdd exp, HashMap<String, Term> arg) throws FnPlotException {
+            Term left = exp.getExpL().visit(this, arg);
+            Term right = exp.getExpR().visit(this, arg);
+            if (left.isConstant() && right.isConstant()) {
+                return Term.constant(left.value.add(right.value));
+            }
+            return new Term(null, combine(left, right, '+'));
+        }
+
+        @Override
+        public Term visitExpSub(ExpSub exp, HashMap<String, Term> arg) throws FnPlotException {
+            Term left = exp.getExpL().visit(this, arg);
+            Term right = exp.getExpR().visit(this, arg);
+            if (left.isConstant() && right.isConstant()) {
+                return Term.constant(left.value.sub(right.value));
+            }
+            return new Term(null, combine(left, right, '-'));
+        }
+
+        @Override
+        public Term visitExpMul(ExpMul exp, HashMap<String, Term> arg) throws FnPlotException {
+            Term left = exp.getExpL().visit(this, arg);
+            Term right = exp.getExpR().visit(this, arg);
+            if (left.isConstant() && right.isConstant()) {
+                return Term.constant(left.value.mul(right.value));
+            }
+            return new Term(null, combine(left, right, '*'));
+        }
+
+        @Override
+        public Term visitExpPow(ExpPow exp, HashMap<String, Term> arg) throws FnPlotException {
+            Term left = exp.getExpL().visit(this, arg);
+            Term right = exp.getExpR().visit(this, arg);
+            if (left.isConstant() && right.isConstant()) {
+                return Term.constant(left.value.pow(right.value));
+            }
+            // only a polynomial raised to a small whole power is a polynomial
+            if (left.isConstant() || !right.isConstant()) {
+                throw notPolynomial();
+            }
+            double n = right.value.doubleValue();
+            int degree = left.coeffs.length - 1;
+            if (n != Math.rint(n) || n < 0 || n * degree > MAX_DEGREE) {
+                throw notPolynomial();
+            }
+            Term result = Term.constant(FnPlotValue.make(1D));
+            for (int i = 0; i < (int) n; i++) {
+                result = new Term(null, combine(result, left, '*'));
+            }
+            return result.isConstant() ? new Term(null, result.real()) : result;
+        }
+
+        @Override
+        public Term visitExpDiv(ExpDiv exp, HashMap<String, Term> arg) throws FnPlotException {
+            Term left = exp.getExpL().visit(this, arg);
+            Term right = exp.getExpR().visit(this, arg);
+            if (left.isConstant() && right.isConstant()) {
+                return Term.constant(left.value.div(right.value));
+            }
+            // only a division of a polynomial by a non-zero constant
+            if (left.isConstant() || !right.isConstant() || right.value.doubleValue() == 0) {
+                throw notPolynomial();
+            }
+            double d = right.value.doubleValue();
+            double[] c = new double[left.coeffs.length];
+            for (int i = 0; i < c.length; i++) {
+                c[i] = left.coeffs[i] / d;
+            }
+            return new Term(null, c);
+        }
+
+        @Override
+        public Term visitExpMod(ExpMod exp, HashMap<String, Term> arg) throws FnPlotException {
+            Term left = exp.getExpL().visit(this, arg);
+            Term right = exp.getExpR().visit(this, arg);
+            if (left.isConstant() && right.isConstant()) {
+                return Term.constant(left.value.mod(right.value));
+            }
+            throw notPolynomial();
+        }
+
+        @Override
+        public Term visitExpLit(ExpLit exp, HashMap<String, Term> arg) throws FnPlotException {
+            if (!exp.getVal().isNumber()) {
+                throw notPolynomial();
+            }
+            return Term.constant(exp.getVal());
+        }
+
+        @Override
+        public Term visitExpVar(ExpVar exp, HashMap<String, Term> arg) throws FnPlotException {
+            Term local = arg.get(exp.getVar());
+            if (local != null) {
+                return local;
+            }
+            FnPlotValue<?> val = env.get(exp.getSymbol());
+            if (!val.isNumber()) {
+                throw notPolynomial();
+            }
+            return Term.constant(val);
+        }
+
+        @Override
+        public Term visitExpCompare(ExpCompare exp, HashMap<String, Term> arg)
+                throws FnPlotException {
+            Term left = exp.getExpL().visit(this, arg);
+            Term right = exp.getExpR().visit(this, arg);
+            if (left.isConstant() && right.isConstant()) {
+                return Term.constant(exp.getOp().apply(left.value, right.value));
+            }
+            throw notPolynomial();
+        }
+
+        @Override
+        public Term visitExpIf(ExpIf exp, HashMap<String, Term> arg) throws FnPlotException {
+            // only a condition that does not depend on the plot variable selects one polynomial
+            Term cond = exp.getCondition().visit(this, arg);
+            if (!cond.isConstant()) {
+                throw notPolynomial();
+            }
+            return (cond.value.isTrue() ? exp.getThen() : exp.getElse()).visit(this, arg);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.semantics;
+
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpClear;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Decides whether a user defined function is pure, that is, whether every
+ * call of it with the same arguments has the same result and no effect, for
+ * as long as its free variables keep their values.  A function is pure if
+ * its body neither plots nor clears, and every function that it calls is
+ * pure in turn.  Definitions are allowed, since they bind names only in the
+ * frame of the call.  The functions called are found by looking up their
+ * names in the environments over which the functions calling them are
+ * closed; a call of a function held in a parameter or local variable, or
+ * defined within the body, cannot be resolved, and so is taken to be impure.
+ * <p>
+ * The analysis also notes whether the body of the function calls a function
+ * other than in tail position, and whether it calls one in tail position,
+ * which the {@link Memoizer} uses to decide whether memoising it is worth
+ * while.
+ *
+ * @author newts
+ */
+public final class Purity extends ScopeWalker<Collection<String>> {
+
+    private final FnPlotFunction root;
+    private final Set<FnPlotFunction> visited =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+    private final ArrayList<Environment<FnPlotValue<?>>> consulted = new ArrayList<>();
+
+    private FnPlotFunction current;
+    private boolean tail;
+    private boolean pure = true;
+    private boolean callsInTail;
+    private boolean callsOutsideTail;
+
+    private Purity(FnPlotFunction root) {
+        this.root = root;
+    }
+
+    /**
+     * Analyse a function, and the functions that it calls.
+     * @param fun The function
+     * @return The result of the analysis
+     * @throws FnPlotException if a body cannot be traversed
+     */
+    public static Purity of(FnPlotFunction fun) throws FnPlotException {
+        Purity p = new Purity(fun);
+        p.visited.add(fun);
+        p.analyse(fun);
+        return p;
+    }
+
+    private void analyse(FnPlotFunction fun) throws FnPlotException {
+        FnPlotFunction caller = current;
+        boolean callerTail = tail;
+        current = fun;
+        tail = true;
+        consulted.add(fun.getClosingEnv());
+        Set<String> bound = new HashSet<>(fun.getFunExp().getParameters());
+        bound.addAll(DefinedNames.all(fun.getFunExp().getBody()));
+        fun.getFunExp().getBody().visit(this, bound);
+        current = caller;
+        tail = callerTail;
+    }
+
+    /**
+     * @return <code>true</code> if the function is pure
+     */
+    public boolean isPure() {
+        return pure;
+    }
+
+    /**
+     * @return <code>true</code> if the body of the function makes a call in
+     * tail position
+     */
+    public boolean callsInTail() {
+        return callsInTail;
+    }
+
+    /**
+     * @return <code>true</code> if the body of the function makes a call
+     * other than in tail position
+     */
+    public boolean callsOutsideTail() {
+        return callsOutsideTail;
+    }
+
+    /**
+     * @return The environments over which the function, and the functions
+     * that it calls, are closed
+     */
+    public List<Environment<FnPlotValue<?>>> getConsulted() {
+        return consulted;
+    }
+
+    @Override
+    protected Void operands(Collection<String> bound, Exp... exps) throws FnPlotException {
+        boolean wasTail = tail;
+        tail = false;
+        super.operands(bound, exps);
+        tail = wasTail;
+        return null;
+    }
+
+    @Override
+    protected Void within(Collection<String> bound, Collection<String> ids, Statement body)
+            throws FnPlotException {
+        Set<String> inner = new HashSet<>(bound);
+        inner.addAll(ids);
+        return body.visit(this, inner);
+    }
+
+    @Override
+    public Void visitStmtSequence(StmtSequence sseq, Collection<String> bound)
+            throws FnPlotException {
+        ArrayList<Statement> seq = sseq.getSeq();
+        boolean wasTail = tail;
+        for (int i = 0; i < seq.size(); i++) {
+            tail = wasTail && i == seq.size() - 1;
+            seq.get(i).visit(this, bound);
+        }
+        tail = wasTail;
+        return null;
+    }
+
+    @Override
+    public Void visitFunDefn(ExpFunction fd, Collection<String> bound) throws FnPlotException {
+        // making a closure has no effect; calling it is judged where it is called
+        return null;
+    }
+
+    @Override
+    public Void visitFunCall(ExpFunCall fc, Collection<String> bound) throws FnPlotException {
+        operands(bound, fc.getArguments().toArray(new Exp[0]));
+        if (current == root) {
+            if (tail) {
+                callsInTail = true;
+            } else {
+                callsOutsideTail = true;
+            }
+        }
+        String name = fc.getName();
+        Environment<FnPlotValue<?>> env = current.getClosingEnv();
+        if (bound.contains(name) || !env.isBound(fc.getSymbol())) {
+            pure = false;
+            return null;
+        }
+        FnPlotValue<?> callee = env.get(fc.getSymbol());
+        if (!(callee instanceof FnPlotFunction)) {
+            pure = false;
+        } else if (visited.add((FnPlotFunction) callee)) {
+            analyse((FnPlotFunction) callee);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitFunPlot(ExpPlot plot, Collection<String> bound) throws FnPlotException {
+        pure = false;
+        return null;
+    }
+
+    @Override
+    public Void visitClear(ExpClear clear, Collection<String> bound) throws FnPlotException {
+        pure = false;
+        return null;
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpClear;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Computes the lexical address of every variable in an AST.  The visit
+ * methods return a copy of the visited node in which each variable reference,
+ * let binding, definition and function call is annotated with the
+ * (depth, slot) address of the variable it refers to, and each let, function
+ * and plot is annotated with the size of the frame that it creates.  The
+ * result can be run with {@link Frame}s by the {@link FrameEvaluator}.
+ * <p>
+ * The parameters of a function occupy the first slots of its frame (as do
+ * the bindings of a let and the variable of a plot), followed by any names
+ * defined by statements within its body.  Names that are not bound by any
+ * enclosing let, function or plot are global, and are looked up by name at
+ * run time.  A global referred to outside every function body (at the top
+ * level of the program, or in a plot map there) must either already be
+ * bound, or be defined somewhere in the program being resolved; otherwise
+ * it is reported as unbound here, before any of the program is run.  A
+ * global referred to within a function body is only looked up when the
+ * function is called, so that it may be defined later (as is needed by
+ * mutually recursive functions entered one definition at a time).
+ * <p>
+ * A name defined within a block has a slot in the frame of the block, but
+ * may be used before its definition has run.  Until then it refers to the
+ * binding that it shadows, so each such reference also records the
+ * addresses of the bindings that it shadows, for {@link Frame} to fall back
+ * on while the slot is empty.
+ *
+ * @author newts
+ */
+public class Resolver implements Visitor<Resolver.Scope, Statement> {
+
+    /**
+     * The names bound in one frame, at resolution time.
+     */
+    static class Scope {
+
+        private final Scope parent;
+        private final HashMap<String, Integer> slots = new HashMap<>();
+        /** The number of slots filled before the body of the frame is run. */
+        private int filled;
+
+        Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        int declare(String id) {
+            Integer slot = slots.get(id);
+            if (slot == null) {
+                slot = slots.size();
+                slots.put(id, slot);
+            }
+            return slot;
+        }
+
+        int size() {
+            return slots.size();
+        }
+    }
+
+    private final Environment<FnPlotValue<?>> globals;
+    private final HashSet<String> defined = new HashSet<>();
+    /** The number of function bodies enclosing the node being resolved. */
+    private int functions;
+
+    private Resolver(Environment<FnPlotValue<?>> globals) {
+        this.globals = globals;
+    }
+
+    /**
+     * Resolve a program.
+     * @param p The program
+     * @param globals The environment in which its global variables will be
+     * found when it is run
+     * @return A copy of the program annotated with lexical addresses
+     * @throws FnPlotException if the program refers to an unbound variable
+     */
+    public static ArithProgram resolve(ArithProgram p, Environment<FnPlotValue<?>> globals)
+            throws FnPlotException {
+        Resolver r = new Resolver(globals);
+        r.defined.addAll(DefinedNames.all(p));
+        return (ArithProgram) p.visit(r, null);
+    }
+
+    /**
+     * Resolve a function expression whose free variables are to be found in
+     * the given environment (such as the closing environment of a function
+     * created by another interpreter).
+     * @param fun The function expression
+     * @param closingEnv The environment in which its free variables are found
+     * @return A copy of the function annotated with lexical addresses
+     * @throws FnPlotException if the function refers to an unbound variable
+     */
+    public static ExpFunction resolveFunction(ExpFunction fun,
+            Environment<FnPlotValue<?>> closingEnv) throws FnPlotException {
+        Resolver r = new Resolver(closingEnv);
+        r.defined.addAll(DefinedNames.all(fun));
+        r.functions = 1;
+        return (ExpFunction) fun.visit(r, null);
+    }
+
+    /**
+     * Make a scope for a new frame, whose first slots hold the given names,
+     * followed by the names defined in the body of the construct creating it.
+     */
+    private Scope enter(Scope parent, ArrayList<String> ids, Exp body) throws FnPlotException {
+        Scope scope = new Scope(parent);
+        for (String id : ids) {
+            scope.declare(id);
+        }
+        scope.filled = scope.size();
+        for (String id : DefinedNames.local(body)) {
+            scope.declare(id);
+        }
+        return scope;
+    }
+
+    /**
+     * @return The address {depth, slot} of the given name, with depth -1 for
+     * a global, followed by the addresses of the bindings that it shadows
+     * if its slot may be empty when it is used.
+     */
+    private int[] lookup(String id, Scope scope) throws FnPlotException {
+        int[] result = new int[2];
+        int n = 0;
+        int depth = 0;
+        for (Scope s = scope; s != null; s = s.parent) {
+            Integer slot = s.slots.get(id);
+            if (slot != null) {
+                if (n == result.length) {
+                    result = Arrays.copyOf(result, n * 2);
+                }
+                result[n++] = depth;
+                result[n++] = slot;
+                if (slot < s.filled) {
+                    return Arrays.copyOf(result, n);
+                }
+            }
+            depth++;
+        }
+        if (n == 0 && functions == 0 && !globals.isBound(id) && !defined.contains(id)) {
+            throw new FnPlotException("Unbound variable " + id);
+        }
+        result = Arrays.copyOf(result, n + 2);
+        result[n] = -1;
+        result[n + 1] = -1;
+        return result;
+    }
+
+    /**
+     * @return The shadowed addresses that follow the first one in the result
+     * of {@link #lookup(String, Scope)}, or <code>null</code> if there are
+     * none
+     */
+    private static int[] outer(int[] address) {
+        return address.length == 2 ? null : Arrays.copyOfRange(address, 2, address.length);
+    }
+
+    private Exp resolve(Exp exp, Scope scope) throws FnPlotException {
+        return (Exp) exp.visit(this, scope);
+    }
+
+    @Override
+    public Statement visitArithProgram(ArithProgram p, Scope scope) throws FnPlotException {
+        return new ArithProgram((StmtSequence) p.getSeq().visit(this, scope));
+    }
+
+    @Override
+    public Statement visitStmtSequence(StmtSequence sseq, Scope scope) throws FnPlotException {
+        StmtSequence result = new StmtSequence();
+        for (Statement s : sseq.getSeq()) {
+            result.add(s.visit(this, scope));
+        }
+        return result;
+    }
+
+    @Override
+    public Statement visitStmtDefinition(StmtDefinition sd, Scope scope) throws FnPlotException {
+        Exp exp = resolve(sd.getExp(), scope);
+        if (scope == null) {
+            return new StmtDefinition(sd.getVar(), exp, -1, -1);
+        }
+        return new StmtDefinition(sd.getVar(), exp, 0, scope.declare(sd.getVar()));
+    }
+
+    @Override
+    public Statement visitStmtLet(StmtLet let, Scope scope) throws FnPlotException {
+        ArrayList<Binding> bindings = let.getBindings();
+        ArrayList<String> ids = new ArrayList<>(bindings.size());
+        ArrayList<Exp> valExps = new ArrayList<>(bindings.size());
+        for (Binding b : bindings) {
+            ids.add(b.getVar());
+            valExps.add(resolve(b.getValExp(), scope));
+        }
+        Scope inner = enter(scope, ids, let.getBody());
+        ArrayList<Binding> resolved = new ArrayList<>(bindings.size());
+        for (int i = 0; i < ids.size(); i++) {
+            resolved.add(new Binding(ids.get(i), valExps.get(i), inner.declare(ids.get(i))));
+        }
+        Exp body = resolve(let.getBody(), inner);
+        return new StmtLet(resolved, body, inner.size());
+    }
+
+    @Override
+    public Statement visitFunDefn(ExpFunction fd, Scope scope) throws FnPlotException {
+        Scope inner = enter(scope, fd.getParameters(), fd.getBody());
+        functions++;
+        Exp body;
+        try {
+            body = resolve(fd.getBody(), inner);
+        } finally {
+            functions--;
+        }
+        return new ExpFunction(fd.getParameters(), body, inner.size()).derivedFrom(fd);
+    }
+
+    @Override
+    public Statement visitFunCall(ExpFunCall fc, Scope scope) throws FnPlotException {
+        int[] address = lookup(fc.getName(), scope);
+        ArrayList<Exp> args = new ArrayList<>(fc.getArguments().size());
+        for (Exp e : fc.getArguments()) {
+            args.add(resolve(e, scope));
+        }
+        return new ExpFunCall(fc.getName(), args, address[0], address[1], outer(address));
+    }
+
+    @Override
+    public Statement visitFunPlot(ExpPlot plot, Scope scope) throws FnPlotException {
+        ArrayList<String> ids = new ArrayList<>(1);
+        ids.add(plot.getItem());
+        Scope inner = enter(scope, ids, plot.getMap());
+        Exp map = resolve(plot.getMap(), inner);
+        return new ExpPlot(map, plot.getItem(), plot.getStart(), plot.getEnd(), inner.size());
+    }
+
+    @Override
+    public Statement visitClear(ExpClear clear, Scope scope) throws FnPlotException {
+        return clear;
+    }
+
+    @Override
+    public Statement visitExpAdd(ExpAdd exp, Scope scope) throws FnPlotException {
+        return new ExpAdd(resolve(exp.getExpL(), scope), resolve(exp.getExpR(), scope));
+    }
+
+    @Override
+    public Statement visitExpSub(ExpSub exp, Scope scope) throws FnPlotException {
+        return new ExpSub(resolve(exp.getExpL(), scope), resolve(exp.getExpR(), scope));
+    }
+
+    @Override
+    public Statement visitExpMul(ExpMul exp, Scope scope) throws FnPlotException {
+        return new ExpMul(resolve(exp.getExpL(), scope), resolve(exp.getExpR(), scope));
+    }
+
+    @Override
+    public Statement visitExpPow(ExpPow exp, Scope scope) throws FnPlotException {
+        return new ExpPow(resolve(exp.getExpL(), scope), resolve(exp.getExpR(), scope));
+    }
+
+    @Override
+    public Statement visitExpDiv(ExpDiv exp, Scope scope) throws FnPlotException {
+        return new ExpDiv(resolve(exp.getExpL(), scope), resolve(exp.getExpR(), scope));
+    }
+
+    @Override
+    public Statement visitExpMod(ExpMod exp, Scope scope) throws FnPlotException {
+        return new ExpMod(resolve(exp.getExpL(), scope), resolve(exp.getExpR(), scope));
+    }
+
+    @Override
+    public Statement visitExpLit(ExpLit exp, Scope scope) throws FnPlotException {
+        return exp;
+    }
+
+    @Override
+    public Statement visitExpVar(ExpVar exp, Scope scope) throws FnPlotException {
+        int[] address = lookup(exp.getVar(), scope);
+        return new ExpVar(exp.getVar(), address[0], address[1], outer(address));
+    }
+
+    @Override
+    public Statement visitExpCompare(ExpCompare exp, Scope scope) throws FnPlotException {
+        return new ExpCompare(exp.getOp(), resolve(exp.getExpL(), scope),
+                resolve(exp.getExpR(), scope));
+    }
+
+    @Override
+    public Statement visitExpIf(ExpIf exp, Scope scope) throws FnPlotException {
+        return new ExpIf(resolve(exp.getCondition(), scope), resolve(exp.getThen(), scope),
+                resolve(exp.getElse(), scope));
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpClear;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The base class of the analyses that walk an AST keeping track of the
+ * names bound around each point of it.  By default every node is walked by
+ * walking its children, and the body of each let, function and plot is
+ * walked by {@link #within(Object, Collection, Statement)}, with the names
+ * that it binds, so an analysis need only say how a body's scope is made,
+ * and override the methods for the nodes that it is interested in.  A name
+ * referred to by a variable or a call is reported to
+ * {@link #refer(Exp, String, Object)}, and a name defined by a statement to
+ * {@link #define(String, Object)}.
+ * <p>
+ * The children of a node whose values are not the value of the node (the
+ * operands of arithmetic and comparisons, the arguments of calls, the
+ * condition of a conditional, the values of definitions and of let
+ * bindings) are walked by {@link #operands(Object, Exp...)}, and the others
+ * (the branches of a conditional, the last statement of a sequence, and
+ * the bodies) directly, so that an analysis can tell which expressions are
+ * in tail position.
+ *
+ * @param <S> The type of the scope passed down the tree
+ * @author newts
+ */
+public abstract class ScopeWalker<S> implements Visitor<S, Void> {
+
+    /**
+     * A chain of the names bound by the lets, functions and plots around a
+     * point of an AST, each with the names defined by the statements run in
+     * its frame.
+     */
+    static final class Scope {
+
+        final Scope parent;
+        final Set<String> bound;
+        final Set<String> defined;
+
+        /**
+         * Make the scope of the body of a let, function or plot.
+         * @param parent The enclosing scope, or <code>null</code> at the top
+         * level
+         * @param bound The names bound by the let, function or plot
+         * @param body The body, whose own definitions are also local to it
+         * @throws FnPlotException if the body cannot be traversed
+         */
+        Scope(Scope parent, Collection<String> bound, Statement body) throws FnPlotException {
+            this.parent = parent;
+            this.bound = new HashSet<>(bound);
+            this.defined = DefinedNames.local(body);
+        }
+
+        /**
+         * @return <code>true</code> if the name is bound or defined in this
+         * scope or one that encloses it
+         */
+        boolean binds(String id) {
+            for (Scope s = this; s != null; s = s.parent) {
+                if (s.bound.contains(id) || s.defined.contains(id)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Walk the body of a let, function or plot.
+     * @param scope The scope in which the let, function or plot appears
+     * @param bound The names that it binds
+     * @param body Its body
+     * @return <code>null</code>
+     * @throws FnPlotException if the body cannot be traversed
+     */
+    protected abstract Void within(S scope, Collection<String> bound, Statement body)
+            throws FnPlotException;
+
+    /**
+     * Note a reference to a name, by a variable or a call.  By default,
+     * nothing is done.
+     * @param node The variable or call
+     * @param id The name
+     * @param scope The scope of the reference
+     */
+    protected void refer(Exp node, String id, S scope) {
+    }
+
+    /**
+     * Note a definition of a name, before its value is walked.  By default,
+     * nothing is done.
+     * @param id The name
+     * @param scope The scope of the definition
+     */
+    protected void define(String id, S scope) {
+    }
+
+    /**
+     * Walk expressions whose values are used by the node that they are in,
+     * rather than being its value.
+     * @param scope The scope of the expressions
+     * @param exps The expressions
+     * @return <code>null</code>
+     * @throws FnPlotException if an expression cannot be traversed
+     */
+    protected Void operands(S scope, Exp... exps) throws FnPlotException {
+        for (Exp e : exps) {
+            e.visit(this, scope);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitArithProgram(ArithProgram p, S scope) throws FnPlotException {
+        return p.getSeq().visit(this, scope);
+    }
+
+    @Override
+    public Void visitStmtSequence(StmtSequence sseq, S scope) throws FnPlotException {
+        for (Statement s : sseq.getSeq()) {
+            s.visit(this, scope);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitStmtDefinition(StmtDefinition sd, S scope) throws FnPlotException {
+        define(sd.getVar(), scope);
+        return operands(scope, sd.getExp());
+    }
+
+    @Override
+    public Void visitStmtLet(StmtLet let, S scope) throws FnPlotException {
+        ArrayList<String> vars = new ArrayList<>();
+        for (Binding b : let.getBindings()) {
+            operands(scope, b.getValExp());
+            vars.add(b.getVar());
+        }
+        return within(scope, vars, let.getBody());
+    }
+
+    @Override
+    public Void visitFunDefn(ExpFunction fd, S scope) throws FnPlotException {
+        return within(scope, fd.getParameters(), fd.getBody());
+    }
+
+    @Override
+    public Void visitFunCall(ExpFunCall fc, S scope) throws FnPlotException {
+        refer(fc, fc.getName(), scope);
+        return operands(scope, fc.getArguments().toArray(new Exp[0]));
+    }
+
+    @Override
+    public Void visitFunPlot(ExpPlot plot, S scope) throws FnPlotException {
+        return within(scope, Collections.singleton(plot.getItem()), plot.getMap());
+    }
+
+    @Override
+    public Void visitClear(ExpClear clear, S scope) throws FnPlotException {
+        return null;
+    }
+
+    @Override
+    public Void visitExpAdd(ExpAdd exp, S scope) throws FnPlotException {
+        return operands(scope, exp.getExpL(), exp.getExpR());
+    }
+
+    @Override
+    public Void visitExpSub(ExpSub exp, S scope) throws FnPlotException {
+        return operands(scope, exp.getExpL(), exp.getExpR());
+    }
+
+    @Override
+    public Void visitExpMul(ExpMul exp, S scope) throws FnPlotException {
+        return operands(scope, exp.getExpL(), exp.getExpR());
+    }
+
+    @Override
+    public Void visitExpPow(ExpPow exp, S scope) throws FnPlotException {
+        return operands(scope, exp.getExpL(), exp.getExpR());
+    }
+
+    @Override
+    public Void visitExpDiv(ExpDiv exp, S scope) throws FnPlotException {
+        return operands(scope, exp.getExpL(), exp.getExpR());
+    }
+
+    @Override
+    public Void visitExpMod(ExpMod exp, S scope) throws FnPlotException {
+        return operands(scope, exp.getExpL(), exp.getExpR());
+    }
+
+    @Override
+    public Void visitExpLit(ExpLit exp, S scope) throws FnPlotException {
+        return null;
+    }
+
+    @Override
+    public Void visitExpVar(ExpVar exp, S scope) throws FnPlotException {
+        refer(exp, exp.getVar(), scope);
+        return null;
+    }
+
+    @Override
+    public Void visitExpCompare(ExpCompare exp, S scope) throws FnPlotException {
+        return operands(scope, exp.getExpL(), exp.getExpR());
+    }
+
+    @Override
+    public Void visitExpIf(ExpIf exp, S scope) throws FnPlotException {
+        operands(scope, exp.getCondition());
+        exp.getThen().visit(this, scope);
+        return exp.getElse().visit(this, scope);
+    }
+}
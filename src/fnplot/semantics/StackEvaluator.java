@@ -0,0 +1,431 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.NodeKind;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.sys.RuntimeFnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotValue;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A tree walking interpreter that keeps its work on explicit stacks in the
+ * heap, rather than on the Java stack, so that deeply nested expressions and
+ * deeply recursive functions are not limited by the size of the Java stack.
+ * The work stack holds the tasks still to be done, each of which is either
+ * the evaluation of a node in an environment, or the continuation of a node
+ * whose operands have been evaluated; the value stack holds the values of
+ * the operands.  Since the body of a function or let replaces the task that
+ * entered it, as does the branch of a conditional, calls in tail position do
+ * not use up the stack at all.
+ * <p>
+ * The number of tasks on the work stack is limited by
+ * {@link #getMaxFrames()}, which defaults to the value of the system property
+ * <code>fnplot.stack.maxframes</code>, if it is set.  Exceeding it causes a
+ * {@link RuntimeFnPlotException}.  The values computed, and the errors
+ * reported, are otherwise the same as those of the tree walking
+ * {@link Evaluator} with none of its plot accelerations.
+ *
+ * @author newts
+ */
+public class StackEvaluator implements Interpreter {
+
+    /** The name of the system property that sets the default limit. */
+    public static final String MAX_FRAMES_PROPERTY = "fnplot.stack.maxframes";
+
+    /** The default limit on the number of tasks on the work stack. */
+    public static final int DEFAULT_MAX_FRAMES = 1 << 20;
+
+    // the kinds of task, besides the evaluation of a node
+    private static final int EVAL = 0;
+    private static final int APPLY = 1;
+    private static final int DEFINE = 2;
+    private static final int DISCARD = 3;
+    private static final int ENTER_LET = 4;
+    private static final int ENTER_CALL = 5;
+    private static final int NEXT_SAMPLE = 6;
+    private static final int BRANCH = 7;
+
+    /**
+     * The progress of a plot whose map is being evaluated at its samples.
+     */
+    private static final class PlotState {
+
+        private final ExpPlot plot;
+        private final int item;
+        private final double[] xs;
+        private final Point2D[] ys;
+        private final Environment<FnPlotValue<?>> env;
+        private int next;
+
+        PlotState(ExpPlot plot, double[] xs, Environment<FnPlotValue<?>> env) {
+            this.plot = plot;
+            this.item = SymbolTable.intern(plot.getItem());
+            this.xs = xs;
+            this.ys = new Point2D[xs.length];
+            this.env = env;
+        }
+    }
+
+    private final Environment<FnPlotValue<?>> globalEnv;
+    private Plotter plotter;
+    private int maxFrames = Integer.getInteger(MAX_FRAMES_PROPERTY, DEFAULT_MAX_FRAMES);
+
+    // work stack: the kind of each task, its node (or function or plot),
+    // its environment and, for continuations, the number of operands
+    private int[] taskKind = new int[64];
+    private Object[] taskNode = new Object[64];
+    private Object[] taskEnv = new Object[64];
+    private int[] taskCount = new int[64];
+    private int tp;
+
+    // value stack
+    private FnPlotValue<?>[] vals = new FnPlotValue<?>[64];
+    private int sp;
+
+    public StackEvaluator() {
+        globalEnv = new Environment<>();
+    }
+
+    @Override
+    public Environment<FnPlotValue<?>> getGlobalEnv() {
+        return globalEnv;
+    }
+
+    @Override
+    public Plotter getPlotter() {
+        return plotter;
+    }
+
+    @Override
+    public void setPlotter(final Plotter plotter) {
+        this.plotter = plotter;
+    }
+
+    /**
+     * @return The greatest number of tasks that may be on the work stack
+     */
+    public int getMaxFrames() {
+        return maxFrames;
+    }
+
+    /**
+     * Set the greatest number of tasks that may be on the work stack.  Each
+     * pending operation, call, let and plot takes at least one.
+     * @param maxFrames The limit
+     */
+    public void setMaxFrames(final int maxFrames) {
+        this.maxFrames = maxFrames;
+    }
+
+    @Override
+    public FnPlotValue<?> run(final ArithProgram p, final Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return eval(p, env);
+    }
+
+    /**
+     * Evaluate a node of an AST.
+     * @param node The node (program, statement or expression)
+     * @param env The environment in which to evaluate it
+     * @return The value of the node, which is <code>null</code> for a plot
+     * or a clear
+     * @throws FnPlotException if a runtime error occurs, or the work stack
+     * overflows
+     */
+    public FnPlotValue<?> eval(final Statement node, final Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        final int base = tp;
+        final int valBase = sp;
+        try {
+            push(EVAL, node, env, 0);
+            while (tp > base) {
+                tp--;
+                step(taskKind[tp], taskNode[tp], taskEnv(tp), taskCount[tp]);
+            }
+            return vals[--sp];
+        } finally {
+            // drop whatever an error left behind, so that nothing is retained
+            Arrays.fill(taskNode, base, Math.max(base, tp), null);
+            Arrays.fill(taskEnv, base, Math.max(base, tp), null);
+            Arrays.fill(vals, valBase, Math.max(valBase, sp), null);
+            tp = base;
+            sp = valBase;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Environment<FnPlotValue<?>> taskEnv(final int i) {
+        return (Environment<FnPlotValue<?>>) taskEnv[i];
+    }
+
+    private void push(final int kind, final Object node, final Environment<FnPlotValue<?>> env,
+            final int count) throws FnPlotException {
+        if (tp == taskKind.length) {
+            if (tp >= maxFrames) {
+                throw new RuntimeFnPlotException("Stack overflow: more than " + maxFrames
+                        + " pending evaluations");
+            }
+            final int n = (int) Math.min(tp * 2L, maxFrames);
+            taskKind = Arrays.copyOf(taskKind, n);
+            taskNode = Arrays.copyOf(taskNode, n);
+            taskEnv = Arrays.copyOf(taskEnv, n);
+            taskCount = Arrays.copyOf(taskCount, n);
+        }
+        taskKind[tp] = kind;
+        taskNode[tp] = node;
+        taskEnv[tp] = env;
+        taskCount[tp] = count;
+        tp++;
+    }
+
+    private void pushValue(final FnPlotValue<?> v) {
+        if (sp == vals.length) {
+            vals = Arrays.copyOf(vals, sp * 2);
+        }
+        vals[sp++] = v;
+    }
+
+    private FnPlotValue<?> popValue() {
+        final FnPlotValue<?> v = vals[--sp];
+        vals[sp] = null;
+        return v;
+    }
+
+    /**
+     * Perform one task.  The operands of a continuation are on top of the
+     * value stack, and each task leaves exactly one value there, once all of
+     * the tasks that it pushes have been performed.
+     */
+    private void step(final int kind, final Object node, final Environment<FnPlotValue<?>> env,
+            final int count) throws FnPlotException {
+        switch (kind) {
+            case EVAL:
+                evalNode((Statement) node, env);
+                break;
+            case APPLY: {
+                final FnPlotValue<?> right = popValue();
+                final FnPlotValue<?> left = popValue();
+                pushValue(apply(count, node, left, right));
+                break;
+            }
+            case DEFINE: {
+                final FnPlotValue<?> v = vals[sp - 1];
+                env.put(((StmtDefinition) node).getSymbol(), v);
+                break;
+            }
+            case DISCARD:
+                popValue();
+                break;
+            case ENTER_LET: {
+                final StmtLet let = (StmtLet) node;
+                final int[] vars = new int[count];
+                final FnPlotValue<?>[] values = new FnPlotValue<?>[count];
+                for (int i = count - 1; i >= 0; i--) {
+                    vars[i] = let.getBindings().get(i).getSymbol();
+                    values[i] = popValue();
+                }
+                push(EVAL, let.getBody(), new Environment<>(vars, values, env), 0);
+                break;
+            }
+            case ENTER_CALL: {
+                final FnPlotFunction fun = (FnPlotFunction) node;
+                final ArrayList<FnPlotValue<?>> values = new ArrayList<>(count);
+                for (int i = sp - count; i < sp; i++) {
+                    values.add(vals[i]);
+                }
+                for (int i = 0; i < count; i++) {
+                    popValue();
+                }
+                final Environment<FnPlotValue<?>> newEnv = new Environment<>(
+                        fun.getFunExp().getParameterSymbols(), values, fun.getClosingEnv());
+                push(EVAL, fun.getFunExp().getBody(), newEnv, 0);
+                break;
+            }
+            case BRANCH: {
+                final ExpIf exp = (ExpIf) node;
+                push(EVAL, popValue().isTrue() ? exp.getThen() : exp.getElse(), env, 0);
+                break;
+            }
+            case NEXT_SAMPLE: {
+                final PlotState state = (PlotState) node;
+                final int x = state.next++;
+                state.ys[x] = new Point2D.Double(state.xs[x], popValue().doubleValue());
+                nextSample(state);
+                break;
+            }
+            default:
+                throw new FnPlotException("Unknown kind of task: " + kind);
+        }
+    }
+
+    private void evalNode(final Statement node, final Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        switch (node.getKind()) {
+            case NodeKind.LIT:
+                pushValue(((ExpLit) node).getVal());
+                break;
+            case NodeKind.VAR:
+                pushValue(env.get(((ExpVar) node).getSymbol()));
+                break;
+            case NodeKind.ADD:
+                arith(node, ((ExpAdd) node).getExpL(), ((ExpAdd) node).getExpR(), env);
+                break;
+            case NodeKind.SUB:
+                arith(node, ((ExpSub) node).getExpL(), ((ExpSub) node).getExpR(), env);
+                break;
+            case NodeKind.MUL:
+                arith(node, ((ExpMul) node).getExpL(), ((ExpMul) node).getExpR(), env);
+                break;
+            case NodeKind.DIV:
+                arith(node, ((ExpDiv) node).getExpL(), ((ExpDiv) node).getExpR(), env);
+                break;
+            case NodeKind.MOD:
+                arith(node, ((ExpMod) node).getExpL(), ((ExpMod) node).getExpR(), env);
+                break;
+            case NodeKind.POW:
+                arith(node, ((ExpPow) node).getExpL(), ((ExpPow) node).getExpR(), env);
+                break;
+            case NodeKind.COMPARE:
+                arith(node, ((ExpCompare) node).getExpL(), ((ExpCompare) node).getExpR(), env);
+                break;
+            case NodeKind.IF:
+                push(BRANCH, node, env, 0);
+                push(EVAL, ((ExpIf) node).getCondition(), env, 0);
+                break;
+            case NodeKind.CALL: {
+                final ExpFunCall call = (ExpFunCall) node;
+                final FnPlotFunction fun = (FnPlotFunction) env.get(call.getSymbol());
+                final int n = call.getArguments().size();
+                push(ENTER_CALL, fun, env, n);
+                for (int i = n - 1; i >= 0; i--) {
+                    push(EVAL, call.getArguments().get(i), env, 0);
+                }
+                break;
+            }
+            case NodeKind.LET: {
+                final ArrayList<Binding> bindings = ((StmtLet) node).getBindings();
+                push(ENTER_LET, node, env, bindings.size());
+                for (int i = bindings.size() - 1; i >= 0; i--) {
+                    push(EVAL, bindings.get(i).getValExp(), env, 0);
+                }
+                break;
+            }
+            case NodeKind.FUNCTION:
+                pushValue(new FnPlotFunction((ExpFunction) node, env));
+                break;
+            case NodeKind.DEFINITION:
+                push(DEFINE, node, env, 0);
+                push(EVAL, ((StmtDefinition) node).getExp(), env, 0);
+                break;
+            case NodeKind.SEQUENCE: {
+                final ArrayList<Statement> seq = ((StmtSequence) node).getSeq();
+                if (seq.isEmpty()) {
+                    pushValue(FnPlotValue.make(0));
+                    break;
+                }
+                // the value of each statement but the last is discarded
+                push(EVAL, seq.get(seq.size() - 1), env, 0);
+                for (int i = seq.size() - 2; i >= 0; i--) {
+                    push(DISCARD, null, null, 0);
+                    push(EVAL, seq.get(i), env, 0);
+                }
+                break;
+            }
+            case NodeKind.PLOT: {
+                final ExpPlot plot = (ExpPlot) node;
+                final double[] xs = plotter.sample(plot.getStart(), plot.getEnd());
+                final Environment<FnPlotValue<?>> newEnv = new Environment<>(new int[0],
+                        new FnPlotValue<?>[0], env);
+                nextSample(new PlotState(plot, xs, newEnv));
+                break;
+            }
+            case NodeKind.CLEAR:
+                plotter.clear();
+                pushValue(null);
+                break;
+            case NodeKind.PROGRAM:
+                push(EVAL, ((ArithProgram) node).getSeq(), env, 0);
+                break;
+            default:
+                throw new FnPlotException("Unknown kind of node: " + node.getKind());
+        }
+    }
+
+    private void arith(final Statement node, final Statement left, final Statement right,
+            final Environment<FnPlotValue<?>> env) throws FnPlotException {
+        push(APPLY, node, null, node.getKind());
+        push(EVAL, right, env, 0);
+        push(EVAL, left, env, 0);
+    }
+
+    private static FnPlotValue<?> apply(final int kind, final Object node,
+            final FnPlotValue<?> left, final FnPlotValue<?> right) throws FnPlotException {
+        switch (kind) {
+            case NodeKind.ADD: return left.add(right);
+            case NodeKind.SUB: return left.sub(right);
+            case NodeKind.MUL: return left.mul(right);
+            case NodeKind.DIV: return left.div(right);
+            case NodeKind.MOD: return left.mod(right);
+            case NodeKind.POW: return left.pow(right);
+            case NodeKind.COMPARE: return ((ExpCompare) node).getOp().apply(left, right);
+            default: throw new FnPlotException("Unknown kind of operation: " + kind);
+        }
+    }
+
+    /**
+     * Evaluate the map of a plot at its next sample, or plot the points if
+     * there are no more samples.
+     */
+    private void nextSample(final PlotState state) throws FnPlotException {
+        if (state.next < state.xs.length) {
+            state.env.put(state.item, FnPlotValue.make(state.xs[state.next]));
+            push(NEXT_SAMPLE, state, null, 0);
+            push(EVAL, state.plot.getMap(), state.env, 0);
+        } else {
+            plotter.plot(state.ys);
+            pushValue(null);
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.NodeKind;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotValue;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+
+/**
+ * A tree walking interpreter that dispatches on the {@link NodeKind} of each
+ * node with a <code>switch</code>, rather than through a {@link Visitor}.
+ * Visiting a node takes two virtual calls (of {@link Statement#visit} and
+ * then of the visitor method); here the kind of a node is a field of the
+ * node, and the nodes met in a hot plot are evaluated in the one method,
+ * {@link #eval}, with the rest left to {@link #evalStatement}.
+ * <p>
+ * Both engines still box every intermediate value, and that, rather than
+ * dispatch, dominates the time of most plots: {@link DispatchBenchmark}
+ * shows this engine ahead on plain arithmetic but level with, and on some
+ * scripts behind, the {@link Evaluator}.  It is kept for comparison, and
+ * is not used by default.
+ * <p>
+ * The values computed, and the errors reported, are the same as those of
+ * the tree walking {@link Evaluator} with none of its plot accelerations.
+ *
+ * @author newts
+ */
+public class SwitchEvaluator implements Interpreter {
+
+    private final Environment<FnPlotValue<?>> globalEnv;
+    private Plotter plotter;
+
+    public SwitchEvaluator() {
+        globalEnv = new Environment<>();
+    }
+
+    @Override
+    public Environment<FnPlotValue<?>> getGlobalEnv() {
+        return globalEnv;
+    }
+
+    @Override
+    public Plotter getPlotter() {
+        return plotter;
+    }
+
+    @Override
+    public void setPlotter(final Plotter plotter) {
+        this.plotter = plotter;
+    }
+
+    @Override
+    public FnPlotValue<?> run(final ArithProgram p, final Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return eval(p, env);
+    }
+
+    /**
+     * Evaluate a node of an AST.  A call, let, conditional or sequence whose
+     * value is the value of the node continues with its body, branch or last
+     * statement in this loop, rather than by a recursive call, so that a
+     * chain of tail calls (such as a recursive loop) runs in constant Java
+     * stack space, as it does in the {@link Evaluator}.
+     * @param node The node (program, statement or expression)
+     * @param env The environment in which to evaluate it
+     * @return The value of the node, which is <code>null</code> for a plot
+     * or a clear
+     * @throws FnPlotException if a runtime error occurs
+     */
+    public FnPlotValue<?> eval(Statement node, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        while (true) {
+            switch (node.getKind()) {
+                case NodeKind.LIT:
+                    return ((ExpLit) node).getVal();
+                case NodeKind.VAR:
+                    return env.get(((ExpVar) node).getSymbol());
+                case NodeKind.ADD: {
+                    final ExpAdd exp = (ExpAdd) node;
+                    return eval(exp.getExpL(), env).add(eval(exp.getExpR(), env));
+                }
+                case NodeKind.SUB: {
+                    final ExpSub exp = (ExpSub) node;
+                    return eval(exp.getExpL(), env).sub(eval(exp.getExpR(), env));
+                }
+                case NodeKind.MUL: {
+                    final ExpMul exp = (ExpMul) node;
+                    return eval(exp.getExpL(), env).mul(eval(exp.getExpR(), env));
+                }
+                case NodeKind.DIV: {
+                    final ExpDiv exp = (ExpDiv) node;
+                    return eval(exp.getExpL(), env).div(eval(exp.getExpR(), env));
+                }
+                case NodeKind.MOD: {
+                    final ExpMod exp = (ExpMod) node;
+                    return eval(exp.getExpL(), env).mod(eval(exp.getExpR(), env));
+                }
+                case NodeKind.POW: {
+                    final ExpPow exp = (ExpPow) node;
+                    return eval(exp.getExpL(), env).pow(eval(exp.getExpR(), env));
+                }
+                case NodeKind.COMPARE: {
+                    final ExpCompare exp = (ExpCompare) node;
+                    return exp.getOp().apply(eval(exp.getExpL(), env), eval(exp.getExpR(), env));
+                }
+                case NodeKind.IF: {
+                    final ExpIf exp = (ExpIf) node;
+                    node = eval(exp.getCondition(), env).isTrue() ? exp.getThen() : exp.getElse();
+                    break;
+                }
+                case NodeKind.CALL: {
+                    final ExpFunCall callExp = (ExpFunCall) node;
+                    final FnPlotFunction fun = (FnPlotFunction) env.get(callExp.getSymbol());
+                    env = enter(fun, callExp, env);
+                    node = fun.getFunExp().getBody();
+                    break;
+                }
+                case NodeKind.LET: {
+                    final StmtLet let = (StmtLet) node;
+                    env = bind(let, env);
+                    node = let.getBody();
+                    break;
+                }
+                case NodeKind.SEQUENCE: {
+                    final ArrayList<Statement> seq = ((StmtSequence) node).getSeq();
+                    if (seq.isEmpty()) {
+                        return FnPlotValue.make(0);
+                    }
+                    node = runAllButLast(seq, env);
+                    break;
+                }
+                case NodeKind.PROGRAM:
+                    node = ((ArithProgram) node).getSeq();
+                    break;
+                case NodeKind.FUNCTION:
+                case NodeKind.DEFINITION:
+                case NodeKind.PLOT:
+                case NodeKind.CLEAR:
+                    return evalStatement(node, env);
+                default:
+                    throw new FnPlotException("Unknown kind of node: " + node.getKind());
+            }
+        }
+    }
+
+    /**
+     * Evaluate a node that is not met in the body of a hot loop.  These are
+     * kept out of {@link #eval} so that it stays small enough for the JIT to
+     * compile well.
+     */
+    private FnPlotValue<?> evalStatement(final Statement node, final Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        switch (node.getKind()) {
+            case NodeKind.FUNCTION:
+                return new FnPlotFunction((ExpFunction) node, env);
+            case NodeKind.DEFINITION: {
+                final StmtDefinition sd = (StmtDefinition) node;
+                final FnPlotValue<?> result = eval(sd.getExp(), env);
+                env.put(sd.getSymbol(), result);
+                return result;
+            }
+            case NodeKind.PLOT:
+                return plot((ExpPlot) node, env);
+            case NodeKind.CLEAR:
+                plotter.clear();
+                return null;
+            default:
+                throw new FnPlotException("Unknown kind of node: " + node.getKind());
+        }
+    }
+
+    /**
+     * @return The environment in which the body of the given function is
+     * evaluated for the given call of it
+     */
+    private Environment<FnPlotValue<?>> enter(final FnPlotFunction fun, final ExpFunCall callExp,
+            final Environment<FnPlotValue<?>> env) throws FnPlotException {
+        final ArrayList<Exp> args = callExp.getArguments();
+        final ArrayList<FnPlotValue<?>> values = new ArrayList<>(args.size());
+        for (final Exp arg : args) {
+            values.add(eval(arg, env));
+        }
+        return new Environment<>(fun.getFunExp().getParameterSymbols(), values,
+                fun.getClosingEnv());
+    }
+
+    /**
+     * Evaluate all but the last of a non-empty sequence of statements.
+     * @return The last statement of the sequence
+     */
+    private Statement runAllButLast(final ArrayList<Statement> seq,
+            final Environment<FnPlotValue<?>> env) throws FnPlotException {
+        final int last = seq.size() - 1;
+        for (int i = 0; i < last; i++) {
+            eval(seq.get(i), env);
+        }
+        return seq.get(last);
+    }
+
+    /**
+     * @return The environment in which the body of the given let is evaluated
+     */
+    private Environment<FnPlotValue<?>> bind(final StmtLet let, final Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        final ArrayList<Binding> bindings = let.getBindings();
+        final int size = bindings.size();
+        final int[] vars = new int[size];
+        final FnPlotValue<?>[] vals = new FnPlotValue<?>[size];
+        for (int i = 0; i < size; i++) {
+            final Binding b = bindings.get(i);
+            vars[i] = b.getSymbol();
+            vals[i] = eval(b.getValExp(), env);
+        }
+        return new Environment<>(vars, vals, env);
+    }
+
+    private FnPlotValue<?> plot(final ExpPlot exp, final Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        final int id = SymbolTable.intern(exp.getItem());
+        final Exp map = exp.getMap();
+        final double[] xpoints = plotter.sample(exp.getStart(), exp.getEnd());
+        final Point2D[] ypoints = new Point2D[xpoints.length];
+        final Environment<FnPlotValue<?>> newEnv = new Environment<>(new int[0],
+                new FnPlotValue<?>[0], env);
+        for (int x = 0; x < xpoints.length; x++) {
+            newEnv.put(id, FnPlotValue.make(xpoints[x]));
+            ypoints[x] = new Point2D.Double(xpoints[x], eval(map, newEnv).doubleValue());
+        }
+        plotter.plot(ypoints);
+        return null;
+    }
+}
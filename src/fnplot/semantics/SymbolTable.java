@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.semantics;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The table of every identifier in the process, which numbers them densely
+ * from 0 in the order in which they are first seen.  The lexer interns each
+ * identifier that it reads, so that the AST nodes that name a variable or
+ * function can carry its number (its <em>symbol</em>), and an
+ * {@link Environment} can look up a binding by comparing ints rather than
+ * hashing and comparing strings.  Each identifier also has a canonical
+ * string, which the lexer returns in place of a fresh copy of its text.
+ * <p>
+ * Symbols are never removed, so the table only grows with the number of
+ * distinct identifiers read, not with the length of the programs.  Looking
+ * up an identifier or a name takes no lock, so interpreters running in
+ * different threads do not wait for each other here; only adding a new
+ * identifier does.
+ *
+ * @author newts
+ */
+public final class SymbolTable {
+
+    private static final ConcurrentHashMap<String, Integer> SYMBOLS = new ConcurrentHashMap<>();
+    /** Guards the adding of identifiers; looking them up takes no lock. */
+    private static final Object LOCK = new Object();
+    private static volatile String[] names = new String[64];
+    private static volatile int size = 0;
+
+    private SymbolTable() {
+    }
+
+    /**
+     * Find the symbol of an identifier, adding it to the table if it is new.
+     * @param id The identifier
+     * @return Its symbol
+     */
+    public static int intern(String id) {
+        Integer symbol = SYMBOLS.get(id);
+        if (symbol != null) {
+            return symbol;
+        }
+        synchronized (LOCK) {
+            symbol = SYMBOLS.get(id);
+            if (symbol != null) {
+                return symbol;
+            }
+            int n = size;
+            if (n == names.length) {
+                names = Arrays.copyOf(names, n * 2);
+            }
+            // the name is stored before the symbol is published in SYMBOLS,
+            // so whoever finds the symbol there also finds its name
+            names[n] = id;
+            size = n + 1;
+            SYMBOLS.put(id, n);
+            return n;
+        }
+    }
+
+    /**
+     * Find the symbol of an identifier, without adding it to the table.
+     * @param id The identifier
+     * @return Its symbol, or -1 if it has never been interned (in which case
+     * nothing can be bound to it)
+     */
+    public static int lookup(String id) {
+        Integer symbol = SYMBOLS.get(id);
+        return symbol == null ? -1 : symbol;
+    }
+
+    /**
+     * @param symbol A symbol
+     * @return The canonical string of the identifier with that symbol
+     */
+    public static String name(int symbol) {
+        return names[symbol];
+    }
+
+    /**
+     * Intern the identifiers in an array.
+     * @param ids The identifiers
+     * @return Their symbols, in the same order
+     */
+    public static int[] intern(String[] ids) {
+        int[] result = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = intern(ids[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of identifiers interned
+     */
+    public static int size() {
+        return size;
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.semantics;
+
+import fnplot.compiler.CodeCache;
+import fnplot.compiler.CompiledFunction;
+import fnplot.sys.CompileFnPlotException;
+import fnplot.sys.FnPlotException;
+import fnplot.syntax.ExpPlot;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotType;
+import fnplot.values.FnPlotValue;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Decides when the {@link Evaluator} should promote code from the tree
+ * walking tier to compiled bytecode.  Each {@link FnPlotFunction} counts its
+ * calls, and each {@link ExpPlot} counts the samples taken of its map.  A
+ * function whose calls reach the call threshold is compiled for the types
+ * of the arguments of the call that made it hot, and later calls with
+ * arguments of those types run the compiled code.  A plot map is compiled
+ * once it has been sampled as often as the sample threshold, which may
+ * happen part way through the samples of a single plot, in which case the
+ * remaining samples are computed by the compiled code.
+ * <p>
+ * The compiled code of a function captures the values of its free
+ * variables, so it is demoted back to the tree walking tier when a binding
+ * is made in any of the environments that were searched for them, and may
+ * later be promoted again.  A function that is demoted (or fails to compile)
+ * too often stays in the tree walking tier, since each attempt to compile it
+ * has a cost, and so does one whose body contains a construct that the
+ * compiler does not support, after the first attempt.  Both tiers compute
+ * the same values.
+ * <p>
+ * Setting the system property <code>fnplot.tiers.trace=true</code> (or
+ * calling {@link #setTracing(boolean)}) reports each change of tier.
+ *
+ * @author newts
+ */
+public class TierPolicy {
+
+    /** The name of the system property that enables tracing. */
+    public static final String TRACE_PROPERTY = "fnplot.tiers.trace";
+
+    /** The default number of calls after which a function is compiled. */
+    public static final int DEFAULT_CALL_THRESHOLD = 500;
+
+    /** The default number of samples after which a plot map is compiled. */
+    public static final int DEFAULT_SAMPLE_THRESHOLD = 2000;
+
+    /** The greatest number of attempts made to compile a function. */
+    public static final int MAX_COMPILATIONS = 4;
+
+    private int callThreshold = DEFAULT_CALL_THRESHOLD;
+    private int sampleThreshold = DEFAULT_SAMPLE_THRESHOLD;
+    private boolean tracing = Boolean.getBoolean(TRACE_PROPERTY);
+    private PrintStream log = System.err;
+
+    /**
+     * @return The number of calls after which a function is compiled
+     */
+    public int getCallThreshold() {
+        return callThreshold;
+    }
+
+    /**
+     * @param callThreshold The number of calls after which a function should
+     * be compiled
+     */
+    public void setCallThreshold(int callThreshold) {
+        this.callThreshold = callThreshold;
+    }
+
+    /**
+     * @return The number of samples after which a plot map is compiled
+     */
+    public int getSampleThreshold() {
+        return sampleThreshold;
+    }
+
+    /**
+     * @param sampleThreshold The number of samples after which a plot map
+     * should be compiled
+     */
+    public void setSampleThreshold(int sampleThreshold) {
+        this.sampleThreshold = sampleThreshold;
+    }
+
+    /**
+     * @return <code>true</code> if changes of tier are reported
+     */
+    public boolean isTracing() {
+        return tracing;
+    }
+
+    /**
+     * Enable or disable the reporting of changes of tier.
+     * @param tracing <code>true</code> to report changes of tier
+     */
+    public void setTracing(boolean tracing) {
+        this.tracing = tracing;
+    }
+
+    /**
+     * Set the stream to which changes of tier are reported.
+     * @param log The stream
+     */
+    public void setLog(PrintStream log) {
+        this.log = log;
+    }
+
+    private void trace(String format, Object... args) {
+        if (tracing) {
+            log.printf("[tier] " + format + "%n", args);
+        }
+    }
+
+    /**
+     * Count a call of a function, and decide how it should be run.
+     * @param name The name by which the function is called
+     * @param fun The function
+     * @param args The values of the arguments of the call
+     * @return The compiled code with which to make the call, or
+     * <code>null</code> if it should be interpreted
+     */
+    public CompiledFunction call(String name, FnPlotFunction fun,
+            List<? extends FnPlotValue<?>> args) {
+        int calls = fun.countInvocation();
+        CompiledFunction code = fun.getCompiled();
+        if (code != null) {
+            if (code.isCurrent()) {
+                return code.accepts(args) ? code : null;
+            }
+            fun.setCompiled(null);
+            trace("%s demoted to tree walking: its free variables have been rebound", name);
+            return null;
+        }
+        if (calls < callThreshold || fun.getCompilations() >= MAX_COMPILATIONS
+                || !fun.isCompilable()) {
+            return null;
+        }
+        FnPlotType[] types = new FnPlotType[args.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = args.get(i).getType();
+            if (types[i] != FnPlotType.INTEGER && types[i] != FnPlotType.REAL) {
+                return null;
+            }
+        }
+        fun.countCompilation();
+        try {
+            code = CodeCache.getShared().compileFunction(fun, types);
+        } catch (CompileFnPlotException e) {
+            fun.setCompiled(null);
+            if (e.isPermanent()) {
+                fun.setUncompilable();
+                trace("%s stays in tree walking for good: %s", name, e.getMessage());
+                return null;
+            }
+            trace("%s stays in tree walking after %d calls: %s", name, calls, e.getMessage());
+            return null;
+        } catch (FnPlotException e) {
+            fun.setCompiled(null);
+            trace("%s stays in tree walking after %d calls: %s", name, calls, e.getMessage());
+            return null;
+        }
+        fun.setCompiled(code);
+        trace("%s promoted to bytecode after %d calls", name, calls);
+        return code;
+    }
+
+    /**
+     * Decide how many samples of a plot map to interpret before compiling it.
+     * @param plot The plot
+     * @return The number of samples, which is 0 if the map is already hot
+     */
+    public long samplesBeforeCompiling(ExpPlot plot) {
+        return Math.max(0, sampleThreshold - plot.getSamples());
+    }
+
+    /**
+     * Report the result of compiling a plot map.
+     * @param plot The plot
+     * @param sample The index of the sample from which the compiled code is
+     * used
+     * @param compiled <code>true</code> if the map was compiled
+     */
+    public void plotCompiled(ExpPlot plot, int sample, boolean compiled) {
+        if (compiled) {
+            trace("plot of %s promoted to bytecode at sample %d (after %d samples)",
+                    plot.getMap(), sample, plot.getSamples() + sample);
+        } else {
+            trace("plot of %s stays in its current tier: it cannot be compiled", plot.getMap());
+        }
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.semantics;
+
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpClear;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotType;
+import fnplot.values.FnPlotValue;
+import fnplot.values.TypeFnPlotException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Infers a static type (int, real, user function or unknown) for the
+ * expressions of a program, before it is run.
+ * <p>
+ * The checker follows the program in the order in which it will run,
+ * keeping track of what it knows about the value of each variable.  The body
+ * of a function is checked at each call, with its parameters given the types
+ * of the arguments, so that the result type of the call can be inferred.
+ * Recursive calls, and calls of values whose types are unknown, have unknown
+ * results.  An expression that is checked in several contexts with different
+ * types is given the unknown type.
+ * <p>
+ * Since only code that will actually be reached is checked, any type error
+ * found is one that running the program would certainly run into.  Such
+ * errors (arithmetic on functions, calls of numbers, calls with too few
+ * arguments and plots of functions) are reported as
+ * {@link TypeFnPlotException}s, so that they surface before a long plot has
+ * been started.  A call with too many arguments is reported too: the
+ * engines ignore the extra arguments, but they are always a mistake.
+ * <p>
+ * The inferred types are used only for checking; no engine relies on them
+ * to drop its own checks.  They are not sound enough for that, since the
+ * body of a function is typed only for the calls that this program makes,
+ * and the function may be called later with arguments of other types.
+ *
+ * @author newts
+ */
+public class TypeChecker implements Visitor<TypeChecker.Scope, TypeChecker.Info> {
+
+    /**
+     * What is known statically about a value.
+     */
+    static final class Info {
+
+        static final Info INTEGER = new Info(FnPlotType.INTEGER, null, null);
+        static final Info REAL = new Info(FnPlotType.REAL, null, null);
+        static final Info UNKNOWN = new Info(FnPlotType.UNKNOWN, null, null);
+
+        final FnPlotType type;
+        final ExpFunction fun;
+        final Scope closingScope;
+        /** The error that computing the value would raise, if any. */
+        final TypeFnPlotException error;
+
+        Info(FnPlotType type, ExpFunction fun, Scope closingScope) {
+            this(type, fun, closingScope, null);
+        }
+
+        private Info(FnPlotType type, ExpFunction fun, Scope closingScope,
+                TypeFnPlotException error) {
+            this.type = type;
+            this.fun = fun;
+            this.closingScope = closingScope;
+            this.error = error;
+        }
+
+        /**
+         * @return What is known about a value that cannot be computed
+         * without the given error
+         */
+        static Info failing(TypeFnPlotException error) {
+            return new Info(FnPlotType.UNKNOWN, null, null, error);
+        }
+    }
+
+    /**
+     * What is known about the variables of one environment.  The root scope
+     * of a chain falls back on an actual environment, for variables that
+     * were defined before the program being checked.
+     */
+    static final class Scope {
+
+        private final HashMap<String, Info> bindings = new HashMap<>();
+        private final Scope parent;
+        private final Environment<FnPlotValue<?>> env;
+
+        Scope(Scope parent) {
+            this.parent = parent;
+            this.env = null;
+        }
+
+        Scope(Environment<FnPlotValue<?>> env) {
+            this.parent = null;
+            this.env = env;
+        }
+    }
+
+    private final IdentityHashMap<Exp, FnPlotType> types = new IdentityHashMap<>();
+    private final IdentityHashMap<FnPlotFunction, Info> functions = new IdentityHashMap<>();
+    private final HashMap<List<Object>, Info> calls = new HashMap<>();
+    private final Set<ExpFunction> active = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private TypeChecker() {
+    }
+
+    /**
+     * Check a program.
+     * @param p The program
+     * @param env The environment in which the program is to be run
+     * @return The checker, from which the inferred types can be obtained
+     * @throws FnPlotException if running the program would cause a type
+     * error
+     */
+    public static TypeChecker check(ArithProgram p, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        TypeChecker checker = new TypeChecker();
+        p.visit(checker, new Scope(env));
+        return checker;
+    }
+
+    /**
+     * Get the type inferred for an expression.
+     * @param exp An expression of the program that was checked
+     * @return The static type of the expression, which is
+     * {@link FnPlotType#UNKNOWN} if it was not determined (for example because
+     * the expression is in the body of a function that was never called).
+     */
+    public FnPlotType getType(Exp exp) {
+        FnPlotType t = types.get(exp);
+        return t == null ? FnPlotType.UNKNOWN : t;
+    }
+
+    private Info lookup(Scope scope, String id) throws FnPlotException {
+        for (Scope s = scope; s != null; s = s.parent) {
+            Info info = s.bindings.get(id);
+            if (info != null && info.error != null) {
+                throw info.error;
+            } else if (info != null) {
+                return info;
+            }
+            if (s.env != null && s.env.isBound(id)) {
+                return infoOf(s.env.get(id));
+            }
+        }
+        return Info.UNKNOWN;
+    }
+
+    private Info infoOf(FnPlotValue<?> v) {
+        switch (v.getType()) {
+            case INTEGER:
+                return Info.INTEGER;
+            case REAL:
+                return Info.REAL;
+            case FUNCTION:
+                FnPlotFunction f = (FnPlotFunction) v;
+                Info info = functions.get(f);
+                if (info == null) {
+                    info = new Info(FnPlotType.FUNCTION, f.getFunExp(),
+                            new Scope(f.getClosingEnv()));
+                    functions.put(f, info);
+                }
+                return info;
+            default:
+                return Info.UNKNOWN;
+        }
+    }
+
+    private Info check(Statement s, Scope scope) throws FnPlotException {
+        Info info = s.visit(this, scope);
+        if (s instanceof Exp) {
+            FnPlotType previous = types.put((Exp) s, info.type);
+            if (previous != null && previous != info.type) {
+                types.put((Exp) s, FnPlotType.UNKNOWN);
+            }
+        }
+        return info;
+    }
+
+    private Info arith(String op, Exp left, Exp right, Scope scope) throws FnPlotException {
+        Info l = check(left, scope);
+        Info r = check(right, scope);
+        if (l.type == FnPlotType.FUNCTION || r.type == FnPlotType.FUNCTION) {
+            throw new TypeFnPlotException("Operation " + op + " called with non-numeric type");
+        }
+        // the type of the left operand determines the type of the result
+        return l;
+    }
+
+    @Override
+    public Info visitArithProgram(ArithProgram p, Scope scope) throws FnPlotException {
+        return check(p.getSeq(), scope);
+    }
+
+    @Override
+    public Info visitStmtSequence(StmtSequence sseq, Scope scope) throws FnPlotException {
+        Info result = Info.INTEGER;
+        for (Statement s : sseq.getSeq()) {
+            result = check(s, scope);
+        }
+        return result;
+    }
+
+    @Override
+    public Info visitStmtDefinition(StmtDefinition sd, Scope scope) throws FnPlotException {
+        Info result = check(sd.getExp(), scope);
+        scope.bindings.put(sd.getVar(), result);
+        return result;
+    }
+
+    /**
+     * A binding that may be deferred (see {@link LazyBindings}) is not
+     * evaluated unless the body uses it, so, like a branch of a conditional,
+     * a type error in it is not certain to happen.  The error is reported
+     * only where the body looks the name up.
+     */
+    @Override
+    public Info visitStmtLet(StmtLet let, Scope scope) throws FnPlotException {
+        Scope inner = new Scope(scope);
+        ArrayList<Binding> bindings = let.getBindings();
+        boolean[] deferred = LazyBindings.of(let);
+        for (int i = 0; i < bindings.size(); i++) {
+            Binding b = bindings.get(i);
+            Info info;
+            if (deferred[i]) {
+                try {
+                    info = check(b.getValExp(), scope);
+                } catch (TypeFnPlotException e) {
+                    info = Info.failing(e);
+                }
+            } else {
+                info = check(b.getValExp(), scope);
+            }
+            inner.bindings.put(b.getVar(), info);
+        }
+        return check(let.getBody(), inner);
+    }
+
+    @Override
+    public Info visitFunDefn(ExpFunction fd, Scope scope) throws FnPlotException {
+        return new Info(FnPlotType.FUNCTION, fd, scope);
+    }
+
+    @Override
+    public Info visitFunCall(ExpFunCall fc, Scope scope) throws FnPlotException {
+        Info fun = lookup(scope, fc.getName());
+        ArrayList<Exp> argExps = fc.getArguments();
+        Info[] args = new Info[argExps.size()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = check(argExps.get(i), scope);
+        }
+        if (fun.type == FnPlotType.INTEGER || fun.type == FnPlotType.REAL) {
+            throw new TypeFnPlotException(FnPlotType.FUNCTION, fun.type);
+        }
+        if (fun.fun == null) {
+            return Info.UNKNOWN;
+        }
+        ArrayList<String> params = fun.fun.getParameters();
+        if (args.length != params.size()) {
+            throw new TypeFnPlotException("Function " + fc.getName() + " expects " +
+                    params.size() + " arguments but was given " + args.length);
+        }
+        if (active.contains(fun.fun)) {
+            // a recursive call: its result is what is being inferred
+            return Info.UNKNOWN;
+        }
+        List<Object> key = null;
+        if (Arrays.stream(args).noneMatch(a -> a.type == FnPlotType.FUNCTION)) {
+            key = new ArrayList<>();
+            key.add(fun);
+            for (int i = 0; i < params.size(); i++) {
+                key.add(args[i].type);
+            }
+            Info result = calls.get(key);
+            if (result != null) {
+                return result;
+            }
+        }
+        Scope inner = new Scope(fun.closingScope);
+        for (int i = 0; i < params.size(); i++) {
+            inner.bindings.put(params.get(i), args[i]);
+        }
+        active.add(fun.fun);
+        Info result;
+        try {
+            result = check(fun.fun.getBody(), inner);
+        } finally {
+            active.remove(fun.fun);
+        }
+        if (key != null) {
+            calls.put(key, result);
+        }
+        return result;
+    }
+
+    @Override
+    public Info visitFunPlot(ExpPlot fp, Scope scope) throws FnPlotException {
+        Scope inner = new Scope(scope);
+        inner.bindings.put(fp.getItem(), Info.REAL);
+        if (check(fp.getMap(), inner).type == FnPlotType.FUNCTION) {
+            throw new TypeFnPlotException(FnPlotType.REAL, FnPlotType.FUNCTION);
+        }
+        return Info.UNKNOWN;
+    }
+
+    @Override
+    public Info visitClear(ExpClear clear, Scope scope) throws FnPlotException {
+        return Info.UNKNOWN;
+    }
+
+    @Override
+    public Info visitExpAdd(ExpAdd exp, Scope scope) throws FnPlotException {
+        return arith("add", exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public Info visitExpSub(ExpSub exp, Scope scope) throws FnPlotException {
+        return arith("sub", exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public Info visitExpMul(ExpMul exp, Scope scope) throws FnPlotException {
+        return arith("mul", exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public Info visitExpPow(ExpPow exp, Scope scope) throws FnPlotException {
+        return arith("pow", exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public Info visitExpDiv(ExpDiv exp, Scope scope) throws FnPlotException {
+        return arith("div", exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public Info visitExpMod(ExpMod exp, Scope scope) throws FnPlotException {
+        return arith("mod", exp.getExpL(), exp.getExpR(), scope);
+    }
+
+    @Override
+    public Info visitExpLit(ExpLit exp, Scope scope) throws FnPlotException {
+        return infoOf(exp.getVal());
+    }
+
+    @Override
+    public Info visitExpVar(ExpVar exp, Scope scope) throws FnPlotException {
+        return lookup(scope, exp.getVar());
+    }
+
+    @Override
+    public Info visitExpCompare(ExpCompare exp, Scope scope) throws FnPlotException {
+        Info l = check(exp.getExpL(), scope);
+        Info r = check(exp.getExpR(), scope);
+        if (l.type == FnPlotType.FUNCTION || r.type == FnPlotType.FUNCTION) {
+            throw new TypeFnPlotException("Operation " + exp.getOp().getSymbol() +
+                    " called with non-numeric type");
+        }
+        return Info.INTEGER;
+    }
+
+    /**
+     * Only one branch of a conditional is run, so a type error in either
+     * branch is not certain to happen, and makes the type of that branch
+     * unknown instead of being reported.  The names defined in the branches
+     * may or may not have been defined afterwards, so their types become
+     * unknown too.
+     */
+    @Override
+    public Info visitExpIf(ExpIf exp, Scope scope) throws FnPlotException {
+        if (check(exp.getCondition(), scope).type == FnPlotType.FUNCTION) {
+            throw new TypeFnPlotException("Operation if called with non-numeric type");
+        }
+        Info t = branch(exp.getThen(), scope);
+        Info e = branch(exp.getElse(), scope);
+        for (Exp b : new Exp[] {exp.getThen(), exp.getElse()}) {
+            for (String id : DefinedNames.local(b)) {
+                scope.bindings.put(id, Info.UNKNOWN);
+            }
+        }
+        if (t == e || (t.type == e.type && t.type != FnPlotType.FUNCTION)) {
+            return t;
+        }
+        return Info.UNKNOWN;
+    }
+
+    private Info branch(Exp exp, Scope scope) throws FnPlotException {
+        try {
+            return check(exp, scope);
+        } catch (TypeFnPlotException e) {
+            return Info.UNKNOWN;
+        }
+    }
+}
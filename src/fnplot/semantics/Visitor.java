@@ -17,6 +17,8 @@ import fnplot.syntax.ExpFunction;
 import fnplot.syntax.ExpFunCall;
 import fnplot.syntax.ExpPlot;
 import fnplot.syntax.ExpClear;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpIf;
 import fnplot.sys.FnPlotException;
 
 /**
@@ -162,6 +164,26 @@ public interface Visitor<S, T> {
      * @throws FnPlotException If an error arises while visiting the subtree.
      */
     public T visitExpMod(ExpMod exp, S arg) throws FnPlotException;
+
+    /**
+     * Visit a comparison expression.
+     * @param exp The comparison AST node to be visited.
+     * @param arg The "state" to be referenced by this visitor while visiting 
+     * the given node.
+     * @return The result of visiting the subtree rooted at this node in the AST.
+     * @throws FnPlotException If an error arises while visiting the subtree.
+     */
+    public T visitExpCompare(ExpCompare exp, S arg) throws FnPlotException;
+
+    /**
+     * Visit a conditional expression.
+     * @param exp The conditional AST node to be visited.
+     * @param arg The "state" to be referenced by this visitor while visiting 
+     * the given node.
+     * @return The result of visiting the subtree rooted at this node in the AST.
+     * @throws FnPlotException If an error arises while visiting the subtree.
+     */
+    public T visitExpIf(ExpIf exp, S arg) throws FnPlotException;
     
     /**
      * Visit a literal expression.
@@ -27,12 +27,33 @@ package fnplot.syntax;
 
 import fnplot.semantics.Visitor;
 import fnplot.sys.FnPlotException;
+import java.io.Serializable;
 
 /**
  *
  * @author newts
  */
-public abstract class ASTNode {
+public abstract class ASTNode implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int kind;
+
+    /**
+     * Create a node of the given kind.
+     * @param kind The kind of the node, one of the constants of
+     * {@link NodeKind}
+     */
+    protected ASTNode(int kind) {
+        this.kind = kind;
+    }
+
+    /**
+     * @return The kind of this node, one of the constants of {@link NodeKind}
+     */
+    public final int getKind() {
+        return kind;
+    }
     
     /**
      * Visit this expression (subtree rooted at this node in the AST) using a
@@ -4,9 +4,13 @@ import fnplot.semantics.Visitor;
 import fnplot.sys.FnPlotException;
 
 public class ArithProgram extends Exp {
+
+    private static final long serialVersionUID = 1L;
+
     StmtSequence seq;
 
     public ArithProgram(StmtSequence s) {
+	super(NodeKind.PROGRAM);
 	seq = s;
     }
 
@@ -24,4 +28,14 @@ public class ArithProgram extends Exp {
     public String toString() {
 	return seq.toString();
     }
+
+    @Override
+    public boolean equals(Object obj) {
+	return obj instanceof ArithProgram && seq.equals(((ArithProgram) obj).seq);
+    }
+
+    @Override
+    public int hashCode() {
+	return seq.hashCode();
+    }
 }
@@ -1,21 +1,85 @@
 package fnplot.syntax;
 
-public class Binding {
+import fnplot.semantics.SymbolTable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Objects;
+
+public class Binding implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     String var;
     Exp valExp;
+    int slot = -1;
+
+    /** The symbol of the name bound (which is not the same in every process). */
+    private transient int symbol;
 
     public Binding(String id, Exp v) {
 	var = id;
+	symbol = SymbolTable.intern(id);
 	valExp = v;
     }
 
+    /**
+     * Create a resolved binding.
+     * @param id The name being bound
+     * @param v The expression whose value is bound
+     * @param slot The index of the binding within the frame of its let
+     */
+    public Binding(String id, Exp v, int slot) {
+	var = id;
+	symbol = SymbolTable.intern(id);
+	valExp = v;
+	this.slot = slot;
+    }
+
     public String getVar() {
 	return var;
     }
 
+    /**
+     * @return The symbol of the name bound, in the {@link SymbolTable}
+     */
+    public int getSymbol() {
+	return symbol;
+    }
+
     public Exp getValExp() {
 	return valExp;
     }
 
+    /**
+     * @return The index of this binding within the frame of its let, or -1
+     * if it has not been resolved.
+     */
+    public int getSlot() {
+	return slot;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	symbol = SymbolTable.intern(var);
+    }
+
+    @Override
+    public String toString() {
+	return var + " = " + valExp;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+	if (!(obj instanceof Binding)) {
+	    return false;
+	}
+	Binding other = (Binding) obj;
+	return var.equals(other.var) && slot == other.slot && valExp.equals(other.valExp);
+    }
+
+    @Override
+    public int hashCode() {
+	return Objects.hash(var, valExp, slot);
+    }
 }
@@ -5,5 +5,9 @@ import fnplot.sys.FnPlotException;
 
 public abstract class Exp extends Statement {
 
-    
+    private static final long serialVersionUID = 1L;
+
+    protected Exp(int kind) {
+        super(kind);
+    }
 }
@@ -5,9 +5,13 @@ import fnplot.sys.FnPlotException;
 
 public class ExpAdd extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     Exp exp1, exp2;
+    private int hash;
 
     public ExpAdd(Exp e1, Exp e2) {
+        super(NodeKind.ADD);
         exp1 = e1;
         exp2 = e2;
     }
@@ -29,4 +33,25 @@ public class ExpAdd extends Exp {
     public String toString() {
         return exp1.toString() + " + " + exp2.toString();
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ExpAdd)) {
+            return false;
+        }
+        ExpAdd other = (ExpAdd) obj;
+        return hashCode() == other.hashCode() &&
+                exp1.equals(other.exp1) && exp2.equals(other.exp2);
+    }
+
+    @Override
+    public int hashCode() {
+        if (hash == 0) {
+            hash = (31 * exp1.hashCode() + exp2.hashCode()) * 31 + 1;
+        }
+        return hash;
+    }
 }
@@ -5,7 +5,11 @@ import fnplot.semantics.Visitor;
 
 public class ExpClear extends Exp{
 
-    public ExpClear() {}
+    private static final long serialVersionUID = 1L;
+
+    public ExpClear() {
+        super(NodeKind.CLEAR);
+    }
 
     @Override
     public <S, T> T visit(Visitor<S, T> v, S state) throws FnPlotException {
@@ -18,4 +22,14 @@ public class ExpClear extends Exp{
     }
 
     
-}
\ No newline at end of file
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ExpClear;
+    }
+
+    @Override
+    public int hashCode() {
+        return ExpClear.class.getName().hashCode();
+    }
+}
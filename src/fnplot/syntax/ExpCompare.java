@@ -0,0 +1,70 @@
+package fnplot.syntax;
+
+import fnplot.semantics.Visitor;
+import fnplot.sys.FnPlotException;
+import fnplot.values.Comparison;
+
+/**
+ * Class to represent a comparison (such as <code>a &lt; b</code>) in the
+ * AST.  Its value is 1 if the comparison holds, and 0 otherwise.
+ * @author newts
+ */
+public class ExpCompare extends Exp {
+
+    private static final long serialVersionUID = 1L;
+
+    Comparison op;
+    Exp exp1;
+    Exp exp2;
+    private int hash;
+
+    public ExpCompare(Comparison op, Exp e1, Exp e2) {
+        super(NodeKind.COMPARE);
+        this.op = op;
+        exp1 = e1;
+        exp2 = e2;
+    }
+
+    public Comparison getOp() {
+        return op;
+    }
+
+    public Exp getExpL() {
+        return exp1;
+    }
+
+    public Exp getExpR() {
+        return exp2;
+    }
+
+    @Override
+    public <S, T> T visit(Visitor<S, T> v, S arg) throws FnPlotException {
+        return v.visitExpCompare(this, arg);
+    }
+
+    @Override
+    public String toString() {
+        return exp1.toString() + " " + op.getSymbol() + " " + exp2.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ExpCompare)) {
+            return false;
+        }
+        ExpCompare other = (ExpCompare) obj;
+        return hashCode() == other.hashCode() && op == other.op &&
+                exp1.equals(other.exp1) && exp2.equals(other.exp2);
+    }
+
+    @Override
+    public int hashCode() {
+        if (hash == 0) {
+            hash = ((31 * exp1.hashCode() + exp2.hashCode()) * 31 + 7) * 31 + op.ordinal();
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.syntax;
+
+import fnplot.values.Comparison;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A hash-consing factory for expressions.  The factory remembers every
+ * expression that it has made, and returns the existing instance whenever it
+ * is asked for an expression that is structurally equal to one made before,
+ * so that repeated subexpressions of a program are represented by a single
+ * shared node.  Since the children of each node are themselves shared, the
+ * structural comparisons needed are cheap.
+ * <p>
+ * The parser uses one factory for each program that it parses.
+ *
+ * @author newts
+ */
+public class ExpFactory {
+
+    private final HashMap<Exp, Exp> table = new HashMap<>();
+    private int requests = 0;
+
+    /**
+     * Return the shared instance of an expression.
+     * @param <E> The type of the expression
+     * @param exp A newly made expression
+     * @return The expression made earlier that is equal to exp, if there is
+     * one, otherwise exp itself
+     */
+    @SuppressWarnings("unchecked")
+    public <E extends Exp> E intern(E exp) {
+        requests++;
+        Exp existing = table.putIfAbsent(exp, exp);
+        return existing == null ? exp : (E) existing;
+    }
+
+    /**
+     * @return The number of distinct expressions made by this factory
+     */
+    public int size() {
+        return table.size();
+    }
+
+    /**
+     * @return The number of expressions requested from this factory
+     */
+    public int getRequests() {
+        return requests;
+    }
+
+    public Exp add(Exp e1, Exp e2) {
+        return intern(new ExpAdd(e1, e2));
+    }
+
+    public Exp sub(Exp e1, Exp e2) {
+        return intern(new ExpSub(e1, e2));
+    }
+
+    public Exp mul(Exp e1, Exp e2) {
+        return intern(new ExpMul(e1, e2));
+    }
+
+    public Exp div(Exp e1, Exp e2) {
+        return intern(new ExpDiv(e1, e2));
+    }
+
+    public Exp mod(Exp e1, Exp e2) {
+        return intern(new ExpMod(e1, e2));
+    }
+
+    public Exp pow(Exp e1, Exp e2) {
+        return intern(new ExpPow(e1, e2));
+    }
+
+    public Exp compare(Comparison op, Exp e1, Exp e2) {
+        return intern(new ExpCompare(op, e1, e2));
+    }
+
+    public Exp ifExp(Exp cond, Exp thenExp, Exp elseExp) {
+        return intern(new ExpIf(cond, thenExp, elseExp));
+    }
+
+    public Exp lit(FnPlotValue<?> v) {
+        return intern(new ExpLit(v));
+    }
+
+    public Exp var(String id) {
+        return intern(new ExpVar(id));
+    }
+
+    public Exp funCall(String name, ArrayList<Exp> args) {
+        return intern(new ExpFunCall(name, args, null));
+    }
+}
@@ -25,26 +25,78 @@
 
 package fnplot.syntax;
 
+import fnplot.semantics.InlineCache;
+import fnplot.semantics.SymbolTable;
 import fnplot.semantics.Visitor;
 import fnplot.sys.FnPlotException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
 
 /**
  *
  * @author newts
  */
 public class ExpFunCall  extends Exp {
+
+    private static final long serialVersionUID = 1L;
     
     ArrayList<Exp> arguments;
     String name;
+    int depth = -1;
+    int slot = -1;
+    int[] outer;
+    private int hash;
+
+    /** The symbol of the function name (which is not the same in every process). */
+    private transient int symbol;
+
+    /** The cache of the global function that this call refers to. */
+    private transient InlineCache cache;
 
     public ExpFunCall() {
-        super();
+        super(NodeKind.CALL);
     }
 
     public ExpFunCall(String name, ArrayList<Exp> args, Exp body) {
+        super(NodeKind.CALL);
+        this.name = name;
+        symbol = SymbolTable.intern(name);
+        this.arguments = args;
+    }
+
+    /**
+     * Create a function call whose function name has a lexical address.
+     * @param name The name of the function
+     * @param args The argument expressions
+     * @param depth The number of frames to go up to find the function, or -1
+     * if it is global
+     * @param slot The index of the function within its frame
+     */
+    public ExpFunCall(String name, ArrayList<Exp> args, int depth, int slot) {
+        super(NodeKind.CALL);
         this.name = name;
+        symbol = SymbolTable.intern(name);
         this.arguments = args;
+        this.depth = depth;
+        this.slot = slot;
+    }
+
+    /**
+     * Create a call of a function defined within a block, which may be made
+     * before its definition has run.
+     * @param name The name of the function
+     * @param args The argument expressions
+     * @param depth The number of frames to go up to find the function
+     * @param slot The index of the function within its frame
+     * @param outer The addresses at which to look for the function while
+     * its own slot is empty (see {@link ExpVar#getOuter()})
+     */
+    public ExpFunCall(String name, ArrayList<Exp> args, int depth, int slot, int[] outer) {
+        this(name, args, depth, slot);
+        this.outer = outer;
     }
 
     /**
@@ -53,12 +105,64 @@ public class ExpFunCall  extends Exp {
     public String getName() {
         return name;
     }
+
+    /**
+     * @return The symbol of the function name in the {@link SymbolTable}
+     */
+    public int getSymbol() {
+        return symbol;
+    }
     
     
     public ArrayList<Exp> getArguments() {
         return arguments;
     }
+
+    /**
+     * @return The number of frames between the call and the binding of the
+     * function name, or -1 if it is global or has not been resolved.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return The index of the function name within its frame
+     */
+    public int getSlot() {
+        return slot;
+    }
     
+    /**
+     * @return The addresses of the enclosing bindings of the function name,
+     * to be tried while its own slot is empty, or <code>null</code>
+     * @see ExpVar#getOuter()
+     */
+    public int[] getOuter() {
+        return outer;
+    }
+
+    /**
+     * @return The inline cache of the function called, or <code>null</code>
+     * if the function name is not known to be global
+     */
+    public InlineCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @param cache The inline cache to use to look up the function called,
+     * which must be global, or <code>null</code> to look it up by name
+     */
+    public void setCache(InlineCache cache) {
+        this.cache = cache;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        symbol = SymbolTable.intern(name);
+    }
+
     @Override
     public <S, T> T visit(Visitor<S, T> v, S state) throws FnPlotException {
         return v.visitFunCall(this, state);
@@ -78,4 +182,25 @@ public class ExpFunCall  extends Exp {
         return String.format("%s(%s)", name, argStr.toString());
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ExpFunCall)) {
+            return false;
+        }
+        ExpFunCall other = (ExpFunCall) obj;
+        return hashCode() == other.hashCode() && name.equals(other.name) &&
+                depth == other.depth && slot == other.slot &&
+                Arrays.equals(outer, other.outer) && arguments.equals(other.arguments);
+    }
+
+    @Override
+    public int hashCode() {
+        if (hash == 0) {
+            hash = Objects.hash(name, arguments, depth, slot);
+        }
+        return hash;
+    }
 }
@@ -25,36 +25,141 @@
 
 package fnplot.syntax;
 
+import fnplot.semantics.SymbolTable;
 import fnplot.semantics.Visitor;
 import fnplot.sys.FnPlotException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.Objects;
 
 /**
  *
  * @author newts
  */
 public class ExpFunction  extends Exp {
+
+    private static final long serialVersionUID = 1L;
     
     ArrayList<String> parameters;
     Exp body;
+    int frameSize = -1;
+    private int hash;
+
+    /** The function as written, if this one was derived from it by a pass. */
+    private ExpFunction source;
+
+    /** The symbols of the parameters (which are not the same in every process). */
+    private transient int[] symbols;
+
+    /** The free variables that a closure of this function copies. */
+    private transient String[] captures;
+    private transient int[] captureSymbols;
 
     public ExpFunction() {
-        super();
+        super(NodeKind.FUNCTION);
     }
 
     public ExpFunction(ArrayList<String> parameters, Exp body) {
+        super(NodeKind.FUNCTION);
         this.parameters = parameters;
+        this.symbols = SymbolTable.intern(parameters.toArray(new String[0]));
         this.body = body;
     }
 
+    /**
+     * Create a resolved function expression.  Its parameters occupy the
+     * first slots of its frame, in order.
+     * @param parameters The parameter names
+     * @param body The body of the function
+     * @param frameSize The number of slots needed by a frame for a call
+     */
+    public ExpFunction(ArrayList<String> parameters, Exp body, int frameSize) {
+        super(NodeKind.FUNCTION);
+        this.parameters = parameters;
+        this.symbols = SymbolTable.intern(parameters.toArray(new String[0]));
+        this.body = body;
+        this.frameSize = frameSize;
+    }
+
     public ArrayList<String> getParameters() {
         return parameters;
     }    
 
+    /**
+     * @return The symbols of the parameters in the {@link SymbolTable}, in
+     * order
+     */
+    public int[] getParameterSymbols() {
+        return symbols;
+    }
+
     public Exp getBody() {
         return body;
     }
+
+    /**
+     * @return The function expression as it was written in the program,
+     * which is this one unless it was derived from another by a pass such as
+     * the optimiser (and which is the one to show to users)
+     */
+    public ExpFunction getSource() {
+        return source == null ? this : source;
+    }
+
+    /**
+     * Record that this function was derived from another, so that it is
+     * shown as that one was written.
+     * @param original The function that this one was derived from
+     * @return This function
+     */
+    public ExpFunction derivedFrom(ExpFunction original) {
+        this.source = original.getSource();
+        return this;
+    }
+
+    /**
+     * @return The number of slots in a frame for a call of this function, or
+     * -1 if it has not been resolved.
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
     
+    /**
+     * @return The free variables of this function that are bound locally
+     * where it is created, which a closure copies, or <code>null</code> if a
+     * closure must keep the whole environment in which it is created
+     */
+    public String[] getCaptures() {
+        return captures;
+    }
+
+    /**
+     * @return The symbols of the variables that a closure of this function
+     * copies, in the same order as {@link #getCaptures()}
+     */
+    public int[] getCaptureSymbols() {
+        return captureSymbols;
+    }
+
+    /**
+     * Record which free variables a closure of this function should copy.
+     * @param captures The free variables bound locally where this function is
+     * created, or <code>null</code> if they cannot be copied
+     */
+    public void setCaptures(String[] captures) {
+        this.captures = captures;
+        this.captureSymbols = captures == null ? null : SymbolTable.intern(captures);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (parameters != null) {
+            symbols = SymbolTable.intern(parameters.toArray(new String[0]));
+        }
+    }
+
     @Override
     public <S, T> T visit(Visitor<S, T> v, S state) throws FnPlotException {
         return v.visitFunDefn(this, state);
@@ -72,4 +177,24 @@ public class ExpFunction  extends Exp {
         return String.format("(fun (%s) -> %s)", paramStr, body);
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ExpFunction)) {
+            return false;
+        }
+        ExpFunction other = (ExpFunction) obj;
+        return hashCode() == other.hashCode() && frameSize == other.frameSize &&
+                parameters.equals(other.parameters) && body.equals(other.body);
+    }
+
+    @Override
+    public int hashCode() {
+        if (hash == 0) {
+            hash = Objects.hash(parameters, body, frameSize);
+        }
+        return hash;
+    }
 }
@@ -0,0 +1,72 @@
+package fnplot.syntax;
+
+import fnplot.semantics.Visitor;
+import fnplot.sys.FnPlotException;
+
+/**
+ * Class to represent a conditional expression,
+ * <code>if c then e1 else e2</code>, in the AST.  Only the branch selected
+ * by the condition is evaluated: the first if the condition is a number
+ * other than 0, and the second if it is 0.
+ * @author newts
+ */
+public class ExpIf extends Exp {
+
+    private static final long serialVersionUID = 1L;
+
+    Exp cond;
+    Exp thenExp;
+    Exp elseExp;
+    private int hash;
+
+    public ExpIf(Exp cond, Exp thenExp, Exp elseExp) {
+        super(NodeKind.IF);
+        this.cond = cond;
+        this.thenExp = thenExp;
+        this.elseExp = elseExp;
+    }
+
+    public Exp getCondition() {
+        return cond;
+    }
+
+    public Exp getThen() {
+        return thenExp;
+    }
+
+    public Exp getElse() {
+        return elseExp;
+    }
+
+    @Override
+    public <S, T> T visit(Visitor<S, T> v, S arg) throws FnPlotException {
+        return v.visitExpIf(this, arg);
+    }
+
+    @Override
+    public String toString() {
+        return "if " + cond + " then " + thenExp + " else " + elseExp;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ExpIf)) {
+            return false;
+        }
+        ExpIf other = (ExpIf) obj;
+        return hashCode() == other.hashCode() && cond.equals(other.cond) &&
+                thenExp.equals(other.thenExp) && elseExp.equals(other.elseExp);
+    }
+
+    @Override
+    public int hashCode() {
+        if (hash == 0) {
+            hash = ((31 * cond.hashCode() + thenExp.hashCode()) * 31 + elseExp.hashCode())
+                    * 31 + 8;
+        }
+        return hash;
+    }
+}
@@ -10,17 +10,22 @@ import fnplot.values.FnPlotValue;
  */
 public class ExpLit extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     FnPlotValue<?> val;
     
     public ExpLit(FnPlotValue<?> v) {
+        super(NodeKind.LIT);
         val = v;
     }
 
     public ExpLit(Integer v) {
+        super(NodeKind.LIT);
         val = FnPlotValue.make(v);
     }
     
     public ExpLit(Double v) {
+        super(NodeKind.LIT);
         val = FnPlotValue.make(v);
     }
 
@@ -37,4 +42,14 @@ public class ExpLit extends Exp {
     public String toString() {
         return val.toString();
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ExpLit && val.equals(((ExpLit) obj).val);
+    }
+
+    @Override
+    public int hashCode() {
+        return val.hashCode();
+    }
 }
@@ -5,29 +5,70 @@ import fnplot.sys.FnPlotException;
 import fnplot.values.FnPlotValue;
 
 import java.util.ArrayList;
+import java.util.Objects;
 
 /**
  *
  * @author newts
  */
 public class ExpPlot  extends Exp {
+
+    private static final long serialVersionUID = 1L;
     
     Exp map;
     String item;
     Double start;
     Double end;
+    int frameSize = -1;
+
+    /** The number of samples of the map taken so far, by any evaluator. */
+    private transient long samples;
 
     public ExpPlot() {
-        super();
+        super(NodeKind.PLOT);
     }
 
     public ExpPlot(Exp map, String item, FnPlotValue start, FnPlotValue end) throws FnPlotException{
+        super(NodeKind.PLOT);
         this.map = map;
         this.item = item;
         this.start = start.doubleValue();
         this.end = end.doubleValue();
     }
 
+    /**
+     * Create a plot expression with numeric bounds.
+     * @param map The map expression
+     * @param item The plot variable
+     * @param start The lower bound of the plot variable
+     * @param end The upper bound of the plot variable
+     */
+    public ExpPlot(Exp map, String item, Double start, Double end) {
+        super(NodeKind.PLOT);
+        this.map = map;
+        this.item = item;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Create a resolved plot expression.  The plot variable occupies slot 0
+     * of the frame in which the map is evaluated.
+     * @param map The map expression
+     * @param item The plot variable
+     * @param start The lower bound of the plot variable
+     * @param end The upper bound of the plot variable
+     * @param frameSize The number of slots needed by the frame of the map
+     */
+    public ExpPlot(Exp map, String item, Double start, Double end, int frameSize) {
+        super(NodeKind.PLOT);
+        this.map = map;
+        this.item = item;
+        this.start = start;
+        this.end = end;
+        this.frameSize = frameSize;
+    }
+
     /**
      * @return the map
      */
@@ -56,6 +97,29 @@ public class ExpPlot  extends Exp {
         return end;
     }
     
+    /**
+     * @return The number of slots in the frame of the map, or -1 if this plot
+     * has not been resolved.
+     */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /**
+     * @return The number of samples of the map that have been counted
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * Count samples of the map, for deciding when it is worth compiling.
+     * @param n The number of samples taken
+     */
+    public void countSamples(long n) {
+        samples += n;
+    }
+
     @Override
     public <S, T> T visit(Visitor<S, T> v, S state) throws FnPlotException {
         return v.visitFunPlot(this, state);
@@ -66,4 +130,19 @@ public class ExpPlot  extends Exp {
         return String.format("(plot (%s) for %s in [%s : %s])", this.map, this.item, this.start, this.end);
     }
 
-}
\ No newline at end of file
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ExpPlot)) {
+            return false;
+        }
+        ExpPlot other = (ExpPlot) obj;
+        return item.equals(other.item) && start.equals(other.start) &&
+                end.equals(other.end) && frameSize == other.frameSize &&
+                map.equals(other.map);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(map, item, start, end, frameSize);
+    }
+}
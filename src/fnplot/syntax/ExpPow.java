@@ -9,10 +9,14 @@ import fnplot.sys.FnPlotException;
  */
 public class ExpPow extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     Exp exp1;
     Exp exp2;
+    private int hash;
 
     public ExpPow(Exp e1, Exp e2) {
+        super(NodeKind.POW);
         exp1 = e1;
         exp2 = e2;
     }
@@ -34,4 +38,25 @@ public class ExpPow extends Exp {
     public String toString() {
         return exp1.toString() + " ^ " + exp2.toString();
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ExpPow)) {
+            return false;
+        }
+        ExpPow other = (ExpPow) obj;
+        return hashCode() == other.hashCode() &&
+                exp1.equals(other.exp1) && exp2.equals(other.exp2);
+    }
+
+    @Override
+    public int hashCode() {
+        if (hash == 0) {
+            hash = (31 * exp1.hashCode() + exp2.hashCode()) * 31 + 6;
+        }
+        return hash;
+    }
 }
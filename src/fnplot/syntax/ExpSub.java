@@ -9,10 +9,14 @@ import fnplot.sys.FnPlotException;
  */
 public class ExpSub extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     Exp exp1;
     Exp exp2;
+    private int hash;
 
     public ExpSub(Exp e1, Exp e2) {
+        super(NodeKind.SUB);
         exp1 = e1;
         exp2 = e2;
     }
@@ -34,4 +38,25 @@ public class ExpSub extends Exp {
     public String toString() {
         return exp1.toString() + " - " + exp2.toString();
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ExpSub)) {
+            return false;
+        }
+        ExpSub other = (ExpSub) obj;
+        return hashCode() == other.hashCode() &&
+                exp1.equals(other.exp1) && exp2.equals(other.exp2);
+    }
+
+    @Override
+    public int hashCode() {
+        if (hash == 0) {
+            hash = (31 * exp1.hashCode() + exp2.hashCode()) * 31 + 2;
+        }
+        return hash;
+    }
 }
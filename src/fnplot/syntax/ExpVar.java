@@ -1,20 +1,120 @@
 package fnplot.syntax;
 
+import fnplot.semantics.InlineCache;
+import fnplot.semantics.SymbolTable;
 import fnplot.semantics.Visitor;
 import fnplot.sys.FnPlotException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Arrays;
 
 public class ExpVar extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     String var;
+    int depth = -1;
+    int slot = -1;
+    int[] outer;
+
+    /** The symbol of the variable (which is not the same in every process). */
+    private transient int symbol;
+
+    /** The cache of the global variable that this reference is to. */
+    private transient InlineCache cache;
 
     public ExpVar(String id) {
+	super(NodeKind.VAR);
 	var = id;
+	symbol = SymbolTable.intern(id);
+    }
+
+    /**
+     * Create a variable reference with a lexical address.
+     * @param id The name of the variable
+     * @param depth The number of frames to go up to find the variable, or -1
+     * if it is a global variable (looked up by name)
+     * @param slot The index of the variable within its frame
+     */
+    public ExpVar(String id, int depth, int slot) {
+	super(NodeKind.VAR);
+	var = id;
+	symbol = SymbolTable.intern(id);
+	this.depth = depth;
+	this.slot = slot;
+    }
+
+    /**
+     * Create a reference to a variable defined within a block, which may be
+     * used before its definition has run.
+     * @param id The name of the variable
+     * @param depth The number of frames to go up to find the variable
+     * @param slot The index of the variable within its frame
+     * @param outer The addresses at which to look for the variable while
+     * its own slot is empty (see {@link #getOuter()})
+     */
+    public ExpVar(String id, int depth, int slot, int[] outer) {
+	this(id, depth, slot);
+	this.outer = outer;
     }
 
     public String getVar() {
 	return var;
     }
 
+    /**
+     * @return The symbol of the variable in the {@link SymbolTable}
+     */
+    public int getSymbol() {
+	return symbol;
+    }
+
+    /**
+     * @return The number of frames between the reference and the variable,
+     * or -1 if the variable is global or the reference has not been resolved.
+     */
+    public int getDepth() {
+	return depth;
+    }
+
+    /**
+     * @return The index of the variable within its frame (or -1 if global)
+     */
+    public int getSlot() {
+	return slot;
+    }
+
+    /**
+     * @return The addresses (depth, slot, depth, slot, ...) of the
+     * enclosing bindings of the variable, innermost first, to be tried in
+     * turn while its own slot is empty, or <code>null</code> if its slot is
+     * always filled before it is used.  A depth of -1 stands for the global.
+     */
+    public int[] getOuter() {
+	return outer;
+    }
+
+    /**
+     * @return The inline cache of the variable, or <code>null</code> if it
+     * is not known to be global
+     */
+    public InlineCache getCache() {
+	return cache;
+    }
+
+    /**
+     * @param cache The inline cache to use to look up the variable, which
+     * must be global, or <code>null</code> to look it up by name
+     */
+    public void setCache(InlineCache cache) {
+	this.cache = cache;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+	in.defaultReadObject();
+	symbol = SymbolTable.intern(var);
+    }
+
     @Override
     public <S, T> T visit(Visitor<S, T> v, S arg) throws FnPlotException {
 	return v.visitExpVar(this, arg);
@@ -24,4 +124,19 @@ public class ExpVar extends Exp {
     public String toString() {
 	return var;
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ExpVar)) {
+            return false;
+        }
+        ExpVar other = (ExpVar) obj;
+        return var.equals(other.var) && depth == other.depth && slot == other.slot &&
+                Arrays.equals(outer, other.outer);
+    }
+
+    @Override
+    public int hashCode() {
+        return (var.hashCode() * 31 + depth) * 31 + slot;
+    }
 }
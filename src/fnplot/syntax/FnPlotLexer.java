@@ -5,6 +5,7 @@ package fnplot.syntax;
 /* Specification for ArithExp tokens */
 
 // user customisations
+import fnplot.semantics.SymbolTable;
 import java_cup.runtime.*;
 
 // Jlex directives
@@ -39,12 +40,12 @@ public class FnPlotLexer implements java_cup.runtime.Scanner {
    * Translates characters to character classes
    */
   private static final String ZZ_CMAP_PACKED = 
-    "\10\0\1\2\1\2\1\1\1\0\1\2\1\1\22\0\1\2\4\0"+
-    "\1\12\2\0\1\17\1\20\1\10\1\7\1\24\1\5\1\6\1\11"+
-    "\12\4\1\44\1\43\1\0\1\13\1\23\2\0\32\3\1\15\1\0"+
-    "\1\16\1\14\1\3\1\0\1\35\1\3\1\42\1\3\1\26\1\32"+
-    "\2\3\1\30\2\3\1\25\1\34\1\31\1\40\1\36\1\3\1\41"+
-    "\1\37\1\27\1\33\5\3\1\21\1\0\1\22\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uff92\0";
+    "\10\0\1\2\1\2\1\1\1\0\1\2\1\1\22\0\1\2\1\14"+
+    "\3\0\1\12\2\0\1\22\1\23\1\10\1\7\1\26\1\5\1\6"+
+    "\1\11\12\4\1\47\1\46\1\15\1\13\1\16\2\0\32\3\1\20"+
+    "\1\0\1\21\1\17\1\3\1\0\1\37\1\3\1\44\1\3\1\30"+
+    "\1\34\1\3\1\45\1\32\2\3\1\27\1\36\1\33\1\42\1\40"+
+    "\1\3\1\43\1\41\1\31\1\35\5\3\1\24\1\0\1\25\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uff92\0";
 
   /** 
    * Translates characters to character classes
@@ -58,13 +59,15 @@ public class FnPlotLexer implements java_cup.runtime.Scanner {
 
   private static final String ZZ_ACTION_PACKED_0 =
     "\1\0\1\1\1\2\1\3\1\4\1\5\1\6\1\7"+
-    "\1\10\1\11\1\12\1\13\1\14\1\15\1\16\1\17"+
-    "\1\20\1\21\1\22\6\3\1\23\1\24\1\0\1\4"+
-    "\1\25\1\3\1\26\5\3\1\27\1\0\1\30\1\31"+
-    "\1\32\4\3\1\33\2\3\1\34\1\25";
+    "\1\10\1\11\1\12\1\0\1\13\1\14\1\15\1\16"+
+    "\1\17\1\20\1\21\1\22\1\23\1\24\10\3\1\25"+
+    "\1\26\1\0\1\4\1\27\1\30\1\31\1\32\1\33"+
+    "\3\3\1\34\1\35\5\3\1\36\1\0\1\37\2\3"+
+    "\1\40\1\41\3\3\1\42\1\43\1\3\1\44\2\3"+
+    "\1\45\1\27";
 
   private static int [] zzUnpackAction() {
-    int [] result = new int[51];
+    int [] result = new int[67];
     int offset = 0;
     offset = zzUnpackAction(ZZ_ACTION_PACKED_0, offset, result);
     return result;
@@ -89,16 +92,18 @@ public class FnPlotLexer implements java_cup.runtime.Scanner {
   private static final int [] ZZ_ROWMAP = zzUnpackRowMap();
 
   private static final String ZZ_ROWMAP_PACKED_0 =
-    "\0\0\0\45\0\45\0\112\0\157\0\224\0\45\0\45"+
-    "\0\45\0\45\0\45\0\45\0\45\0\45\0\45\0\45"+
-    "\0\45\0\45\0\45\0\271\0\336\0\u0103\0\u0128\0\u014d"+
-    "\0\u0172\0\45\0\45\0\u0197\0\u01bc\0\45\0\u01e1\0\112"+
-    "\0\u0206\0\u022b\0\u0250\0\u0275\0\u029a\0\u0197\0\u01bc\0\112"+
-    "\0\112\0\112\0\u02bf\0\u02e4\0\u0309\0\u032e\0\112\0\u0353"+
-    "\0\u0378\0\112\0\112";
+    "\0\0\0\50\0\50\0\120\0\170\0\240\0\50\0\50"+
+    "\0\50\0\50\0\310\0\360\0\u0118\0\u0140\0\50\0\50"+
+    "\0\50\0\50\0\50\0\50\0\50\0\50\0\u0168\0\u0190"+
+    "\0\u01b8\0\u01e0\0\u0208\0\u0230\0\u0258\0\u0280\0\50\0\50"+
+    "\0\u02a8\0\u02d0\0\50\0\50\0\50\0\50\0\50\0\u02f8"+
+    "\0\u0320\0\u0348\0\120\0\120\0\u0370\0\u0398\0\u03c0\0\u03e8"+
+    "\0\u0410\0\u02a8\0\u02d0\0\120\0\u0438\0\u0460\0\120\0\120"+
+    "\0\u0488\0\u04b0\0\u04d8\0\120\0\120\0\u0500\0\120\0\u0528"+
+    "\0\u0550\0\120\0\120";
 
   private static int [] zzUnpackRowMap() {
-    int [] result = new int[51];
+    int [] result = new int[67];
     int offset = 0;
     offset = zzUnpackRowMap(ZZ_ROWMAP_PACKED_0, offset, result);
     return result;
@@ -123,28 +128,33 @@ public class FnPlotLexer implements java_cup.runtime.Scanner {
   private static final String ZZ_TRANS_PACKED_0 =
     "\1\0\1\2\1\3\1\4\1\5\1\6\1\0\1\7"+
     "\1\10\1\11\1\12\1\13\1\14\1\15\1\16\1\17"+
-    "\1\20\1\21\1\22\1\0\1\23\1\24\2\4\1\25"+
-    "\1\4\1\26\1\4\1\27\1\4\1\30\3\4\1\31"+
-    "\1\32\1\33\50\0\2\4\20\0\16\4\6\0\1\5"+
-    "\1\0\1\34\42\0\1\35\16\0\1\36\24\0\2\4"+
-    "\20\0\1\4\1\37\14\4\5\0\2\4\20\0\4\4"+
-    "\1\40\11\4\5\0\2\4\20\0\6\4\1\41\4\4"+
-    "\1\42\2\4\5\0\2\4\20\0\10\4\1\43\5\4"+
-    "\5\0\2\4\20\0\1\44\15\4\5\0\2\4\20\0"+
-    "\1\45\15\4\6\0\1\46\44\0\1\47\1\0\1\34"+
-    "\41\0\2\4\20\0\2\4\1\50\13\4\5\0\2\4"+
-    "\20\0\4\4\1\51\11\4\5\0\2\4\20\0\14\4"+
-    "\1\52\1\4\5\0\2\4\20\0\11\4\1\53\4\4"+
-    "\5\0\2\4\20\0\13\4\1\54\2\4\5\0\2\4"+
-    "\20\0\1\4\1\55\14\4\5\0\2\4\20\0\12\4"+
-    "\1\56\3\4\5\0\2\4\20\0\2\4\1\57\13\4"+
-    "\5\0\2\4\20\0\10\4\1\60\5\4\5\0\2\4"+
-    "\20\0\2\4\1\61\13\4\5\0\2\4\20\0\14\4"+
-    "\1\62\1\4\5\0\2\4\20\0\13\4\1\63\2\4"+
-    "\2\0";
+    "\1\20\1\21\1\22\1\23\1\24\1\25\1\26\1\27"+
+    "\1\30\1\31\1\32\1\4\1\33\1\4\1\34\1\4"+
+    "\1\35\3\4\1\36\1\4\1\37\1\40\53\0\2\4"+
+    "\22\0\17\4\6\0\1\5\1\0\1\41\45\0\1\42"+
+    "\11\0\1\43\44\0\1\44\47\0\1\45\47\0\1\46"+
+    "\47\0\1\47\37\0\2\4\22\0\1\4\1\50\15\4"+
+    "\5\0\2\4\22\0\1\51\16\4\5\0\2\4\22\0"+
+    "\16\4\1\52\5\0\2\4\22\0\4\4\1\53\1\54"+
+    "\11\4\5\0\2\4\22\0\6\4\1\55\4\4\1\56"+
+    "\3\4\5\0\2\4\22\0\10\4\1\57\6\4\5\0"+
+    "\2\4\22\0\1\60\16\4\5\0\2\4\22\0\1\61"+
+    "\16\4\6\0\1\62\47\0\1\63\1\0\1\41\44\0"+
+    "\2\4\22\0\2\4\1\64\14\4\5\0\2\4\22\0"+
+    "\12\4\1\65\4\4\5\0\2\4\22\0\1\4\1\66"+
+    "\15\4\5\0\2\4\22\0\4\4\1\67\12\4\5\0"+
+    "\2\4\22\0\14\4\1\70\2\4\5\0\2\4\22\0"+
+    "\11\4\1\71\5\4\5\0\2\4\22\0\13\4\1\72"+
+    "\3\4\5\0\2\4\22\0\1\4\1\73\15\4\5\0"+
+    "\2\4\22\0\1\4\1\74\15\4\5\0\2\4\22\0"+
+    "\4\4\1\75\12\4\5\0\2\4\22\0\12\4\1\76"+
+    "\4\4\5\0\2\4\22\0\2\4\1\77\14\4\5\0"+
+    "\2\4\22\0\10\4\1\100\6\4\5\0\2\4\22\0"+
+    "\2\4\1\101\14\4\5\0\2\4\22\0\14\4\1\102"+
+    "\2\4\5\0\2\4\22\0\13\4\1\103\3\4\2\0";
 
   private static int [] zzUnpackTrans() {
-    int [] result = new int[925];
+    int [] result = new int[1400];
     int offset = 0;
     offset = zzUnpackTrans(ZZ_TRANS_PACKED_0, offset, result);
     return result;
@@ -182,11 +192,11 @@ public class FnPlotLexer implements java_cup.runtime.Scanner {
   private static final int [] ZZ_ATTRIBUTE = zzUnpackAttribute();
 
   private static final String ZZ_ATTRIBUTE_PACKED_0 =
-    "\1\0\2\11\3\1\15\11\6\1\2\11\1\0\1\1"+
-    "\1\11\10\1\1\0\14\1";
+    "\1\0\2\11\3\1\4\11\1\1\1\0\2\1\10\11"+
+    "\10\1\2\11\1\0\1\1\5\11\13\1\1\0\20\1";
 
   private static int [] zzUnpackAttribute() {
-    int [] result = new int[51];
+    int [] result = new int[67];
     int offset = 0;
     offset = zzUnpackAttribute(ZZ_ATTRIBUTE_PACKED_0, offset, result);
     return result;
@@ -299,7 +309,7 @@ public class FnPlotLexer implements java_cup.runtime.Scanner {
     char [] map = new char[0x110000];
     int i = 0;  /* index in packed string  */
     int j = 0;  /* index in unpacked array */
-    while (i < 148) {
+    while (i < 152) {
       int  count = packed.charAt(i++);
       char value = packed.charAt(i++);
       do map[j++] = value; while (--count > 0);
@@ -653,147 +663,193 @@ public class FnPlotLexer implements java_cup.runtime.Scanner {
 			yycolumn = 0;
             } 
             // fall through
-          case 29: break;
+          case 38: break;
           case 2: 
             { //skip whitespace
             } 
             // fall through
-          case 30: break;
+          case 39: break;
           case 3: 
             { // VARIABLE
-	       return new Symbol(sym.VARIABLE, yytext());
+	       // the canonical copy of the identifier, interned with its symbol
+	       return new Symbol(sym.VARIABLE, SymbolTable.name(SymbolTable.intern(yytext())));
             } 
             // fall through
-          case 31: break;
+          case 40: break;
           case 4: 
             { // INTEGER
 	       return new Symbol(sym.INTEGER, 
 				 new Integer(yytext()));
             } 
             // fall through
-          case 32: break;
+          case 41: break;
           case 5: 
             { return new Symbol(sym.MINUS);
             } 
             // fall through
-          case 33: break;
+          case 42: break;
           case 6: 
             { return new Symbol(sym.PLUS);
             } 
             // fall through
-          case 34: break;
+          case 43: break;
           case 7: 
             { return new Symbol(sym.MUL);
             } 
             // fall through
-          case 35: break;
+          case 44: break;
           case 8: 
             { return new Symbol(sym.DIV);
             } 
             // fall through
-          case 36: break;
+          case 45: break;
           case 9: 
             { return new Symbol(sym.MOD);
             } 
             // fall through
-          case 37: break;
+          case 46: break;
           case 10: 
             { return new Symbol(sym.ASSIGN);
             } 
             // fall through
-          case 38: break;
+          case 47: break;
           case 11: 
-            { return new Symbol(sym.POW);
+            { return new Symbol(sym.LT);
             } 
             // fall through
-          case 39: break;
+          case 48: break;
           case 12: 
-            { return new Symbol(sym.LBRACKET);
+            { return new Symbol(sym.GT);
             } 
             // fall through
-          case 40: break;
+          case 49: break;
           case 13: 
-            { return new Symbol(sym.RBRACKET);
+            { return new Symbol(sym.POW);
             } 
             // fall through
-          case 41: break;
+          case 50: break;
           case 14: 
-            { return new Symbol(sym.LPAREN);
+            { return new Symbol(sym.LBRACKET);
             } 
             // fall through
-          case 42: break;
+          case 51: break;
           case 15: 
-            { return new Symbol(sym.RPAREN);
+            { return new Symbol(sym.RBRACKET);
             } 
             // fall through
-          case 43: break;
+          case 52: break;
           case 16: 
-            { return new Symbol(sym.LBRACE);
+            { return new Symbol(sym.LPAREN);
             } 
             // fall through
-          case 44: break;
+          case 53: break;
           case 17: 
-            { return new Symbol(sym.RBRACE);
+            { return new Symbol(sym.RPAREN);
             } 
             // fall through
-          case 45: break;
+          case 54: break;
           case 18: 
-            { return new Symbol(sym.COMMA);
+            { return new Symbol(sym.LBRACE);
             } 
             // fall through
-          case 46: break;
+          case 55: break;
           case 19: 
-            { return new Symbol(sym.SEMI);
+            { return new Symbol(sym.RBRACE);
             } 
             // fall through
-          case 47: break;
+          case 56: break;
           case 20: 
-            { return new Symbol(sym.COLON);
+            { return new Symbol(sym.COMMA);
             } 
             // fall through
-          case 48: break;
+          case 57: break;
           case 21: 
-            { return new Symbol(sym.MAPSTO);
+            { return new Symbol(sym.SEMI);
             } 
             // fall through
-          case 49: break;
+          case 58: break;
           case 22: 
-            { return new Symbol(sym.IN);
+            { return new Symbol(sym.COLON);
             } 
             // fall through
-          case 50: break;
+          case 59: break;
           case 23: 
+            { return new Symbol(sym.MAPSTO);
+            } 
+            // fall through
+          case 60: break;
+          case 24: 
+            { return new Symbol(sym.EQ);
+            } 
+            // fall through
+          case 61: break;
+          case 25: 
+            { return new Symbol(sym.NE);
+            } 
+            // fall through
+          case 62: break;
+          case 26: 
+            { return new Symbol(sym.LE);
+            } 
+            // fall through
+          case 63: break;
+          case 27: 
+            { return new Symbol(sym.GE);
+            } 
+            // fall through
+          case 64: break;
+          case 28: 
+            { return new Symbol(sym.IN);
+            } 
+            // fall through
+          case 65: break;
+          case 29: 
+            { return new Symbol(sym.IF);
+            } 
+            // fall through
+          case 66: break;
+          case 30: 
             { // INTEGER
 	       return new Symbol(sym.REAL, 
 				 new Double (yytext()));
             } 
             // fall through
-          case 51: break;
-          case 24: 
+          case 67: break;
+          case 31: 
             { return new Symbol(sym.LET);
             } 
             // fall through
-          case 52: break;
-          case 25: 
+          case 68: break;
+          case 32: 
             { return new Symbol(sym.FUN);
             } 
             // fall through
-          case 53: break;
-          case 26: 
+          case 69: break;
+          case 33: 
             { return new Symbol(sym.FOR);
             } 
             // fall through
-          case 54: break;
-          case 27: 
+          case 70: break;
+          case 34: 
+            { return new Symbol(sym.ELSE);
+            } 
+            // fall through
+          case 71: break;
+          case 35: 
+            { return new Symbol(sym.THEN);
+            } 
+            // fall through
+          case 72: break;
+          case 36: 
             { return new Symbol(sym.PLOT);
             } 
             // fall through
-          case 55: break;
-          case 28: 
+          case 73: break;
+          case 37: 
             { return new Symbol(sym.CLEAR);
             } 
             // fall through
-          case 56: break;
+          case 74: break;
           default:
             zzScanError(ZZ_NO_MATCH);
         }
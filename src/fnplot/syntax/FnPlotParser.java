@@ -9,6 +9,7 @@ import java_cup.runtime.*;
 import java.io.*;
 import java.util.*;
 import fnplot.sys.SyntaxFnPlotException;
+import fnplot.values.Comparison;
 import fnplot.values.FnPlotValue;
 import java_cup.runtime.XMLElement;
 
@@ -35,16 +36,24 @@ public class FnPlotParser extends java_cup.runtime.lr_parser {
   /** Production table. */
   protected static final short _production_table[][] = 
     unpackFromStrings(new String[] {
-    "\000\037\000\002\002\003\000\002\002\004\000\002\003" +
+    "\000\067\000\002\002\003\000\002\002\004\000\002\003" +
     "\004\000\002\003\003\000\002\004\003\000\002\004\004" +
-    "\000\002\012\003\000\002\012\005\000\002\012\003\000" +
-    "\002\006\006\000\002\011\005\000\002\007\004\000\002" +
-    "\007\003\000\002\010\005\000\002\010\003\000\002\005" +
-    "\006\000\002\013\005\000\002\013\005\000\002\013\003" +
-    "\000\002\014\005\000\002\014\005\000\002\014\005\000" +
-    "\002\014\003\000\002\015\005\000\002\015\003\000\002" +
-    "\017\003\000\002\017\003\000\002\016\003\000\002\016" +
-    "\003\000\002\016\005\000\002\020\002" });
+    "\000\002\016\003\000\002\016\005\000\002\016\003\000" +
+    "\002\016\003\000\002\016\003\000\002\016\003\000\002" +
+    "\020\010\000\002\006\006\000\002\011\005\000\002\007" +
+    "\004\000\002\007\003\000\002\010\005\000\002\010\003" +
+    "\000\002\005\006\000\002\027\010\000\002\013\003\000" +
+    "\002\013\003\000\002\012\005\000\002\012\003\000\002" +
+    "\030\006\000\002\015\003\000\002\015\003\000\002\014" +
+    "\005\000\002\014\003\000\002\017\014\000\002\021\005" +
+    "\000\002\021\003\000\002\022\003\000\002\022\003\000" +
+    "\002\022\003\000\002\022\003\000\002\022\003\000\002" +
+    "\022\003\000\002\023\005\000\002\023\005\000\002\023" +
+    "\003\000\002\024\005\000\002\024\005\000\002\024\005" +
+    "\000\002\024\003\000\002\025\005\000\002\025\003\000" +
+    "\002\031\003\000\002\031\003\000\002\026\003\000\002" +
+    "\026\003\000\002\026\003\000\002\026\005\000\002\032" +
+    "\002" });
 
   /** Access to production table. */
   public short[][] production_table() {return _production_table;}
@@ -52,69 +61,148 @@ public class FnPlotParser extends java_cup.runtime.lr_parser {
   /** Parse-action table. */
   protected static final short[][] _action_table = 
     unpackFromStrings(new String[] {
-    "\000\066\000\016\004\024\017\022\021\004\033\006\034" +
-    "\020\035\015\001\002\000\016\004\024\017\022\021\004" +
-    "\033\006\034\020\035\015\001\002\000\026\005\uffe9\010" +
-    "\uffe9\011\uffe9\012\uffe9\013\uffe9\014\uffe9\016\uffe9\020\uffe9" +
-    "\023\uffe9\025\uffe9\001\002\000\026\005\uffe8\010\uffe8\011" +
-    "\uffe8\012\uffe8\013\uffe8\014\uffe8\016\uffe8\020\uffe8\023\uffe8" +
-    "\025\uffe8\001\002\000\022\002\ufffd\004\ufffd\017\ufffd\021" +
-    "\ufffd\022\ufffd\033\ufffd\034\ufffd\035\ufffd\001\002\000\022" +
-    "\002\ufffe\004\ufffe\017\ufffe\021\ufffe\022\ufffe\033\ufffe\034" +
-    "\ufffe\035\ufffe\001\002\000\024\005\uffef\010\uffef\011\uffef" +
-    "\012\034\013\035\014\033\020\uffef\023\uffef\025\uffef\001" +
-    "\002\000\026\005\uffe6\010\uffe6\011\uffe6\012\uffe6\013\uffe6" +
-    "\014\uffe6\016\uffe6\020\uffe6\023\uffe6\025\uffe6\001\002\000" +
-    "\004\002\066\001\002\000\012\005\ufffb\020\ufffb\023\ufffb" +
-    "\025\ufffb\001\002\000\022\010\uffe5\011\uffe5\012\uffe5\013" +
-    "\uffe5\014\uffe5\015\063\016\uffe5\023\uffe5\001\002\000\020" +
-    "\002\001\004\024\017\022\021\004\033\006\034\020\035" +
-    "\015\001\002\000\004\023\061\001\002\000\026\005\uffe7" +
-    "\010\uffe7\011\uffe7\012\uffe7\013\uffe7\014\uffe7\016\uffe7\020" +
-    "\uffe7\023\uffe7\025\uffe7\001\002\000\026\005\uffeb\010\uffeb" +
-    "\011\uffeb\012\uffeb\013\uffeb\014\uffeb\016\037\020\uffeb\023" +
-    "\uffeb\025\uffeb\001\002\000\006\020\uffe3\035\047\001\002" +
-    "\000\016\005\ufff9\010\030\011\031\020\ufff9\023\ufff9\025" +
-    "\ufff9\001\002\000\016\004\024\017\022\021\004\033\006" +
-    "\034\020\035\025\001\002\000\026\005\uffe5\010\uffe5\011" +
-    "\uffe5\012\uffe5\013\uffe5\014\uffe5\016\uffe5\020\uffe5\023\uffe5" +
-    "\025\uffe5\001\002\000\004\005\027\001\002\000\026\005" +
-    "\uffe4\010\uffe4\011\uffe4\012\uffe4\013\uffe4\014\uffe4\016\uffe4" +
-    "\020\uffe4\023\uffe4\025\uffe4\001\002\000\012\004\024\033" +
-    "\006\034\020\035\025\001\002\000\012\004\024\033\006" +
-    "\034\020\035\025\001\002\000\024\005\ufff0\010\ufff0\011" +
-    "\ufff0\012\034\013\035\014\033\020\ufff0\023\ufff0\025\ufff0" +
-    "\001\002\000\012\004\024\033\006\034\020\035\025\001" +
-    "\002\000\012\004\024\033\006\034\020\035\025\001\002" +
-    "\000\012\004\024\033\006\034\020\035\025\001\002\000" +
-    "\026\005\uffed\010\uffed\011\uffed\012\uffed\013\uffed\014\uffed" +
-    "\016\037\020\uffed\023\uffed\025\uffed\001\002\000\012\004" +
-    "\024\033\006\034\020\035\025\001\002\000\026\005\uffea" +
-    "\010\uffea\011\uffea\012\uffea\013\uffea\014\uffea\016\uffea\020" +
-    "\uffea\023\uffea\025\uffea\001\002\000\026\005\uffee\010\uffee" +
-    "\011\uffee\012\uffee\013\uffee\014\uffee\016\037\020\uffee\023" +
-    "\uffee\025\uffee\001\002\000\026\005\uffec\010\uffec\011\uffec" +
-    "\012\uffec\013\uffec\014\uffec\016\037\020\uffec\023\uffec\025" +
-    "\uffec\001\002\000\024\005\ufff1\010\ufff1\011\ufff1\012\034" +
-    "\013\035\014\033\020\ufff1\023\ufff1\025\ufff1\001\002\000" +
-    "\004\020\ufff5\001\002\000\006\020\uffe3\025\054\001\002" +
-    "\000\004\020\052\001\002\000\004\015\050\001\002\000" +
-    "\016\004\024\017\022\021\004\033\006\034\020\035\025" +
-    "\001\002\000\006\020\ufff7\025\ufff7\001\002\000\016\004" +
-    "\024\017\022\021\004\033\006\034\020\035\025\001\002" +
-    "\000\012\005\ufff8\020\ufff8\023\ufff8\025\ufff8\001\002\000" +
-    "\004\035\047\001\002\000\004\020\ufff3\001\002\000\004" +
-    "\020\ufff6\001\002\000\006\020\uffe3\025\054\001\002\000" +
-    "\004\020\ufff4\001\002\000\022\002\ufffc\004\ufffc\017\ufffc" +
-    "\021\ufffc\022\ufffc\033\ufffc\034\ufffc\035\ufffc\001\002\000" +
-    "\022\002\uffff\004\uffff\017\uffff\021\uffff\022\uffff\033\uffff" +
-    "\034\uffff\035\uffff\001\002\000\016\004\024\017\022\021" +
-    "\004\033\006\034\020\035\025\001\002\000\004\023\065" +
-    "\001\002\000\022\002\ufff2\004\ufff2\017\ufff2\021\ufff2\022" +
-    "\ufff2\033\ufff2\034\ufff2\035\ufff2\001\002\000\004\002\000" +
-    "\001\002\000\020\004\024\017\022\021\004\022\070\033" +
-    "\006\034\020\035\015\001\002\000\012\005\ufffa\020\ufffa" +
-    "\023\ufffa\025\ufffa\001\002" });
+    "\000\146\000\024\004\014\017\024\021\013\026\034\027" +
+    "\004\033\012\044\026\045\030\046\011\001\002\000\024" +
+    "\004\014\017\024\021\013\026\034\027\004\033\012\044" +
+    "\026\045\030\046\044\001\002\000\050\005\uffcf\010\uffcf" +
+    "\011\uffcf\012\uffcf\013\uffcf\014\uffcf\016\uffcf\020\uffcf\023" +
+    "\uffcf\025\uffcf\032\uffcf\034\uffcf\035\uffcf\036\uffcf\037\uffcf" +
+    "\040\uffcf\041\uffcf\042\uffcf\043\uffcf\001\002\000\040\005" +
+    "\uffe1\010\127\011\124\020\uffe1\023\uffe1\025\uffe1\032\uffe1" +
+    "\034\uffe1\035\uffe1\036\134\037\131\040\132\041\125\042" +
+    "\130\043\133\001\002\000\030\002\ufffd\004\ufffd\017\ufffd" +
+    "\021\ufffd\022\ufffd\026\ufffd\027\ufffd\033\ufffd\044\ufffd\045" +
+    "\ufffd\046\ufffd\001\002\000\020\005\ufff8\020\ufff8\023\ufff8" +
+    "\025\ufff8\032\ufff8\034\ufff8\035\ufff8\001\002\000\040\004" +
+    "\046\010\uffce\011\uffce\012\uffce\013\uffce\014\uffce\015\121" +
+    "\016\uffce\023\uffce\036\uffce\037\uffce\040\uffce\041\uffce\042" +
+    "\uffce\043\uffce\001\002\000\024\004\014\017\024\021\013" +
+    "\026\034\027\004\033\012\044\026\045\030\046\044\001" +
+    "\002\000\024\004\014\017\024\021\013\026\034\027\004" +
+    "\033\012\044\026\045\030\046\011\001\002\000\024\004" +
+    "\014\017\024\021\013\026\034\027\004\033\012\044\026" +
+    "\045\030\046\044\001\002\000\004\002\107\001\002\000" +
+    "\050\005\uffd2\010\uffd2\011\uffd2\012\uffd2\013\uffd2\014\uffd2" +
+    "\016\uffd2\020\uffd2\023\uffd2\025\uffd2\032\uffd2\034\uffd2\035" +
+    "\uffd2\036\uffd2\037\uffd2\040\uffd2\041\uffd2\042\uffd2\043\uffd2" +
+    "\001\002\000\020\005\ufffb\020\ufffb\023\ufffb\025\ufffb\032" +
+    "\ufffb\034\ufffb\035\ufffb\001\002\000\004\023\106\001\002" +
+    "\000\050\005\uffd4\010\uffd4\011\uffd4\012\uffd4\013\uffd4\014" +
+    "\uffd4\016\102\020\uffd4\023\uffd4\025\uffd4\032\uffd4\034\uffd4" +
+    "\035\uffd4\036\uffd4\037\uffd4\040\uffd4\041\uffd4\042\uffd4\043" +
+    "\uffd4\001\002\000\020\005\ufff9\020\ufff9\023\ufff9\025\ufff9" +
+    "\032\ufff9\034\ufff9\035\ufff9\001\002\000\046\005\uffd8\010" +
+    "\uffd8\011\uffd8\012\077\013\100\014\076\020\uffd8\023\uffd8" +
+    "\025\uffd8\032\uffd8\034\uffd8\035\uffd8\036\uffd8\037\uffd8\040" +
+    "\uffd8\041\uffd8\042\uffd8\043\uffd8\001\002\000\006\020\uffcb" +
+    "\046\063\001\002\000\050\005\uffcd\010\uffcd\011\uffcd\012" +
+    "\uffcd\013\uffcd\014\uffcd\016\uffcd\020\uffcd\023\uffcd\025\uffcd" +
+    "\032\uffcd\034\uffcd\035\uffcd\036\uffcd\037\uffcd\040\uffcd\041" +
+    "\uffcd\042\uffcd\043\uffcd\001\002\000\054\005\uffd1\007\uffd1" +
+    "\010\uffd1\011\uffd1\012\uffd1\013\uffd1\014\uffd1\016\uffd1\020" +
+    "\uffd1\023\uffd1\024\uffd1\025\uffd1\032\uffd1\034\uffd1\035\uffd1" +
+    "\036\uffd1\037\uffd1\040\uffd1\041\uffd1\042\uffd1\043\uffd1\001" +
+    "\002\000\020\005\ufff7\020\ufff7\023\ufff7\025\ufff7\032\ufff7" +
+    "\034\ufff7\035\ufff7\001\002\000\054\005\uffd0\007\uffd0\010" +
+    "\uffd0\011\uffd0\012\uffd0\013\uffd0\014\uffd0\016\uffd0\020\uffd0" +
+    "\023\uffd0\024\uffd0\025\uffd0\032\uffd0\034\uffd0\035\uffd0\036" +
+    "\uffd0\037\uffd0\040\uffd0\041\uffd0\042\uffd0\043\uffd0\001\002" +
+    "\000\020\005\ufff6\020\ufff6\023\ufff6\025\ufff6\032\ufff6\034" +
+    "\ufff6\035\ufff6\001\002\000\030\002\ufffe\004\ufffe\017\ufffe" +
+    "\021\ufffe\022\ufffe\026\ufffe\027\ufffe\033\ufffe\044\ufffe\045" +
+    "\ufffe\046\ufffe\001\002\000\026\002\001\004\014\017\024" +
+    "\021\013\026\034\027\004\033\012\044\026\045\030\046" +
+    "\011\001\002\000\004\004\035\001\002\000\006\005\uffcb" +
+    "\046\041\001\002\000\006\005\uffec\025\056\001\002\000" +
+    "\004\005\042\001\002\000\004\005\uffeb\001\002\000\006" +
+    "\005\uffe9\025\uffe9\001\002\000\004\031\043\001\002\000" +
+    "\024\004\014\017\024\021\013\026\034\027\004\033\012" +
+    "\044\026\045\030\046\044\001\002\000\052\004\046\005" +
+    "\uffce\010\uffce\011\uffce\012\uffce\013\uffce\014\uffce\016\uffce" +
+    "\020\uffce\023\uffce\025\uffce\032\uffce\034\uffce\035\uffce\036" +
+    "\uffce\037\uffce\040\uffce\041\uffce\042\uffce\043\uffce\001\002" +
+    "\000\020\005\uffed\020\uffed\023\uffed\025\uffed\032\uffed\034" +
+    "\uffed\035\uffed\001\002\000\026\004\014\005\uffcb\017\024" +
+    "\021\013\026\034\027\004\033\012\044\026\045\030\046" +
+    "\044\001\002\000\004\005\055\001\002\000\004\005\uffe6" +
+    "\001\002\000\006\005\uffe7\025\053\001\002\000\006\005" +
+    "\uffe4\025\uffe4\001\002\000\024\004\014\017\024\021\013" +
+    "\026\034\027\004\033\012\044\026\045\030\046\044\001" +
+    "\002\000\006\005\uffe5\025\uffe5\001\002\000\050\005\uffe8" +
+    "\010\uffe8\011\uffe8\012\uffe8\013\uffe8\014\uffe8\016\uffe8\020" +
+    "\uffe8\023\uffe8\025\uffe8\032\uffe8\034\uffe8\035\uffe8\036\uffe8" +
+    "\037\uffe8\040\uffe8\041\uffe8\042\uffe8\043\uffe8\001\002\000" +
+    "\004\046\057\001\002\000\006\005\uffea\025\uffea\001\002" +
+    "\000\030\002\uffff\004\uffff\017\uffff\021\uffff\022\uffff\026" +
+    "\uffff\027\uffff\033\uffff\044\uffff\045\uffff\046\uffff\001\002" +
+    "\000\004\020\ufff1\001\002\000\006\020\uffcb\025\071\001" +
+    "\002\000\004\015\067\001\002\000\004\020\065\001\002" +
+    "\000\024\004\014\017\024\021\013\026\034\027\004\033" +
+    "\012\044\026\045\030\046\044\001\002\000\020\005\ufff4" +
+    "\020\ufff4\023\ufff4\025\ufff4\032\ufff4\034\ufff4\035\ufff4\001" +
+    "\002\000\024\004\014\017\024\021\013\026\034\027\004" +
+    "\033\012\044\026\045\030\046\044\001\002\000\006\020" +
+    "\ufff3\025\ufff3\001\002\000\004\046\063\001\002\000\004" +
+    "\020\uffef\001\002\000\004\020\ufff2\001\002\000\006\020" +
+    "\uffcb\025\071\001\002\000\004\020\ufff0\001\002\000\012" +
+    "\004\014\044\026\045\030\046\044\001\002\000\012\004" +
+    "\014\044\026\045\030\046\044\001\002\000\012\004\014" +
+    "\044\026\045\030\046\044\001\002\000\050\005\uffd6\010" +
+    "\uffd6\011\uffd6\012\uffd6\013\uffd6\014\uffd6\016\102\020\uffd6" +
+    "\023\uffd6\025\uffd6\032\uffd6\034\uffd6\035\uffd6\036\uffd6\037" +
+    "\uffd6\040\uffd6\041\uffd6\042\uffd6\043\uffd6\001\002\000\012" +
+    "\004\014\044\026\045\030\046\044\001\002\000\050\005" +
+    "\uffd3\010\uffd3\011\uffd3\012\uffd3\013\uffd3\014\uffd3\016\uffd3" +
+    "\020\uffd3\023\uffd3\025\uffd3\032\uffd3\034\uffd3\035\uffd3\036" +
+    "\uffd3\037\uffd3\040\uffd3\041\uffd3\042\uffd3\043\uffd3\001\002" +
+    "\000\050\005\uffd7\010\uffd7\011\uffd7\012\uffd7\013\uffd7\014" +
+    "\uffd7\016\102\020\uffd7\023\uffd7\025\uffd7\032\uffd7\034\uffd7" +
+    "\035\uffd7\036\uffd7\037\uffd7\040\uffd7\041\uffd7\042\uffd7\043" +
+    "\uffd7\001\002\000\050\005\uffd5\010\uffd5\011\uffd5\012\uffd5" +
+    "\013\uffd5\014\uffd5\016\102\020\uffd5\023\uffd5\025\uffd5\032" +
+    "\uffd5\034\uffd5\035\uffd5\036\uffd5\037\uffd5\040\uffd5\041\uffd5" +
+    "\042\uffd5\043\uffd5\001\002\000\030\002\ufffc\004\ufffc\017" +
+    "\ufffc\021\ufffc\022\ufffc\026\ufffc\027\ufffc\033\ufffc\044\ufffc" +
+    "\045\ufffc\046\ufffc\001\002\000\004\002\000\001\002\000" +
+    "\004\005\111\001\002\000\050\005\uffcc\010\uffcc\011\uffcc" +
+    "\012\uffcc\013\uffcc\014\uffcc\016\uffcc\020\uffcc\023\uffcc\025" +
+    "\uffcc\032\uffcc\034\uffcc\035\uffcc\036\uffcc\037\uffcc\040\uffcc" +
+    "\041\uffcc\042\uffcc\043\uffcc\001\002\000\026\004\014\017" +
+    "\024\021\013\022\113\026\034\027\004\033\012\044\026" +
+    "\045\030\046\011\001\002\000\020\005\ufffa\020\ufffa\023" +
+    "\ufffa\025\ufffa\032\ufffa\034\ufffa\035\ufffa\001\002\000\004" +
+    "\034\115\001\002\000\024\004\014\017\024\021\013\026" +
+    "\034\027\004\033\012\044\026\045\030\046\044\001\002" +
+    "\000\004\035\117\001\002\000\024\004\014\017\024\021" +
+    "\013\026\034\027\004\033\012\044\026\045\030\046\044" +
+    "\001\002\000\020\005\ufff5\020\ufff5\023\ufff5\025\ufff5\032" +
+    "\ufff5\034\ufff5\035\ufff5\001\002\000\024\004\014\017\024" +
+    "\021\013\026\034\027\004\033\012\044\026\045\030\046" +
+    "\044\001\002\000\004\023\123\001\002\000\030\002\uffee" +
+    "\004\uffee\017\uffee\021\uffee\022\uffee\026\uffee\027\uffee\033" +
+    "\uffee\044\uffee\045\uffee\046\uffee\001\002\000\012\004\014" +
+    "\044\026\045\030\046\044\001\002\000\012\004\uffdd\044" +
+    "\uffdd\045\uffdd\046\uffdd\001\002\000\012\004\014\044\026" +
+    "\045\030\046\044\001\002\000\012\004\014\044\026\045" +
+    "\030\046\044\001\002\000\012\004\uffdc\044\uffdc\045\uffdc" +
+    "\046\uffdc\001\002\000\012\004\uffdf\044\uffdf\045\uffdf\046" +
+    "\uffdf\001\002\000\012\004\uffde\044\uffde\045\uffde\046\uffde" +
+    "\001\002\000\012\004\uffdb\044\uffdb\045\uffdb\046\uffdb\001" +
+    "\002\000\012\004\uffe0\044\uffe0\045\uffe0\046\uffe0\001\002" +
+    "\000\046\005\uffda\010\uffda\011\uffda\012\077\013\100\014" +
+    "\076\020\uffda\023\uffda\025\uffda\032\uffda\034\uffda\035\uffda" +
+    "\036\uffda\037\uffda\040\uffda\041\uffda\042\uffda\043\uffda\001" +
+    "\002\000\024\005\uffe2\010\127\011\124\020\uffe2\023\uffe2" +
+    "\025\uffe2\032\uffe2\034\uffe2\035\uffe2\001\002\000\046\005" +
+    "\uffd9\010\uffd9\011\uffd9\012\077\013\100\014\076\020\uffd9" +
+    "\023\uffd9\025\uffd9\032\uffd9\034\uffd9\035\uffd9\036\uffd9\037" +
+    "\uffd9\040\uffd9\041\uffd9\042\uffd9\043\uffd9\001\002\000\004" +
+    "\032\141\001\002\000\004\046\142\001\002\000\004\020" +
+    "\143\001\002\000\004\006\144\001\002\000\006\044\026" +
+    "\045\030\001\002\000\004\024\146\001\002\000\006\044" +
+    "\026\045\030\001\002\000\004\007\150\001\002\000\020" +
+    "\005\uffe3\020\uffe3\023\uffe3\025\uffe3\032\uffe3\034\uffe3\035" +
+    "\uffe3\001\002" });
 
   /** Access to parse-action table. */
   public short[][] action_table() {return _action_table;}
@@ -122,38 +210,75 @@ public class FnPlotParser extends java_cup.runtime.lr_parser {
   /** <code>reduce_goto</code> table. */
   protected static final short[][] _reduce_table = 
     unpackFromStrings(new String[] {
-    "\000\066\000\030\002\012\003\015\004\007\005\006\006" +
-    "\013\012\016\013\022\014\010\015\020\016\004\017\011" +
-    "\001\001\000\026\003\066\004\007\005\006\006\013\012" +
-    "\016\013\022\014\010\015\020\016\004\017\011\001\001" +
+    "\000\146\000\042\002\014\003\032\004\031\005\006\006" +
+    "\016\016\017\017\030\020\021\021\007\023\005\024\022" +
+    "\025\020\026\015\027\026\030\024\031\004\001\001\000" +
+    "\032\006\016\016\137\017\030\020\021\021\007\023\005" +
+    "\024\022\025\020\026\015\027\026\030\024\031\004\001" +
+    "\001\000\002\001\001\000\004\022\125\001\001\000\002" +
+    "\001\001\000\002\001\001\000\002\001\001\000\032\006" +
+    "\016\016\113\017\030\020\021\021\007\023\005\024\022" +
+    "\025\020\026\015\027\026\030\024\031\004\001\001\000" +
+    "\040\003\111\004\031\005\006\006\016\016\017\017\030" +
+    "\020\021\021\007\023\005\024\022\025\020\026\015\027" +
+    "\026\030\024\031\004\001\001\000\032\006\016\016\107" +
+    "\017\030\020\021\021\007\023\005\024\022\025\020\026" +
+    "\015\027\026\030\024\031\004\001\001\000\002\001\001" +
     "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
+    "\002\001\001\000\002\001\001\000\002\001\001\000\010" +
+    "\007\063\011\061\032\060\001\001\000\002\001\001\000" +
     "\002\001\001\000\002\001\001\000\002\001\001\000\002" +
-    "\001\001\000\002\001\001\000\002\001\001\000\024\004" +
-    "\061\005\006\006\013\012\016\013\022\014\010\015\020" +
-    "\016\004\017\011\001\001\000\002\001\001\000\002\001" +
-    "\001\000\002\001\001\000\010\007\045\011\044\020\043" +
-    "\001\001\000\002\001\001\000\020\006\013\012\025\013" +
-    "\022\014\010\015\020\016\004\017\011\001\001\000\002" +
-    "\001\001\000\002\001\001\000\002\001\001\000\012\014" +
-    "\042\015\020\016\004\017\011\001\001\000\012\014\031" +
-    "\015\020\016\004\017\011\001\001\000\002\001\001\000" +
-    "\010\015\041\016\004\017\011\001\001\000\010\015\040" +
-    "\016\004\017\011\001\001\000\010\015\035\016\004\017" +
-    "\011\001\001\000\002\001\001\000\006\016\037\017\011" +
+    "\001\001\000\002\001\001\000\036\004\057\005\006\006" +
+    "\016\016\017\017\030\020\021\021\007\023\005\024\022" +
+    "\025\020\026\015\027\026\030\024\031\004\001\001\000" +
+    "\002\001\001\000\010\012\035\013\036\032\037\001\001" +
+    "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
+    "\002\001\001\000\002\001\001\000\032\006\016\016\044" +
+    "\017\030\020\021\021\007\023\005\024\022\025\020\026" +
+    "\015\027\026\030\024\031\004\001\001\000\002\001\001" +
+    "\000\002\001\001\000\040\006\016\014\050\015\046\016" +
+    "\051\017\030\020\021\021\007\023\005\024\022\025\020" +
+    "\026\015\027\026\030\024\031\004\032\047\001\001\000" +
+    "\002\001\001\000\002\001\001\000\002\001\001\000\002" +
+    "\001\001\000\032\006\016\016\053\017\030\020\021\021" +
+    "\007\023\005\024\022\025\020\026\015\027\026\030\024" +
+    "\031\004\001\001\000\002\001\001\000\002\001\001\000" +
+    "\002\001\001\000\002\001\001\000\002\001\001\000\002" +
+    "\001\001\000\006\010\072\032\071\001\001\000\002\001" +
+    "\001\000\002\001\001\000\032\006\016\016\065\017\030" +
+    "\020\021\021\007\023\005\024\022\025\020\026\015\027" +
+    "\026\030\024\031\004\001\001\000\002\001\001\000\032" +
+    "\006\016\016\067\017\030\020\021\021\007\023\005\024" +
+    "\022\025\020\026\015\027\026\030\024\031\004\001\001" +
+    "\000\002\001\001\000\004\011\073\001\001\000\002\001" +
+    "\001\000\002\001\001\000\006\010\074\032\071\001\001" +
+    "\000\002\001\001\000\012\025\104\026\015\030\024\031" +
+    "\004\001\001\000\012\025\103\026\015\030\024\031\004" +
+    "\001\001\000\012\025\100\026\015\030\024\031\004\001" +
+    "\001\000\002\001\001\000\010\026\102\030\024\031\004" +
     "\001\001\000\002\001\001\000\002\001\001\000\002\001" +
-    "\001\000\002\001\001\000\002\001\001\000\006\010\055" +
-    "\020\054\001\001\000\002\001\001\000\002\001\001\000" +
-    "\020\006\013\012\050\013\022\014\010\015\020\016\004" +
-    "\017\011\001\001\000\002\001\001\000\020\006\013\012" +
-    "\052\013\022\014\010\015\020\016\004\017\011\001\001" +
-    "\000\002\001\001\000\004\011\056\001\001\000\002\001" +
-    "\001\000\002\001\001\000\006\010\057\020\054\001\001" +
+    "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
+    "\000\002\001\001\000\036\004\057\005\006\006\016\016" +
+    "\017\017\030\020\021\021\007\023\005\024\022\025\020" +
+    "\026\015\027\026\030\024\031\004\001\001\000\002\001" +
+    "\001\000\002\001\001\000\032\006\016\016\115\017\030" +
+    "\020\021\021\007\023\005\024\022\025\020\026\015\027" +
+    "\026\030\024\031\004\001\001\000\002\001\001\000\032" +
+    "\006\016\016\117\017\030\020\021\021\007\023\005\024" +
+    "\022\025\020\026\015\027\026\030\024\031\004\001\001" +
+    "\000\002\001\001\000\032\006\016\016\121\017\030\020" +
+    "\021\021\007\023\005\024\022\025\020\026\015\027\026" +
+    "\030\024\031\004\001\001\000\002\001\001\000\002\001" +
+    "\001\000\014\024\136\025\020\026\015\030\024\031\004" +
+    "\001\001\000\002\001\001\000\016\023\135\024\022\025" +
+    "\020\026\015\030\024\031\004\001\001\000\014\024\134" +
+    "\025\020\026\015\030\024\031\004\001\001\000\002\001" +
+    "\001\000\002\001\001\000\002\001\001\000\002\001\001" +
     "\000\002\001\001\000\002\001\001\000\002\001\001\000" +
-    "\020\006\013\012\063\013\022\014\010\015\020\016\004" +
-    "\017\011\001\001\000\002\001\001\000\002\001\001\000" +
-    "\002\001\001\000\024\004\061\005\006\006\013\012\016" +
-    "\013\022\014\010\015\020\016\004\017\011\001\001\000" +
-    "\002\001\001" });
+    "\002\001\001\000\002\001\001\000\002\001\001\000\002" +
+    "\001\001\000\002\001\001\000\004\031\144\001\001\000" +
+    "\002\001\001\000\004\031\146\001\001\000\002\001\001" +
+    "\000\002\001\001" });
 
   /** Access to <code>reduce_goto</code> table. */
   public short[][] reduce_table() {return _reduce_table;}
@@ -217,6 +342,7 @@ public class FnPlotParser extends java_cup.runtime.lr_parser {
 
 
 		FnPlotLexer lexer;
+		ExpFactory factory = new ExpFactory();
 
 		public FnPlotParser(FnPlotLexer l) {
 		    // As of CUP v0.11, need to pass Lexer to superclass
@@ -351,7 +477,7 @@ class CUP$FnPlotParser$actions {
 		int lright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		StmtLet l = (StmtLet)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT = l; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expression",8, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expression",12, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
@@ -363,24 +489,80 @@ class CUP$FnPlotParser$actions {
 		int bodyright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).right;
 		StmtSequence body = (StmtSequence)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).value;
 		 RESULT = body; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expression",8, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expression",12, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 8: // expression ::= arithExp 
+          case 8: // expression ::= ifExp 
             {
               Exp RESULT =null;
-		int aleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
-		int aright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
-		Exp a = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
-		 RESULT = a; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expression",8, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+		int ileft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int iright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		Exp i = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 RESULT = i; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expression",12, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 9: // expression ::= compExp 
+            {
+              Exp RESULT =null;
+		int cleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int cright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		Exp c = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 RESULT = c; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expression",12, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 10: // expression ::= funDef 
+            {
+              Exp RESULT =null;
+		int fdleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int fdright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		Exp fd = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 RESULT = fd; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expression",12, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 11: // expression ::= plotter 
+            {
+              Exp RESULT =null;
+		int pleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int pright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		Exp p = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 RESULT = p; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expression",12, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 12: // ifExp ::= IF expression THEN expression ELSE expression 
+            {
+              Exp RESULT =null;
+		int cleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-4)).left;
+		int cright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-4)).right;
+		Exp c = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-4)).value;
+		int tleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
+		int tright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).right;
+		Exp t = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).value;
+		int eleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int eright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		Exp e = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		
+		RESULT = factory.ifExp(c, t, e);
+	  
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("ifExp",14, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-5)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 9: // letExp ::= LET bindings IN expression 
+          case 13: // letExp ::= LET bindings IN expression 
             {
               StmtLet RESULT =null;
 		int bsleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -397,7 +579,7 @@ class CUP$FnPlotParser$actions {
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 10: // binding ::= VARIABLE ASSIGN expression 
+          case 14: // binding ::= VARIABLE ASSIGN expression 
             {
               Binding RESULT =null;
 		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -414,7 +596,7 @@ class CUP$FnPlotParser$actions {
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 11: // bindings ::= binding bindingsAux 
+          case 15: // bindings ::= binding bindingsAux 
             {
               ArrayList<Binding> RESULT =null;
 		int bleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).left;
@@ -432,7 +614,7 @@ class CUP$FnPlotParser$actions {
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 12: // bindings ::= empty 
+          case 16: // bindings ::= empty 
             {
               ArrayList<Binding> RESULT =null;
 		 RESULT = new ArrayList(); 
@@ -441,7 +623,7 @@ class CUP$FnPlotParser$actions {
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 13: // bindingsAux ::= COMMA binding bindingsAux 
+          case 17: // bindingsAux ::= COMMA binding bindingsAux 
             {
               ArrayList<Binding> RESULT =null;
 		int bleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).left;
@@ -459,7 +641,7 @@ class CUP$FnPlotParser$actions {
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 14: // bindingsAux ::= empty 
+          case 18: // bindingsAux ::= empty 
             {
               ArrayList<Binding> RESULT =null;
 		 RESULT = new ArrayList(); 
@@ -468,7 +650,7 @@ class CUP$FnPlotParser$actions {
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 15: // definition ::= VARIABLE ASSIGN expression SEMI 
+          case 19: // definition ::= VARIABLE ASSIGN expression SEMI 
             {
               StmtDefinition RESULT =null;
 		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).left;
@@ -485,7 +667,246 @@ class CUP$FnPlotParser$actions {
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 16: // arithExp ::= arithExp PLUS term 
+          case 20: // funDef ::= FUN LPAREN paramListE RPAREN MAPSTO expression 
+            {
+              Exp RESULT =null;
+		int plleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).left;
+		int plright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).right;
+		ArrayList<String> pl = (ArrayList<String>)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).value;
+		int bodyleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int bodyright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		Exp body = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 RESULT = new ExpFunction(pl, body); 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("funDef",21, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-5)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 21: // paramListE ::= paramList 
+            {
+              ArrayList<String> RESULT =null;
+		int plleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int plright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		ArrayList<String> pl = (ArrayList<String>)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 RESULT = pl; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("paramListE",9, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 22: // paramListE ::= empty 
+            {
+              ArrayList<String> RESULT =null;
+		 RESULT = new ArrayList(); 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("paramListE",9, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 23: // paramList ::= paramList COMMA VARIABLE 
+            {
+              ArrayList<String> RESULT =null;
+		int plleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
+		int plright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).right;
+		ArrayList<String> pl = (ArrayList<String>)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).value;
+		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int vright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		String v = (String)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 pl.add(v); 
+											RESULT = pl; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("paramList",8, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 24: // paramList ::= VARIABLE 
+            {
+              ArrayList<String> RESULT =null;
+		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int vright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		String v = (String)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 ArrayList<String> ls = new ArrayList<>(); 
+							ls.add(v);
+							RESULT = ls; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("paramList",8, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 25: // funCall ::= VARIABLE LPAREN expListE RPAREN 
+            {
+              Exp RESULT =null;
+		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).left;
+		int vright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).right;
+		String v = (String)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).value;
+		int elleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).left;
+		int elright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).right;
+		ArrayList<Exp> el = (ArrayList<Exp>)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).value;
+		 RESULT = factory.funCall(v, el); 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("funCall",22, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 26: // expListE ::= expList 
+            {
+              ArrayList<Exp> RESULT =null;
+		int plleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int plright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		ArrayList<Exp> pl = (ArrayList<Exp>)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 RESULT = pl; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expListE",11, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 27: // expListE ::= empty 
+            {
+              ArrayList<Exp> RESULT =null;
+		 RESULT = new ArrayList(); 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expListE",11, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 28: // expList ::= expList COMMA expression 
+            {
+              ArrayList<Exp> RESULT =null;
+		int plleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
+		int plright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).right;
+		ArrayList<Exp> pl = (ArrayList<Exp>)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).value;
+		int eleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int eright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		Exp e = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 pl.add(e); 
+											RESULT = pl; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expList",10, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 29: // expList ::= expression 
+            {
+              ArrayList<Exp> RESULT =null;
+		int eleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int eright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		Exp e = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 ArrayList<Exp> ls = new ArrayList<>(); 
+							ls.add(e);
+							RESULT = ls; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("expList",10, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 30: // plotter ::= PLOT expression FOR VARIABLE IN LBRACKET number COLON number RBRACKET 
+            {
+              Exp RESULT =null;
+		int eleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-8)).left;
+		int eright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-8)).right;
+		Exp e = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-8)).value;
+		int vleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-6)).left;
+		int vright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-6)).right;
+		String v = (String)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-6)).value;
+		int lLleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).left;
+		int lLright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).right;
+		FnPlotValue< ? > lL = (FnPlotValue< ? >)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-3)).value;
+		int uLleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).left;
+		int uLright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).right;
+		FnPlotValue< ? > uL = (FnPlotValue< ? >)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).value;
+		 
+	RESULT = new ExpPlot(e,v,lL,uL);  
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("plotter",13, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-9)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 31: // compExp ::= arithExp compOp arithExp 
+            {
+              Exp RESULT =null;
+		int e1left = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
+		int e1right = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).right;
+		Exp e1 = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).value;
+		int opleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).left;
+		int opright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).right;
+		Comparison op = (Comparison)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).value;
+		int e2left = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int e2right = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		Exp e2 = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		
+		RESULT = factory.compare(op, e1, e2); 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("compExp",15, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 32: // compExp ::= arithExp 
+            {
+              Exp RESULT =null;
+		int aleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int aright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		Exp a = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 RESULT = a; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("compExp",15, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 33: // compOp ::= LT 
+            {
+              Comparison RESULT =null;
+		 RESULT = Comparison.LT; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("compOp",16, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 34: // compOp ::= LE 
+            {
+              Comparison RESULT =null;
+		 RESULT = Comparison.LE; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("compOp",16, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 35: // compOp ::= GT 
+            {
+              Comparison RESULT =null;
+		 RESULT = Comparison.GT; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("compOp",16, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 36: // compOp ::= GE 
+            {
+              Comparison RESULT =null;
+		 RESULT = Comparison.GE; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("compOp",16, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 37: // compOp ::= EQ 
+            {
+              Comparison RESULT =null;
+		 RESULT = Comparison.EQ; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("compOp",16, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 38: // compOp ::= NE 
+            {
+              Comparison RESULT =null;
+		 RESULT = Comparison.NE; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("compOp",16, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 39: // arithExp ::= arithExp PLUS term 
             {
               Exp RESULT =null;
 		int eleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -495,13 +916,13 @@ class CUP$FnPlotParser$actions {
 		int tright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp t = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		
-			RESULT = new ExpAdd(e, t); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("arithExp",9, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+			RESULT = factory.add(e, t); 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("arithExp",17, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 17: // arithExp ::= arithExp MINUS term 
+          case 40: // arithExp ::= arithExp MINUS term 
             {
               Exp RESULT =null;
 		int eleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -511,25 +932,25 @@ class CUP$FnPlotParser$actions {
 		int tright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp t = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		
-			RESULT = new ExpSub(e, t); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("arithExp",9, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+			RESULT = factory.sub(e, t); 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("arithExp",17, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 18: // arithExp ::= term 
+          case 41: // arithExp ::= term 
             {
               Exp RESULT =null;
 		int tleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int tright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp t = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT = t; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("arithExp",9, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("arithExp",17, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 19: // term ::= term MUL factor 
+          case 42: // term ::= term MUL factor 
             {
               Exp RESULT =null;
 		int tleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -539,13 +960,13 @@ class CUP$FnPlotParser$actions {
 		int fright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp f = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		
-		RESULT = new ExpMul(t, f); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",10, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+		RESULT = factory.mul(t, f); 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",18, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 20: // term ::= term DIV factor 
+          case 43: // term ::= term DIV factor 
             {
               Exp RESULT =null;
 		int tleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -555,13 +976,13 @@ class CUP$FnPlotParser$actions {
 		int fright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp f = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		
-		RESULT = new ExpDiv(t, f); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",10, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+		RESULT = factory.div(t, f); 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",18, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 21: // term ::= term MOD factor 
+          case 44: // term ::= term MOD factor 
             {
               Exp RESULT =null;
 		int tleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -571,25 +992,25 @@ class CUP$FnPlotParser$actions {
 		int fright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp f = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		
-		RESULT = new ExpMod(t, f); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",10, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+		RESULT = factory.mod(t, f); 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",18, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 22: // term ::= factor 
+          case 45: // term ::= factor 
             {
               Exp RESULT =null;
 		int fleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int fright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp f = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT = f; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",10, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("term",18, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 23: // factor ::= factor POW power 
+          case 46: // factor ::= factor POW power 
             {
               Exp RESULT =null;
 		int fleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)).left;
@@ -598,89 +1019,101 @@ class CUP$FnPlotParser$actions {
 		int pleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int pright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp p = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
-		 RESULT = new ExpPow(f, p); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("factor",11, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+		 RESULT = factory.pow(f, p); 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("factor",19, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 24: // factor ::= power 
+          case 47: // factor ::= power 
             {
               Exp RESULT =null;
 		int pleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int pright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Exp p = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT = p; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("factor",11, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("factor",19, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 25: // number ::= INTEGER 
+          case 48: // number ::= INTEGER 
             {
               FnPlotValue< ? > RESULT =null;
 		int ilitleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int ilitright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Integer ilit = (Integer)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT = FnPlotValue.make(ilit); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("number",13, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("number",23, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 26: // number ::= REAL 
+          case 49: // number ::= REAL 
             {
               FnPlotValue< ? > RESULT =null;
 		int rlitleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int rlitright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		Double rlit = (Double)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
 		 RESULT = FnPlotValue.make(rlit); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("number",13, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("number",23, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 27: // power ::= number 
+          case 50: // power ::= number 
             {
               Exp RESULT =null;
 		int nleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int nright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		FnPlotValue< ? > n = (FnPlotValue< ? >)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
-		 RESULT = new ExpLit(n); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("power",12, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+		 RESULT = factory.lit(n); 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("power",20, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 28: // power ::= VARIABLE 
+          case 51: // power ::= VARIABLE 
             {
               Exp RESULT =null;
 		int varleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
 		int varright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
 		String var = (String)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
-		 RESULT = new ExpVar(var); 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("power",12, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+		 RESULT = factory.var(var); 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("power",20, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+            }
+          return CUP$FnPlotParser$result;
+
+          /*. . . . . . . . . . . . . . . . . . . .*/
+          case 52: // power ::= funCall 
+            {
+              Exp RESULT =null;
+		int fleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).left;
+		int fright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()).right;
+		Exp f = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.peek()).value;
+		 RESULT = f; 
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("power",20, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 29: // power ::= LPAREN expression RPAREN 
+          case 53: // power ::= LPAREN expression RPAREN 
             {
               Exp RESULT =null;
 		int eleft = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).left;
 		int eright = ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).right;
 		Exp e = (Exp)((java_cup.runtime.Symbol) CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-1)).value;
 		 RESULT = e; 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("power",12, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("power",20, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.elementAt(CUP$FnPlotParser$top-2)), ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
           /*. . . . . . . . . . . . . . . . . . . .*/
-          case 30: // empty ::= 
+          case 54: // empty ::= 
             {
               Object RESULT =null;
 
-              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("empty",14, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
+              CUP$FnPlotParser$result = parser.getSymbolFactory().newSymbol("empty",24, ((java_cup.runtime.Symbol)CUP$FnPlotParser$stack.peek()), RESULT);
             }
           return CUP$FnPlotParser$result;
 
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.syntax;
+
+/**
+ * The kinds of node in an AST.  Every {@link ASTNode} carries its kind as a
+ * small integer, so that an interpreter can dispatch on the kind of a node
+ * with a single <code>switch</code>, instead of with a call of
+ * {@link ASTNode#visit}, which is a call of a different method for each
+ * class of node.
+ *
+ * @author newts
+ */
+public final class NodeKind {
+
+    /** An {@link ArithProgram}. */
+    public static final int PROGRAM = 0;
+    /** A {@link StmtSequence}. */
+    public static final int SEQUENCE = 1;
+    /** A {@link StmtDefinition}. */
+    public static final int DEFINITION = 2;
+    /** A {@link StmtLet}. */
+    public static final int LET = 3;
+    /** An {@link ExpFunction}. */
+    public static final int FUNCTION = 4;
+    /** An {@link ExpFunCall}. */
+    public static final int CALL = 5;
+    /** An {@link ExpPlot}. */
+    public static final int PLOT = 6;
+    /** An {@link ExpClear}. */
+    public static final int CLEAR = 7;
+    /** Arithmetic: {@link ExpAdd}, {@link ExpSub}, and so on. */
+    public static final int ADD = 8;
+    public static final int SUB = 9;
+    public static final int MUL = 10;
+    public static final int DIV = 11;
+    public static final int MOD = 12;
+    public static final int POW = 13;
+    /** An {@link ExpLit}. */
+    public static final int LIT = 14;
+    /** An {@link ExpVar}. */
+    public static final int VAR = 15;
+    /** An {@link ExpCompare}. */
+    public static final int COMPARE = 16;
+    /** An {@link ExpIf}. */
+    public static final int IF = 17;
+
+    private NodeKind() {
+    }
+}
@@ -33,4 +33,8 @@ public abstract class Statement extends ASTNode {
 
     private static final long serialVersionUID = 1L;
 
+    protected Statement(int kind) {
+        super(kind);
+    }
+
 }
@@ -1,8 +1,12 @@
 package fnplot.syntax;
 
+import fnplot.semantics.SymbolTable;
 import fnplot.semantics.Visitor;
 import fnplot.syntax.Exp;
 import fnplot.sys.FnPlotException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Objects;
 
 /**
  * Class to represent a variable assignment (definition) in the AST.
@@ -10,22 +14,75 @@ import fnplot.sys.FnPlotException;
  */
 public class StmtDefinition extends Statement {
 
+    private static final long serialVersionUID = 1L;
+
     String var;
     Exp exp;
+    int depth = -1;
+    int slot = -1;
+
+    /** The symbol of the name defined (which is not the same in every process). */
+    private transient int symbol;
 
     public StmtDefinition(String id, Exp e) {
+        super(NodeKind.DEFINITION);
+        var = id;
+        symbol = SymbolTable.intern(id);
+        exp = e;
+    }
+
+    /**
+     * Create a resolved definition.
+     * @param id The name being defined
+     * @param e The expression whose value is bound
+     * @param depth 0 if the name is defined in the current frame, or -1 if it
+     * is defined in the global environment
+     * @param slot The index of the name within the current frame
+     */
+    public StmtDefinition(String id, Exp e, int depth, int slot) {
+        super(NodeKind.DEFINITION);
         var = id;
+        symbol = SymbolTable.intern(id);
         exp = e;
+        this.depth = depth;
+        this.slot = slot;
     }
 
     public String getVar() {
         return var;
     }
 
+    /**
+     * @return The symbol of the name defined, in the {@link SymbolTable}
+     */
+    public int getSymbol() {
+        return symbol;
+    }
+
     public Exp getExp() {
         return exp;
     }
 
+    /**
+     * @return 0 if this definition binds a slot of the current frame, or -1
+     * if it binds a global (or has not been resolved).
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return The index of the defined name within the current frame
+     */
+    public int getSlot() {
+        return slot;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        symbol = SymbolTable.intern(var);
+    }
+
     @Override
     public <S, T> T visit(Visitor<S, T> v, S arg) throws FnPlotException {
         return v.visitStmtDefinition(this, arg);
@@ -35,4 +92,19 @@ public class StmtDefinition extends Statement {
     public String toString() {
         return String.format("%s = %s", var, exp.toString());
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof StmtDefinition)) {
+            return false;
+        }
+        StmtDefinition other = (StmtDefinition) obj;
+        return var.equals(other.var) && depth == other.depth && slot == other.slot &&
+                exp.equals(other.exp);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(var, exp, depth, slot);
+    }
 }
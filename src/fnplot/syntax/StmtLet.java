@@ -3,20 +3,43 @@ package fnplot.syntax;
 import fnplot.semantics.Visitor;
 import fnplot.sys.FnPlotException;
 import java.util.ArrayList;
+import java.util.Objects;
 
 /**
  * Class to represent an AST node for a let expression.
  * @author newts
  */
 public class StmtLet extends Exp {
+
+    private static final long serialVersionUID = 1L;
+
     ArrayList<Binding> bindings;
     Exp body;
+    int frameSize = -1;
+    private int hash;
+
+    /** Which bindings an evaluator may defer, once it has decided. */
+    private transient boolean[] deferred;
 
     public StmtLet(ArrayList<Binding> bs, Exp bod) {
+	super(NodeKind.LET);
 	bindings = bs;
 	body = bod;
     }
 
+    /**
+     * Create a resolved let expression.
+     * @param bs The bindings
+     * @param bod The body
+     * @param frameSize The number of slots needed by the frame of the body
+     */
+    public StmtLet(ArrayList<Binding> bs, Exp bod, int frameSize) {
+	super(NodeKind.LET);
+	bindings = bs;
+	body = bod;
+	this.frameSize = frameSize;
+    }
+
     public ArrayList<Binding> getBindings() {
 	return bindings;
     }
@@ -24,7 +47,33 @@ public class StmtLet extends Exp {
     public Exp getBody() {
 	return body;
     }
+
+    /**
+     * @return The number of slots in the frame of the body, or -1 if this
+     * let has not been resolved.
+     */
+    public int getFrameSize() {
+	return frameSize;
+    }
     
+    /**
+     * @return For each binding, whether its evaluation may be deferred until
+     * its value is needed, or <code>null</code> if that has not yet been
+     * decided
+     */
+    public boolean[] getDeferred() {
+	return deferred;
+    }
+
+    /**
+     * Record which bindings may have their evaluation deferred.
+     * @param deferred For each binding, <code>true</code> if it may be
+     * deferred
+     */
+    public void setDeferred(boolean[] deferred) {
+	this.deferred = deferred;
+    }
+
     @Override
     public <S, T> T visit(Visitor<S, T> v, S state) throws FnPlotException {
         return v.visitStmtLet(this, state);
@@ -32,7 +81,31 @@ public class StmtLet extends Exp {
 
     @Override
     public String toString() {
-	return "let " + bindings + " in " + body;
+	StringBuilder result = new StringBuilder("let ");
+	for (int i = 0; i < bindings.size(); i++) {
+	    result.append(i == 0 ? "" : ", ").append(bindings.get(i));
+	}
+	return result.append(" in ").append(body).toString();
     }
 
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof StmtLet)) {
+            return false;
+        }
+        StmtLet other = (StmtLet) obj;
+        return hashCode() == other.hashCode() && frameSize == other.frameSize &&
+                bindings.equals(other.bindings) && body.equals(other.body);
+    }
+
+    @Override
+    public int hashCode() {
+        if (hash == 0) {
+            hash = Objects.hash(bindings, body, frameSize);
+        }
+        return hash;
+    }
 }
@@ -10,9 +10,12 @@ import java.util.*;
  */
 public class StmtSequence extends Exp {
 
+    private static final long serialVersionUID = 1L;
+
     ArrayList<Statement> seq;		// sequence of commands
 
     public StmtSequence() {
+	super(NodeKind.SEQUENCE);
 	seq = new ArrayList<>();
     }
 
@@ -47,5 +50,13 @@ public class StmtSequence extends Exp {
 	return result;
     }
 
-}
+    @Override
+    public boolean equals(Object obj) {
+	return obj instanceof StmtSequence && seq.equals(((StmtSequence) obj).seq);
+    }
 
+    @Override
+    public int hashCode() {
+	return seq.hashCode();
+    }
+}
@@ -8,34 +8,43 @@ package fnplot.syntax;
 /** CUP generated class containing symbol constants. */
 public class sym {
   /* terminals */
-  public static final int MOD = 10;
-  public static final int PLOT = 21;
-  public static final int MAPSTO = 23;
-  public static final int PLUS = 6;
-  public static final int RBRACE = 16;
-  public static final int RPAREN = 3;
-  public static final int SEMI = 17;
-  public static final int IN = 14;
-  public static final int CLEAR = 22;
   public static final int POW = 12;
-  public static final int VARIABLE = 27;
-  public static final int COLON = 18;
-  public static final int LPAREN = 2;
   public static final int LBRACKET = 4;
-  public static final int LBRACE = 15;
-  public static final int RBRACKET = 5;
+  public static final int GE = 31;
+  public static final int INTEGER = 34;
+  public static final int LPAREN = 2;
+  public static final int SEMI = 17;
+  public static final int FOR = 24;
+  public static final int MINUS = 7;
+  public static final int RPAREN = 3;
+  public static final int LT = 28;
+  public static final int FUN = 20;
+  public static final int IN = 14;
   public static final int COMMA = 19;
-  public static final int EOF = 0;
+  public static final int PLOT = 21;
   public static final int DIV = 9;
-  public static final int MINUS = 7;
-  public static final int error = 1;
-  public static final int LET = 13;
+  public static final int PLUS = 6;
   public static final int ASSIGN = 11;
-  public static final int INTEGER = 25;
-  public static final int FOR = 24;
-  public static final int REAL = 26;
+  public static final int IF = 25;
+  public static final int LE = 29;
+  public static final int EOF = 0;
+  public static final int RBRACKET = 5;
+  public static final int error = 1;
   public static final int MUL = 8;
-  public static final int FUN = 20;
+  public static final int MOD = 10;
+  public static final int EQ = 32;
+  public static final int REAL = 35;
+  public static final int COLON = 18;
+  public static final int LBRACE = 15;
+  public static final int ELSE = 27;
+  public static final int VARIABLE = 36;
+  public static final int LET = 13;
+  public static final int CLEAR = 22;
+  public static final int THEN = 26;
+  public static final int RBRACE = 16;
+  public static final int NE = 33;
+  public static final int GT = 30;
+  public static final int MAPSTO = 23;
   public static final String[] terminalNames = new String[] {
   "EOF",
   "error",
@@ -62,6 +71,15 @@ public class sym {
   "CLEAR",
   "MAPSTO",
   "FOR",
+  "IF",
+  "THEN",
+  "ELSE",
+  "LT",
+  "LE",
+  "GT",
+  "GE",
+  "EQ",
+  "NE",
   "INTEGER",
   "REAL",
   "VARIABLE"
@@ -25,9 +25,12 @@
 
 package fnplot.sys;
 
+import fnplot.optimizer.Optimizer;
+import fnplot.semantics.Engine;
 import fnplot.semantics.Environment;
-import fnplot.semantics.Evaluator;
+import fnplot.semantics.Interpreter;
 import fnplot.semantics.TextPlotter;
+import fnplot.semantics.TypeChecker;
 import fnplot.syntax.ArithProgram;
 import fnplot.syntax.FnPlotLexer;
 import fnplot.syntax.FnPlotParser;
@@ -47,10 +50,20 @@ import java.util.logging.Logger;
 public class CmdLine {
 
     static String PROMPT = "Eval>";
-    Evaluator interp;
+    Engine engine;
+    Interpreter interp;
     
     public CmdLine() {
-        interp = new Evaluator();
+        this(Engine.getDefault());
+    }
+
+    /**
+     * Create a command line interpreter that uses the given execution engine.
+     * @param engine The engine to be used to run programs
+     */
+    public CmdLine(Engine engine) {
+        this.engine = engine;
+        interp = engine.create();
         // need to set text-based plotter for interp
         interp.setPlotter(new TextPlotter(System.out));
     }
@@ -83,17 +96,66 @@ public class CmdLine {
 	if (program != null)
 	    try {
 		Object result;
-		result = program.visit(interp, env);
+		program = frontEnd(program, env);
+		result = interp.run(program, env);
 		System.out.println("\nResult: " + result);
 	    } catch (FnPlotException e) {
 		System.out.println(e.getMessage());
+	    } catch (StackOverflowError e) {
+		// the checks (and most engines) recurse on the Java stack
+		System.out.println("Stack overflow: the program is nested too deeply");
 	    }
     }
     
+    /**
+     * Optimise and check a program before it is run.  Both passes recurse on
+     * the Java stack, so a program that is nested too deeply for them is
+     * run unoptimised and unchecked by an engine that does not, rather than
+     * not at all.
+     * @param program The program
+     * @param env The environment in which it is to be run
+     * @return The program to be run
+     * @throws FnPlotException if running the program would cause a type
+     * error
+     */
+    private ArithProgram frontEnd(ArithProgram program, Environment<FnPlotValue<?>> env)
+	    throws FnPlotException {
+	try {
+	    if (Optimizer.isEnabled()) {
+		program = Optimizer.optimize(program);
+	    }
+	} catch (StackOverflowError e) {
+	    if (!engine.isStackless()) {
+		throw e;
+	    }
+	}
+	try {
+	    TypeChecker.check(program, env);
+	} catch (StackOverflowError e) {
+	    if (!engine.isStackless()) {
+		throw e;
+	    }
+	}
+	return program;
+    }
+
+    /**
+     * Run each of the named files in turn ("-" denotes standard input).  The
+     * option <code>-engine NAME</code> may precede the file names to choose
+     * the execution engine.
+     * @param args The command line arguments
+     */
     public static void main(String[] args) {
-        CmdLine cmd = new CmdLine();
+        Engine engine = Engine.getDefault();
+        int first = 0;
+        if (args.length > 1 && args[0].equals("-engine")) {
+            engine = Engine.forName(args[1]);
+            first = 2;
+        }
+        CmdLine cmd = new CmdLine(engine);
         Reader r;
-        for (String fname : args) {
+        for (int i = first; i < args.length; i++) {
+            String fname = args[i];
             try {
                 if (fname.equals("-")) {
                     r = new InputStreamReader(System.in);
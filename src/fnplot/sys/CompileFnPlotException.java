@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.sys;
+
+/**
+ * Raised when a compiler is asked to translate a construct that it does not
+ * support.  Callers are expected to fall back to the interpreter.  A failure
+ * is <em>permanent</em> when it is caused by the form of the code itself, so
+ * that compiling the same code again would fail in the same way, whatever
+ * the values bound to its free variables.
+ */
+public class CompileFnPlotException extends FnPlotException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean permanent;
+
+    public CompileFnPlotException() {
+        super("FnPlot Compile Error");
+        this.permanent = false;
+    }
+
+    public CompileFnPlotException(String msg) {
+        this(msg, false);
+    }
+
+    public CompileFnPlotException(String msg, boolean permanent) {
+        super(msg);
+        this.permanent = permanent;
+    }
+
+    public CompileFnPlotException(String msg, Throwable cause) {
+        super(msg, cause);
+        this.permanent = false;
+    }
+
+    /**
+     * @return <code>true</code> if compiling the same code again would fail
+     * in the same way
+     */
+    public boolean isPermanent() {
+        return permanent;
+    }
+
+}
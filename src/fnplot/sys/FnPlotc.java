@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.sys;
+
+import fnplot.compiler.JavaGenerator;
+import fnplot.optimizer.Optimizer;
+import fnplot.runtime.Closure;
+import fnplot.runtime.Program;
+import fnplot.semantics.Environment;
+import fnplot.semantics.Plotter;
+import fnplot.semantics.SymbolTable;
+import fnplot.semantics.TextPlotter;
+import fnplot.semantics.TypeChecker;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.values.Comparison;
+import fnplot.values.FnPlotInt;
+import fnplot.values.FnPlotReal;
+import fnplot.values.FnPlotType;
+import fnplot.values.FnPlotValue;
+import fnplot.values.TypeFnPlotException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * The FnPlot compiler, <code>fnplotc</code>, which compiles a script ahead of
+ * time into a jar that runs it.  The script is parsed, optimised (if the
+ * optimiser is enabled) and type checked once, at compile time, and then
+ * translated by the {@link JavaGenerator} into a subclass of
+ * {@link Program}, which is compiled with the system Java compiler.  The jar
+ * contains the compiled program and only the classes needed to run it: the
+ * values, environments and plotters, and the <code>fnplot.runtime</code>
+ * package.  Neither the lexer and parser nor any interpreter is included.
+ * Running the jar (with <code>java -jar</code>) prints the same plots and
+ * result as running the script with {@link CmdLine}.
+ * <p>
+ * Usage: <code>fnplotc [-o JAR] [-keep] SCRIPT</code>.  The jar is named after
+ * the script unless <code>-o</code> is given; <code>-keep</code> leaves the
+ * generated Java source beside it.
+ *
+ * @author newts
+ */
+public class FnPlotc {
+
+    /** The classes of the runtime, which are copied into every jar. */
+    private static final Class<?>[] RUNTIME = {
+        Program.class, Closure.class,
+        Environment.class, SymbolTable.class, Plotter.class, TextPlotter.class,
+        FnPlotValue.class, FnPlotInt.class, FnPlotReal.class, FnPlotType.class, Comparison.class,
+        FnPlotException.class, RuntimeFnPlotException.class, TypeFnPlotException.class
+    };
+
+    private FnPlotc() {
+    }
+
+    /**
+     * Parse, check and translate a script.
+     * @param reader The source of the script
+     * @param className The name of the class to generate
+     * @return The Java source of the compiled program
+     * @throws FnPlotException if the script cannot be parsed, is not well
+     * typed, or cannot be translated
+     */
+    public static String translate(Reader reader, String className) throws FnPlotException {
+        ArithProgram program;
+        try {
+            FnPlotParser parser = new FnPlotParser(new FnPlotLexer(reader));
+            program = (ArithProgram) parser.parse().value;
+        } catch (Exception e) {
+            throw new SyntaxFnPlotException("Parse Error: " + e.getMessage());
+        }
+        if (Optimizer.isEnabled()) {
+            program = Optimizer.optimize(program);
+        }
+        TypeChecker.check(program, new Environment<>());
+        return JavaGenerator.generate(program, className);
+    }
+
+    /**
+     * Compile a script into a runnable jar.
+     * @param script The file containing the script
+     * @param jar The jar to be written
+     * @param keepSource <code>true</code> to write the generated Java source
+     * beside the jar
+     * @throws FnPlotException if the script cannot be compiled
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void compile(File script, File jar, boolean keepSource)
+            throws FnPlotException, IOException {
+        String className = classNameOf(script);
+        String source;
+        try (Reader r = new FileReader(script)) {
+            source = translate(r, className);
+        }
+        Path dir = Files.createTempDirectory("fnplotc");
+        try {
+            Path javaFile = dir.resolve(className + ".java");
+            Files.write(javaFile, source.getBytes("UTF-8"));
+            if (keepSource) {
+                File copy = new File(jar.getAbsoluteFile().getParentFile(), className + ".java");
+                Files.write(copy.toPath(), source.getBytes("UTF-8"));
+            }
+            javac(javaFile, dir);
+            writeJar(jar, className, dir);
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * @return The name of the class generated for a script: its file name,
+     * without extension, made into a Java identifier
+     */
+    private static String classNameOf(File script) {
+        String name = script.getName();
+        int dot = name.indexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        StringBuilder result = new StringBuilder();
+        for (char c : name.toCharArray()) {
+            result.append(Character.isJavaIdentifierPart(c) ? c : '_');
+        }
+        if (result.length() == 0 || !Character.isJavaIdentifierStart(result.charAt(0))) {
+            result.insert(0, '_');
+        }
+        result.setCharAt(0, Character.toUpperCase(result.charAt(0)));
+        return result.toString();
+    }
+
+    private static void javac(Path javaFile, Path dir) throws CompileFnPlotException {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null) {
+            throw new CompileFnPlotException("No Java compiler is available (a JDK is needed)");
+        }
+        StringWriter errors = new StringWriter();
+        ArrayList<String> options = new ArrayList<>(Arrays.asList(
+                "-classpath", System.getProperty("java.class.path"),
+                "-d", dir.toString(), "-nowarn", "-g:none"));
+        boolean ok = javac.getTask(errors, null, null, options, null,
+                javac.getStandardFileManager(null, null, null)
+                        .getJavaFileObjects(javaFile.toFile())).call();
+        if (!ok) {
+            throw new CompileFnPlotException("Could not compile the generated code:\n" + errors);
+        }
+    }
+
+    private static void writeJar(File jar, String className, Path dir) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, className);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest)) {
+            File[] generated = dir.toFile().listFiles((d, name) -> name.endsWith(".class"));
+            for (File f : generated) {
+                add(out, f.getName(), Files.readAllBytes(f.toPath()));
+            }
+            for (Class<?> c : RUNTIME) {
+                addClass(out, c);
+            }
+        }
+    }
+
+    private static void addClass(JarOutputStream out, Class<?> c) throws IOException {
+        String name = c.getName().replace('.', '/') + ".class";
+        try (InputStream in = FnPlotc.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Cannot find the runtime class " + c.getName());
+            }
+            add(out, name, in.readAllBytes());
+        }
+        for (Class<?> inner : c.getDeclaredClasses()) {
+            addClass(out, inner);
+        }
+    }
+
+    private static void add(JarOutputStream out, String name, byte[] bytes) throws IOException {
+        out.putNextEntry(new JarEntry(name));
+        out.write(bytes);
+        out.closeEntry();
+    }
+
+    /**
+     * Compile the script named on the command line.
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) {
+        File jar = null;
+        boolean keep = false;
+        int i = 0;
+        for (; i < args.length - 1; i++) {
+            if (args[i].equals("-o")) {
+                jar = new File(args[++i]);
+            } else if (args[i].equals("-keep")) {
+                keep = true;
+            } else {
+                break;
+            }
+        }
+        if (i != args.length - 1) {
+            System.err.println("Usage: fnplotc [-o JAR] [-keep] SCRIPT");
+            System.exit(2);
+        }
+        File script = new File(args[i]);
+        if (jar == null) {
+            jar = new File(script.getAbsoluteFile().getParentFile(), classNameOf(script) + ".jar");
+        }
+        try {
+            compile(script, jar, keep);
+        } catch (FnPlotException | IOException e) {
+            System.err.println("fnplotc: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
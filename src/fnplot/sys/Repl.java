@@ -1,10 +1,14 @@
 package fnplot.sys;
 
+import fnplot.optimizer.Optimizer;
+import fnplot.semantics.Engine;
 import fnplot.semantics.Environment;
-import fnplot.semantics.Evaluator;
+import fnplot.semantics.Interpreter;
+import fnplot.semantics.TypeChecker;
 import fnplot.syntax.ArithProgram;
 import fnplot.syntax.FnPlotLexer;
 import fnplot.syntax.FnPlotParser;
+import fnplot.values.FnPlotValue;
 import java.io.*;
 
 public class Repl {
@@ -12,10 +16,10 @@ public class Repl {
     public static final String PROMPT = "Eval>";
 
     public static void main(String args[]) {
-	repl(new Environment());
+	repl(new Environment<>());
     }
 
-    public static void repl(Environment env){
+    public static void repl(Environment<FnPlotValue<?>> env){
 	InputStreamReader reader = new InputStreamReader(System.in);
 	while (true) {
 	    parseEvalShow(reader, env);
@@ -23,10 +27,10 @@ public class Repl {
     }
 
     public static void parseEvalShow(Reader reader,
-				     Environment env) {
+				     Environment<FnPlotValue<?>> env) {
 	FnPlotParser parser;
 	ArithProgram program = null;
-	Evaluator interp = new Evaluator();
+	Interpreter interp = Engine.getDefault().create();
 	System.out.print(PROMPT);
 	try {
 	    parser = new FnPlotParser(new FnPlotLexer(reader));
@@ -38,7 +42,11 @@ public class Repl {
 	if (program != null)
 	    try {
 		Object result;
-		result = program.visit(interp, env);
+		if (Optimizer.isEnabled()) {
+		    program = Optimizer.optimize(program);
+		}
+		TypeChecker.check(program, env);
+		result = interp.run(program, env);
 		System.out.println("\nResult: " + result);
 	    } catch (FnPlotException e) {
 		System.out.println(e.getMessage());
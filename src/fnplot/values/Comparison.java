@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.values;
+
+import fnplot.sys.FnPlotException;
+
+/**
+ * The comparison operators.  Unlike arithmetic, a comparison does not
+ * convert its right operand to the type of its left: numbers are compared
+ * by their values, so <code>1 &lt; 1.5</code> holds.  The result is the
+ * integer 1 if the comparison holds, and 0 if it does not, since any number
+ * other than 0 counts as true in a condition.
+ *
+ * @author newts
+ */
+public enum Comparison {
+    LT("<"),
+    LE("<="),
+    GT(">"),
+    GE(">="),
+    EQ("=="),
+    NE("!=");
+
+    private static final FnPlotInt TRUE = FnPlotValue.make(1);
+    private static final FnPlotInt FALSE = FnPlotValue.make(0);
+
+    private final String symbol;
+
+    Comparison(String symbol) {
+        this.symbol = symbol;
+    }
+
+    /**
+     * @return The symbol by which this operator is written
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @param b <code>true</code> or <code>false</code>
+     * @return The FnPlot value that represents b
+     */
+    public static FnPlotInt valueOf(boolean b) {
+        return b ? TRUE : FALSE;
+    }
+
+    /**
+     * Compare two ints.
+     * @param a The left operand
+     * @param b The right operand
+     * @return <code>true</code> if the comparison holds
+     */
+    public boolean test(int a, int b) {
+        // a switch on an enum compiles to a synthetic class, which fnplotc
+        // would not copy into the jars that it makes
+        if (this == LT) {
+            return a < b;
+        } else if (this == LE) {
+            return a <= b;
+        } else if (this == GT) {
+            return a > b;
+        } else if (this == GE) {
+            return a >= b;
+        } else if (this == EQ) {
+            return a == b;
+        }
+        return a != b;
+    }
+
+    /**
+     * Compare two reals.  As in Java, every comparison with NaN fails, except
+     * for !=.
+     * @param a The left operand
+     * @param b The right operand
+     * @return <code>true</code> if the comparison holds
+     */
+    public boolean test(double a, double b) {
+        if (this == LT) {
+            return a < b;
+        } else if (this == LE) {
+            return a <= b;
+        } else if (this == GT) {
+            return a > b;
+        } else if (this == GE) {
+            return a >= b;
+        } else if (this == EQ) {
+            return a == b;
+        }
+        return a != b;
+    }
+
+    /**
+     * Compare two values.
+     * @param left The left operand
+     * @param right The right operand
+     * @return 1 if the comparison holds, otherwise 0
+     * @throws FnPlotException if either operand is not a number
+     */
+    public FnPlotInt apply(FnPlotValue<?> left, FnPlotValue<?> right) throws FnPlotException {
+        if (!left.isNumber() || !right.isNumber()) {
+            throw new TypeFnPlotException("Operation " + symbol + " called with non-numeric type");
+        }
+        if (left.isInteger() && right.isInteger()) {
+            return valueOf(test(left.intValue(), right.intValue()));
+        }
+        return valueOf(test(left.doubleValue(), right.doubleValue()));
+    }
+}
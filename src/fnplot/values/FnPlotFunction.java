@@ -25,7 +25,9 @@
 
 package fnplot.values;
 
+import fnplot.compiler.CompiledFunction;
 import fnplot.semantics.Environment;
+import fnplot.semantics.MemoTable;
 import fnplot.syntax.ExpFunction;
 import java.util.ArrayList;
 
@@ -34,9 +36,27 @@ import java.util.ArrayList;
  * @author newts
  */
 public class FnPlotFunction extends FnPlotValue<FnPlotFunction> {
+
+    private static final long serialVersionUID = 1L;
+
     ExpFunction funExp;
     Environment<FnPlotValue<?>> closingEnv;
 
+    /** The number of calls counted since this function last changed tier. */
+    private transient int invocations;
+
+    /** The compiled code that calls are promoted to, once they are hot. */
+    private transient CompiledFunction compiled;
+
+    /** The number of attempts to compile this function. */
+    private transient int compilations;
+
+    /** Whether an attempt to compile this function failed for good. */
+    private transient boolean uncompilable;
+
+    /** The results of earlier calls, if this function is memoised. */
+    private transient MemoTable memo;
+
     /**
      * Create a new instance of a user-defined function.
      * @param funExp The function expression that was evaluated
@@ -64,11 +84,98 @@ public class FnPlotFunction extends FnPlotValue<FnPlotFunction> {
     public Environment<FnPlotValue<?>> getClosingEnv() {
         return closingEnv;
     }
+
+    /**
+     * Count a call of this function.
+     * @return The number of calls counted since this function last changed
+     * tier, including this one
+     */
+    public int countInvocation() {
+        return ++invocations;
+    }
+
+    /**
+     * @return The number of calls counted since this function last changed
+     * tier
+     */
+    public int getInvocations() {
+        return invocations;
+    }
+
+    /**
+     * @return The compiled code that calls of this function are promoted to,
+     * or <code>null</code> if they are interpreted
+     */
+    public CompiledFunction getCompiled() {
+        return compiled;
+    }
+
+    /**
+     * Change the tier in which this function is run, and restart the count of
+     * its calls.
+     * @param compiled The compiled code to run calls of this function with, or
+     * <code>null</code> to interpret them
+     */
+    public void setCompiled(CompiledFunction compiled) {
+        this.compiled = compiled;
+        this.invocations = 0;
+    }
+
+    /**
+     * Count an attempt to compile this function.
+     * @return The number of attempts, including this one
+     */
+    public int countCompilation() {
+        return ++compilations;
+    }
+
+    /**
+     * @return The number of attempts that have been made to compile this
+     * function
+     */
+    public int getCompilations() {
+        return compilations;
+    }
+
+    /**
+     * Record that this function cannot be compiled, whatever its free
+     * variables are bound to, so that no further attempts are made.
+     */
+    public void setUncompilable() {
+        this.uncompilable = true;
+    }
+
+    /**
+     * @return <code>false</code> if an attempt to compile this function has
+     * shown that it cannot be compiled
+     */
+    public boolean isCompilable() {
+        return !uncompilable;
+    }
+
+    /**
+     * @return The table of the results of calls of this function, or
+     * <code>null</code> if it has not yet been decided whether to memoise it
+     */
+    public MemoTable getMemo() {
+        return memo;
+    }
+
+    /**
+     * Set the table of the results of calls of this function.
+     * @param memo The table, which is disabled if the function should not be
+     * memoised
+     */
+    public void setMemo(MemoTable memo) {
+        this.memo = memo;
+    }
     
     @Override
     public String toString() {
+        // show the function as written, not as rewritten by the optimiser
+        ExpFunction source = funExp.getSource();
         String params;
-        ArrayList<String> paramList = funExp.getParameters();
+        ArrayList<String> paramList = source.getParameters();
         int n = paramList.size();
         switch (n) {
             case 0: params = ""; break;
@@ -79,7 +186,7 @@ public class FnPlotFunction extends FnPlotValue<FnPlotFunction> {
                     params += ", " + paramList.get(i);
                 }
         }
-        String body = funExp.getBody().toString();
+        String body = source.getBody().toString();
         return String.format("[Function: (%s) -> %s]", params, body);
     }
     
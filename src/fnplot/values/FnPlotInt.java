@@ -14,6 +14,8 @@ import static fnplot.values.FnPlotValue.make;
  * Created on 14-Nov-2016
  */
 public class FnPlotInt extends FnPlotValue<FnPlotInt> {
+
+    private static final long serialVersionUID = 1L;
     
     int value;
 
@@ -91,11 +93,54 @@ public class FnPlotInt extends FnPlotValue<FnPlotInt> {
      */
     @Override
     public FnPlotInt pow(FnPlotValue<?> arg) throws FnPlotException {
-        if (arg.isInteger()) {
-            return make((int)Math.pow(value , arg.intValue()));
-        } else {
-            return make((int)Math.pow(value , arg.intValue()));
+        return make(power(value, arg.intValue()));
+    }
+
+    /**
+     * Raise an int to an int power, by repeated squaring.  The result is
+     * the same as that of <code>(int) Math.pow(base, exponent)</code>: a
+     * result that is too large for an int is saturated to
+     * <code>Integer.MAX_VALUE</code> or <code>Integer.MIN_VALUE</code>, and a
+     * fractional result (from a negative exponent) is truncated.
+     * @param base The base
+     * @param exponent The exponent
+     * @return base raised to the power exponent
+     */
+    public static int power(int base, int exponent) {
+        if (exponent < 0) {
+            switch (base) {
+                case 0: return Integer.MAX_VALUE;
+                case 1: return 1;
+                case -1: return (exponent & 1) == 0 ? 1 : -1;
+                default: return 0;
+            }
+        }
+        boolean negative = base < 0 && (exponent & 1) != 0;
+        long limit = 1L << 31;
+        long b = Math.abs((long) base);
+        long result = 1;
+        for (int e = exponent; ; ) {
+            if ((e & 1) != 0) {
+                result *= b;
+                if (result > limit) {
+                    return negative ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+                }
+            }
+            e >>>= 1;
+            if (e == 0) {
+                break;
+            }
+            // b is at most 2^31, so its square cannot overflow a long, and
+            // if it exceeds 2^31 then so does the final result
+            b *= b;
+            if (b > limit) {
+                return negative ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            }
+        }
+        if (negative) {
+            return (int) -result;
         }
+        return result > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) result;
     }
     
     @Override
@@ -108,8 +153,23 @@ public class FnPlotInt extends FnPlotValue<FnPlotInt> {
         return value;
     }
 
+    @Override
+    public boolean isTrue() {
+        return value != 0;
+    }
+
     @Override
     public String toString() {
         return String.valueOf(value);
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof FnPlotInt && ((FnPlotInt) obj).value == value;
+    }
+
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(value);
+    }
 }
@@ -13,6 +13,8 @@ import fnplot.sys.FnPlotException;
  * Created on 14-Oct-2016
  */
 public class FnPlotReal extends FnPlotValue<FnPlotReal> {
+
+    private static final long serialVersionUID = 1L;
     
     double value;
 
@@ -96,8 +98,30 @@ public class FnPlotReal extends FnPlotValue<FnPlotReal> {
         return value;
     }
 
+    @Override
+    public boolean isTrue() {
+        return value != 0.0;
+    }
+
     @Override
     public String toString() {
         return String.valueOf(value);
     }
+
+    /**
+     * Two reals are equal if they have the same representation, so that
+     * 0.0 and -0.0 are different, and NaN is equal to itself.
+     * @param obj The value to compare with this one
+     * @return <code>true</code> if obj is a real with the same value
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof FnPlotReal &&
+                Double.doubleToLongBits(((FnPlotReal) obj).value) == Double.doubleToLongBits(value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(value);
+    }
 }
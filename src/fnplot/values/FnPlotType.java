@@ -26,7 +26,9 @@ package fnplot.values;
 public enum FnPlotType {
     INTEGER("int"), 
     REAL("real"), 
-    FUNCTION("user function");
+    FUNCTION("user function"),
+    /** Used only by static analysis, for expressions whose type is not known. */
+    UNKNOWN("unknown");
     
     private final String docString;
     
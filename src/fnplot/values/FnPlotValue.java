@@ -6,6 +6,7 @@
 package fnplot.values;
 
 import fnplot.sys.FnPlotException;
+import java.io.Serializable;
 
 /**
  *
@@ -13,7 +14,7 @@ import fnplot.sys.FnPlotException;
  * @author newts
  * Created on 27-Oct-2011 at 12:51:46 PM
  */
-public abstract class FnPlotValue<T extends FnPlotValue<T>> {
+public abstract class FnPlotValue<T extends FnPlotValue<T>> implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
@@ -50,6 +51,15 @@ public abstract class FnPlotValue<T extends FnPlotValue<T>> {
         return getType() == FnPlotType.INTEGER;
     }
 
+    /**
+     *
+     * @return <code>true</code> if and only if this value is an integer or a
+     * real
+     */
+    public boolean isNumber() {
+        return getType() == FnPlotType.INTEGER || getType() == FnPlotType.REAL;
+    }
+
     /**
      * Add the given value to this value
      * @param arg The value to be added.
@@ -116,6 +126,15 @@ public abstract class FnPlotValue<T extends FnPlotValue<T>> {
             throw new TypeFnPlotException("Operation pow called with non-numeric type");
     }
 
+    /**
+     * Decide which branch of a conditional this value selects.
+     * @return <code>true</code> if this value is a number other than 0
+     * @throws TypeFnPlotException if this value is not a number
+     */
+    public boolean isTrue() throws TypeFnPlotException {
+        throw new TypeFnPlotException("Operation if called with non-numeric type");
+    }
+
     /**
      *
      * @return The integer value wrapped in this FnPlot value
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.vm;
+
+import fnplot.values.Comparison;
+
+/**
+ * Produces a readable listing of a compiled {@link Program}, for debugging.
+ *
+ * @author newts
+ */
+public class Disassembler {
+
+    private Disassembler() {
+    }
+
+    /**
+     * Disassemble a program.
+     * @param p The program
+     * @return A listing with one instruction per line, preceded by the entry
+     * points of the functions in the program.
+     */
+    public static String disassemble(Program p) {
+        StringBuilder out = new StringBuilder();
+        for (int f = 0; f < p.functions.length; f++) {
+            Program.Function fn = p.functions[f];
+            out.append(String.format("; fn#%d @%04d %s%n", f, fn.entry, fn.source));
+        }
+        int pc = 0;
+        while (pc < p.code.length) {
+            out.append(instruction(p, pc)).append(System.lineSeparator());
+            pc += Opcode.length(p.code, pc);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Disassemble a single instruction.
+     * @param p The program containing the instruction
+     * @param pc The position of the instruction
+     * @return The text of the instruction, preceded by its position
+     */
+    public static String instruction(Program p, int pc) {
+        int[] code = p.code;
+        int op = code[pc];
+        // the mnemonic column leaves a space after even the longest mnemonic
+        StringBuilder out = new StringBuilder(String.format("%04d  %-" + (Opcode.NAME_WIDTH + 1)
+                + "s", pc, Opcode.name(op)));
+        switch (op) {
+            case Opcode.PUSH_INT:
+                out.append(code[pc + 1]);
+                break;
+            case Opcode.PUSH_REAL:
+                out.append(p.constants[code[pc + 1]]);
+                break;
+            case Opcode.LOAD:
+            case Opcode.LOAD_FN:
+            case Opcode.STORE:
+                out.append(p.names[code[pc + 1]]);
+                break;
+            case Opcode.ENTER:
+                out.append(code[pc + 1]);
+                for (int i = 0; i < code[pc + 1]; i++) {
+                    out.append(' ').append(p.names[code[pc + 2 + i]]);
+                }
+                break;
+            case Opcode.CLOSURE:
+                out.append("fn#").append(code[pc + 1]);
+                break;
+            case Opcode.CALL:
+                out.append(code[pc + 1]);
+                break;
+            case Opcode.COMPARE:
+                out.append(Comparison.values()[code[pc + 1]].getSymbol());
+                break;
+            case Opcode.JUMP:
+            case Opcode.JUMP_IF_FALSE:
+                out.append(String.format("@%04d", code[pc + 1]));
+                break;
+            case Opcode.PLOT:
+                out.append(String.format("fn#%d [%s : %s]", code[pc + 1],
+                        p.constants[code[pc + 2]], p.constants[code[pc + 2] + 1]));
+                break;
+            default:
+                break;
+        }
+        return out.toString().trim();
+    }
+}
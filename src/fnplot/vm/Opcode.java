@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.vm;
+
+/**
+ * The instruction set of the FnPlot virtual machine.  Each instruction
+ * occupies one slot of the code array for the opcode, followed by its
+ * operands (if any).  Operands that refer to names, constants and functions
+ * are indices into the corresponding pools of the {@link Program}.
+ *
+ * @author newts
+ */
+public final class Opcode {
+
+    /** Stop, returning the value on top of the stack. */
+    public static final int HALT = 0;
+    /** PUSH_INT v: push the integer v. */
+    public static final int PUSH_INT = 1;
+    /** PUSH_REAL c: push the real constant with index c. */
+    public static final int PUSH_REAL = 2;
+    /** LOAD n: push the value of the variable named n. */
+    public static final int LOAD = 3;
+    /** LOAD_FN n: push the function named n. */
+    public static final int LOAD_FN = 4;
+    /** STORE n: bind n to the value on top of the stack (which stays). */
+    public static final int STORE = 5;
+    /** Discard the value on top of the stack. */
+    public static final int POP = 6;
+    /** Arithmetic on the top two values of the stack. */
+    public static final int ADD = 7;
+    public static final int SUB = 8;
+    public static final int MUL = 9;
+    public static final int DIV = 10;
+    public static final int MOD = 11;
+    public static final int POW = 12;
+    /** ENTER k n1 ... nk: bind the top k values to n1..nk in a new scope. */
+    public static final int ENTER = 13;
+    /** Leave the scope created by the matching ENTER. */
+    public static final int LEAVE = 14;
+    /** CLOSURE f: push a new closure of the function with index f. */
+    public static final int CLOSURE = 15;
+    /** CALL k: call the function below the top k arguments. */
+    public static final int CALL = 16;
+    /** Return from a function (or plot map) to its caller. */
+    public static final int RET = 17;
+    /** PLOT f c: plot function f between the constants c and c + 1. */
+    public static final int PLOT = 18;
+    /** Clear the plotting device. */
+    public static final int CLEAR = 19;
+    /**
+     * COMPARE c: compare the top two values of the stack with the
+     * {@link fnplot.values.Comparison} whose ordinal is c, pushing 1 if the
+     * comparison holds and 0 if it does not.
+     */
+    public static final int COMPARE = 20;
+    /** JUMP t: continue at position t. */
+    public static final int JUMP = 21;
+    /** JUMP_IF_FALSE t: pop a condition, and continue at position t if it is 0. */
+    public static final int JUMP_IF_FALSE = 22;
+
+    private static final String[] NAMES = {
+        "HALT", "PUSH_INT", "PUSH_REAL", "LOAD", "LOAD_FN", "STORE", "POP",
+        "ADD", "SUB", "MUL", "DIV", "MOD", "POW", "ENTER", "LEAVE", "CLOSURE",
+        "CALL", "RET", "PLOT", "CLEAR", "COMPARE", "JUMP", "JUMP_IF_FALSE"
+    };
+
+    private static final int[] OPERANDS = {
+        0, 1, 1, 1, 1, 1, 0,
+        0, 0, 0, 0, 0, 0, -1, 0, 1,
+        1, 0, 2, 0, 1, 1, 1
+    };
+
+    /** The length of the longest mnemonic. */
+    static final int NAME_WIDTH = widest(NAMES);
+
+    private Opcode() {
+    }
+
+    private static int widest(String[] names) {
+        int result = 0;
+        for (String name : names) {
+            result = Math.max(result, name.length());
+        }
+        return result;
+    }
+
+    /**
+     * @param opcode An opcode
+     * @return The mnemonic of the opcode
+     */
+    public static String name(int opcode) {
+        return NAMES[opcode];
+    }
+
+    /**
+     * Compute the length of the instruction at the given position.
+     * @param code The code array
+     * @param pc The position of an opcode within the code array
+     * @return The number of code slots occupied by the instruction
+     */
+    public static int length(int[] code, int pc) {
+        int n = OPERANDS[code[pc]];
+        return n < 0 ? 2 + code[pc + 1] : 1 + n;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.vm;
+
+import fnplot.semantics.SymbolTable;
+import fnplot.syntax.ExpFunction;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+
+/**
+ * The compiled form of an FnPlot program: an instruction stream together with
+ * the pools of names, real constants and functions that it refers to.
+ * Execution starts at position 0; function bodies and plot maps follow the
+ * main code and each ends with a RET instruction.
+ *
+ * @author newts
+ */
+public class Program implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * An entry in the function table of a program.
+     */
+    public static class Function implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        final int entry;
+        final ExpFunction source;
+
+        Function(int entry, ExpFunction source) {
+            this.entry = entry;
+            this.source = source;
+        }
+
+        /**
+         * @return The position of the first instruction of the body
+         */
+        public int getEntry() {
+            return entry;
+        }
+
+        /**
+         * @return The function expression that was compiled
+         */
+        public ExpFunction getSource() {
+            return source;
+        }
+    }
+
+    final int[] code;
+    final double[] constants;
+    final String[] names;
+    final Function[] functions;
+
+    /** The symbols of the names, which are not the same in every process. */
+    transient int[] symbols;
+
+    Program(int[] code, double[] constants, String[] names, Function[] functions) {
+        this.code = code;
+        this.constants = constants;
+        this.names = names;
+        this.functions = functions;
+        this.symbols = SymbolTable.intern(names);
+    }
+
+    /**
+     * @return A copy of the instruction stream of this program
+     */
+    public int[] getCode() {
+        return code.clone();
+    }
+
+    /**
+     * @return A copy of the real constant pool of this program
+     */
+    public double[] getConstants() {
+        return constants.clone();
+    }
+
+    /**
+     * @return A copy of the name pool of this program
+     */
+    public String[] getNames() {
+        return names.clone();
+    }
+
+    /**
+     * @return A copy of the function table of this program
+     */
+    public Function[] getFunctions() {
+        return functions.clone();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        symbols = SymbolTable.intern(names);
+    }
+
+    /**
+     * @return A human readable listing of this program.
+     * @see Disassembler
+     */
+    @Override
+    public String toString() {
+        return Disassembler.disassemble(this);
+    }
+}
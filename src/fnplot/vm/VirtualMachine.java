@@ -0,0 +1,491 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.vm;
+
+import fnplot.semantics.Environment;
+import fnplot.semantics.Interpreter;
+import fnplot.semantics.Plotter;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.ExpFunction;
+import fnplot.sys.FnPlotException;
+import fnplot.sys.RuntimeFnPlotException;
+import fnplot.values.Comparison;
+import fnplot.values.FnPlotFunction;
+import fnplot.values.FnPlotInt;
+import fnplot.values.FnPlotType;
+import fnplot.values.FnPlotValue;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * An interpreter for compiled FnPlot {@link Program}s.  Numbers live unboxed
+ * on a <code>double[]</code> operand stack, with a parallel array of tags that
+ * records whether each one is an int or a real (or, for functions, that the
+ * value is held in the reference stack).  Calls, let scopes and plots push
+ * records onto an explicit frame stack rather than the Java stack, so the
+ * depth of nesting is limited only by {@link #getMaxFrames()}.
+ *
+ * @author newts
+ */
+public class VirtualMachine implements Interpreter {
+
+    private static final byte INT = 0;
+    private static final byte REAL = 1;
+    private static final byte REF = 2;
+
+    private static final int FRAME_CALL = 0;
+    private static final int FRAME_LET = 1;
+    private static final int FRAME_PLOT = 2;
+
+    /** The default limit on the number of active frames. */
+    public static final int DEFAULT_MAX_FRAMES = 1 << 20;
+
+    /**
+     * A function created by the virtual machine, which remembers where its
+     * code is.
+     */
+    public static class VmFunction extends FnPlotFunction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Program program;
+        private final int entry;
+
+        public VmFunction(ExpFunction funExp, Environment<FnPlotValue<?>> closingEnv,
+                          Program program, int entry) {
+            super(funExp, closingEnv);
+            this.program = program;
+            this.entry = entry;
+        }
+
+        public Program getProgram() {
+            return program;
+        }
+
+        public int getEntry() {
+            return entry;
+        }
+    }
+
+    private static class PlotState {
+        final int item;
+        final int entry;
+        final double[] xs;
+        final Point2D[] ys;
+        int next = 0;
+
+        PlotState(int item, int entry, double[] xs) {
+            this.item = item;
+            this.entry = entry;
+            this.xs = xs;
+            this.ys = new Point2D[xs.length];
+        }
+    }
+
+    private final Environment<FnPlotValue<?>> globalEnv;
+    private Plotter plotter;
+    private int maxFrames = DEFAULT_MAX_FRAMES;
+
+    // operand stack
+    private double[] vals = new double[64];
+    private byte[] tags = new byte[64];
+    private Object[] refs = new Object[64];
+    private int sp;
+
+    // frame stack
+    private int[] frameKind = new int[16];
+    private int[] framePc = new int[16];
+    private Object[] frameEnv = new Object[16];
+    private Program[] frameProg = new Program[16];
+    private PlotState[] framePlot = new PlotState[16];
+    private int fp;
+
+    // bodies of functions that were not created by this machine
+    private final Map<ExpFunction, Program> foreign = new WeakHashMap<>();
+
+    public VirtualMachine() {
+        globalEnv = new Environment<>();
+    }
+
+    @Override
+    public Environment<FnPlotValue<?>> getGlobalEnv() {
+        return globalEnv;
+    }
+
+    @Override
+    public Plotter getPlotter() {
+        return plotter;
+    }
+
+    @Override
+    public void setPlotter(Plotter plotter) {
+        this.plotter = plotter;
+    }
+
+    /**
+     * @return The maximum number of calls, let scopes and plots that may be
+     * active at once.
+     */
+    public int getMaxFrames() {
+        return maxFrames;
+    }
+
+    /**
+     * @param maxFrames The maximum number of calls, let scopes and plots that
+     * may be active at once.
+     */
+    public void setMaxFrames(int maxFrames) {
+        this.maxFrames = maxFrames;
+    }
+
+    @Override
+    public FnPlotValue<?> run(ArithProgram p, Environment<FnPlotValue<?>> env)
+            throws FnPlotException {
+        return execute(VmCompiler.compile(p), env);
+    }
+
+    // operand stack helpers
+
+    private void ensureStack() {
+        if (sp == vals.length) {
+            vals = Arrays.copyOf(vals, sp * 2);
+            tags = Arrays.copyOf(tags, sp * 2);
+            refs = Arrays.copyOf(refs, sp * 2);
+        }
+    }
+
+    private void pushNum(byte tag, double v) {
+        ensureStack();
+        tags[sp] = tag;
+        vals[sp++] = v;
+    }
+
+    private void pushRef(Object r) {
+        ensureStack();
+        tags[sp] = REF;
+        refs[sp++] = r;
+    }
+
+    private void push(FnPlotValue<?> v) throws FnPlotException {
+        if (v == null || !(v.isInteger() || v.getType() == FnPlotType.REAL)) {
+            pushRef(v);
+        } else {
+            pushNum(v.isInteger() ? INT : REAL, v.doubleValue());
+        }
+    }
+
+    private FnPlotValue<?> box(int i) {
+        switch (tags[i]) {
+            case INT: return FnPlotValue.make((int) vals[i]);
+            case REAL: return FnPlotValue.make(vals[i]);
+            default: return (FnPlotValue<?>) refs[i];
+        }
+    }
+
+    private void pushFrame(int kind, int pc, Environment<FnPlotValue<?>> env, Program prog,
+                           PlotState plot) throws FnPlotException {
+        if (fp == frameKind.length) {
+            if (fp >= maxFrames) {
+                throw new RuntimeFnPlotException("Stack overflow: more than " + maxFrames
+                        + " nested calls");
+            }
+            int n = Math.min(fp * 2, maxFrames);
+            frameKind = Arrays.copyOf(frameKind, n);
+            framePc = Arrays.copyOf(framePc, n);
+            frameEnv = Arrays.copyOf(frameEnv, n);
+            frameProg = Arrays.copyOf(frameProg, n);
+            framePlot = Arrays.copyOf(framePlot, n);
+        }
+        frameKind[fp] = kind;
+        framePc[fp] = pc;
+        frameEnv[fp] = env;
+        frameProg[fp] = prog;
+        framePlot[fp] = plot;
+        fp++;
+    }
+
+    /**
+     * Execute a compiled program.
+     * @param program The program to be executed
+     * @param startEnv The environment in which to execute it
+     * @return The value left on the stack when the program halts
+     * @throws FnPlotException if a runtime error occurs
+     */
+    @SuppressWarnings("unchecked")
+    public FnPlotValue<?> execute(Program program, Environment<FnPlotValue<?>> startEnv)
+            throws FnPlotException {
+        Program prog = program;
+        int[] code = prog.code;
+        Environment<FnPlotValue<?>> env = startEnv;
+        int pc = 0;
+        sp = 0;
+        fp = 0;
+        try {
+            while (true) {
+                switch (code[pc]) {
+                    case Opcode.HALT:
+                        return box(sp - 1);
+                    case Opcode.PUSH_INT:
+                        pushNum(INT, code[pc + 1]);
+                        pc += 2;
+                        break;
+                    case Opcode.PUSH_REAL:
+                        pushNum(REAL, prog.constants[code[pc + 1]]);
+                        pc += 2;
+                        break;
+                    case Opcode.LOAD:
+                        push(env.get(prog.symbols[code[pc + 1]]));
+                        pc += 2;
+                        break;
+                    case Opcode.LOAD_FN:
+                        pushRef((FnPlotFunction) env.get(prog.symbols[code[pc + 1]]));
+                        pc += 2;
+                        break;
+                    case Opcode.STORE:
+                        env.put(prog.symbols[code[pc + 1]], box(sp - 1));
+                        pc += 2;
+                        break;
+                    case Opcode.POP:
+                        refs[--sp] = null;
+                        pc++;
+                        break;
+                    case Opcode.ADD:
+                    case Opcode.SUB:
+                    case Opcode.MUL:
+                    case Opcode.DIV:
+                    case Opcode.MOD:
+                    case Opcode.POW:
+                        arith(code[pc]);
+                        pc++;
+                        break;
+                    case Opcode.ENTER: {
+                        int k = code[pc + 1];
+                        int[] ids = new int[k];
+                        FnPlotValue<?>[] values = new FnPlotValue<?>[k];
+                        for (int i = 0; i < k; i++) {
+                            ids[i] = prog.symbols[code[pc + 2 + i]];
+                            values[i] = box(sp - k + i);
+                        }
+                        sp -= k;
+                        pushFrame(FRAME_LET, 0, env, prog, null);
+                        env = new Environment<>(ids, values, env);
+                        pc += 2 + k;
+                        break;
+                    }
+                    case Opcode.LEAVE:
+                        env = (Environment<FnPlotValue<?>>) frameEnv[--fp];
+                        frameEnv[fp] = null;
+                        pc++;
+                        break;
+                    case Opcode.CLOSURE: {
+                        Program.Function f = prog.functions[code[pc + 1]];
+                        pushRef(new VmFunction(f.source, env, prog, f.entry));
+                        pc += 2;
+                        break;
+                    }
+                    case Opcode.CALL: {
+                        int argc = code[pc + 1];
+                        FnPlotFunction fun = (FnPlotFunction) refs[sp - argc - 1];
+                        ArrayList<FnPlotValue<?>> args = new ArrayList<>(argc);
+                        for (int i = sp - argc; i < sp; i++) {
+                            args.add(box(i));
+                            refs[i] = null;
+                        }
+                        sp -= argc + 1;
+                        Environment<FnPlotValue<?>> newEnv = new Environment<>(
+                                fun.getFunExp().getParameterSymbols(), args, fun.getClosingEnv());
+                        pushFrame(FRAME_CALL, pc + 2, env, prog, null);
+                        env = newEnv;
+                        if (fun instanceof VmFunction) {
+                            prog = ((VmFunction) fun).program;
+                            pc = ((VmFunction) fun).entry;
+                        } else {
+                            prog = foreignBody(fun.getFunExp());
+                            pc = 0;
+                        }
+                        code = prog.code;
+                        break;
+                    }
+                    case Opcode.RET: {
+                        int f = fp - 1;
+                        if (frameKind[f] == FRAME_PLOT) {
+                            PlotState st = framePlot[f];
+                            sp--;
+                            double y = tags[sp] == REF ? box(sp).doubleValue() : vals[sp];
+                            refs[sp] = null;
+                            st.ys[st.next] = new Point2D.Double(st.xs[st.next], y);
+                            st.next++;
+                            if (st.next < st.xs.length) {
+                                env.put(st.item, FnPlotValue.make(st.xs[st.next]));
+                                pc = st.entry;
+                                break;
+                            }
+                            plotter.plot(st.ys);
+                            pushRef(null);
+                        }
+                        env = (Environment<FnPlotValue<?>>) frameEnv[f];
+                        prog = frameProg[f];
+                        pc = framePc[f];
+                        code = prog.code;
+                        frameEnv[f] = null;
+                        framePlot[f] = null;
+                        fp = f;
+                        break;
+                    }
+                    case Opcode.PLOT: {
+                        Program.Function f = prog.functions[code[pc + 1]];
+                        int c = code[pc + 2];
+                        double[] xs = plotter.sample(prog.constants[c], prog.constants[c + 1]);
+                        if (xs.length == 0) {
+                            plotter.plot(new Point2D[0]);
+                            pushRef(null);
+                            pc += 3;
+                            break;
+                        }
+                        PlotState st = new PlotState(f.source.getParameterSymbols()[0], f.entry, xs);
+                        pushFrame(FRAME_PLOT, pc + 3, env, prog, st);
+                        env = new Environment<>(new int[0], new FnPlotValue<?>[0], env);
+                        env.put(st.item, FnPlotValue.make(xs[0]));
+                        pc = f.entry;
+                        break;
+                    }
+                    case Opcode.CLEAR:
+                        plotter.clear();
+                        pushRef(null);
+                        pc++;
+                        break;
+                    case Opcode.COMPARE:
+                        compare(Comparison.values()[code[pc + 1]]);
+                        pc += 2;
+                        break;
+                    case Opcode.JUMP:
+                        pc = code[pc + 1];
+                        break;
+                    case Opcode.JUMP_IF_FALSE: {
+                        sp--;
+                        boolean holds = tags[sp] == REF ? box(sp).isTrue() : vals[sp] != 0;
+                        refs[sp] = null;
+                        pc = holds ? pc + 2 : code[pc + 1];
+                        break;
+                    }
+                    default:
+                        throw new RuntimeFnPlotException("Illegal instruction "
+                                + code[pc] + " at " + pc);
+                }
+            }
+        } finally {
+            Arrays.fill(refs, 0, Math.max(sp, 0), null);
+            Arrays.fill(frameEnv, 0, fp, null);
+            Arrays.fill(frameProg, 0, fp, null);
+            Arrays.fill(framePlot, 0, fp, null);
+        }
+    }
+
+    private Program foreignBody(ExpFunction fun) throws FnPlotException {
+        Program p = foreign.get(fun);
+        if (p == null) {
+            p = VmCompiler.compileFunction(fun);
+            foreign.put(fun, p);
+        }
+        return p;
+    }
+
+    /**
+     * Perform an arithmetic operation on the top two values of the stack,
+     * following the rules of FnPlotInt and FnPlotReal: the left operand
+     * decides the type of the result.
+     */
+    private void arith(int op) throws FnPlotException {
+        int r = sp - 1;
+        int l = sp - 2;
+        if (tags[l] == REF || tags[r] == REF) {
+            // non-numeric operands: let the values report the error
+            FnPlotValue<?> left = box(l);
+            FnPlotValue<?> right = box(r);
+            FnPlotValue<?> result;
+            switch (op) {
+                case Opcode.ADD: result = left.add(right); break;
+                case Opcode.SUB: result = left.sub(right); break;
+                case Opcode.MUL: result = left.mul(right); break;
+                case Opcode.DIV: result = left.div(right); break;
+                case Opcode.MOD: result = left.mod(right); break;
+                default: result = left.pow(right); break;
+            }
+            sp -= 2;
+            push(result);
+            return;
+        }
+        if (tags[l] == INT) {
+            int a = (int) vals[l];
+            int b = (int) vals[r];
+            int v;
+            switch (op) {
+                case Opcode.ADD: v = a + b; break;
+                case Opcode.SUB: v = a - b; break;
+                case Opcode.MUL: v = a * b; break;
+                case Opcode.DIV: v = a / b; break;
+                case Opcode.MOD: v = a % b; break;
+                default: v = FnPlotInt.power(a, b); break;
+            }
+            vals[l] = v;
+        } else {
+            double a = vals[l];
+            double b = vals[r];
+            double v;
+            switch (op) {
+                case Opcode.ADD: v = a + b; break;
+                case Opcode.SUB: v = a - b; break;
+                case Opcode.MUL: v = a * b; break;
+                case Opcode.DIV: v = a / b; break;
+                case Opcode.MOD: v = a % b; break;
+                default: v = Math.pow(a, b); break;
+            }
+            vals[l] = v;
+        }
+        sp--;
+    }
+
+    /**
+     * Compare the top two values of the stack, replacing them with 1 if the
+     * comparison holds and 0 if it does not.
+     */
+    private void compare(Comparison op) throws FnPlotException {
+        int r = sp - 1;
+        int l = sp - 2;
+        boolean holds;
+        if (tags[l] == REF || tags[r] == REF) {
+            // non-numeric operands: let the comparison report the error
+            holds = op.apply(box(l), box(r)).isTrue();
+            refs[l] = null;
+            refs[r] = null;
+        } else if (tags[l] == INT && tags[r] == INT) {
+            holds = op.test((int) vals[l], (int) vals[r]);
+        } else {
+            holds = op.test(vals[l], vals[r]);
+        }
+        tags[l] = INT;
+        vals[l] = holds ? 1 : 0;
+        sp--;
+    }
+}
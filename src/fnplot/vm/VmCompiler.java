@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package fnplot.vm;
+
+import fnplot.semantics.Visitor;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.Binding;
+import fnplot.syntax.Exp;
+import fnplot.syntax.ExpAdd;
+import fnplot.syntax.ExpClear;
+import fnplot.syntax.ExpCompare;
+import fnplot.syntax.ExpDiv;
+import fnplot.syntax.ExpFunCall;
+import fnplot.syntax.ExpFunction;
+import fnplot.syntax.ExpIf;
+import fnplot.syntax.ExpLit;
+import fnplot.syntax.ExpMod;
+import fnplot.syntax.ExpMul;
+import fnplot.syntax.ExpPlot;
+import fnplot.syntax.ExpPow;
+import fnplot.syntax.ExpSub;
+import fnplot.syntax.ExpVar;
+import fnplot.syntax.Statement;
+import fnplot.syntax.StmtDefinition;
+import fnplot.syntax.StmtLet;
+import fnplot.syntax.StmtSequence;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Translates an FnPlot AST into a {@link Program} for the
+ * {@link VirtualMachine}.  The visit methods append the code for the visited
+ * node, which leaves exactly one value on the stack.  The bodies of functions
+ * and plot maps are compiled after the main code, once it has been completed.
+ *
+ * @author newts
+ */
+public class VmCompiler implements Visitor<Void, Void> {
+
+    private int[] code = new int[64];
+    private int size = 0;
+    private final ArrayList<Double> constants = new ArrayList<>();
+    private final ArrayList<String> names = new ArrayList<>();
+    private final HashMap<String, Integer> nameIndex = new HashMap<>();
+    private final ArrayList<ExpFunction> functions = new ArrayList<>();
+    private final ArrayList<Integer> entries = new ArrayList<>();
+    private final ArrayDeque<Integer> pending = new ArrayDeque<>();
+
+    private VmCompiler() {
+    }
+
+    /**
+     * Compile a program (or any statement) for the virtual machine.
+     * @param node The AST to be compiled
+     * @return The compiled program
+     * @throws FnPlotException if the AST cannot be compiled
+     */
+    public static Program compile(Statement node) throws FnPlotException {
+        VmCompiler c = new VmCompiler();
+        node.visit(c, null);
+        c.emit(Opcode.HALT);
+        c.compilePending();
+        return c.finish();
+    }
+
+    /**
+     * Compile the body of a function into a program of its own, which starts
+     * with the body (so that its entry point is 0).
+     * @param fun The function expression
+     * @return The compiled program, whose function number 0 is the function
+     * @throws FnPlotException if the body cannot be compiled
+     */
+    public static Program compileFunction(ExpFunction fun) throws FnPlotException {
+        VmCompiler c = new VmCompiler();
+        c.function(fun);
+        c.compilePending();
+        return c.finish();
+    }
+
+    private Program finish() {
+        double[] consts = new double[constants.size()];
+        for (int i = 0; i < consts.length; i++) {
+            consts[i] = constants.get(i);
+        }
+        Program.Function[] fns = new Program.Function[functions.size()];
+        for (int i = 0; i < fns.length; i++) {
+            fns[i] = new Program.Function(entries.get(i), functions.get(i));
+        }
+        return new Program(Arrays.copyOf(code, size), consts,
+                names.toArray(new String[names.size()]), fns);
+    }
+
+    private void compilePending() throws FnPlotException {
+        while (!pending.isEmpty()) {
+            int f = pending.removeFirst();
+            entries.set(f, size);
+            functions.get(f).getBody().visit(this, null);
+            emit(Opcode.RET);
+        }
+    }
+
+    private int function(ExpFunction fun) {
+        functions.add(fun);
+        entries.add(-1);
+        int f = functions.size() - 1;
+        pending.addLast(f);
+        return f;
+    }
+
+    private void emit(int word) {
+        if (size == code.length) {
+            code = Arrays.copyOf(code, size * 2);
+        }
+        code[size++] = word;
+    }
+
+    private void emit(int opcode, int operand) {
+        emit(opcode);
+        emit(operand);
+    }
+
+    private int name(String id) {
+        Integer i = nameIndex.get(id);
+        if (i == null) {
+            i = names.size();
+            names.add(id);
+            nameIndex.put(id, i);
+        }
+        return i;
+    }
+
+    private int constant(double v) {
+        constants.add(v);
+        return constants.size() - 1;
+    }
+
+    private Void binary(Exp left, Exp right, int opcode) throws FnPlotException {
+        left.visit(this, null);
+        right.visit(this, null);
+        emit(opcode);
+        return null;
+    }
+
+    @Override
+    public Void visitArithProgram(ArithProgram p, Void arg) throws FnPlotException {
+        return p.getSeq().visit(this, arg);
+    }
+
+    @Override
+    public Void visitStmtSequence(StmtSequence sseq, Void arg) throws FnPlotException {
+        ArrayList<Statement> seq = sseq.getSeq();
+        if (seq.isEmpty()) {
+            emit(Opcode.PUSH_INT, 0);
+        }
+        for (int i = 0; i < seq.size(); i++) {
+            if (i > 0) {
+                emit(Opcode.POP);
+            }
+            seq.get(i).visit(this, arg);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitStmtDefinition(StmtDefinition sd, Void arg) throws FnPlotException {
+        sd.getExp().visit(this, arg);
+        emit(Opcode.STORE, name(sd.getVar()));
+        return null;
+    }
+
+    @Override
+    public Void visitStmtLet(StmtLet let, Void arg) throws FnPlotException {
+        ArrayList<Binding> bindings = let.getBindings();
+        for (Binding b : bindings) {
+            b.getValExp().visit(this, arg);
+        }
+        emit(Opcode.ENTER, bindings.size());
+        for (Binding b : bindings) {
+            emit(name(b.getVar()));
+        }
+        let.getBody().visit(this, arg);
+        emit(Opcode.LEAVE);
+        return null;
+    }
+
+    @Override
+    public Void visitFunDefn(ExpFunction fd, Void arg) throws FnPlotException {
+        emit(Opcode.CLOSURE, function(fd));
+        return null;
+    }
+
+    @Override
+    public Void visitFunCall(ExpFunCall exp, Void arg) throws FnPlotException {
+        emit(Opcode.LOAD_FN, name(exp.getName()));
+        for (Exp e : exp.getArguments()) {
+            e.visit(this, arg);
+        }
+        emit(Opcode.CALL, exp.getArguments().size());
+        return null;
+    }
+
+    @Override
+    public Void visitFunPlot(ExpPlot exp, Void arg) throws FnPlotException {
+        ArrayList<String> params = new ArrayList<>();
+        params.add(exp.getItem());
+        int f = function(new ExpFunction(params, exp.getMap()));
+        int c = constant(exp.getStart());
+        constant(exp.getEnd());
+        emit(Opcode.PLOT, f);
+        emit(c);
+        return null;
+    }
+
+    @Override
+    public Void visitClear(ExpClear exp, Void arg) throws FnPlotException {
+        emit(Opcode.CLEAR);
+        return null;
+    }
+
+    @Override
+    public Void visitExpAdd(ExpAdd exp, Void arg) throws FnPlotException {
+        return binary(exp.getExpL(), exp.getExpR(), Opcode.ADD);
+    }
+
+    @Override
+    public Void visitExpSub(ExpSub exp, Void arg) throws FnPlotException {
+        return binary(exp.getExpL(), exp.getExpR(), Opcode.SUB);
+    }
+
+    @Override
+    public Void visitExpMul(ExpMul exp, Void arg) throws FnPlotException {
+        return binary(exp.getExpL(), exp.getExpR(), Opcode.MUL);
+    }
+
+    @Override
+    public Void visitExpPow(ExpPow exp, Void arg) throws FnPlotException {
+        return binary(exp.getExpL(), exp.getExpR(), Opcode.POW);
+    }
+
+    @Override
+    public Void visitExpDiv(ExpDiv exp, Void arg) throws FnPlotException {
+        return binary(exp.getExpL(), exp.getExpR(), Opcode.DIV);
+    }
+
+    @Override
+    public Void visitExpMod(ExpMod exp, Void arg) throws FnPlotException {
+        return binary(exp.getExpL(), exp.getExpR(), Opcode.MOD);
+    }
+
+    @Override
+    public Void visitExpLit(ExpLit exp, Void arg) throws FnPlotException {
+        FnPlotValue<?> val = exp.getVal();
+        if (val.isInteger()) {
+            emit(Opcode.PUSH_INT, val.intValue());
+        } else {
+            emit(Opcode.PUSH_REAL, constant(val.doubleValue()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpVar(ExpVar exp, Void arg) throws FnPlotException {
+        emit(Opcode.LOAD, name(exp.getVar()));
+        return null;
+    }
+
+    @Override
+    public Void visitExpCompare(ExpCompare exp, Void arg) throws FnPlotException {
+        exp.getExpL().visit(this, arg);
+        exp.getExpR().visit(this, arg);
+        emit(Opcode.COMPARE, exp.getOp().ordinal());
+        return null;
+    }
+
+    @Override
+    public Void visitExpIf(ExpIf exp, Void arg) throws FnPlotException {
+        exp.getCondition().visit(this, arg);
+        emit(Opcode.JUMP_IF_FALSE, 0);
+        int toElse = size - 1;
+        exp.getThen().visit(this, arg);
+        emit(Opcode.JUMP, 0);
+        int toEnd = size - 1;
+        code[toElse] = size;
+        exp.getElse().visit(this, arg);
+        code[toEnd] = size;
+        return null;
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) 2016 newts
+ * Produced as part of course software for COMP3652 at UWI, Mona
+ * If you have any questions about this software, please contact
+ * the author.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package fnplot.semantics;
+
+import fnplot.optimizer.Optimizer;
+import fnplot.syntax.ArithProgram;
+import fnplot.syntax.FnPlotLexer;
+import fnplot.syntax.FnPlotParser;
+import fnplot.sys.FnPlotException;
+import fnplot.values.FnPlotValue;
+import java.awt.geom.Point2D;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A differential test of the execution engines: each script is run by every
+ * {@link Engine}, both by itself and behind the {@link Optimizer} and
+ * {@link TypeChecker}, and the plots, results and errors that they produce
+ * are compared with those of a reference {@link Evaluator} with all of its
+ * accelerations off and no front end.  A script is a sequence
+ * of programs run one after another in the same interpreter, as they would
+ * be if entered one at a time at the REPL.
+ * <p>
+ * Run it with <code>java fnplot.semantics.EnginesTest</code>; it reports each
+ * disagreement, and exits with status 1 if there are any.
+ *
+ * @author newts
+ */
+public class EnginesTest {
+
+    /** The scripts run by every engine. */
+    private static final String[][] SCRIPTS = {
+        {"1 + 2 * 3;"},
+        {"7 / 2;", "7.0 / 2;", "7 % 3;", "2 ^ 10;", "2.0 ^ 0.5;"},
+        {"x = 3; y = x * x; let z = y + 1 in z * x;"},
+        {"inc = fun(n) -> n + 1; inc(inc(4));"},
+        {"fib = fun(n) -> if n < 2 then n else fib(n - 1) + fib(n - 2); fib(15);"},
+        {"loop = fun(n, acc) -> if n == 0 then acc else loop(n - 1, acc + 1); loop(5000, 0);"},
+        {"mk = fun(y) -> fun(z) -> { y = y + z; y; }; acc = mk(10); acc(1);"},
+        {"f = fun(a) -> { b = a * 2; g = fun(c) -> b + c; g(1); }; f(5);"},
+        {"w = fun(x) -> x + z;", "z = 4;", "w(1);"},
+        {"even = fun(n) -> if n == 0 then 1 else odd(n - 1);",
+         "odd = fun(n) -> if n == 0 then 0 else even(n - 1);", "even(10);"},
+        {"c = 2; sq = fun(x) -> x * c; a = sq(3); c = 5; a + sq(3);"},
+        {"plot x * x for x in [0 : 1];"},
+        {"k = 3; plot k * x + 1 for x in [-1 : 1];"},
+        {"h = fun(t) -> t * t - 1; plot h(x) for x in [0 : 2];"},
+        {"undefined + 1;"},
+        {"1 / 0;"},
+        {"inc = fun(n) -> n + 1; inc(1) + nothing(2);"},
+        {"sq = fun(v) -> v * v; a = 2; plot sq(x) + sq(x) * a + a * 3 for x in [0 : 2];"},
+        {"plot 3 * x ^ 2 - 2 * x + 1 for x in [-2 : 2];", "plot x / 4.0 + 0.5 for x in [0 : 1];"},
+        {"g = fun(t, k, m) -> k * t + m; plot g(x, 3, 0.5) for x in [0 : 1];"},
+        {"cube = fun(v) -> v * v * v; "
+                + "sum = fun(n, acc) -> if n == 0 then acc else sum(n - 1, acc + cube(n)); "
+                + "sum(2000, 0);"},
+        {"c = 2; f = fun(v) -> v * c; "
+                + "twice = fun(n, acc) -> if n == 0 then acc else twice(n - 1, acc + f(n)); "
+                + "twice(2000, 0);", "c = 3;", "f(2) + twice(10, 0);"},
+        {"fib = fun(n) -> if n < 2 then n else fib(n - 1) + fib(n - 2); fib(20);",
+         "fib = fun(n) -> n;", "fib(20);"},
+        {"let a = 2 * 3, b = a + 1, c = 7 in b * 2;"},
+        {"k = 2; p = fun(v) -> k * v;", "plot p(x) for x in [0 : 1];", "k = 5;",
+         "plot p(x) for x in [0 : 1];"},
+        {"x = 2.5; (x + 0) * 1;", "7 / 2 * 1.0;", "n = 3; n * 0 + n ^ 1;"},
+        {"sq = fun(v) -> v * v; h = fun(v) -> sq(v) + 1; h(3);",
+         "sq = fun(v) -> v + 1000; h(3);"},
+        {"e = fun(v) -> v + 1; m = fun(a) -> plot e(a) * x for x in [0 : 1];", "m(2);",
+         "e = fun(v) -> { plot v for x in [0 : 1]; v; };", "m(2);"},
+    };
+
+    /** A plotter that records what is plotted, at eleven samples per plot. */
+    private static class Recorder implements Plotter {
+
+        private final List<String> plots = new ArrayList<>();
+
+        @Override
+        public double[] sample(double low, double hi) {
+            double[] result = new double[11];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = low + (hi - low) * i / 10;
+            }
+            return result;
+        }
+
+        @Override
+        public void plot(Point2D[] points) {
+            StringBuilder ys = new StringBuilder();
+            for (Point2D p : points) {
+                ys.append(String.format(" %.9g", p.getY()));
+            }
+            plots.add("plot" + ys);
+        }
+
+        @Override
+        public void clear() {
+            plots.add("clear");
+        }
+    }
+
+    private EnginesTest() {
+    }
+
+    /** How deeply the programs run by the stackless engines are nested. */
+    private static final int DEPTH = 20000;
+
+    /**
+     * @return Programs nested too deeply for an engine that recurses on the
+     * Java stack, with the integer result of each
+     */
+    private static Object[][] deepPrograms() {
+        StringBuilder calls = new StringBuilder("inc = fun(v) -> v + 1; ");
+        StringBuilder lets = new StringBuilder();
+        StringBuilder ifs = new StringBuilder();
+        StringBuilder sums = new StringBuilder();
+        for (int i = 0; i < DEPTH; i++) {
+            calls.append("inc(");
+            lets.append("let v").append(i).append(" = ").append(i).append(" in ");
+            ifs.append("if 1 > 0 then ");
+            sums.append("(");
+        }
+        calls.append('0');
+        lets.append("v7;");
+        ifs.append('5');
+        sums.append('1');
+        for (int i = 0; i < DEPTH; i++) {
+            calls.append(')');
+            ifs.append(" else 0");
+            sums.append(" + 1)");
+        }
+        return new Object[][] {
+            {calls.append(';').toString(), DEPTH},
+            {lets.toString(), 7},
+            {ifs.append(';').toString(), 5},
+            {sums.append(';').toString(), DEPTH + 1}
+        };
+    }
+
+    /** How many tail calls the tail recursive programs make. */
+    private static final int TAIL_CALLS = 100000;
+
+    /**
+     * @return Programs that make more tail calls than there is room for on
+     * the Java stack, with the integer result of each; every engine must run
+     * them in constant stack space
+     */
+    private static Object[][] tailPrograms() {
+        return new Object[][] {
+            {"loop = fun(n, acc) -> if n == 0 then acc else loop(n - 1, acc + 1); "
+                    + "loop(" + TAIL_CALLS + ", 0);", TAIL_CALLS},
+            {"even = fun(n) -> if n == 0 then 1 else odd(n - 1); "
+                    + "odd = fun(n) -> if n == 0 then 0 else even(n - 1); "
+                    + "even(" + TAIL_CALLS + ");", 1},
+            {"count = fun(n) -> let m = n - 1 in if m < 0 then 0 else { m; count(m); }; "
+                    + "count(" + TAIL_CALLS + ");", 0}
+        };
+    }
+
+    /**
+     * A way of running programs: an interpreter, and whether each program is
+     * first optimised and checked, as the front ends do.
+     */
+    private static final class Config {
+
+        private final String name;
+        private final Supplier<Interpreter> interpreters;
+        private final boolean frontEnd;
+
+        Config(String name, Supplier<Interpreter> interpreters, boolean frontEnd) {
+            this.name = name;
+            this.interpreters = interpreters;
+            this.frontEnd = frontEnd;
+        }
+    }
+
+    /**
+     * @return A tree walking evaluator with all of its accelerations turned
+     * off, which is the reference for every other configuration
+     */
+    private static Interpreter plainEvaluator() {
+        Evaluator result = new Evaluator();
+        result.setCompilingPlots(false);
+        result.setUnboxedPlots(false);
+        result.setPolynomialPlots(false);
+        result.setSpecializingPlots(false);
+        result.setTieredExecution(false);
+        result.setMemoizing(false);
+        result.setLazyLets(false);
+        result.setConvertingClosures(false);
+        result.setInlineCaching(false);
+        return result;
+    }
+
+    /** The reference configuration: a plain evaluator, without a front end. */
+    private static final Config REFERENCE =
+            new Config("reference", EnginesTest::plainEvaluator, false);
+
+    /**
+     * @return Every engine as it is created (so with all of the
+     * accelerations of the tree walker on), both by itself and behind the
+     * optimiser and checker
+     */
+    private static List<Config> configs() {
+        List<Config> result = new ArrayList<>();
+        for (Engine engine : Engine.values()) {
+            result.add(new Config(engine.getName(), engine::create, false));
+            result.add(new Config(engine.getName() + " (optimised and checked)",
+                    engine::create, true));
+        }
+        return result;
+    }
+
+    /**
+     * Run a script in a configuration.
+     * @param config The configuration
+     * @param script The programs of the script
+     * @return For each program, what it plotted and its result or error, or
+     * "stack overflow" if it overflowed the Java stack, or "rejected" if the
+     * checker rejected it
+     */
+    static List<String> run(Config config, String[] script) {
+        Interpreter interp = config.interpreters.get();
+        Recorder recorder = new Recorder();
+        interp.setPlotter(recorder);
+        List<String> result = new ArrayList<>();
+        for (String source : script) {
+            String outcome;
+            try {
+                FnPlotParser parser = new FnPlotParser(new FnPlotLexer(new StringReader(source)));
+                ArithProgram p = (ArithProgram) parser.parse().value;
+                if (config.frontEnd) {
+                    p = Optimizer.optimize(p);
+                    try {
+                        TypeChecker.check(p, interp.getGlobalEnv());
+                    } catch (FnPlotException e) {
+                        recorder.plots.add("rejected");
+                        throw e;
+                    }
+                }
+                FnPlotValue<?> value = interp.run(p, interp.getGlobalEnv());
+                outcome = value == null ? "no value" : value.isNumber() ?
+                        String.format("%s %.9g", value.getType(), value.doubleValue()) :
+                        value.getType().toString();
+            } catch (Exception e) {
+                // engines word their messages differently, but must agree
+                // that there is an error
+                outcome = "error";
+            } catch (StackOverflowError e) {
+                // an engine that runs out of stack disagrees with the rest
+                // on this script, but must not stop the others being run
+                outcome = "stack overflow";
+            }
+            recorder.plots.add(outcome);
+            result.add(String.join("; ", recorder.plots));
+            recorder.plots.clear();
+        }
+        return result;
+    }
+
+    /**
+     * @return <code>true</code> if the outcome of a program agrees with that
+     * of the reference, where a program that the checker rejects agrees with
+     * any that fails, since it fails before it plots anything
+     */
+    private static boolean agrees(String expected, String actual) {
+        return actual.equals(expected) ||
+                actual.equals("rejected; error") && expected.endsWith("error");
+    }
+
+    /**
+     * Run a program with an engine, in a thread whose stack is too small for
+     * the program if the engine recurses on it.
+     * @param engine The engine
+     * @param program The program
+     * @return What {@link #run(Config, String[])} returns for it
+     */
+    static List<String> runOnSmallStack(Engine engine, String program) {
+        List<List<String>> result = new ArrayList<>();
+        Config config = new Config(engine.getName(), engine::create, false);
+        Thread t = new Thread(null, () -> result.add(run(config, new String[] {program})),
+                "deep", 1 << 18);
+        t.start();
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result.isEmpty() ? List.of("no result") : result.get(0);
+    }
+
+    /**
+     * Run every script in every configuration.
+     * @param args Ignored
+     */
+    public static void main(String[] args) {
+        int failures = 0;
+        List<Config> configs = configs();
+        for (String[] script : SCRIPTS) {
+            List<String> expected = run(REFERENCE, script);
+            for (Config config : configs) {
+                List<String> actual = run(config, script);
+                boolean agree = actual.size() == expected.size();
+                for (int i = 0; agree && i < actual.size(); i++) {
+                    agree = agrees(expected.get(i), actual.get(i));
+                }
+                if (!agree) {
+                    failures++;
+                    System.out.printf("%s disagrees on %s%n  expected %s%n  actual   %s%n",
+                            config.name, String.join(" ", script), expected, actual);
+                }
+            }
+        }
+        for (Engine engine : Engine.values()) {
+            for (Object[] loop : tailPrograms()) {
+                String program = (String) loop[0];
+                List<String> actual = runOnSmallStack(engine, program);
+                String expected = String.format("INTEGER %.9g", (double) (int) loop[1]);
+                if (!actual.equals(List.of(expected))) {
+                    failures++;
+                    System.out.printf("%s fails on a loop of %d tail calls: %s...%n"
+                            + "  expected %s%n  actual   %s%n", engine.getName(), TAIL_CALLS,
+                            program.substring(0, 40), expected, actual);
+                }
+            }
+            if (!engine.isStackless()) {
+                continue;
+            }
+            for (Object[] deep : deepPrograms()) {
+                String program = (String) deep[0];
+                List<String> actual = runOnSmallStack(engine, program);
+                String expected = String.format("INTEGER %.9g", (double) (int) deep[1]);
+                if (!actual.equals(List.of(expected))) {
+                    failures++;
+                    System.out.printf("%s fails on a program nested %d deep: %s...%n"
+                            + "  expected %s%n  actual   %s%n", engine.getName(), DEPTH,
+                            program.substring(0, 40), expected, actual);
+                }
+            }
+        }
+        System.out.printf("%d scripts, %d configurations, %d disagreements%n",
+                SCRIPTS.length, configs.size(), failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+}